@@ -190,7 +190,7 @@ public abstract class AbstractBudgetEditorActivity extends UBudgetActivity {
 
 	protected boolean nameIsUnique() {
 		boolean isUnique = true;
-		for (Budget budget : Budget.getBudgets()) {
+		for (Budget budget : BudgetRepository.getInstance().getBudgets()) {
 			if (budget.getName().equals(mBudgetName)) {
 				mBudgetNameView.setError(getString(
 						R.string.error_name_already_exists));
@@ -105,7 +105,7 @@ public abstract class AbstractEntryEditorActivity extends UBudgetActivity {
 	// Populates the spinner with the current list of Budgets.
 	public void addItemsToBudgetSpinner() {
 		// get the actual Budget objects
-		final List<Budget> budgetList = Budget.getBudgets();
+		final List<Budget> budgetList = BudgetRepository.getInstance().getBudgets();
 		// list for the String names for each Budget object
 		List<String> budgetNameList = new ArrayList<String>();
 
@@ -178,7 +178,7 @@ public abstract class AbstractEntryEditorActivity extends UBudgetActivity {
 		LocalDate date = new LocalDate(mDateView.getYear(),
 				mDateView.getMonth() + 1, mDateView.getDayOfMonth());
 
-		Budget b = Budget.getBudgets().get(mBudgetView.getSelectedItemPosition());
+		Budget b = BudgetRepository.getInstance().getBudgets().get(mBudgetView.getSelectedItemPosition());
 
 		// check whether the date is before the budget's start date
 		if (date.isBefore(b.getStartDate())) {
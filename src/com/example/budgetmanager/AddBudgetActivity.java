@@ -2,10 +2,6 @@ package com.example.budgetmanager;
 
 import android.os.Bundle;
 import android.view.View;
-import android.widget.Toast;
-
-import com.example.budgetmanager.api.ApiCallback;
-import com.example.budgetmanager.api.ApiInterface;
 
 /**
  *
@@ -29,11 +25,8 @@ public class AddBudgetActivity extends AbstractBudgetEditorActivity {
 	}
 
 	/**
-	 * Attempts to push the <code>Budget</code> created by the user to the API.
-	 *
-	 * If it succeeds, this activity is finished.
-	 *
-	 * If it fails, toast the error.
+	 * Adds the <code>Budget</code> created by the user, and queues it to be
+	 * pushed to the API, then finishes this activity.
 	 */
 	public void attemptAddBudget(View view) {
 		// check input validity
@@ -47,28 +40,9 @@ public class AddBudgetActivity extends AbstractBudgetEditorActivity {
 			return;
 		}
 
-		// disable button while calling api
-		mAddButtonView.setClickable(false);
-
-		// create the Budget object to add to the list of Budgets
-		final Budget newBudget = createBudget();
-
-		ApiInterface.getInstance().create(newBudget, new ApiCallback<Long>() {
-			@Override
-			public void onSuccess(Long result) {
-				finish();
-			}
-
-			@Override
-			public void onFailure(String errorMessage) {
-				// if the request fails, do nothing
-				// (the toast is for testing and debug purposes)
-				Toast.makeText(AddBudgetActivity.this, errorMessage,
-						Toast.LENGTH_LONG).show();
-				// Remove the budget from the budget list, as it wasn't added.
-				Budget.removeBudget(newBudget);
-				mAddButtonView.setClickable(true);
-			}
-		});
+		// create the Budget object to add to the list of Budgets, which is
+		// sent to the API when it can be
+		UBudgetApp.getOutbox().create(createBudget());
+		finish();
 	}
 }
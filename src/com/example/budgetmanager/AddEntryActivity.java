@@ -2,10 +2,6 @@ package com.example.budgetmanager;
 
 import android.os.Bundle;
 import android.view.View;
-import android.widget.Toast;
-
-import com.example.budgetmanager.api.ApiCallback;
-import com.example.budgetmanager.api.ApiInterface;
 
 /**
  * Activity which allows users to add entries.
@@ -37,26 +33,14 @@ public class AddEntryActivity extends AbstractEntryEditorActivity {
 			return;
 		}
 
-		ApiInterface.getInstance().create(newEntry, new ApiCallback<Long>() {
-			@Override
-			public void onSuccess(Long result) {
-				Budget b = newEntry.getBudget();
-				b.addEntry(newEntry);
-				// clear the fields if the add was successful.
-				// passes a null since the method doesn't need
-				// a reference to a view object to work.
-				AddEntryActivity.this.clearEntry(null);
-				// goto logs screen
-				finish();
-			}
-
-			@Override
-			public void onFailure(String errorMessage) {
-				// if the request fails, do nothing (the toast is for testing purposes)
-				Toast.makeText(AddEntryActivity.this, errorMessage, Toast.LENGTH_LONG).show();
-				mAddButtonView.setClickable(true);
-			}
-		});
+		// Add it now; it is sent to the API when it can be.
+		UBudgetApp.getOutbox().create(newEntry);
+		// clear the fields now the entry was added.
+		// passes a null since the method doesn't need
+		// a reference to a view object to work.
+		clearEntry(null);
+		// goto logs screen
+		finish();
 	}
 
 	// Helper method to create the new <code>Entry</code> object to be added.
@@ -0,0 +1,56 @@
+package com.example.budgetmanager;
+
+import com.example.budgetmanager.api.ApiCallback;
+import com.example.budgetmanager.api.ApiInterface;
+import com.example.budgetmanager.api.EntryBatcher;
+
+/**
+ * Sends the changes waiting in the {@link Outbox} through the
+ * {@link ApiInterface}, which tells the outbox's callbacks which failures
+ * may pass. Entries created or removed together are sent in batches.
+ */
+final class ApiSender implements Outbox.Sender {
+	private EntryBatcher batcher;
+
+	@Override
+	public boolean isOnline() {
+		return ApiInterface.getInstance().isOnline();
+	}
+
+	@Override
+	public void create(Budget b, ApiCallback<Long> callback) {
+		ApiInterface.getInstance().create(b, callback);
+	}
+
+	@Override
+	public void create(Entry e, ApiCallback<Long> callback) {
+		getBatcher().create(e, callback);
+	}
+
+	@Override
+	public void update(Budget b, ApiCallback<Object> callback) {
+		ApiInterface.getInstance().update(b, callback);
+	}
+
+	@Override
+	public void update(Entry e, ApiCallback<Object> callback) {
+		ApiInterface.getInstance().update(e, callback);
+	}
+
+	@Override
+	public void remove(Budget b, ApiCallback<Object> callback) {
+		ApiInterface.getInstance().remove(b, callback);
+	}
+
+	@Override
+	public void remove(Entry e, ApiCallback<Object> callback) {
+		getBatcher().remove(e, callback);
+	}
+
+	private EntryBatcher getBatcher() {
+		if (batcher == null) {
+			batcher = new EntryBatcher(ApiInterface.getInstance());
+		}
+		return batcher;
+	}
+}
@@ -0,0 +1,61 @@
+package com.example.budgetmanager;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Helpers for files that must never be seen half written.
+ */
+final class AtomicFiles {
+
+	private AtomicFiles() {
+	}
+
+	/**
+	 * Replaces the contents of <code>file</code> with <code>contents</code>.
+	 * They are written to a new file, synced to the disk, and then moved
+	 * over the old file, so a crash leaves either the old or the new
+	 * contents.
+	 *
+	 * @param file The file to replace.
+	 * @param contents The new contents of the file.
+	 * @throws IOException if the new contents couldn't be written, in which
+	 *         case the old file is left as it was
+	 */
+	static void replace(File file, byte[] contents) throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+		FileOutputStream out = null;
+		try {
+			out = new FileOutputStream(temp);
+			out.write(contents);
+			out.getFD().sync();
+			out.close();
+			out = null;
+			if (!temp.renameTo(file)) {
+				throw new IOException("Couldn't replace " + file);
+			}
+		} catch (IOException e) {
+			temp.delete();
+			throw e;
+		} finally {
+			close(out);
+		}
+	}
+
+	/**
+	 * Closes <code>stream</code>, if there is one, ignoring any failure.
+	 *
+	 * @param stream The stream to close, or <code>null</code>.
+	 */
+	static void close(Closeable stream) {
+		if (stream != null) {
+			try {
+				stream.close();
+			} catch (IOException e) {
+				// Nothing more to read or write, so nothing to report.
+			}
+		}
+	}
+}
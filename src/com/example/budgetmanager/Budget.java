@@ -3,9 +3,11 @@ package com.example.budgetmanager;
 import org.joda.time.LocalDate;
 import org.joda.time.Period;
 
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 
 /**
  * This is the budget object. It keeps track of all the entries
@@ -47,19 +49,25 @@ public class Budget {
 	// Actual period of the budget (length of one cycle)
 	private Period budgetDuration;
 
-	// List of entries associated with this Budget
-	private final List<Entry> entries;
+	// Entries associated with this Budget, in date order
+	private EntryStore entries;
 
-	// Hold the list of all loaded budgets
-	private static final List<Budget> BUDGET_LIST;
+	// true if the entries are kept in compact, columnar storage
+	private boolean compactStorage;
 
-	static {
-		BUDGET_LIST = new ArrayList<Budget>();
-	}
+	// The repository this Budget has been added to, or null if none
+	private volatile BudgetRepository repository;
+
+	// The day getCurrentCycle() was last calculated for, and its result
+	private LocalDate cycleCacheDay;
+	private int cycleCache;
+
+	// Amount spent in each cycle, or null until it is first needed
+	private CycleTotals cycleTotals;
 
 	/**
-	 * Create a new <code>Budget</code>. This also adds the created budget in
-	 * the list of all budgets.
+	 * Create a new <code>Budget</code>. The budget is not tracked as one of
+	 * the user's budgets until it is added to the {@link BudgetRepository}.
 	 *
 	 * @param name The name of the <code>Budget</code>.
 	 * @param amount The amount in cents allowed in this <code>Budget</code>.
@@ -74,57 +82,10 @@ public class Budget {
 		this.recur = recur;
 		this.startDate = startDate;
 		this.duration = duration;
-		this.entries = new ArrayList<Entry>();
+		this.entries = new DateSortedEntries();
 		this.budgetId = NEW_ID;
 
 		setPeriod();
-
-		// Throw it into the main Budget list at the beginning of the list.
-		BUDGET_LIST.add(0, this);
-	}
-
-	/**
-	 * Returns a list of all Budgets tracked by the current user
-	 *
-	 * @return An unmodifiable list of all budgets
-	 */
-	public static List<Budget> getBudgets() {
-		return Collections.unmodifiableList(BUDGET_LIST);
-	}
-
-	/** Search through the user's Budgets for the budget who's ID matches
-	 * <code>id</code>.
-	 *
-	 * @param id The ID of the budget in question.
-	 * @return The budget with <code>id</code>, or <code>null</code> if no
-	 *         such budget exists.
-	 */
-	public static Budget getBudgetById(long id) {
-		for (Budget b : BUDGET_LIST) {
-			if (b.getId() == id) {
-				return b;
-			}
-		}
-		return null;
-	}
-
-	/**
-	 * Clears the internal list of Budgets, mainly used for testing.
-	 */
-	public static void clearBudgets() {
-		BUDGET_LIST.clear();
-	}
-
-	/**
-	 * Remove a budget from the budget list (for use when deleting)
-	 *
-	 * @param budget the Budget to be removed
-	 *
-	 * @return true if the Budget list was modified (ie. the budget was
-	 * removed), false otherwise.
-	 */
-	public static boolean removeBudget(Budget budget) {
-		return BUDGET_LIST.remove(budget);
 	}
 
 	/**
@@ -134,6 +95,10 @@ public class Budget {
 	 */
 	public void setId(long budgetId) {
 		this.budgetId = budgetId;
+		BudgetRepository owner = repository;
+		if (owner != null) {
+			owner.budgetIdChanged(this);
+		}
 	}
 
 	/**
@@ -162,6 +127,51 @@ public class Budget {
 					+ "budget that already contained it.");
 		}
 		entries.add(entry);
+		if (indexesEntries()) {
+			repository.indexEntry(entry);
+		}
+		addToTotals(entry.getDate(), entry.getAmount());
+
+		BudgetRepository owner = repository;
+		if (owner != null) {
+			owner.entriesAdded(this, Collections.singletonList(entry));
+		}
+	}
+
+	/**
+	 * Adds all of <code>newEntries</code> to the <code>Budget</code> in one
+	 * pass, such as when loading a whole budget from the server. Either all
+	 * of the entries are added, or none are.
+	 *
+	 * @param newEntries The entries to add.
+	 * @throws IllegalArgumentException if any of <code>newEntries</code>
+	 * already exists in this budget or appears twice, or if any of them is
+	 * <code>null</code>
+	 */
+	public void addEntries(Collection<Entry> newEntries) {
+		Set<Entry> seen = Collections.newSetFromMap(
+				new IdentityHashMap<Entry, Boolean>());
+		for (Entry entry : newEntries) {
+			if (entry == null) {
+				throw new IllegalArgumentException("Tried to add a null Entry");
+			}
+			if (entries.contains(entry) || !seen.add(entry)) {
+				throw new IllegalArgumentException("Tried to add entry to "
+						+ "budget that already contained it.");
+			}
+		}
+		entries.addAll(newEntries);
+		for (Entry entry : newEntries) {
+			if (indexesEntries()) {
+				repository.indexEntry(entry);
+			}
+			addToTotals(entry.getDate(), entry.getAmount());
+		}
+
+		BudgetRepository owner = repository;
+		if (owner != null && !newEntries.isEmpty()) {
+			owner.entriesAdded(this, newEntries);
+		}
 	}
 
 	/**
@@ -175,19 +185,108 @@ public class Budget {
 		if (entry == null) {
 			throw new IllegalArgumentException("Tried to remove a null Entry");
 		}
-		if (!entries.contains(entry)) {
+		if (!entries.remove(entry)) {
 			throw new IllegalArgumentException("Tried to remove entry from "
 					+ "budget that did not contain it.");
 		}
-		entries.remove(entry);
+		if (indexesEntries()) {
+			repository.unindexEntry(entry, entry.getEntryId());
+		}
+		addToTotals(entry.getDate(), -entry.getAmount());
+
+		BudgetRepository owner = repository;
+		if (owner != null) {
+			owner.entryRemoved(entry);
+		}
 	}
 
 	/**
-	 * Get the list of entries associated with this Budget
+	 * Get the list of entries associated with this Budget, oldest first
 	 * @return the (unmodifiable) list of entries in this Budget
 	 */
 	public List<Entry> getEntries() {
-		return Collections.unmodifiableList(entries);
+		return entries.asList();
+	}
+
+	/**
+	 * Gets the entries of this Budget dated from <code>start</code> to
+	 * <code>end</code>, inclusive, oldest first. The returned list is a view
+	 * of this Budget's entries, so copy it if it is kept while entries are
+	 * added or removed.
+	 *
+	 * @param start The first date of the range.
+	 * @param end The last date of the range.
+	 * @return The (unmodifiable) list of entries in the range.
+	 */
+	public List<Entry> getEntriesBetween(LocalDate start, LocalDate end) {
+		return entries.between(start, end);
+	}
+
+	/**
+	 * Gets the total amount of the entries of this Budget dated from
+	 * <code>start</code> to <code>end</code>, inclusive.
+	 *
+	 * @param start The first date of the range.
+	 * @param end The last date of the range.
+	 * @return The total amount spent in the range, in cents.
+	 */
+	public int getAmountBetween(LocalDate start, LocalDate end) {
+		return entries.amountBetween(start, end);
+	}
+
+	/**
+	 * Gets the running total of the amounts spent in the given cycle, one
+	 * point per entry, oldest first.
+	 *
+	 * @param cycle The cycle to get the spending of.
+	 * @return The running total of the amounts spent in <code>cycle</code>.
+	 * @throws IllegalArgumentException If the cycle is negative
+	 */
+	public SpendingSeries getSpendingSeries(int cycle) {
+		return entries.seriesBetween(getStartDate(cycle), getEndDate(cycle));
+	}
+
+	/**
+	 * Sets whether the entries of this Budget are kept in compact storage.
+	 * Compact storage keeps the fields of the entries in primitive arrays,
+	 * and only creates <code>Entry</code> objects while they are in use,
+	 * which saves memory for budgets with long histories. Budgets read from
+	 * the API are switched to compact storage automatically once they have
+	 * 1,000 entries or more.
+	 *
+	 * @param compact <code>true</code> to keep the entries in compact
+	 *        storage, <code>false</code> to keep them as objects.
+	 */
+	public void setCompactStorage(boolean compact) {
+		if (compact == compactStorage) {
+			return;
+		}
+		if (compact && indexesEntries()) {
+			for (Entry e : entries.asList()) {
+				repository.unindexEntry(e, e.getEntryId());
+			}
+		}
+
+		EntryStore newEntries = compact
+				? new ColumnarEntryStore(this) : new DateSortedEntries();
+		newEntries.addAll(entries.asList());
+		entries = newEntries;
+		compactStorage = compact;
+
+		if (indexesEntries()) {
+			for (Entry e : entries.asList()) {
+				repository.indexEntry(e);
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the entries of this Budget are kept in compact storage.
+	 *
+	 * @return <code>true</code> if the entries are in compact storage.
+	 */
+	public boolean isCompactStorage() {
+		return compactStorage;
 	}
 
 	/**
@@ -199,12 +298,18 @@ public class Budget {
 	 *         such entry exists.
 	 */
 	public Entry getEntryById(long id) {
-		for (Entry e : entries) {
-			if (id == e.getEntryId()) {
-				return e;
+		BudgetRepository owner = repository;
+		if (owner != null && !compactStorage) {
+			Entry indexed = owner.findEntryById(id);
+			if (indexed != null && indexed.getBudget() == this
+					&& entries.contains(indexed)) {
+				return indexed;
 			}
 		}
-		return null;
+
+		// Not indexed under this budget (e.g. this budget isn't loaded, or
+		// another budget has an entry with the same ID), so search for it.
+		return entries.findById(id);
 	}
 
 	/**
@@ -223,6 +328,7 @@ public class Budget {
 	 */
 	public void setName(String name) {
 		this.name = name;
+		updated();
 	}
 
 	/**
@@ -243,6 +349,7 @@ public class Budget {
 	 */
 	public void setBudgetAmount(int amount) {
 		this.amount = amount;
+		updated();
 	}
 
 	/**
@@ -263,6 +370,7 @@ public class Budget {
 	 */
 	public void setRecurring(boolean recur) {
 		this.recur = recur;
+		updated();
 	}
 
 	/**
@@ -281,6 +389,9 @@ public class Budget {
 	public void setDuration(Duration duration) {
 		this.duration = duration;
 		setPeriod();
+		cycleCacheDay = null;
+		cycleTotals = null;
+		updated();
 	}
 
 	/**
@@ -291,17 +402,24 @@ public class Budget {
 	 */
 	public int getCurrentCycle() {
 		LocalDate now = LocalDate.now();
-		if (startDate.isAfter(now)) {
-			return -1;
-		} else {
-			int cycle = -1;
-			LocalDate startOfPeriod = startDate;
-			while (startOfPeriod.isBefore(now) || startOfPeriod.equals(now)) {
-				++cycle;
-				startOfPeriod = startOfPeriod.plus(budgetDuration);
-			}
-			return cycle;
+		if (!now.equals(cycleCacheDay)) {
+			cycleCache = getCycle(now);
+			cycleCacheDay = now;
 		}
+		return cycleCache;
+	}
+
+	/**
+	 * Calculates which cycle of this <code>Budget</code> <code>date</code>
+	 * falls in, such that <code>getStartDate(cycle)</code> is on or before
+	 * <code>date</code> and <code>getEndDate(cycle)</code> is on or after it.
+	 *
+	 * @param date The date to find the cycle of.
+	 * @return The cycle containing <code>date</code>, where the first cycle
+	 * is 0, or -1 if <code>date</code> is before the start of the budget.
+	 */
+	public int getCycle(LocalDate date) {
+		return CycleCalculator.getCycle(startDate, duration, date);
 	}
 
 	/**
@@ -343,6 +461,9 @@ public class Budget {
 	 */
 	public void setStartDate(LocalDate startDate) {
 		this.startDate = startDate;
+		cycleCacheDay = null;
+		cycleTotals = null;
+		updated();
 	}
 
 	/**
@@ -364,18 +485,22 @@ public class Budget {
 	 *
 	 * @param cycle The cycle to calculate the amount
 	 * @return the cumulative sum of amount spent in cents
+	 * @throws IllegalArgumentException If the cycle is negative
 	 */
 	public int getAmountSpent(int cycle) {
-		int amount = 0;
-		LocalDate startDate = getStartDate(cycle).minusDays(1);
-		LocalDate endDate = getEndDate(cycle).plusDays(1);
-		for (Entry e : entries) {
-			LocalDate usedDate = e.getDate();
-			if (usedDate.isAfter(startDate) && usedDate.isBefore(endDate)) {
-				amount += e.getAmount();
-			}
+		if (cycle < 0) {
+			throw new IllegalArgumentException("Cycle was negative: " + cycle);
 		}
-		return amount;
+		if (cycleTotals == null) {
+			cycleTotals = new CycleTotals();
+		}
+		if (!cycleTotals.contains(cycle)) {
+			// Total up the cycle the first time it is asked for; its total
+			// is kept up to date as entries change from here on.
+			cycleTotals.add(cycle, entries.amountBetween(getStartDate(cycle),
+					getEndDate(cycle)));
+		}
+		return cycleTotals.get(cycle);
 	}
 
 	/**
@@ -387,6 +512,115 @@ public class Budget {
 		return getAmountSpent(getCurrentCycle());
 	}
 
+	/**
+	 * Keeps the entry index and compact storage up to date when an entry's
+	 * ID changes. Called by {@link Entry#setEntryId(long)}.
+	 *
+	 * @param entry The entry whose ID changed.
+	 * @param oldId The previous ID of <code>entry</code>.
+	 */
+	static void entryIdChanged(Entry entry, long oldId) {
+		Budget b = entry.getBudget();
+		if (b == null || !b.entries.changed(entry, entry.getDate())) {
+			return;
+		}
+		if (b.indexesEntries()) {
+			b.repository.unindexEntry(entry, oldId);
+			b.repository.indexEntry(entry);
+		}
+		b.entryUpdated(entry);
+	}
+
+	/**
+	 * Keeps the entries in date order and the amounts spent per cycle up to
+	 * date when an entry's amount or date changes. Called by
+	 * {@link Entry#setAmount(int)} and {@link Entry#setDate(LocalDate)}.
+	 * Entries that haven't been added to their budget yet are ignored.
+	 *
+	 * @param entry The entry that changed.
+	 * @param oldAmount The previous amount of <code>entry</code>.
+	 * @param oldDate The previous date of <code>entry</code>.
+	 */
+	static void entryChanged(Entry entry, int oldAmount, LocalDate oldDate) {
+		Budget b = entry.getBudget();
+		if (b != null && b.entries.changed(entry, oldDate)) {
+			b.addToTotals(oldDate, -oldAmount);
+			b.addToTotals(entry.getDate(), entry.getAmount());
+			b.entryUpdated(entry);
+		}
+	}
+
+	/**
+	 * Keeps compact storage up to date when an entry's notes or creation or
+	 * update times change. Called by the setters of {@link Entry}.
+	 *
+	 * @param entry The entry that changed.
+	 */
+	static void entryDetailsChanged(Entry entry) {
+		Budget b = entry.getBudget();
+		if (b == null) {
+			return;
+		}
+		boolean held = b.compactStorage
+				? b.entries.changed(entry, entry.getDate())
+				: b.entries.contains(entry);
+		if (held) {
+			b.entryUpdated(entry);
+		}
+	}
+
+	/* Tells the repository's listeners that this budget changed. */
+	private void updated() {
+		BudgetRepository owner = repository;
+		if (owner != null) {
+			owner.budgetUpdated(this);
+		}
+	}
+
+	/* Tells the repository's listeners that entry, one of ours, changed. */
+	private void entryUpdated(Entry entry) {
+		BudgetRepository owner = repository;
+		if (owner != null) {
+			owner.entryUpdated(entry);
+		}
+	}
+
+	/* Adds amount to the total of the cycle containing date, if totalled. */
+	private void addToTotals(LocalDate date, int amount) {
+		if (cycleTotals == null || date == null) {
+			return;
+		}
+		int cycle = getCycle(date);
+		if (cycle >= 0 && cycleTotals.contains(cycle)) {
+			cycleTotals.add(cycle, amount);
+		}
+	}
+
+	/* Whether this budget's entries belong in the repository's entry index. */
+	private boolean indexesEntries() {
+		return repository != null && !compactStorage;
+	}
+
+	/**
+	 * Gets the repository this Budget has been added to.
+	 *
+	 * @return The repository, or <code>null</code> if this Budget hasn't
+	 *         been added to one.
+	 */
+	BudgetRepository getRepository() {
+		return repository;
+	}
+
+	/**
+	 * Sets the repository this Budget has been added to. Called by
+	 * {@link BudgetRepository} when the budget is added or removed.
+	 *
+	 * @param repository The repository, or <code>null</code> if removed.
+	 */
+	void setRepository(BudgetRepository repository) {
+		this.repository = repository;
+	}
+
 	/**
 	 * Sets up the internal period of this Budget based on the current
 	 * this.duration.
@@ -0,0 +1,328 @@
+package com.example.budgetmanager;
+
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDateTime;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Keeps the last synced budgets and entries in a file, so that they can be
+ * shown straight away when the application starts, while they are synced
+ * with the server in the background.
+ *
+ * The file is a compact binary snapshot that starts with a schema version.
+ * A file of a version this class can't read, or one that is damaged, is
+ * treated as if there were no file. The fields of a snapshot are copied on
+ * the thread that saves it, then encoded and written through the given
+ * executor, replacing the old file only once the new one is complete.
+ */
+public final class BudgetCache {
+	// Identifies a cache file
+	private static final int MAGIC = 0x55424443;
+
+	// The version of the schema snapshots are written in
+	private static final int VERSION = 2;
+
+	// The encoding of the strings in the file
+	private static final String CHARSET = "UTF-8";
+
+	// Stands for a missing time
+	private static final long NO_TIME = Long.MIN_VALUE;
+
+	private final File file;
+	private final Executor writer;
+
+	/**
+	 * Creates a cache kept in <code>file</code>.
+	 *
+	 * @param file The file to keep the snapshot in.
+	 * @param writer Writes the file, one task at a time, in order, such as
+	 *        a single background thread.
+	 */
+	public BudgetCache(File file, Executor writer) {
+		this.file = file;
+		this.writer = writer;
+	}
+
+	/**
+	 * Reads the budgets saved in the file. Reads the disk, so should not be
+	 * called on the main thread.
+	 *
+	 * @return The saved budgets, most recently added last, with the time
+	 *         they were synced through, or <code>null</code> if there are
+	 *         none that can be read.
+	 */
+	public SyncDelta load() {
+		if (!file.exists()) {
+			return null;
+		}
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(file)));
+			return read(in);
+		} catch (IOException e) {
+			// A damaged or unknown file is no use; fetch everything again.
+			file.delete();
+			return null;
+		} finally {
+			AtomicFiles.close(in);
+		}
+	}
+
+	/**
+	 * Saves the budgets in <code>snapshot</code> and their entries. Their
+	 * fields are copied straight away, so this must be called on the thread
+	 * that changes budgets and entries, and are encoded and written in the
+	 * background. Budgets that have never been synced aren't worth keeping,
+	 * so saving them deletes the file instead.
+	 *
+	 * @param snapshot The budgets to save.
+	 */
+	public void save(BudgetRepository.Snapshot snapshot) {
+		if (snapshot.getSyncedThrough() == null) {
+			delete();
+			return;
+		}
+
+		final long syncedThrough = toMillis(snapshot.getSyncedThrough());
+		// Copied most recently added last, the order they are replaced in.
+		List<Budget> budgets = snapshot.getBudgets();
+		final List<SavedBudget> saved = new ArrayList<SavedBudget>(budgets.size());
+		for (int i = budgets.size() - 1; i >= 0; --i) {
+			saved.add(new SavedBudget(budgets.get(i)));
+		}
+		writer.execute(new Runnable() {
+			@Override
+			public void run() {
+				replaceFile(encode(syncedThrough, saved));
+			}
+		});
+	}
+
+	/**
+	 * Deletes the saved budgets, such as when the user logs out. Any saves
+	 * still being written are deleted too.
+	 */
+	public void delete() {
+		writer.execute(new Runnable() {
+			@Override
+			public void run() {
+				file.delete();
+			}
+		});
+	}
+
+	/*
+	 * Reads a snapshot. Each version of the schema is read by its own
+	 * method, so older files can be migrated when the schema changes.
+	 */
+	private static SyncDelta read(DataInputStream in) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a budget cache");
+		}
+		int version = in.readInt();
+		switch (version) {
+		case 1:
+			return readVersion1(in);
+		case 2:
+			return readVersion2(in);
+		default:
+			throw new IOException("Unsupported cache version " + version);
+		}
+	}
+
+	/* Version 1 wrote strings with writeUTF, so they were under 64 KB. */
+	private static SyncDelta readVersion1(DataInputStream in)
+			throws IOException {
+		return readBudgets(in, false);
+	}
+
+	/* Version 2 writes strings as their length, then their bytes. */
+	private static SyncDelta readVersion2(DataInputStream in)
+			throws IOException {
+		return readBudgets(in, true);
+	}
+
+	private static SyncDelta readBudgets(DataInputStream in,
+			boolean longStrings) throws IOException {
+		LocalDateTime syncedThrough = toDateTime(in.readLong());
+		int budgetCount = in.readInt();
+		List<Budget> budgets = new ArrayList<Budget>(budgetCount);
+		for (int i = 0; i < budgetCount; ++i) {
+			long id = in.readLong();
+			String name = readString(in, longStrings);
+			int amount = in.readInt();
+			boolean recur = in.readBoolean();
+			int startDay = in.readInt();
+			String duration = readString(in, longStrings);
+			boolean compact = in.readBoolean();
+
+			Budget budget;
+			try {
+				budget = new Budget(name, amount, recur,
+						CycleCalculator.fromEpochDay(startDay),
+						Budget.Duration.valueOf(duration));
+			} catch (IllegalArgumentException e) {
+				throw new IOException("Unreadable budget " + id);
+			}
+			budget.setId(id);
+			budget.setCompactStorage(compact);
+
+			int entryCount = in.readInt();
+			List<Entry> entries = new ArrayList<Entry>(entryCount);
+			for (int j = 0; j < entryCount; ++j) {
+				entries.add(new Entry(in.readLong(), in.readInt(), budget,
+						readString(in, longStrings), CycleCalculator.fromEpochDay(in.readInt()),
+						toDateTime(in.readLong()), toDateTime(in.readLong())));
+			}
+			budget.addEntries(entries);
+			budgets.add(budget);
+		}
+		return new SyncDelta(budgets, new long[0], new long[0], syncedThrough);
+	}
+
+	/* Encodes a snapshot in the current version of the schema. */
+	private static byte[] encode(long syncedThrough, List<SavedBudget> budgets) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(syncedThrough);
+
+			out.writeInt(budgets.size());
+			for (SavedBudget b : budgets) {
+				b.write(out);
+			}
+			out.flush();
+		} catch (IOException e) {
+			// Writing to memory doesn't fail.
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	/* Reads a string written by writeString, or by writeUTF if !longString. */
+	private static String readString(DataInputStream in, boolean longString)
+			throws IOException {
+		if (!longString) {
+			return in.readUTF();
+		}
+		int length = in.readInt();
+		if (length < 0 || length > in.available()) {
+			throw new IOException("Damaged string of length " + length);
+		}
+		byte[] encoded = new byte[length];
+		in.readFully(encoded);
+		return new String(encoded, CHARSET);
+	}
+
+	/*
+	 * Writes the length of the encoded string, then the string. Unlike
+	 * writeUTF, strings of any length can be written, such as long notes.
+	 */
+	private static void writeString(DataOutputStream out, String string)
+			throws IOException {
+		byte[] encoded = string.getBytes(CHARSET);
+		out.writeInt(encoded.length);
+		out.write(encoded);
+	}
+
+	/* Writes encoded over the file, keeping the old file if that fails. */
+	private void replaceFile(byte[] encoded) {
+		try {
+			AtomicFiles.replace(file, encoded);
+		} catch (IOException e) {
+			// The old file, if any, is still whole; try again next save.
+		}
+	}
+
+	private static long toMillis(LocalDateTime time) {
+		return time == null
+				? NO_TIME : time.toDateTime(DateTimeZone.UTC).getMillis();
+	}
+
+	private static LocalDateTime toDateTime(long millis) {
+		return millis == NO_TIME
+				? null : new LocalDateTime(millis, DateTimeZone.UTC);
+	}
+
+	/*
+	 * The fields of a budget and its entries, copied so that they can be
+	 * encoded in the background while the budget changes.
+	 */
+	private static final class SavedBudget {
+		private final long id;
+		private final String name;
+		private final int amount;
+		private final boolean recur;
+		private final int startDay;
+		private final String duration;
+		private final boolean compact;
+
+		private final long[] entryIds;
+		private final int[] amounts;
+		private final String[] notes;
+		private final int[] days;
+		private final long[] createdAt;
+		private final long[] updatedAt;
+
+		SavedBudget(Budget b) {
+			id = b.getId();
+			name = b.getName();
+			amount = b.getBudgetAmount();
+			recur = b.isRecurring();
+			startDay = SpendingSeries.toDay(b.getStartDate());
+			duration = b.getDuration().name();
+			compact = b.isCompactStorage();
+
+			List<Entry> entries = b.getEntries();
+			int count = entries.size();
+			entryIds = new long[count];
+			amounts = new int[count];
+			notes = new String[count];
+			days = new int[count];
+			createdAt = new long[count];
+			updatedAt = new long[count];
+			for (int i = 0; i < count; ++i) {
+				Entry e = entries.get(i);
+				entryIds[i] = e.getEntryId();
+				amounts[i] = e.getAmount();
+				notes[i] = e.getNotes() == null ? "" : e.getNotes();
+				days[i] = SpendingSeries.toDay(e.getDate());
+				createdAt[i] = toMillis(e.getCreatedAt());
+				updatedAt[i] = toMillis(e.getUpdatedAt());
+			}
+		}
+
+		void write(DataOutputStream out) throws IOException {
+			out.writeLong(id);
+			writeString(out, name);
+			out.writeInt(amount);
+			out.writeBoolean(recur);
+			out.writeInt(startDay);
+			writeString(out, duration);
+			out.writeBoolean(compact);
+
+			out.writeInt(entryIds.length);
+			for (int i = 0; i < entryIds.length; ++i) {
+				out.writeLong(entryIds[i]);
+				out.writeInt(amounts[i]);
+				writeString(out, notes[i]);
+				out.writeInt(days[i]);
+				out.writeLong(createdAt[i]);
+				out.writeLong(updatedAt[i]);
+			}
+		}
+	}
+}
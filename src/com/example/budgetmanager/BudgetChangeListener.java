@@ -0,0 +1,79 @@
+package com.example.budgetmanager;
+
+import java.util.List;
+
+/**
+ * Listens for changes to the budgets in the {@link BudgetRepository} and to
+ * their entries, so that views can apply only what changed rather than
+ * reloading everything.
+ *
+ * Register with {@link BudgetRepository#addListener}. Each change is
+ * delivered through the executor the listener was registered with, after
+ * the change has been made.
+ */
+public interface BudgetChangeListener {
+
+	/**
+	 * Called when a budget is added to the repository, along with all of
+	 * its entries.
+	 *
+	 * @param budget The budget that was added.
+	 * @param entries The entries <code>budget</code> had when it was added.
+	 *        Entries added since are delivered by
+	 *        {@link #onEntriesAdded(Budget, List)}, so read these rather
+	 *        than the budget's entries.
+	 */
+	void onBudgetAdded(Budget budget, List<Entry> entries);
+
+	/**
+	 * Called when a budget is removed from the repository, along with all
+	 * of its entries.
+	 *
+	 * @param budget The budget that was removed.
+	 */
+	void onBudgetRemoved(Budget budget);
+
+	/**
+	 * Called when a field of a budget in the repository changes, such as
+	 * its name or ID.
+	 *
+	 * @param budget The budget that changed.
+	 */
+	void onBudgetUpdated(Budget budget);
+
+	/**
+	 * Called when every budget in the repository is replaced at once, such
+	 * as when all of the user's budgets are fetched or the user logs out.
+	 *
+	 * @param budgets The budgets now in the repository, most recently added
+	 *        first.
+	 * @param entries The entries of <code>budgets</code> when they were
+	 *        added. Entries added since are delivered by
+	 *        {@link #onEntriesAdded(Budget, List)}, so read these rather
+	 *        than the budgets' entries.
+	 */
+	void onBudgetsReplaced(List<Budget> budgets, List<Entry> entries);
+
+	/**
+	 * Called when entries are added to a budget in the repository.
+	 *
+	 * @param budget The budget the entries were added to.
+	 * @param entries The entries that were added.
+	 */
+	void onEntriesAdded(Budget budget, List<Entry> entries);
+
+	/**
+	 * Called when an entry is removed from a budget in the repository.
+	 *
+	 * @param entry The entry that was removed.
+	 */
+	void onEntryRemoved(Entry entry);
+
+	/**
+	 * Called when a field of an entry of a budget in the repository
+	 * changes.
+	 *
+	 * @param entry The entry that changed.
+	 */
+	void onEntryUpdated(Entry entry);
+}
@@ -0,0 +1,702 @@
+package com.example.budgetmanager;
+
+import org.joda.time.LocalDateTime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Holds all of the budgets loaded for the current user.
+ *
+ * Readers get an immutable {@link Snapshot} of the budgets, which can be
+ * read from any thread without locking. Writers build the next snapshot
+ * under a lock and publish it in one step, so readers never see a change
+ * half made. A {@link Budget} can be built on any thread and is only seen
+ * by readers once it is added to the repository.
+ *
+ * Changes to the budgets in the repository, and to their entries, are
+ * published to the registered {@link BudgetChangeListener}s.
+ */
+public final class BudgetRepository {
+	// The singleton instance of BudgetRepository.
+	private static final BudgetRepository INSTANCE = new BudgetRepository();
+
+	// Guards writes to the snapshot and all access to the entry index
+	private final Object lock;
+
+	// The latest published snapshot
+	private volatile Snapshot snapshot;
+
+	// Index of the entries of the budgets in the repository by their IDs.
+	// Entries in compact storage aren't indexed.
+	private final LongHashMap<Entry> entriesById;
+
+	// The listeners to tell about changes
+	private final List<Registration> registrations;
+
+	private BudgetRepository() {
+		lock = new Object();
+		snapshot = new Snapshot(0, new Budget[0], null);
+		entriesById = new LongHashMap<Entry>();
+		registrations = new CopyOnWriteArrayList<Registration>();
+	}
+
+	/**
+	 * Returns the single BudgetRepository of the application.
+	 *
+	 * @return The BudgetRepository.
+	 */
+	public static BudgetRepository getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Registers <code>listener</code> to be told about every change to the
+	 * budgets in the repository and their entries from now on.
+	 *
+	 * @param listener The listener to register.
+	 * @param executor Runs the calls to <code>listener</code>, such as on
+	 *        the thread that owns the views it updates.
+	 */
+	public void addListener(BudgetChangeListener listener, Executor executor) {
+		if (listener == null || executor == null) {
+			throw new IllegalArgumentException("Tried to add a null listener "
+					+ "or executor");
+		}
+		registrations.add(new Registration(listener, executor));
+	}
+
+	/**
+	 * Unregisters <code>listener</code>, so it is told about no more
+	 * changes.
+	 *
+	 * @param listener The listener to unregister.
+	 */
+	public void removeListener(BudgetChangeListener listener) {
+		for (Registration r : registrations) {
+			if (r.listener == listener) {
+				registrations.remove(r);
+			}
+		}
+	}
+
+	/**
+	 * Returns the latest snapshot of the budgets. The snapshot never changes,
+	 * so it can be kept and read while budgets are added or removed.
+	 *
+	 * @return The latest snapshot.
+	 */
+	public Snapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * Returns a list of all Budgets tracked by the current user, most
+	 * recently added first. Shorthand for
+	 * <code>getSnapshot().getBudgets()</code>.
+	 *
+	 * @return An unmodifiable list of all budgets
+	 */
+	public List<Budget> getBudgets() {
+		return snapshot.getBudgets();
+	}
+
+	/**
+	 * Finds the budget whose ID matches <code>id</code>. Shorthand for
+	 * <code>getSnapshot().getBudgetById(id)</code>.
+	 *
+	 * @param id The ID of the budget in question.
+	 * @return The budget with <code>id</code>, or <code>null</code> if no
+	 *         such budget exists.
+	 */
+	public Budget getBudgetById(long id) {
+		return snapshot.getBudgetById(id);
+	}
+
+	/**
+	 * Returns the time of the latest change on the server that the budgets
+	 * are known to include. Shorthand for
+	 * <code>getSnapshot().getSyncedThrough()</code>.
+	 *
+	 * @return The time the budgets were synced through, or
+	 *         <code>null</code> if they have never been synced.
+	 */
+	public LocalDateTime getSyncedThrough() {
+		return snapshot.getSyncedThrough();
+	}
+
+	/**
+	 * Search through the entries of all of the user's Budgets for the entry
+	 * whose ID matches <code>id</code>.
+	 *
+	 * @param id The ID of the Entry in question.
+	 * @return The entry with <code>id</code>, or <code>null</code> if no
+	 *         such entry exists.
+	 */
+	public Entry findEntryById(long id) {
+		synchronized (lock) {
+			Entry indexed = entriesById.get(id);
+			if (indexed != null) {
+				return indexed;
+			}
+		}
+
+		// Entries in compact storage aren't indexed, so search for them.
+		for (Budget b : snapshot.getBudgets()) {
+			if (b.isCompactStorage()) {
+				Entry e = b.getEntryById(id);
+				if (e != null) {
+					return e;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Adds <code>budget</code> to the front of the list of budgets.
+	 *
+	 * @param budget The budget to add.
+	 * @throws IllegalArgumentException if <code>budget</code> is
+	 *         <code>null</code> or already in the repository
+	 */
+	public void add(Budget budget) {
+		addAll(Collections.singletonList(budget));
+	}
+
+	/**
+	 * Adds all of <code>budgets</code> to the front of the list of budgets,
+	 * as if each were added in turn, publishing them all at once.
+	 *
+	 * @param budgets The budgets to add.
+	 * @throws IllegalArgumentException if any of <code>budgets</code> is
+	 *         <code>null</code> or already in the repository
+	 */
+	public void addAll(Collection<Budget> budgets) {
+		final List<Budget> added = new ArrayList<Budget>(budgets);
+		synchronized (lock) {
+			validate(added, false);
+			publish(added, snapshot.budgets, snapshot.syncedThrough);
+		}
+		final List<List<Entry>> entries = new ArrayList<List<Entry>>();
+		for (Budget b : added) {
+			entries.add(entriesOf(Collections.singletonList(b)));
+		}
+		notifyListeners(new Notification() {
+			@Override
+			void deliver(BudgetChangeListener listener) {
+				for (int i = 0; i < added.size(); ++i) {
+					listener.onBudgetAdded(added.get(i), entries.get(i));
+				}
+			}
+		});
+	}
+
+	/**
+	 * Replaces every budget in the repository with <code>budgets</code>, in
+	 * one step, such as when all of the user's budgets have been fetched.
+	 * The budgets are treated as never synced.
+	 *
+	 * @param budgets The budgets to hold, most recently added last.
+	 * @throws IllegalArgumentException if any of <code>budgets</code> is
+	 *         <code>null</code> or repeated
+	 */
+	public void replaceAll(Collection<Budget> budgets) {
+		replaceAll(budgets, null);
+	}
+
+	/**
+	 * Replaces every budget in the repository with <code>budgets</code>, in
+	 * one step, such as when all of the user's budgets have been fetched.
+	 *
+	 * @param budgets The budgets to hold, most recently added last.
+	 * @param syncedThrough The time of the latest change on the server that
+	 *        <code>budgets</code> include, or <code>null</code> if unknown.
+	 * @throws IllegalArgumentException if any of <code>budgets</code> is
+	 *         <code>null</code> or repeated
+	 */
+	public void replaceAll(Collection<Budget> budgets,
+			LocalDateTime syncedThrough) {
+		Snapshot replaced;
+		synchronized (lock) {
+			validate(budgets, true);
+			detachAll();
+			publish(budgets, new Budget[0], syncedThrough);
+			replaced = snapshot;
+		}
+		budgetsReplaced(replaced);
+	}
+
+	/**
+	 * Removes a budget from the repository (for use when deleting).
+	 *
+	 * @param budget the Budget to be removed
+	 * @return true if the repository was modified (ie. the budget was
+	 *         removed), false otherwise.
+	 */
+	public boolean remove(final Budget budget) {
+		synchronized (lock) {
+			Budget[] current = snapshot.budgets;
+			int index = Arrays.asList(current).indexOf(budget);
+			if (index < 0) {
+				return false;
+			}
+
+			Budget[] next = new Budget[current.length - 1];
+			System.arraycopy(current, 0, next, 0, index);
+			System.arraycopy(current, index + 1, next, index,
+					next.length - index);
+			budget.setRepository(null);
+			if (!budget.isCompactStorage()) {
+				for (Entry e : budget.getEntries()) {
+					unindexEntry(e, e.getEntryId());
+				}
+			}
+			snapshot = new Snapshot(snapshot.version + 1, next,
+					snapshot.syncedThrough);
+		}
+		notifyListeners(new Notification() {
+			@Override
+			void deliver(BudgetChangeListener listener) {
+				listener.onBudgetRemoved(budget);
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Removes every budget from the repository, such as when the user logs
+	 * out. The repository is then treated as never synced.
+	 */
+	public void clear() {
+		Snapshot cleared;
+		synchronized (lock) {
+			detachAll();
+			snapshot = new Snapshot(snapshot.version + 1, new Budget[0], null);
+			cleared = snapshot;
+		}
+		budgetsReplaced(cleared);
+	}
+
+	/**
+	 * Forgets when the budgets were last synced, so that the next sync
+	 * fetches every budget and entry again, such as when changes made here
+	 * were rejected by the server. The budgets themselves are kept.
+	 */
+	public void forgetSyncedThrough() {
+		synchronized (lock) {
+			snapshot = new Snapshot(snapshot.version + 1, snapshot.budgets,
+					null);
+		}
+	}
+
+	/**
+	 * Republishes the budgets after the ID of one of them changed. Called by
+	 * {@link Budget#setId(long)}.
+	 *
+	 * @param budget The budget whose ID changed.
+	 */
+	void budgetIdChanged(Budget budget) {
+		synchronized (lock) {
+			snapshot = new Snapshot(snapshot.version + 1, snapshot.budgets,
+					snapshot.syncedThrough);
+		}
+		budgetUpdated(budget);
+	}
+
+	/**
+	 * Applies the changes made on the server since the last sync, updating
+	 * the budgets and entries already here in place by their IDs. Budgets
+	 * and entries that aren't here yet are added, and tombstones remove
+	 * those that were deleted. Listeners are told about each change.
+	 *
+	 * Changes that are already here are applied again harmlessly, so the
+	 * same changes may be applied more than once.
+	 *
+	 * @param delta The changes to apply.
+	 */
+	public void applyChanges(SyncDelta delta) {
+		for (long id : delta.getDeletedEntryIds()) {
+			Entry deleted = findEntryById(id);
+			if (deleted != null) {
+				deleted.getBudget().removeEntry(deleted);
+			}
+		}
+		for (long id : delta.getDeletedBudgetIds()) {
+			Budget deleted = getBudgetById(id);
+			if (deleted != null) {
+				remove(deleted);
+			}
+		}
+
+		List<Budget> added = new ArrayList<Budget>();
+		for (Budget changed : delta.getBudgets()) {
+			Budget existing = getBudgetById(changed.getId());
+			if (existing == null) {
+				for (Entry e : changed.getEntries()) {
+					// The entry may have moved here from another budget.
+					Entry moved = findEntryById(e.getEntryId());
+					if (moved != null) {
+						moved.getBudget().removeEntry(moved);
+					}
+				}
+				added.add(changed);
+			} else {
+				mergeBudget(existing, changed);
+			}
+		}
+		if (!added.isEmpty()) {
+			addAll(added);
+		}
+
+		LocalDateTime syncedThrough = delta.getSyncedThrough();
+		if (syncedThrough != null) {
+			synchronized (lock) {
+				if (snapshot.syncedThrough == null
+						|| syncedThrough.isAfter(snapshot.syncedThrough)) {
+					snapshot = new Snapshot(snapshot.version + 1,
+							snapshot.budgets, syncedThrough);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tells the listeners that a field of <code>budget</code> changed.
+	 *
+	 * @param budget The budget that changed.
+	 */
+	void budgetUpdated(final Budget budget) {
+		notifyListeners(new Notification() {
+			@Override
+			void deliver(BudgetChangeListener listener) {
+				listener.onBudgetUpdated(budget);
+			}
+		});
+	}
+
+	/**
+	 * Tells the listeners that <code>entries</code> were added to
+	 * <code>budget</code>.
+	 *
+	 * @param budget The budget the entries were added to.
+	 * @param entries The entries that were added.
+	 */
+	void entriesAdded(final Budget budget, Collection<Entry> entries) {
+		final List<Entry> added = Collections.unmodifiableList(
+				new ArrayList<Entry>(entries));
+		notifyListeners(new Notification() {
+			@Override
+			void deliver(BudgetChangeListener listener) {
+				listener.onEntriesAdded(budget, added);
+			}
+		});
+	}
+
+	/**
+	 * Tells the listeners that <code>entry</code> was removed from its
+	 * budget.
+	 *
+	 * @param entry The entry that was removed.
+	 */
+	void entryRemoved(final Entry entry) {
+		notifyListeners(new Notification() {
+			@Override
+			void deliver(BudgetChangeListener listener) {
+				listener.onEntryRemoved(entry);
+			}
+		});
+	}
+
+	/**
+	 * Tells the listeners that a field of <code>entry</code> changed.
+	 *
+	 * @param entry The entry that changed.
+	 */
+	void entryUpdated(final Entry entry) {
+		notifyListeners(new Notification() {
+			@Override
+			void deliver(BudgetChangeListener listener) {
+				listener.onEntryUpdated(entry);
+			}
+		});
+	}
+
+	/**
+	 * Adds <code>entry</code> to the entry index, if it has an ID.
+	 *
+	 * @param entry The entry to index.
+	 */
+	void indexEntry(Entry entry) {
+		synchronized (lock) {
+			if (entry.getEntryId() != Entry.NEW_ID) {
+				entriesById.put(entry.getEntryId(), entry);
+			}
+		}
+	}
+
+	/**
+	 * Removes <code>entry</code> from the entry index, if it is indexed
+	 * under <code>id</code>.
+	 *
+	 * @param entry The entry to remove from the index.
+	 * @param id The ID <code>entry</code> may be indexed under.
+	 */
+	void unindexEntry(Entry entry, long id) {
+		synchronized (lock) {
+			if (entriesById.get(id) == entry) {
+				entriesById.remove(id);
+			}
+		}
+	}
+
+	/*
+	 * Checks that budgets can be added: none may be null, repeated, or in a
+	 * repository already, except this one if replacing. Holds lock.
+	 */
+	private void validate(Collection<Budget> budgets, boolean replacing) {
+		Set<Budget> seen = Collections.newSetFromMap(
+				new IdentityHashMap<Budget, Boolean>());
+		for (Budget b : budgets) {
+			if (b == null) {
+				throw new IllegalArgumentException("Tried to add a null Budget");
+			}
+			BudgetRepository owner = b.getRepository();
+			if (!seen.add(b) || (owner != null
+					&& !(replacing && owner == this))) {
+				throw new IllegalArgumentException("Tried to add a Budget "
+						+ "that was already added.");
+			}
+		}
+	}
+
+	/*
+	 * Copies the fields and entries of changed, a budget from the server,
+	 * into existing, the budget here with the same ID. Only fields that
+	 * differ are set, so listeners are only told about real changes.
+	 */
+	private void mergeBudget(Budget existing, Budget changed) {
+		if (!equal(existing.getName(), changed.getName())) {
+			existing.setName(changed.getName());
+		}
+		if (existing.getBudgetAmount() != changed.getBudgetAmount()) {
+			existing.setBudgetAmount(changed.getBudgetAmount());
+		}
+		if (existing.isRecurring() != changed.isRecurring()) {
+			existing.setRecurring(changed.isRecurring());
+		}
+		if (existing.getDuration() != changed.getDuration()) {
+			existing.setDuration(changed.getDuration());
+		}
+		if (!equal(existing.getStartDate(), changed.getStartDate())) {
+			existing.setStartDate(changed.getStartDate());
+		}
+
+		List<Entry> added = new ArrayList<Entry>();
+		for (Entry e : changed.getEntries()) {
+			Entry current = findEntryById(e.getEntryId());
+			if (current != null && current.getBudget() != existing) {
+				// The entry moved here from another budget.
+				current.getBudget().removeEntry(current);
+				current = null;
+			}
+			if (current == null) {
+				added.add(new Entry(e.getEntryId(), e.getAmount(), existing,
+						e.getNotes(), e.getDate(), e.getCreatedAt(),
+						e.getUpdatedAt()));
+			} else {
+				mergeEntry(current, e);
+			}
+		}
+		if (!added.isEmpty()) {
+			existing.addEntries(added);
+		}
+	}
+
+	/*
+	 * Copies the fields of changed into existing, where they differ. Entries
+	 * made or cached here may have no notes or times.
+	 */
+	private static void mergeEntry(Entry existing, Entry changed) {
+		if (existing.getAmount() != changed.getAmount()) {
+			existing.setAmount(changed.getAmount());
+		}
+		if (!equal(existing.getDate(), changed.getDate())) {
+			existing.setDate(changed.getDate());
+		}
+		if (!equal(existing.getNotes(), changed.getNotes())) {
+			existing.setNotes(changed.getNotes());
+		}
+		if (!equal(existing.getCreatedAt(), changed.getCreatedAt())) {
+			existing.setCreatedAt(changed.getCreatedAt());
+		}
+		if (!equal(existing.getUpdatedAt(), changed.getUpdatedAt())) {
+			existing.setUpdatedAt(changed.getUpdatedAt());
+		}
+	}
+
+	/* Whether a and b are equal, or both null. */
+	private static boolean equal(Object a, Object b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	/*
+	 * Publishes the budgets added in front of current, synced through
+	 * syncedThrough. Holds lock.
+	 */
+	private void publish(Collection<Budget> added, Budget[] current,
+			LocalDateTime syncedThrough) {
+		Budget[] next = new Budget[current.length + added.size()];
+		int i = added.size();
+		for (Budget b : added) {
+			next[--i] = b;
+			b.setRepository(this);
+			if (!b.isCompactStorage()) {
+				for (Entry e : b.getEntries()) {
+					indexEntry(e);
+				}
+			}
+		}
+		System.arraycopy(current, 0, next, added.size(), current.length);
+		snapshot = new Snapshot(snapshot.version + 1, next, syncedThrough);
+	}
+
+	/* Tells the listeners that the budgets were replaced by replaced. */
+	private void budgetsReplaced(Snapshot replaced) {
+		final List<Budget> budgets = replaced.getBudgets();
+		final List<Entry> entries = entriesOf(budgets);
+		notifyListeners(new Notification() {
+			@Override
+			void deliver(BudgetChangeListener listener) {
+				listener.onBudgetsReplaced(budgets, entries);
+			}
+		});
+	}
+
+	/*
+	 * Copies the entries budgets have now, to be delivered along with them.
+	 * Listeners are told about entries added later separately, so they must
+	 * not read the budgets' entries when the notification is delivered.
+	 */
+	private static List<Entry> entriesOf(List<Budget> budgets) {
+		List<Entry> entries = new ArrayList<Entry>();
+		for (Budget b : budgets) {
+			entries.addAll(b.getEntries());
+		}
+		return Collections.unmodifiableList(entries);
+	}
+
+	/* Delivers notification to each listener through its executor. */
+	private void notifyListeners(final Notification notification) {
+		for (final Registration r : registrations) {
+			r.executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					notification.deliver(r.listener);
+				}
+			});
+		}
+	}
+
+	/* Detaches every budget in the current snapshot. Holds lock. */
+	private void detachAll() {
+		for (Budget b : snapshot.budgets) {
+			b.setRepository(null);
+		}
+		entriesById.clear();
+	}
+
+	/* A change to tell the listeners about. */
+	private abstract static class Notification {
+		abstract void deliver(BudgetChangeListener listener);
+	}
+
+	/* A listener, and the executor to call it with. */
+	private static final class Registration {
+		private final BudgetChangeListener listener;
+		private final Executor executor;
+
+		private Registration(BudgetChangeListener listener,
+				Executor executor) {
+			this.listener = listener;
+			this.executor = executor;
+		}
+	}
+
+	/**
+	 * An immutable, versioned list of budgets, with an index of them by ID
+	 * and the time they were last synced through.
+	 */
+	public static final class Snapshot {
+		private final long version;
+		private final Budget[] budgets;
+		private final List<Budget> budgetList;
+		private final LongHashMap<Budget> budgetsById;
+		private final LocalDateTime syncedThrough;
+
+		private Snapshot(long version, Budget[] budgets,
+				LocalDateTime syncedThrough) {
+			this.version = version;
+			this.budgets = budgets;
+			this.syncedThrough = syncedThrough;
+			this.budgetList = Collections.unmodifiableList(
+					Arrays.asList(budgets));
+
+			// Index from the back, so that when budgets share an ID, the
+			// most recently added one is found.
+			this.budgetsById = new LongHashMap<Budget>(budgets.length);
+			for (int i = budgets.length - 1; i >= 0; --i) {
+				budgetsById.put(budgets[i].getId(), budgets[i]);
+			}
+		}
+
+		/**
+		 * Returns the version of this snapshot. Each snapshot published has
+		 * a greater version than the one before it.
+		 *
+		 * @return The version of this snapshot.
+		 */
+		public long getVersion() {
+			return version;
+		}
+
+		/**
+		 * Returns the budgets in this snapshot, most recently added first.
+		 *
+		 * @return An unmodifiable list of the budgets.
+		 */
+		public List<Budget> getBudgets() {
+			return budgetList;
+		}
+
+		/**
+		 * Finds the budget in this snapshot whose ID matches
+		 * <code>id</code>.
+		 *
+		 * @param id The ID of the budget in question.
+		 * @return The budget with <code>id</code>, or <code>null</code> if
+		 *         no such budget exists.
+		 */
+		public Budget getBudgetById(long id) {
+			return budgetsById.get(id);
+		}
+
+		/**
+		 * Returns the time of the latest change on the server that the
+		 * budgets in this snapshot are known to include.
+		 *
+		 * @return The time the budgets were synced through, or
+		 *         <code>null</code> if they have never been synced.
+		 */
+		public LocalDateTime getSyncedThrough() {
+			return syncedThrough;
+		}
+	}
+}
@@ -5,10 +5,6 @@ import android.os.Bundle;
 import android.util.Log;
 import android.widget.TextView;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-
 /**
  * Activity which allows users to view a summary of a single budget.
  *
@@ -21,8 +17,8 @@ public class BudgetSummaryActivity extends UBudgetActivity {
 	// Budget being viewed
 	private Budget myBudget;
 
-	// List of entries from budget that are in the current cycle.
-	private List<Entry> myEntries;
+	// Cycle of the budget being viewed
+	private int myCycle;
 
 	// Text views that are set programmatically.
 	private TextView budgetName;
@@ -48,7 +44,7 @@ public class BudgetSummaryActivity extends UBudgetActivity {
 		long budgetId = bundle.getLong("BudgetId", -1);
 		int cycle = bundle.getInt("BudgetCycle", -2);
 
-		myBudget = Budget.getBudgetById(budgetId);
+		myBudget = BudgetRepository.getInstance().getBudgetById(budgetId);
 
 		if (cycle == -2) {
 			if (myBudget.isRecurring()) {
@@ -60,18 +56,7 @@ public class BudgetSummaryActivity extends UBudgetActivity {
 			cycle = 0;
 		}
 
-		// Only use entries from current period.
-		// Code should be refactored to be elsewhere
-		myEntries = new ArrayList<Entry>();
-
-		for (Entry e : myBudget.getEntries()) {
-			if (e.getDate().isAfter(myBudget.getStartDate(cycle))
-					&& e.getDate().isBefore(myBudget.getEndDate(cycle))
-					|| e.getDate().isEqual(myBudget.getEndDate(cycle))
-					|| e.getDate().isEqual(myBudget.getStartDate(cycle))) {
-				myEntries.add(e);
-			}
-		}
+		myCycle = cycle;
 
 		// Inflate view
 		setContentView(R.layout.activity_budget_summary);
@@ -81,13 +66,7 @@ public class BudgetSummaryActivity extends UBudgetActivity {
 		budgetSpent = (TextView) findViewById(R.id.budget_spent);
 		budgetBalance = (TextView) findViewById(R.id.budget_balance);
 
-		Collections.sort(myEntries, new EntryLogAdapter.EntryDateComparator());
-
-		// Reversing after sorting, because our comparator has the reverse
-		// behavior from what is desired in this situation.
-		Collections.reverse(myEntries);
-
-		((DrawBudgetGraph) findViewById(R.id.BudgetGraph)).setProperties(myEntries, myBudget, cycle);
+		((DrawBudgetGraph) findViewById(R.id.BudgetGraph)).setProperties(myBudget, cycle);
 
 		// set the view items
 		setViews();
@@ -98,13 +77,9 @@ public class BudgetSummaryActivity extends UBudgetActivity {
 
 	/* Helper method to set TextViews in the Activity. */
 	private void setViews() {
-		int totalBudget = 0;
+		int totalBudget = myBudget.getAmountSpent(myCycle);
 		int balance;
 
-		for (Entry e : myEntries) {
-			totalBudget += e.getAmount();
-		}
-
 		balance = myBudget.getBudgetAmount() - totalBudget;
 
 		budgetName.setText(myBudget.getName());
@@ -26,10 +26,15 @@ import java.util.Locale;
  * screen. It aggregates the budgets and allows for them to be displayed in a
  * ListView. Thus, it could be considered a kind of View Model.
  *
+ * Registered as a {@link BudgetChangeListener}, it keeps itself up to date
+ * by applying each change to its sorted list, rather than reloading every
+ * budget.
+ *
  * @author Chi Ho coldstar96
  *
  */
-public class BudgetSummaryAdapter extends ArrayAdapter<Budget> {
+public class BudgetSummaryAdapter extends ArrayAdapter<Budget>
+implements BudgetChangeListener {
 
 	private static final String TAG = "BudgetLogAdapter";
 
@@ -42,10 +47,19 @@ public class BudgetSummaryAdapter extends ArrayAdapter<Budget> {
 	// resource ID for the layout to inflate into each row
 	private final int layoutResourceId;
 
+	// The budgets shown, which are also the ArrayAdapter's list
+	private final SortedItems<Budget> budgets;
+
 	public BudgetSummaryAdapter(Context context, int layoutResourceId) {
-		super(context, layoutResourceId);
+		this(context, layoutResourceId, new SortedItems<Budget>());
+	}
+
+	private BudgetSummaryAdapter(Context context, int layoutResourceId,
+			SortedItems<Budget> budgets) {
+		super(context, layoutResourceId, budgets.asList());
 		this.context = context;
 		this.layoutResourceId = layoutResourceId;
+		this.budgets = budgets;
 	}
 
 	/**
@@ -61,6 +75,72 @@ public class BudgetSummaryAdapter extends ArrayAdapter<Budget> {
 		Log.d(TAG, "all budgets added");
 	}
 
+	/**
+	 * Sorts the budgets by <code>comparator</code>, and keeps them sorted by
+	 * it as budgets change.
+	 *
+	 * @param comparator The order to show the budgets in.
+	 */
+	@Override
+	public void sort(Comparator<? super Budget> comparator) {
+		budgets.setOrder(comparator);
+		notifyDataSetChanged();
+	}
+
+	/**
+	 * Shows the budgets again, such as when the screen is shown again.
+	 * Whether a budget is active depends on the current date, so the
+	 * budgets are sorted again if they have gone out of order.
+	 */
+	public void refresh() {
+		budgets.sortIfNeeded();
+		notifyDataSetChanged();
+	}
+
+	@Override
+	public void onBudgetAdded(Budget budget, List<Entry> entries) {
+		budgets.insert(budget);
+		notifyDataSetChanged();
+	}
+
+	@Override
+	public void onBudgetRemoved(Budget budget) {
+		if (budgets.remove(budget)) {
+			notifyDataSetChanged();
+		}
+	}
+
+	@Override
+	public void onBudgetUpdated(Budget budget) {
+		if (budgets.reposition(budget)) {
+			notifyDataSetChanged();
+		}
+	}
+
+	@Override
+	public void onBudgetsReplaced(List<Budget> newBudgets,
+			List<Entry> entries) {
+		budgets.asList().clear();
+		budgets.insertAll(newBudgets);
+		notifyDataSetChanged();
+	}
+
+	@Override
+	public void onEntriesAdded(Budget budget, List<Entry> entries) {
+		// The amount spent changed, but not the order of the budgets.
+		notifyDataSetChanged();
+	}
+
+	@Override
+	public void onEntryRemoved(Entry entry) {
+		notifyDataSetChanged();
+	}
+
+	@Override
+	public void onEntryUpdated(Entry entry) {
+		notifyDataSetChanged();
+	}
+
 	/**
 	 * Get a View that represents the <code>position</code>th row in the
 	 * BudgetLogs ListView.
@@ -0,0 +1,418 @@
+package com.example.budgetmanager;
+
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact {@link EntryStore} for budgets with long histories. Rather than
+ * holding {@link Entry} objects, it keeps each field of the entries in its
+ * own primitive array, sorted by date: IDs, amounts in cents, dates as days
+ * since 1970-01-01, creation and update times as UTC milliseconds, and
+ * notes as indexes into a pool of distinct notes.
+ *
+ * An <code>Entry</code> is only created when an entry is asked for, and is
+ * only held weakly, so entries that nothing else refers to can be collected.
+ * While an <code>Entry</code> is in use, asking for the same entry again
+ * gives the same object, and changes to it are written back to the arrays.
+ * Once an <code>Entry</code> has been collected its row's slot is cleared
+ * too, the next time the store is used.
+ * Totals and graph series are calculated straight from the arrays.
+ */
+final class ColumnarEntryStore implements EntryStore {
+	private static final int DEFAULT_CAPACITY = 16;
+
+	// Stored in place of a missing date, time or note
+	private static final int NO_DATE = Integer.MIN_VALUE;
+	private static final long NO_TIME = Long.MIN_VALUE;
+	private static final int NO_NOTES = -1;
+
+	// The budget the entries belong to
+	private final Budget budget;
+
+	private int size;
+	private long[] ids;
+	private int[] amounts;
+	private int[] days;
+	private long[] createdAt;
+	private long[] updatedAt;
+	private int[] notes;
+
+	// The Entry handed out for each row, if any, while it is still in use
+	private WeakReference<Entry>[] views;
+
+	// Where the views are put once their entries have been collected
+	private final ReferenceQueue<Entry> collectedViews;
+
+	// Every distinct note of the entries, and where it is in the pool
+	private final List<String> notePool;
+	private final Map<String, Integer> noteIndexes;
+
+	// sums[i] is the total amount of the first i rows, or null if the rows
+	// have changed since they were last summed
+	private long[] sums;
+
+	private final Rows rows;
+
+	/**
+	 * Creates an empty store for the entries of <code>budget</code>.
+	 *
+	 * @param budget The budget that the entries belong to.
+	 */
+	ColumnarEntryStore(Budget budget) {
+		this.budget = budget;
+		this.notePool = new ArrayList<String>();
+		this.noteIndexes = new HashMap<String, Integer>();
+		this.rows = new Rows();
+		this.collectedViews = new ReferenceQueue<Entry>();
+		allocate(DEFAULT_CAPACITY);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public List<Entry> asList() {
+		return rows;
+	}
+
+	@Override
+	public boolean contains(Entry entry) {
+		return rowOf(entry, entry.getDate()) >= 0;
+	}
+
+	@Override
+	public Entry findById(long id) {
+		for (int i = 0; i < size; ++i) {
+			if (ids[i] == id) {
+				return viewAt(i);
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void add(Entry entry) {
+		expungeCollectedViews();
+		ensureCapacity(size + 1);
+		int row = upperBound(toDay(entry.getDate()));
+		int moved = size - row;
+		System.arraycopy(ids, row, ids, row + 1, moved);
+		System.arraycopy(amounts, row, amounts, row + 1, moved);
+		System.arraycopy(days, row, days, row + 1, moved);
+		System.arraycopy(createdAt, row, createdAt, row + 1, moved);
+		System.arraycopy(updatedAt, row, updatedAt, row + 1, moved);
+		System.arraycopy(notes, row, notes, row + 1, moved);
+		System.arraycopy(views, row, views, row + 1, moved);
+		++size;
+		write(row, entry);
+		rowsChanged();
+	}
+
+	@Override
+	public void addAll(Collection<Entry> newEntries) {
+		expungeCollectedViews();
+		ensureCapacity(size + newEntries.size());
+		for (Entry entry : newEntries) {
+			write(size++, entry);
+		}
+		sortRows();
+		rowsChanged();
+	}
+
+	@Override
+	public boolean remove(Entry entry) {
+		int row = rowOf(entry, entry.getDate());
+		if (row < 0) {
+			return false;
+		}
+		removeRow(row);
+		return true;
+	}
+
+	@Override
+	public boolean changed(Entry entry, LocalDate oldDate) {
+		int row = rowOf(entry, oldDate);
+		if (row < 0) {
+			return false;
+		}
+		if (days[row] != toDay(entry.getDate())) {
+			removeRow(row);
+			add(entry);
+		} else {
+			write(row, entry);
+			rowsChanged();
+		}
+		return true;
+	}
+
+	@Override
+	public List<Entry> between(LocalDate start, LocalDate end) {
+		int from = lowerBound(toDay(start));
+		int to = Math.max(from, upperBound(toDay(end)));
+		return rows.subList(from, to);
+	}
+
+	@Override
+	public int amountBetween(LocalDate start, LocalDate end) {
+		int from = lowerBound(toDay(start));
+		int to = upperBound(toDay(end));
+		if (to <= from) {
+			return 0;
+		}
+		if (sums == null) {
+			sums = new long[size + 1];
+			for (int i = 0; i < size; ++i) {
+				sums[i + 1] = sums[i] + amounts[i];
+			}
+		}
+		return (int) (sums[to] - sums[from]);
+	}
+
+	@Override
+	public SpendingSeries seriesBetween(LocalDate start, LocalDate end) {
+		int from = lowerBound(toDay(start));
+		int to = Math.max(from, upperBound(toDay(end)));
+		long[] totals = new long[to - from];
+		long total = 0;
+		for (int i = from; i < to; ++i) {
+			total += amounts[i];
+			totals[i - from] = total;
+		}
+		return new SpendingSeries(Arrays.copyOfRange(days, from, to), totals);
+	}
+
+	/* Returns the Entry for row, creating it if it isn't in use. */
+	private Entry viewAt(int row) {
+		Entry view = views[row] == null ? null : views[row].get();
+		if (view == null) {
+			expungeCollectedViews();
+			view = new Entry(ids[row], amounts[row], budget,
+					notes[row] == NO_NOTES ? null : notePool.get(notes[row]),
+					toDate(days[row]), toDateTime(createdAt[row]),
+					toDateTime(updatedAt[row]));
+			views[row] = new WeakReference<Entry>(view, collectedViews);
+		}
+		return view;
+	}
+
+	/* Finds the row of entry, looking among the rows dated date. */
+	private int rowOf(Entry entry, LocalDate date) {
+		int day = toDay(date);
+		for (int i = lowerBound(day); i < size && days[i] == day; ++i) {
+			if (views[i] != null && views[i].get() == entry) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/* Copies the fields of entry into row, and makes it the row's view. */
+	private void write(int row, Entry entry) {
+		ids[row] = entry.getEntryId();
+		amounts[row] = entry.getAmount();
+		days[row] = toDay(entry.getDate());
+		createdAt[row] = toMillis(entry.getCreatedAt());
+		updatedAt[row] = toMillis(entry.getUpdatedAt());
+		notes[row] = noteIndex(entry.getNotes());
+		if (views[row] == null || views[row].get() != entry) {
+			views[row] = new WeakReference<Entry>(entry, collectedViews);
+		}
+	}
+
+	/*
+	 * Clears the slots of the views whose entries have been collected, in
+	 * one pass over the rows once any have been.
+	 */
+	private void expungeCollectedViews() {
+		boolean collected = false;
+		while (collectedViews.poll() != null) {
+			collected = true;
+		}
+		if (!collected) {
+			return;
+		}
+		for (int i = 0; i < size; ++i) {
+			if (views[i] != null && views[i].get() == null) {
+				views[i] = null;
+			}
+		}
+	}
+
+	private void removeRow(int row) {
+		int moved = size - row - 1;
+		System.arraycopy(ids, row + 1, ids, row, moved);
+		System.arraycopy(amounts, row + 1, amounts, row, moved);
+		System.arraycopy(days, row + 1, days, row, moved);
+		System.arraycopy(createdAt, row + 1, createdAt, row, moved);
+		System.arraycopy(updatedAt, row + 1, updatedAt, row, moved);
+		System.arraycopy(notes, row + 1, notes, row, moved);
+		System.arraycopy(views, row + 1, views, row, moved);
+		--size;
+		views[size] = null;
+		rowsChanged();
+	}
+
+	/* Stably sorts the rows by date, if they aren't already sorted. */
+	private void sortRows() {
+		boolean sorted = true;
+		for (int i = 1; i < size && sorted; ++i) {
+			sorted = days[i - 1] <= days[i];
+		}
+		if (sorted) {
+			return;
+		}
+
+		// Each key is a row's day above its index, so sorting the keys sorts
+		// the rows by date, keeping same-day rows in order, without boxing.
+		long[] order = new long[size];
+		for (int i = 0; i < size; ++i) {
+			order[i] = ((long) days[i] << Integer.SIZE) | i;
+		}
+		Arrays.sort(order);
+
+		long[] oldIds = ids;
+		int[] oldAmounts = amounts;
+		int[] oldDays = days;
+		long[] oldCreatedAt = createdAt;
+		long[] oldUpdatedAt = updatedAt;
+		int[] oldNotes = notes;
+		WeakReference<Entry>[] oldViews = views;
+		allocate(ids.length);
+		for (int i = 0; i < size; ++i) {
+			int from = (int) order[i];
+			ids[i] = oldIds[from];
+			amounts[i] = oldAmounts[from];
+			days[i] = oldDays[from];
+			createdAt[i] = oldCreatedAt[from];
+			updatedAt[i] = oldUpdatedAt[from];
+			notes[i] = oldNotes[from];
+			views[i] = oldViews[from];
+		}
+	}
+
+	/* Index of the first row dated on or after day. */
+	private int lowerBound(int day) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (days[mid] < day) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/* Index of the first row dated after day. */
+	private int upperBound(int day) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (days[mid] <= day) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private int noteIndex(String note) {
+		if (note == null) {
+			return NO_NOTES;
+		}
+		Integer index = noteIndexes.get(note);
+		if (index == null) {
+			index = notePool.size();
+			notePool.add(note);
+			noteIndexes.put(note, index);
+		}
+		return index;
+	}
+
+	private void rowsChanged() {
+		sums = null;
+		rows.changed();
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= ids.length) {
+			return;
+		}
+		int newCapacity = Math.max(capacity, ids.length * 2);
+		ids = Arrays.copyOf(ids, newCapacity);
+		amounts = Arrays.copyOf(amounts, newCapacity);
+		days = Arrays.copyOf(days, newCapacity);
+		createdAt = Arrays.copyOf(createdAt, newCapacity);
+		updatedAt = Arrays.copyOf(updatedAt, newCapacity);
+		notes = Arrays.copyOf(notes, newCapacity);
+		views = Arrays.copyOf(views, newCapacity);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void allocate(int capacity) {
+		ids = new long[capacity];
+		amounts = new int[capacity];
+		days = new int[capacity];
+		createdAt = new long[capacity];
+		updatedAt = new long[capacity];
+		notes = new int[capacity];
+		views = (WeakReference<Entry>[]) new WeakReference<?>[capacity];
+	}
+
+	private static int toDay(LocalDate date) {
+		return date == null ? NO_DATE : SpendingSeries.toDay(date);
+	}
+
+	private static LocalDate toDate(int day) {
+		return day == NO_DATE ? null : CycleCalculator.fromEpochDay(day);
+	}
+
+	private static long toMillis(LocalDateTime time) {
+		return time == null
+				? NO_TIME : time.toDateTime(DateTimeZone.UTC).getMillis();
+	}
+
+	private static LocalDateTime toDateTime(long millis) {
+		return millis == NO_TIME
+				? null : new LocalDateTime(millis, DateTimeZone.UTC);
+	}
+
+	/* The rows, as an unmodifiable list of Entry objects. */
+	private final class Rows extends AbstractList<Entry> {
+		@Override
+		public Entry get(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index
+						+ ", Size: " + size);
+			}
+			return viewAt(index);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		/* Invalidates iterators and sublists, as the rows changed. */
+		void changed() {
+			++modCount;
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package com.example.budgetmanager;
+
+import com.example.budgetmanager.Budget.Duration;
+
+import org.joda.time.LocalDate;
+
+/**
+ * Computes which cycle of a budget a date falls in, directly from the
+ * calendar fields of the dates rather than by stepping through each cycle.
+ *
+ * Cycle <code>k</code> of a budget starts on
+ * <code>startDate.withPeriodAdded(period, k)</code>, the same as
+ * {@link Budget#getStartDate(int)}, so month-end start dates are clamped
+ * against the original start date (a budget starting on January 31st has
+ * cycles starting on February 28th, March 31st, April 30th, ...).
+ */
+final class CycleCalculator {
+	private static final int[] DAYS_IN_MONTH = {
+		31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31
+	};
+
+	private CycleCalculator() {
+	}
+
+	/**
+	 * Calculates the cycle that <code>date</code> falls in, for a budget
+	 * starting on <code>startDate</code> with cycles of type
+	 * <code>duration</code>.
+	 *
+	 * @param startDate The start date of the first cycle.
+	 * @param duration The type of duration of each cycle.
+	 * @param date The date to find the cycle of.
+	 * @return The cycle containing <code>date</code>, where the first cycle
+	 *         is 0, or -1 if <code>date</code> is before
+	 *         <code>startDate</code>.
+	 */
+	static int getCycle(LocalDate startDate, Duration duration,
+			LocalDate date) {
+		int startYear = startDate.getYear();
+		int startMonth = startDate.getMonthOfYear();
+		int startDay = startDate.getDayOfMonth();
+		int year = date.getYear();
+		int month = date.getMonthOfYear();
+		int day = date.getDayOfMonth();
+
+		switch (duration) {
+		case DAY:
+			return daysCycle(startYear, startMonth, startDay,
+					year, month, day, 1);
+		case WEEK:
+			return daysCycle(startYear, startMonth, startDay,
+					year, month, day, 7);
+		case FORTNIGHT:
+			return daysCycle(startYear, startMonth, startDay,
+					year, month, day, 14);
+		case MONTH:
+			return monthsCycle(startYear, startMonth, startDay,
+					year, month, day);
+		case YEAR:
+			// Adding a year is the same as adding twelve months, including
+			// the clamping of February 29th.
+			int months = monthsCycle(startYear, startMonth, startDay,
+					year, month, day);
+			return months < 0 ? -1 : months / 12;
+		default:
+			throw new IllegalArgumentException("Invaid duration argument");
+		}
+	}
+
+	/**
+	 * Converts <code>date</code> to the number of days since 1970-01-01.
+	 *
+	 * @param date The date to convert.
+	 * @return The number of days from 1970-01-01 to <code>date</code>.
+	 */
+	static long epochDay(LocalDate date) {
+		return epochDay(date.getYear(), date.getMonthOfYear(),
+				date.getDayOfMonth());
+	}
+
+	/**
+	 * Converts a number of days since 1970-01-01 back to a date.
+	 *
+	 * @param epochDay The number of days since 1970-01-01.
+	 * @return The date <code>epochDay</code> days after 1970-01-01.
+	 */
+	static LocalDate fromEpochDay(long epochDay) {
+		long days = epochDay + 719468;
+		long era = (days >= 0 ? days : days - 146096) / 146097;
+		long dayOfEra = days - era * 146097;
+		long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524
+				- dayOfEra / 146096) / 365;
+		long dayOfYear = dayOfEra
+				- (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		long monthIndex = (5 * dayOfYear + 2) / 153;
+		int day = (int) (dayOfYear - (153 * monthIndex + 2) / 5 + 1);
+		int month = (int) (monthIndex < 10 ? monthIndex + 3 : monthIndex - 9);
+		int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+		return new LocalDate(year, month, day);
+	}
+
+	/* Cycle index for cycles that are a fixed number of days long. */
+	private static int daysCycle(int startYear, int startMonth, int startDay,
+			int year, int month, int day, int cycleLength) {
+		long days = epochDay(year, month, day)
+				- epochDay(startYear, startMonth, startDay);
+		if (days < 0) {
+			return -1;
+		}
+		return (int) (days / cycleLength);
+	}
+
+	/*
+	 * Cycle index for monthly cycles. Cycle k starts on startDay of the k-th
+	 * month after the start month, clamped to the length of that month.
+	 */
+	private static int monthsCycle(int startYear, int startMonth,
+			int startDay, int year, int month, int day) {
+		int cycle = (year * 12 + month) - (startYear * 12 + startMonth);
+		if (cycle < 0) {
+			return -1;
+		}
+		// The date is in the month cycle starts in, so it belongs to the
+		// previous cycle if it comes before that cycle's start day.
+		if (day < Math.min(startDay, daysInMonth(year, month))) {
+			--cycle;
+		}
+		return cycle;
+	}
+
+	/* Number of days in the given month of the (ISO) year. */
+	private static int daysInMonth(int year, int month) {
+		if (month == 2 && isLeapYear(year)) {
+			return 29;
+		}
+		return DAYS_IN_MONTH[month - 1];
+	}
+
+	private static boolean isLeapYear(int year) {
+		return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+	}
+
+	/*
+	 * Number of days from 1970-01-01 to the given date of the proleptic
+	 * Gregorian calendar.
+	 */
+	private static long epochDay(int year, int month, int day) {
+		// Count years from March, so the leap day is at the end of the year.
+		long y = month <= 2 ? year - 1 : year;
+		long era = (y >= 0 ? y : y - 399) / 400;
+		long yearOfEra = y - era * 400;
+		long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5
+				+ day - 1;
+		long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100
+				+ dayOfYear;
+		return era * 146097 + dayOfEra - 719468;
+	}
+}
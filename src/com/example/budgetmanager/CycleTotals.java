@@ -0,0 +1,112 @@
+package com.example.budgetmanager;
+
+import java.util.Arrays;
+
+/**
+ * The total amount spent in each cycle of a {@link Budget} that has been
+ * totalled so far, keyed by cycle number.
+ *
+ * Uses open addressing with linear probing over primitive arrays, so
+ * updating a total doesn't allocate.
+ */
+final class CycleTotals {
+	private static final int DEFAULT_CAPACITY = 16;
+
+	// Marks an empty slot; cycle numbers are never negative.
+	private static final int EMPTY = -1;
+
+	private int[] cycles;
+	private int[] totals;
+	private int size;
+
+	/**
+	 * Creates a new set of totals where every cycle has a total of 0.
+	 */
+	CycleTotals() {
+		allocate(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Returns whether a total has been recorded for <code>cycle</code>.
+	 *
+	 * @param cycle The cycle number.
+	 * @return <code>true</code> if <code>cycle</code> has a total.
+	 */
+	boolean contains(int cycle) {
+		return slotOf(cycle) >= 0;
+	}
+
+	/**
+	 * Gets the total amount recorded for <code>cycle</code>.
+	 *
+	 * @param cycle The cycle number.
+	 * @return The total for <code>cycle</code>, in cents, or 0 if none has
+	 *         been recorded.
+	 */
+	int get(int cycle) {
+		int i = slotOf(cycle);
+		return i < 0 ? 0 : totals[i];
+	}
+
+	/**
+	 * Adds <code>amount</code> to the total for <code>cycle</code>.
+	 *
+	 * @param cycle The cycle number, which must not be negative.
+	 * @param amount The amount in cents to add, which may be negative.
+	 */
+	void add(int cycle, int amount) {
+		int mask = cycles.length - 1;
+		int i = hash(cycle, mask);
+		while (cycles[i] != EMPTY) {
+			if (cycles[i] == cycle) {
+				totals[i] += amount;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		cycles[i] = cycle;
+		totals[i] = amount;
+		++size;
+
+		// Keep the load factor at or below one half.
+		if (size * 2 > cycles.length) {
+			resize(cycles.length * 2);
+		}
+	}
+
+	/* Finds the slot holding cycle, or -1 if it has no total. */
+	private int slotOf(int cycle) {
+		int mask = cycles.length - 1;
+		int i = hash(cycle, mask);
+		while (cycles[i] != EMPTY) {
+			if (cycles[i] == cycle) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	private static int hash(int cycle, int mask) {
+		int h = cycle * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	private void allocate(int capacity) {
+		cycles = new int[capacity];
+		totals = new int[capacity];
+		Arrays.fill(cycles, EMPTY);
+	}
+
+	private void resize(int capacity) {
+		int[] oldCycles = cycles;
+		int[] oldTotals = totals;
+		allocate(capacity);
+		size = 0;
+		for (int i = 0; i < oldCycles.length; ++i) {
+			if (oldCycles[i] != EMPTY) {
+				add(oldCycles[i], oldTotals[i]);
+			}
+		}
+	}
+}
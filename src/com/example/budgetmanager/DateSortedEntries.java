@@ -0,0 +1,218 @@
+package com.example.budgetmanager;
+
+import org.joda.time.LocalDate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An {@link EntryStore} holding the {@link Entry} objects themselves, in a
+ * list sorted by date.
+ *
+ * Entries in a range of dates are found by binary search, and the total of a
+ * range is found from cumulative sums of the amounts, which are recalculated
+ * the first time they are needed after a change. Whether an entry is in the
+ * list is checked against a set of the entries, by identity.
+ */
+final class DateSortedEntries implements EntryStore {
+	// Orders entries by date, with entries without a date first
+	private static final Comparator<Entry> DATE_ORDER =
+			new Comparator<Entry>() {
+		@Override
+		public int compare(Entry lhs, Entry rhs) {
+			return compareDates(lhs.getDate(), rhs.getDate());
+		}
+	};
+
+	private final List<Entry> entries;
+	private final List<Entry> view;
+
+	// The same entries as in the list, for checking membership
+	private final Set<Entry> members;
+
+	// sums[i] is the total amount of the first i entries, or null if the
+	// entries have changed since they were last summed
+	private long[] sums;
+
+	/**
+	 * Creates an empty list of entries.
+	 */
+	DateSortedEntries() {
+		entries = new ArrayList<Entry>();
+		view = Collections.unmodifiableList(entries);
+		members = Collections.newSetFromMap(
+				new IdentityHashMap<Entry, Boolean>());
+	}
+
+	@Override
+	public int size() {
+		return entries.size();
+	}
+
+	@Override
+	public List<Entry> asList() {
+		return view;
+	}
+
+	@Override
+	public boolean contains(Entry entry) {
+		return members.contains(entry);
+	}
+
+	@Override
+	public Entry findById(long id) {
+		for (Entry e : entries) {
+			if (id == e.getEntryId()) {
+				return e;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void add(Entry entry) {
+		members.add(entry);
+		entries.add(upperBound(entry.getDate()), entry);
+		sums = null;
+	}
+
+	@Override
+	public void addAll(Collection<Entry> newEntries) {
+		members.addAll(newEntries);
+		entries.addAll(newEntries);
+		sort();
+	}
+
+	@Override
+	public boolean remove(Entry entry) {
+		if (!members.remove(entry)) {
+			return false;
+		}
+		int i = indexOf(entry, entry.getDate());
+		if (i < 0) {
+			// The entry's date changed without it being moved.
+			i = entries.indexOf(entry);
+		}
+		entries.remove(i);
+		sums = null;
+		return true;
+	}
+
+	@Override
+	public boolean changed(Entry entry, LocalDate oldDate) {
+		if (!members.contains(entry)) {
+			return false;
+		}
+		if (compareDates(oldDate, entry.getDate()) != 0) {
+			int i = indexOf(entry, oldDate);
+			if (i < 0) {
+				i = entries.indexOf(entry);
+			}
+			entries.remove(i);
+			entries.add(upperBound(entry.getDate()), entry);
+		}
+		sums = null;
+		return true;
+	}
+
+	@Override
+	public List<Entry> between(LocalDate start, LocalDate end) {
+		int from = lowerBound(start);
+		int to = Math.max(from, upperBound(end));
+		return view.subList(from, to);
+	}
+
+	@Override
+	public int amountBetween(LocalDate start, LocalDate end) {
+		int from = lowerBound(start);
+		int to = upperBound(end);
+		if (to <= from) {
+			return 0;
+		}
+		if (sums == null) {
+			sums = new long[entries.size() + 1];
+			for (int i = 0; i < entries.size(); ++i) {
+				sums[i + 1] = sums[i] + entries.get(i).getAmount();
+			}
+		}
+		return (int) (sums[to] - sums[from]);
+	}
+
+	@Override
+	public SpendingSeries seriesBetween(LocalDate start, LocalDate end) {
+		List<Entry> range = between(start, end);
+		int[] days = new int[range.size()];
+		long[] totals = new long[range.size()];
+		long total = 0;
+		for (int i = 0; i < days.length; ++i) {
+			Entry e = range.get(i);
+			total += e.getAmount();
+			days[i] = SpendingSeries.toDay(e.getDate());
+			totals[i] = total;
+		}
+		return new SpendingSeries(days, totals);
+	}
+
+	/* Stably sorts the entries by date. */
+	private void sort() {
+		// Collections.sort is stable, so same-day entries keep their order.
+		Collections.sort(entries, DATE_ORDER);
+		sums = null;
+	}
+
+	/* Finds the index of entry, looking among the entries dated date. */
+	private int indexOf(Entry entry, LocalDate date) {
+		for (int i = lowerBound(date); i < entries.size(); ++i) {
+			Entry e = entries.get(i);
+			if (e == entry) {
+				return i;
+			}
+			if (compareDates(e.getDate(), date) != 0) {
+				break;
+			}
+		}
+		return -1;
+	}
+
+	/* Index of the first entry dated on or after date. */
+	private int lowerBound(LocalDate date) {
+		int low = 0;
+		int high = entries.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (compareDates(entries.get(mid).getDate(), date) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/* Index of the first entry dated after date. */
+	private int upperBound(LocalDate date) {
+		int low = 0;
+		int high = entries.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (compareDates(entries.get(mid).getDate(), date) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private static int compareDates(LocalDate lhs, LocalDate rhs) {
+		if (lhs == null || rhs == null) {
+			return lhs == rhs ? 0 : (lhs == null ? -1 : 1);
+		}
+		return lhs.compareTo(rhs);
+	}
+}
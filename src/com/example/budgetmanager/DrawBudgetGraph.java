@@ -11,8 +11,6 @@ import android.graphics.Rect;
 import android.util.AttributeSet;
 import android.view.SurfaceView;
 
-import java.util.List;
-
 /**
  * Graph class for BudgetSummaryActivity to draw a budget
  * to a surfaceView.
@@ -21,8 +19,8 @@ import java.util.List;
  */
 public class DrawBudgetGraph extends SurfaceView {
 
-	//List of entries from budget from a given cycle.
-	private List<Entry> entryList;
+	//Running total of the entries of budget in the given cycle.
+	private SpendingSeries series;
 
 	private final Rect xRect;
 	private final Rect yRect;
@@ -42,19 +40,18 @@ public class DrawBudgetGraph extends SurfaceView {
 
 
 	/**
-	 * Returns the end date of the given cycle.
+	 * Sets the budget and cycle to graph the spending of.
 	 *
-	 * @param cycle The cycle to calculate the end time of.
-	 * @param entryList A list of entries from budget to graph.
 	 * @param budget A Budget.
+	 * @param cycle The cycle of budget to graph.
 	 * @throws IllegalArgumentException If the cycle is negative,
-	 *         or entryList or budget are null
+	 *         or budget is null
 	 */
-	public void setProperties(List<Entry> entryList, Budget budget, int cycle) {
-		if (cycle < 0 || entryList == null || budget == null) {
+	public void setProperties(Budget budget, int cycle) {
+		if (cycle < 0 || budget == null) {
 			throw new IllegalArgumentException();
 		}
-		this.entryList = entryList;
+		this.series = budget.getSpendingSeries(cycle);
 		this.budget = budget;
 		this.cycle = cycle;
 	}
@@ -129,32 +126,18 @@ public class DrawBudgetGraph extends SurfaceView {
 		int width = canvas.getWidth();
 
 		//Draw entries
-		int[] entryHeights = new int[entryList.size()];
-
-		if (!entryList.isEmpty()) {
-			entryHeights[0] = entryList.get(0).getAmount();
-		}
-
-		for (int i = 1; i < entryList.size(); i++) {
-			entryHeights[i] = entryHeights[i - 1] + entryList.get(i).getAmount();
-		}
-
-		int max = budgetMax;
-		if (entryList.size() > 0) {
-			max = Math.max(budgetMax, entryHeights[entryList.size() - 1]);
-		}
+		int max = (int) Math.max(budgetMax, series.getFinalTotal());
 
 		long lastx = 0;
 		long lasty = height;
 
+		int cycleStart = SpendingSeries.toDay(budget.getStartDate(cycle));
+		int cycleEnd = SpendingSeries.toDay(budget.getEndDate(cycle));
 
-		for (int i = 0; i < entryList.size(); i++) {
-			long x = dateToX(entryList.get(i).getDate().toDateTimeAtStartOfDay().getMillis(),
-					budget.getStartDate(cycle).toDateTimeAtStartOfDay().getMillis(),
-					budget.getEndDate(cycle).toDateTimeAtStartOfDay().getMillis(),
-					width);
+		for (int i = 0; i < series.size(); i++) {
+			long x = dateToX(series.getDay(i), cycleStart, cycleEnd, width);
 
-			long y = priceToY(entryHeights[i], max, height);
+			long y = priceToY((int) series.getTotal(i), max, height);
 
 			canvas.drawLine(lastx, lasty, x, y, entryPaint);
 
@@ -2,10 +2,6 @@ package com.example.budgetmanager;
 
 import android.os.Bundle;
 import android.view.View;
-import android.widget.Toast;
-
-import com.example.budgetmanager.api.ApiCallback;
-import com.example.budgetmanager.api.ApiInterface;
 
 public class EditBudgetActivity extends AbstractBudgetEditorActivity {
 
@@ -20,7 +16,7 @@ public class EditBudgetActivity extends AbstractBudgetEditorActivity {
 		Bundle bundle = getIntent().getExtras();
 
 		// Populate the fields with the current budget data
-		Budget b = Budget.getBudgetById(bundle.getLong("BudgetId"));
+		Budget b = BudgetRepository.getInstance().getBudgetById(bundle.getLong("BudgetId"));
 
 		mPreviousBudgetName = b.getName();
 		mBudgetNameView.setText(mPreviousBudgetName);
@@ -71,36 +67,11 @@ public class EditBudgetActivity extends AbstractBudgetEditorActivity {
 		}
 
 		Bundle bundle = getIntent().getExtras();
-		final Budget actualBudget = Budget.getBudgetById(bundle.getLong("BudgetId"));
-		// In case the request fails
-		final Budget newBudget = createBudget();
-		newBudget.setId(actualBudget.getId());
-
-		mAddButtonView.setClickable(false);
-
-		ApiInterface.getInstance().update(newBudget, new ApiCallback<Object>() {
-			@Override
-			public void onSuccess(Object result) {
-				actualBudget.setId(newBudget.getId());
-				actualBudget.setName(newBudget.getName());
-				actualBudget.setBudgetAmount(newBudget.getBudgetAmount());
-				actualBudget.setRecurring(newBudget.isRecurring());
-				actualBudget.setDuration(newBudget.getDuration());
-				actualBudget.setStartDate(newBudget.getStartDate());
-				// Remove the temporary budget
-				Budget.removeBudget(newBudget);
-
-				finish();
-			}
-
-			@Override
-			public void onFailure(String errorMessage) {
-				// if the request fails, do nothing (the toast is for testing purposes)
-				Toast.makeText(EditBudgetActivity.this, errorMessage, Toast.LENGTH_LONG).show();
-				// Remove the temporary budget
-				Budget.removeBudget(newBudget);
-				mAddButtonView.setClickable(true);
-			}
-		});
+		Budget actualBudget = BudgetRepository.getInstance().getBudgetById(bundle.getLong("BudgetId"));
+
+		// Change the budget now; it is sent to the API when it can be.
+		UBudgetApp.getOutbox().update(actualBudget, createBudget());
+
+		finish();
 	}
 }
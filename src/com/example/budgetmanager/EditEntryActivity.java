@@ -2,10 +2,6 @@ package com.example.budgetmanager;
 
 import android.os.Bundle;
 import android.view.View;
-import android.widget.Toast;
-
-import com.example.budgetmanager.api.ApiCallback;
-import com.example.budgetmanager.api.ApiInterface;
 
 import org.joda.time.LocalDate;
 
@@ -27,7 +23,7 @@ public class EditEntryActivity extends AbstractEntryEditorActivity {
 
 		// Set fields to saved entry's fields.
 		Bundle bundle = getIntent().getExtras();
-		Budget b = Budget.getBudgetById(bundle.getLong("BudgetId"));
+		Budget b = BudgetRepository.getInstance().getBudgetById(bundle.getLong("BudgetId"));
 		Entry e = b.getEntryById(bundle.getLong("EntryId"));
 
 		mAmountView.setText(Utilities.amountToCurrencyNoCurrencySign(e.getAmount()));
@@ -38,7 +34,7 @@ public class EditEntryActivity extends AbstractEntryEditorActivity {
 
 		mNotesView.setText(e.getNotes());
 
-		final List<Budget> budgetList = Budget.getBudgets();
+		final List<Budget> budgetList = BudgetRepository.getInstance().getBudgets();
 		for (int i = 0; i < budgetList.size(); i ++) {
 			if(budgetList.get(i).equals(b)) {
 				mBudgetView.setSelection(i);
@@ -62,39 +58,16 @@ public class EditEntryActivity extends AbstractEntryEditorActivity {
 			return;
 		}
 
-		mAddButtonView.setClickable(false);
-
 		Bundle bundle = getIntent().getExtras();
-		final Budget oldBudget = Budget.getBudgetById(bundle.getLong("BudgetId"));
-		final Entry actualEntry = oldBudget.getEntryById(bundle.getLong("EntryId"));
-		final Budget newBudget = newEntry.getBudget();
-
-		// We need to send a separate entry, so we don't have to save
-		// old values if the request fails.
-		newEntry.setEntryId(actualEntry.getEntryId());
-		newEntry.setCreatedAt(actualEntry.getCreatedAt());
-		newEntry.setUpdatedAt(actualEntry.getUpdatedAt());
-
-		ApiInterface.getInstance().update(newEntry, new ApiCallback<Object>() {
-			@Override
-			public void onSuccess(Object result) {
-				// Add the entry to the new budget and remove the old one from the old budget
-				newBudget.addEntry(newEntry);
-				oldBudget.removeEntry(actualEntry);
-
-				// go back to the Entry log
-				finish();
-			}
+		Budget oldBudget = BudgetRepository.getInstance().getBudgetById(bundle.getLong("BudgetId"));
+		Entry actualEntry = oldBudget.getEntryById(bundle.getLong("EntryId"));
 
-			@Override
-			public void onFailure(String errorMessage) {
-				// if the request fails, do nothing (the toast is for testing purposes)
-				Toast.makeText(EditEntryActivity.this, errorMessage, Toast.LENGTH_LONG).show();
-				// Remove the temporary entry
-				newBudget.removeEntry(newEntry);
-				mAddButtonView.setClickable(true);
-			}
-		});
+		// Change the entry now, moving it to the new budget if need be;
+		// it is sent to the API when it can be.
+		UBudgetApp.getOutbox().update(actualEntry, newEntry);
+
+		// go back to the Entry log
+		finish();
 	}
 
 	// Helper method to create the new <code>Entry</code> object to be added.
@@ -54,6 +54,29 @@ public class Entry {
 		this.updatedAt = LocalDateTime.now();
 	}
 
+	/**
+	 * Constructs an Entry with every field given, for recreating an entry
+	 * from compact storage.
+	 *
+	 * @param id The ID for this Entry in the API
+	 * @param amount The amount associated with the Entry in cents.
+	 * @param budget The Budget object that contains the Entry.
+	 * @param notes More detailed notes associated with the Entry.
+	 * @param date The expenditure date associated with the Entry.
+	 * @param createdAt When this Entry was created on the server.
+	 * @param updatedAt When this Entry was updated on the server.
+	 */
+	Entry(long id, int amount, Budget budget, String notes, LocalDate date,
+			LocalDateTime createdAt, LocalDateTime updatedAt) {
+		this.entryId = id;
+		this.amount = amount;
+		this.budget = budget;
+		this.notes = notes;
+		this.date = date;
+		this.createdAt = createdAt;
+		this.updatedAt = updatedAt;
+	}
+
 	/**
 	 * Constructs a new Entry containing amount, Budget, notes,
 	 * and Date information.
@@ -80,7 +103,9 @@ public class Entry {
 	 * @param amount (in cents) of the Entry.
 	 */
 	public void setAmount(int amount) {
+		int oldAmount = this.amount;
 		this.amount = amount;
+		Budget.entryChanged(this, oldAmount, date);
 	}
 
 	/**
@@ -112,6 +137,7 @@ public class Entry {
 	 */
 	public void setNotes(String notes) {
 		this.notes = notes;
+		Budget.entryDetailsChanged(this);
 	}
 
 	/**
@@ -130,7 +156,9 @@ public class Entry {
 	 * @param id The ID of this entry as represented on the server
 	 */
 	public void setEntryId(long id) {
+		long oldId = this.entryId;
 		this.entryId = id;
+		Budget.entryIdChanged(this, oldId);
 	}
 
 	/**
@@ -148,7 +176,9 @@ public class Entry {
 	 * @param date to change this Entry's date to.
 	 */
 	public void setDate(LocalDate date) {
+		LocalDate oldDate = this.date;
 		this.date = date;
+		Budget.entryChanged(this, amount, oldDate);
 	}
 
 	/**
@@ -158,6 +188,7 @@ public class Entry {
 	 */
 	public void setCreatedAt(LocalDateTime createdAt) {
 		this.createdAt = createdAt;
+		Budget.entryDetailsChanged(this);
 	}
 
 	/**
@@ -167,6 +198,7 @@ public class Entry {
 	 */
 	public void setUpdatedAt(LocalDateTime updatedAt) {
 		this.updatedAt = updatedAt;
+		Budget.entryDetailsChanged(this);
 	}
 
 	/**
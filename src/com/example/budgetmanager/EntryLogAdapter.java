@@ -11,9 +11,13 @@ import android.widget.TextView;
 import org.joda.time.LocalDate;
 import org.joda.time.LocalDateTime;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
+import java.util.PriorityQueue;
 
 /**
  * This class handles preparing lists of entries for display in the Entry Log.
@@ -21,13 +25,29 @@ import java.util.Locale;
  * them to be displayed in a ListView. Thus, it could be considered a kind of
  * View Model.
  *
+ * Registered as a {@link BudgetChangeListener}, it keeps itself up to date
+ * by applying each change to its sorted list, rather than reloading every
+ * entry, so removing an entry only takes a binary search.
+ *
+ * Only the first entries in the order are held, a page at a time, so a
+ * long history isn't copied into the list, and entries in compact storage
+ * stay compact until they are scrolled to. {@link #showMore()} shows the
+ * next page.
+ *
  * This class also contains Comparators that allow for sorting entries by
  * different attributes.
  *
  * @author chris brucec5
  *
  */
-public class EntryLogAdapter extends ArrayAdapter<Entry> {
+public class EntryLogAdapter extends ArrayAdapter<Entry>
+implements BudgetChangeListener {
+
+	/**
+	 * The number of entries shown at first, and added by each call to
+	 * {@link #showMore()}.
+	 */
+	public static final int PAGE_SIZE = 100;
 
 	private static final String TAG = "EntryLogAdapter";
 
@@ -37,15 +57,38 @@ public class EntryLogAdapter extends ArrayAdapter<Entry> {
 	// resource ID for the layout to inflate into each row
 	private final int layoutResourceId;
 
+	// The entries shown, which are also the ArrayAdapter's list: the first
+	// entries in the order, up to the limit
+	private final SortedItems<Entry> entries;
+
+	// The order the entries are shown in
+	private Comparator<? super Entry> order;
+
+	// The most entries to show
+	private int limit;
+
+	// true if every entry is shown, rather than just the first ones
+	private boolean complete;
+
 	/**
 	 * Constructs a new EntryLog
 	 * @param context the current Context
 	 * @param layoutResourceId Resource ID for the row view
 	 */
 	public EntryLogAdapter(Context context, int layoutResourceId) {
-		super(context, layoutResourceId);
+		this(context, layoutResourceId, new SortedItems<Entry>());
+	}
+
+	private EntryLogAdapter(Context context, int layoutResourceId,
+			SortedItems<Entry> entries) {
+		super(context, layoutResourceId, entries.asList());
 		this.context = context;
 		this.layoutResourceId = layoutResourceId;
+		this.entries = entries;
+		this.order = new EntryDateComparator();
+		this.limit = PAGE_SIZE;
+		this.complete = true;
+		entries.setOrder(order);
 	}
 
 	/**
@@ -57,9 +100,190 @@ public class EntryLogAdapter extends ArrayAdapter<Entry> {
 	public EntryLogAdapter(Context context, int layoutResourceId,
 			List<Budget> budgetList) {
 		this(context, layoutResourceId);
+		List<List<Entry>> lists = new ArrayList<List<Entry>>();
 		for (Budget b : budgetList) {
-			addAll(b.getEntries());
+			lists.add(b.getEntries());
+		}
+		fill(lists);
+	}
+
+	/**
+	 * Sorts the entries by <code>comparator</code>, and keeps them sorted by
+	 * it as entries change.
+	 *
+	 * @param comparator The order to show the entries in.
+	 */
+	@Override
+	public void sort(Comparator<? super Entry> comparator) {
+		order = comparator;
+		entries.setOrder(comparator);
+		if (!complete) {
+			// The entries shown were the first in the old order.
+			refill();
+		}
+		notifyDataSetChanged();
+	}
+
+	/**
+	 * Returns whether there are entries after the ones shown.
+	 *
+	 * @return <code>true</code> if {@link #showMore()} would show more
+	 *         entries.
+	 */
+	public boolean hasMore() {
+		return !complete;
+	}
+
+	/**
+	 * Shows the next page of entries, if there are more to show.
+	 */
+	public void showMore() {
+		limit += PAGE_SIZE;
+		if (!complete) {
+			refill();
+			notifyDataSetChanged();
+		}
+	}
+
+	@Override
+	public void onBudgetAdded(Budget budget, List<Entry> added) {
+		if (insert(added)) {
+			notifyDataSetChanged();
+		}
+	}
+
+	@Override
+	public void onBudgetRemoved(Budget budget) {
+		// Keep the other entries in place, in one pass.
+		List<Entry> list = entries.asList();
+		int kept = 0;
+		for (int i = 0; i < list.size(); ++i) {
+			Entry e = list.get(i);
+			if (e.getBudget() != budget) {
+				list.set(kept++, e);
+			}
+		}
+		list.subList(kept, list.size()).clear();
+		if (list.isEmpty() && !complete) {
+			refill();
+		}
+		notifyDataSetChanged();
+	}
+
+	@Override
+	public void onBudgetUpdated(Budget budget) {
+		if (complete) {
+			// Entries may be sorted by the name of their budget.
+			entries.sortIfNeeded();
+		} else {
+			// Entries that aren't shown may now come before those that are.
+			refill();
+		}
+		notifyDataSetChanged();
+	}
+
+	@Override
+	public void onBudgetsReplaced(List<Budget> budgets, List<Entry> all) {
+		fill(Collections.singletonList(all));
+		notifyDataSetChanged();
+	}
+
+	@Override
+	public void onEntriesAdded(Budget budget, List<Entry> added) {
+		if (insert(added)) {
+			notifyDataSetChanged();
+		}
+	}
+
+	@Override
+	public void onEntryRemoved(Entry entry) {
+		if (entries.remove(entry)) {
+			if (entries.asList().isEmpty() && !complete) {
+				refill();
+			}
+			notifyDataSetChanged();
+		}
+	}
+
+	@Override
+	public void onEntryUpdated(Entry entry) {
+		if (!entries.remove(entry)) {
+			// It may have moved among the entries shown.
+			if (insert(Collections.singletonList(entry))) {
+				notifyDataSetChanged();
+			}
+			return;
+		}
+		int index = entries.insert(entry);
+		if (!complete && index == entries.asList().size() - 1) {
+			// Entries that aren't shown may now come before it.
+			entries.asList().remove(index);
+			if (index == 0) {
+				refill();
+			}
+		}
+		notifyDataSetChanged();
+	}
+
+	/*
+	 * Adds the entries of added that aren't shown yet and come before the
+	 * last entry shown, or all of them if every entry is shown. Returns
+	 * whether any were added.
+	 */
+	private boolean insert(Collection<Entry> added) {
+		List<Entry> list = entries.asList();
+		List<Entry> shown = new ArrayList<Entry>(added.size());
+		for (Entry e : added) {
+			if (!complete && (list.isEmpty()
+					|| order.compare(e, list.get(list.size() - 1)) > 0)) {
+				continue;
+			}
+			if (!entries.contains(e)) {
+				shown.add(e);
+			}
+		}
+		if (shown.isEmpty()) {
+			return false;
+		}
+		entries.insertAll(shown);
+		if (list.size() > limit) {
+			list.subList(limit, list.size()).clear();
+			complete = false;
+		}
+		return true;
+	}
+
+	/* Shows the first entries of the budgets in the repository. */
+	private void refill() {
+		List<Budget> budgets = BudgetRepository.getInstance().getBudgets();
+		List<List<Entry>> lists = new ArrayList<List<Entry>>(budgets.size());
+		for (Budget b : budgets) {
+			lists.add(b.getEntries());
+		}
+		fill(lists);
+	}
+
+	/* Shows the first entries of lists in the order, up to the limit. */
+	private void fill(List<List<Entry>> lists) {
+		// Keeps the last of the first entries at its head, to be replaced
+		// by any entry that comes before it.
+		PriorityQueue<Entry> first = new PriorityQueue<Entry>(limit + 1,
+				Collections.reverseOrder(order));
+		int count = 0;
+		for (List<Entry> list : lists) {
+			count += list.size();
+			for (Entry e : list) {
+				if (first.size() < limit) {
+					first.add(e);
+				} else if (order.compare(e, first.peek()) < 0) {
+					first.poll();
+					first.add(e);
+				}
+			}
 		}
+		complete = first.size() == count;
+		entries.asList().clear();
+		entries.insertAll(first);
 	}
 
 	/**
@@ -15,14 +15,16 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.AdapterView;
 import android.widget.AdapterView.AdapterContextMenuInfo;
+import android.widget.AbsListView;
+import android.widget.AbsListView.OnScrollListener;
 import android.widget.AdapterView.OnItemSelectedListener;
 import android.widget.ListView;
 import android.widget.RelativeLayout;
 import android.widget.Spinner;
-import android.widget.Toast;
 
 import com.example.budgetmanager.api.ApiCallback;
 import com.example.budgetmanager.api.ApiInterface;
+import com.example.budgetmanager.api.EntryPage;
 
 import java.util.Comparator;
 
@@ -43,6 +45,13 @@ public class EntryLogsTab extends Fragment {
 	// The currently selected entry
 	private Entry selectedEntry = null;
 
+	// Loads older entries as the list is scrolled toward its end, while the
+	// budgets don't hold all of them
+	private EntryPager pager;
+
+	// How close to the end of the list to load more, in rows
+	private static final int LOAD_MORE_ROWS = 5;
+
 	// tag for logging
 	private final static String TAG = "AddEntryActivity";
 
@@ -54,7 +63,14 @@ public class EntryLogsTab extends Fragment {
 	@Override
 	public void onResume() {
 		super.onResume();
-		refreshList();
+		// The adapter follows changes to the entries itself, so just redraw.
+		adapter.notifyDataSetChanged();
+	}
+
+	@Override
+	public void onDestroyView() {
+		BudgetRepository.getInstance().removeListener(adapter);
+		super.onDestroyView();
 	}
 
 	@Override
@@ -64,15 +80,12 @@ public class EntryLogsTab extends Fragment {
 				(RelativeLayout) inflater.inflate(R.layout.fragment_entry_logs,
 						container, false);
 
-		// set adapter
+		// set adapter, and keep it up to date with changes to the entries
 		adapter = new EntryLogAdapter(getActivity(),
-				R.layout.list_entry_layout);
-		for (Budget b : Budget.getBudgets()) {
-			adapter.addAll(b.getEntries());
-		}
-
-		// The initial sort will be by date.
-		adapter.sort(new EntryLogAdapter.EntryDateComparator());
+				R.layout.list_entry_layout,
+				BudgetRepository.getInstance().getBudgets());
+		BudgetRepository.getInstance().addListener(adapter,
+				Utilities.uiThreadExecutor(getActivity()));
 
 		// set up Entry Logs screen
 		listView = (ListView) layout.findViewById(R.id.entry_list);
@@ -81,6 +94,39 @@ public class EntryLogsTab extends Fragment {
 		// set up a context menu for the list items
 		registerForContextMenu(listView);
 
+		// load the first page of entries now, and older ones when the end
+		// of the list comes near
+		pager = new EntryPager(new EntryPager.Source() {
+			@Override
+			public void fetchEntries(Budget b, String cursor, int pageSize,
+					ApiCallback<EntryPage> callback) {
+				ApiInterface.getInstance().fetchEntries(b, cursor, pageSize,
+						callback);
+			}
+		}, EntryPager.DEFAULT_PAGE_SIZE);
+		pager.loadMore();
+		listView.setOnScrollListener(new OnScrollListener() {
+			@Override
+			public void onScroll(AbsListView view, int firstVisibleItem,
+					int visibleItemCount, int totalItemCount) {
+				if (firstVisibleItem + visibleItemCount
+						< totalItemCount - LOAD_MORE_ROWS) {
+					return;
+				}
+				// show the entries already loaded before loading older ones
+				if (adapter.hasMore()) {
+					adapter.showMore();
+				} else if (!pager.isLoading() && pager.hasMore()) {
+					pager.loadMore();
+				}
+			}
+
+			@Override
+			public void onScrollStateChanged(AbsListView view, int scrollState) {
+				// only the position matters
+			}
+		});
+
 		sortSpinner = (Spinner) layout.findViewById(R.id.spinner_logs_sort);
 
 		sortSpinner.setOnItemSelectedListener(new OnItemSelectedListener() {
@@ -153,26 +199,11 @@ public class EntryLogsTab extends Fragment {
 				@Override
 				public void onClick(DialogInterface dialog, int id) {
 					Log.d(TAG, "Delete called.");
-					ApiInterface.getInstance().remove(selectedEntry, new ApiCallback<Object>() {
-						@Override
-						public void onSuccess(Object result) {
-							Log.d(TAG, "Delete entry onSuccess entered.");
-
-							// remove the Entry from the Budget it is included in
-							selectedEntry.getBudget().removeEntry(selectedEntry);
-							selectedEntry = null;
-
-							// refresh the view upon change
-							refreshList();
-						}
-
-						@Override
-						public void onFailure(String errorMessage) {
-							Log.d(TAG, "Delete entry onFailure entered.");
-							// if the request fails, do nothing (the toast is for testing purposes)
-							Toast.makeText(getActivity(), errorMessage, Toast.LENGTH_LONG).show();
-						}
-					});
+					// remove the Entry from the Budget it is included in,
+					// which removes it from the view as well; it is
+					// removed from the API when it can be
+					UBudgetApp.getOutbox().remove(selectedEntry);
+					selectedEntry = null;
 				}
 			});
 			// show the alert message
@@ -183,20 +214,6 @@ public class EntryLogsTab extends Fragment {
 		return true;
 	}
 
-	/* Helper method to refresh the list of ListView of Entries. */
-	private void refreshList() {
-		adapter.clear();
-
-		for (Budget b : Budget.getBudgets()) {
-			adapter.addAll(b.getEntries());
-		}
-
-		int position = sortSpinner.getSelectedItemPosition();
-		sortBySortSpinnerIndex(position);
-
-		adapter.notifyDataSetChanged();
-	}
-
 	private void sortBySortSpinnerIndex(int position) {
 		Comparator<Entry> comp;
 
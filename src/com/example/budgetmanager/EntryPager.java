@@ -0,0 +1,137 @@
+package com.example.budgetmanager;
+
+import com.example.budgetmanager.api.ApiCallback;
+import com.example.budgetmanager.api.EntryPage;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads the entries of the user's budgets a page at a time, newest first,
+ * for when the budgets have been fetched without all of their entries,
+ * such as straight after logging in. Each page is added to its budget as it
+ * arrives, so anything following the budgets shows it straight away.
+ *
+ * Once the budgets hold a full sync, they already have every entry, and
+ * nothing more is loaded.
+ */
+public final class EntryPager {
+
+	/**
+	 * Fetches pages of entries. Implemented by the API, and by tests.
+	 */
+	public interface Source {
+		/**
+		 * Fetches one page of the entries of <code>b</code>, adding those
+		 * it doesn't have to it. See
+		 * {@link com.example.budgetmanager.api.ApiInterface#fetchEntries(Budget, String, int, ApiCallback)}.
+		 *
+		 * @param b The budget whose entries to fetch.
+		 * @param cursor The cursor of the page, or <code>null</code> for
+		 *        the first.
+		 * @param pageSize The most entries to fetch.
+		 * @param callback Told the page, or why it couldn't be fetched.
+		 */
+		void fetchEntries(Budget b, String cursor, int pageSize,
+				ApiCallback<EntryPage> callback);
+	}
+
+	/** The number of entries fetched at a time, about a screenful. */
+	public static final int DEFAULT_PAGE_SIZE = 25;
+
+	private final Source source;
+	private final int pageSize;
+
+	// The cursor of the next page of each budget that has more
+	private final Map<Budget, String> cursors =
+			new IdentityHashMap<Budget, String>();
+	// The budgets whose entries have all been loaded
+	private final Set<Budget> finished =
+			Collections.newSetFromMap(new IdentityHashMap<Budget, Boolean>());
+	// The budgets a page is being loaded for
+	private final Set<Budget> loading =
+			Collections.newSetFromMap(new IdentityHashMap<Budget, Boolean>());
+
+	/**
+	 * Creates a pager that loads pages from <code>source</code>.
+	 *
+	 * @param source Fetches the pages.
+	 * @param pageSize The most entries to load for a budget at a time.
+	 * @throws IllegalArgumentException if <code>pageSize</code> is less
+	 *         than 1
+	 */
+	public EntryPager(Source source, int pageSize) {
+		if (pageSize < 1) {
+			throw new IllegalArgumentException("pageSize must be at least 1");
+		}
+		this.source = source;
+		this.pageSize = pageSize;
+	}
+
+	/**
+	 * Loads the next page of entries of every budget that may have more,
+	 * unless a page is already being loaded for it. Should be called on the
+	 * main thread.
+	 */
+	public void loadMore() {
+		BudgetRepository repository = BudgetRepository.getInstance();
+		if (repository.getSyncedThrough() != null) {
+			return;
+		}
+		for (final Budget b : repository.getBudgets()) {
+			// Budgets not yet created on the server have no entries there.
+			if (b.getId() <= Budget.NEW_ID || finished.contains(b)
+					|| !loading.add(b)) {
+				continue;
+			}
+			source.fetchEntries(b, cursors.get(b), pageSize,
+					new ApiCallback<EntryPage>() {
+				@Override
+				public void onSuccess(EntryPage page) {
+					loading.remove(b);
+					if (page.hasMore()) {
+						cursors.put(b, page.getNextCursor());
+					} else {
+						cursors.remove(b);
+						finished.add(b);
+					}
+				}
+
+				@Override
+				public void onFailure(String errorMessage) {
+					// Tried again on the next call.
+					loading.remove(b);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Gets whether any page is being loaded.
+	 *
+	 * @return Whether a page is being loaded.
+	 */
+	public boolean isLoading() {
+		return !loading.isEmpty();
+	}
+
+	/**
+	 * Gets whether there may be entries that haven't been loaded yet.
+	 *
+	 * @return Whether calling {@link #loadMore()} may load more entries.
+	 */
+	public boolean hasMore() {
+		BudgetRepository repository = BudgetRepository.getInstance();
+		if (repository.getSyncedThrough() != null) {
+			return false;
+		}
+		for (Budget b : repository.getBudgets()) {
+			if (b.getId() > Budget.NEW_ID && !finished.contains(b)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
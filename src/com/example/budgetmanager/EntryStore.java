@@ -0,0 +1,109 @@
+package com.example.budgetmanager;
+
+import org.joda.time.LocalDate;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Storage for the entries of a {@link Budget}, kept in order of their dates
+ * (oldest first, with entries on the same date in the order they were
+ * added).
+ */
+interface EntryStore {
+
+	/**
+	 * Returns the number of entries in this store.
+	 *
+	 * @return The number of entries.
+	 */
+	int size();
+
+	/**
+	 * Returns the entries in date order.
+	 *
+	 * @return An unmodifiable view of the entries.
+	 */
+	List<Entry> asList();
+
+	/**
+	 * Returns whether <code>entry</code> is in this store.
+	 *
+	 * @param entry The entry to look for.
+	 * @return <code>true</code> if the store holds <code>entry</code>.
+	 */
+	boolean contains(Entry entry);
+
+	/**
+	 * Finds the entry with the given ID.
+	 *
+	 * @param id The ID of the entry.
+	 * @return The entry with <code>id</code>, or <code>null</code> if the
+	 *         store has no such entry.
+	 */
+	Entry findById(long id);
+
+	/**
+	 * Adds <code>entry</code> after any other entries on the same date.
+	 *
+	 * @param entry The entry to add, which must not already be in the store.
+	 */
+	void add(Entry entry);
+
+	/**
+	 * Adds all of <code>newEntries</code>, sorting once rather than placing
+	 * each entry in turn.
+	 *
+	 * @param newEntries The entries to add, none of which may already be in
+	 *        the store.
+	 */
+	void addAll(Collection<Entry> newEntries);
+
+	/**
+	 * Removes <code>entry</code> from this store.
+	 *
+	 * @param entry The entry to remove.
+	 * @return <code>true</code> if the store held <code>entry</code>.
+	 */
+	boolean remove(Entry entry);
+
+	/**
+	 * Updates the store after any of the fields of <code>entry</code>
+	 * changed, moving it to its place in the order if its date changed.
+	 *
+	 * @param entry The entry that changed.
+	 * @param oldDate The date <code>entry</code> had before the change.
+	 * @return <code>true</code> if the store holds <code>entry</code>.
+	 */
+	boolean changed(Entry entry, LocalDate oldDate);
+
+	/**
+	 * Returns the entries dated from <code>start</code> to <code>end</code>,
+	 * inclusive, in date order.
+	 *
+	 * @param start The first date of the range.
+	 * @param end The last date of the range.
+	 * @return An unmodifiable view of the entries in the range.
+	 */
+	List<Entry> between(LocalDate start, LocalDate end);
+
+	/**
+	 * Returns the total amount of the entries dated from <code>start</code>
+	 * to <code>end</code>, inclusive.
+	 *
+	 * @param start The first date of the range.
+	 * @param end The last date of the range.
+	 * @return The total amount in the range, in cents.
+	 */
+	int amountBetween(LocalDate start, LocalDate end);
+
+	/**
+	 * Returns the running total of the amounts of the entries dated from
+	 * <code>start</code> to <code>end</code>, inclusive.
+	 *
+	 * @param start The first date of the range.
+	 * @param end The last date of the range.
+	 * @return The running total of the range, one point per entry.
+	 */
+	SpendingSeries seriesBetween(LocalDate start, LocalDate end);
+}
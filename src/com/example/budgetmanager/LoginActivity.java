@@ -156,22 +156,22 @@ public class LoginActivity extends Activity {
 				@Override
 				public void onSuccess(Object result) {
 
-					Budget.clearBudgets();
-					ApiInterface.getInstance().fetchBudgetsAndEntries(
+					BudgetRepository.getInstance().clear();
+					// Show the budgets as soon as they are here, with their
+					// entries loaded a page at a time. Everything isn't
+					// fetched as well, as that would replace the budgets
+					// being paged; the next start syncs and keeps them.
+					ApiInterface.getInstance().fetchBudgets(
 							new ApiCallback<List<Budget>>() {
 								@Override
 								public void onSuccess(List<Budget> result) {
-									startActivity(new Intent(LoginActivity.this,
-											MainActivity.class));
-									finish();
+									showBudgets();
 								}
 
 								@Override
 								public void onFailure(String errorMessage) {
-									Log.d(TAG, "fetch data on ApiInteface is failure");
-									startActivity(new Intent(LoginActivity.this,
-											MainActivity.class));
-									finish();
+									Log.d(TAG, "fetch budgets on ApiInteface is failure");
+									showBudgets();
 								}
 							});
 				}
@@ -179,6 +179,14 @@ public class LoginActivity extends Activity {
 		}
 	}
 
+	/* Moves on to the main screen, unless the user has left. */
+	private void showBudgets() {
+		if (!isFinishing()) {
+			startActivity(new Intent(LoginActivity.this, MainActivity.class));
+			finish();
+		}
+	}
+
 	/**
 	 * Moves to the Register screen register activity with all of the
 	 * inputs passed on.
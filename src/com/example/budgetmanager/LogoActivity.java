@@ -1,6 +1,7 @@
 package com.example.budgetmanager;
 
 import android.app.Activity;
+import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
 import android.util.Log;
@@ -12,7 +13,10 @@ import com.example.budgetmanager.api.ApiInterface;
 import java.util.List;
 
 /**
- * Activity which shows the Husky logo and fetches all budgets and entries
+ * Activity which shows the Husky logo while the budgets and entries are
+ * loaded. If budgets and entries were kept from the last run, the main
+ * screen is shown with them straight away, and they are synced with the
+ * server in the background. Otherwise they are fetched first.
  *
  * @author Chi Ho coldstar96
  *
@@ -25,18 +29,97 @@ public class LogoActivity extends Activity {
 		super.onCreate(savedInstanceState);
 		setContentView(R.layout.activity_logo);
 
+		if (BudgetRepository.getInstance().getSyncedThrough() != null) {
+			// Still loaded from earlier in this run.
+			showCachedBudgets();
+			return;
+		}
+
+		// Read the kept budgets off the main thread.
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				final SyncDelta cached = UBudgetApp.getBudgetCache().load();
+				runOnUiThread(new Runnable() {
+					@Override
+					public void run() {
+						if (cached == null) {
+							checkLoginAndFetch();
+						} else {
+							BudgetRepository.getInstance().replaceAll(
+									cached.getBudgets(),
+									cached.getSyncedThrough());
+							showCachedBudgets();
+						}
+					}
+				});
+			}
+		}, "LoadBudgetCache").start();
+	}
+
+	/*
+	 * Shows the main screen with the budgets already loaded, then checks
+	 * that the user is still logged in and syncs in the background.
+	 */
+	private void showCachedBudgets() {
+		final Context appContext = getApplicationContext();
+		startActivity(new Intent(this, MainActivity.class));
+		finish();
+
+		ApiInterface.getInstance().checkLoginStatus(new ApiCallback<Object>() {
+			@Override
+			public void onSuccess(Object result) {
+				ApiInterface.getInstance().syncBudgetsAndEntries(
+						new ApiCallback<List<Budget>>() {
+							@Override
+							public void onSuccess(List<Budget> result) {
+								UBudgetApp.getBudgetCache().save(
+										BudgetRepository.getInstance().getSnapshot());
+							}
+
+							@Override
+							public void onFailure(String errorMessage) {
+								// Keep showing the kept budgets until the next sync.
+								Log.d(TAG, "background sync failed: " + errorMessage);
+							}
+						});
+			}
+
+			@Override
+			public void onFailure(String errorMessage) {
+				if (errorMessage != null) {
+					// Offline, so keep showing the kept budgets.
+					Log.d(TAG, "check login failed: " + errorMessage);
+					return;
+				}
+				// Logged out on the server, so the kept budgets are gone too.
+				Log.d(TAG, "no longer logged in");
+				BudgetRepository.getInstance().clear();
+				UBudgetApp.getBudgetCache().delete();
+				UBudgetApp.getOutbox().clear();
+				Intent logIn = new Intent(appContext, LoginActivity.class);
+				logIn.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK
+						| Intent.FLAG_ACTIVITY_CLEAR_TASK);
+				appContext.startActivity(logIn);
+			}
+		});
+	}
+
+	/* Checks that the user is logged in, then fetches their budgets. */
+	private void checkLoginAndFetch() {
 		// check login status
 		ApiInterface.getInstance().checkLoginStatus(new ApiCallback<Object>() {
 			@Override
 			public void onSuccess(Object result) {
 				Log.d(TAG, "check login in on ApiInteface is success");
 
-				// fetch budgets and entries
-				Budget.clearBudgets();
-				ApiInterface.getInstance().fetchBudgetsAndEntries(
+				// fetch the budgets and entries changed since the last sync
+				ApiInterface.getInstance().syncBudgetsAndEntries(
 						new ApiCallback<List<Budget>>() {
 							@Override
 							public void onSuccess(List<Budget> result) {
+								UBudgetApp.getBudgetCache().save(
+										BudgetRepository.getInstance().getSnapshot());
 								startActivity(new Intent(LogoActivity.this, MainActivity.class));
 								finish();
 							}
@@ -0,0 +1,205 @@
+package com.example.budgetmanager;
+
+import java.util.Arrays;
+
+/**
+ * A hash map keyed by primitive <code>long</code>s, used to index Budgets and
+ * Entries by their IDs without boxing every key into a {@link Long}.
+ *
+ * Uses open addressing with linear probing. <code>null</code> values are not
+ * allowed, as an empty slot is marked by a <code>null</code> value.
+ *
+ * @param <V> The type of the values stored in the map.
+ */
+public class LongHashMap<V> {
+	private static final int DEFAULT_CAPACITY = 16;
+
+	// Golden ratio constant, used to spread sequential IDs over the table
+	private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+	private long[] keys;
+	private Object[] values;
+	private int size;
+
+	// Number of bits used to index into the table (capacity == 1 << bits)
+	private int bits;
+
+	/**
+	 * Creates a new, empty map.
+	 */
+	public LongHashMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new, empty map able to hold <code>expectedSize</code> keys
+	 * without resizing.
+	 *
+	 * @param expectedSize The number of keys expected to be stored.
+	 */
+	public LongHashMap(int expectedSize) {
+		int capacity = DEFAULT_CAPACITY;
+		while (capacity / 2 < expectedSize) {
+			capacity *= 2;
+		}
+		allocate(capacity);
+	}
+
+	/**
+	 * Returns the number of keys in this map.
+	 *
+	 * @return The number of keys in this map.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns whether this map is empty.
+	 *
+	 * @return <code>true</code> if the map has no keys.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Gets the value associated with <code>key</code>.
+	 *
+	 * @param key The key to look up.
+	 * @return The value for <code>key</code>, or <code>null</code> if there
+	 *         is none.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int i = slotOf(key);
+		return i < 0 ? null : (V) values[i];
+	}
+
+	/**
+	 * Returns whether <code>key</code> has a value in this map.
+	 *
+	 * @param key The key to look up.
+	 * @return <code>true</code> if the map contains <code>key</code>.
+	 */
+	public boolean containsKey(long key) {
+		return slotOf(key) >= 0;
+	}
+
+	/**
+	 * Associates <code>value</code> with <code>key</code>.
+	 *
+	 * @param key The key.
+	 * @param value The value to store.
+	 * @return The value previously associated with <code>key</code>, or
+	 *         <code>null</code> if there was none.
+	 * @throws IllegalArgumentException if <code>value</code> is
+	 *         <code>null</code>
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if (value == null) {
+			throw new IllegalArgumentException("Tried to put a null value");
+		}
+		int mask = values.length - 1;
+		int i = hash(key);
+		while (values[i] != null) {
+			if (keys[i] == key) {
+				V old = (V) values[i];
+				values[i] = value;
+				return old;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = value;
+		++size;
+
+		// Keep the load factor at or below one half.
+		if (size * 2 > values.length) {
+			resize(values.length * 2);
+		}
+		return null;
+	}
+
+	/**
+	 * Removes the value associated with <code>key</code>.
+	 *
+	 * @param key The key to remove.
+	 * @return The value that was associated with <code>key</code>, or
+	 *         <code>null</code> if there was none.
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int i = slotOf(key);
+		if (i < 0) {
+			return null;
+		}
+		V old = (V) values[i];
+		values[i] = null;
+		--size;
+
+		// Shift back any following keys of the probe run, so lookups never
+		// stop early at the hole we just made.
+		int mask = values.length - 1;
+		int hole = i;
+		int j = (i + 1) & mask;
+		while (values[j] != null) {
+			int home = hash(keys[j]);
+			// Move the key if its home slot is not between the hole and j
+			// (cyclically).
+			if (((j - home) & mask) >= ((j - hole) & mask)) {
+				keys[hole] = keys[j];
+				values[hole] = values[j];
+				values[j] = null;
+				hole = j;
+			}
+			j = (j + 1) & mask;
+		}
+		return old;
+	}
+
+	/**
+	 * Removes every key from this map.
+	 */
+	public void clear() {
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	/* Finds the slot holding key, or -1 if the key is absent. */
+	private int slotOf(long key) {
+		int mask = values.length - 1;
+		int i = hash(key);
+		while (values[i] != null) {
+			if (keys[i] == key) {
+				return i;
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	private int hash(long key) {
+		return (int) ((key * HASH_MULTIPLIER) >>> (64 - bits));
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new Object[capacity];
+		bits = Integer.numberOfTrailingZeros(capacity);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		allocate(capacity);
+		size = 0;
+		for (int i = 0; i < oldValues.length; ++i) {
+			if (oldValues[i] != null) {
+				put(oldKeys[i], (V) oldValues[i]);
+			}
+		}
+	}
+}
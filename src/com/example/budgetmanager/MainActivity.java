@@ -101,6 +101,15 @@ public class MainActivity extends UBudgetActivity {
 		super.onResume();
 	}
 
+	@Override
+	protected void onPause() {
+		// keep the budgets and any changes made to them for the next start
+		UBudgetApp.getBudgetCache().save(
+				BudgetRepository.getInstance().getSnapshot());
+
+		super.onPause();
+	}
+
 	/**
 	 * Takes the user to the Add Budget screen.
 	 *
@@ -120,7 +129,7 @@ public class MainActivity extends UBudgetActivity {
 	public void onAddEntryClicked(View view) {
 		// if there is no created budget, notify user that
 		// they need to create budget before they add an entry
-		List<Budget> budgets = Budget.getBudgets();
+		List<Budget> budgets = BudgetRepository.getInstance().getBudgets();
 		if (budgets.isEmpty()) {
 			Toast.makeText(MainActivity.this,
 					R.string.dialog_add_budget_first,
@@ -0,0 +1,759 @@
+package com.example.budgetmanager;
+
+import com.example.budgetmanager.PendingChange.Kind;
+import com.example.budgetmanager.api.ApiCallback;
+import com.example.budgetmanager.api.BackoffRetryPolicy;
+import com.example.budgetmanager.api.MainThreadTimer;
+import com.example.budgetmanager.api.RetryPolicy;
+import com.example.budgetmanager.api.Timer;
+import com.example.budgetmanager.api.TransientFailureCallback;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+/**
+ * Records the changes the user makes to budgets and entries, applies them
+ * to the budgets straight away, and sends them to the server in the order
+ * they were made, whenever the device is online.
+ *
+ * Changes wait in a file, so they survive the application being stopped.
+ * Changes still waiting are combined where they can be: a creation followed
+ * by updates is sent as one creation, several updates as the last one, and
+ * updates followed by a removal as just the removal. Something created and
+ * removed before it was sent is never sent at all.
+ *
+ * Budgets and entries created here get negative temporary IDs, which are
+ * replaced by the IDs the server gives them once they are created there,
+ * both in the budgets and in the changes still waiting.
+ *
+ * Entries created or removed one after another don't depend on each
+ * other, so a run of them is handed to the sender at once, letting it send
+ * them together.
+ *
+ * A change that fails in a way that may pass, such as when the server
+ * can't be reached or has an error of its own, is sent again: once the
+ * network comes back if it was lost, or else after a wait that grows with
+ * each failure. A change that keeps failing while online is given up on
+ * after a few tries, as if the server had rejected it, so that it doesn't
+ * hold up the changes behind it for good.
+ *
+ * Each change remembers how to undo it. A change the server rejects is
+ * dropped and undone, so the budget or entry is shown as it was before,
+ * and the {@link RejectionListener} is told, so the user can be. The
+ * budgets are also marked as needing a full sync, which sets right what
+ * can't be undone here: changes read back from the file, and changes to
+ * something changed again since.
+ *
+ * All methods must be called on the main thread.
+ */
+public final class Outbox {
+	// Identifies an outbox file
+	private static final int MAGIC = 0x55424f58;
+
+	// The version of the schema the file is written in
+	private static final int VERSION = 1;
+
+	// The first temporary ID; -1 is left to Budget.NEW_ID and Entry.NEW_ID
+	private static final long FIRST_TEMPORARY_ID = -2;
+
+	// The most entry changes handed to the sender at once
+	private static final int MAX_RUN = 50;
+
+	/** How many times to send a change again while online, by default. */
+	public static final int DEFAULT_MAX_RETRIES = 8;
+
+	/** The limit of the first wait to send a change again, by default. */
+	public static final long DEFAULT_BASE_RETRY_MILLIS = 2000;
+
+	/** The limit of any wait to send a change again, by default. */
+	public static final long DEFAULT_MAX_RETRY_MILLIS = 5 * 60 * 1000;
+
+	private final File file;
+	private final Executor writer;
+	private final Sender sender;
+	private final Timer timer;
+	private final RetryPolicy retryPolicy;
+
+	// The changes waiting to be sent, oldest first
+	private final List<PendingChange> changes;
+	private long nextTemporaryId;
+
+	// The changes being sent, which are never combined with others
+	private final List<PendingChange> inFlight;
+
+	// Whether a change being sent failed in a way that may pass, so nothing
+	// more should be sent until the next flush
+	private boolean stalled;
+
+	// Whether a flush has been scheduled to send a failed change again
+	private boolean retryScheduled;
+
+	private RejectionListener rejectionListener;
+
+	/**
+	 * Told when the server rejects a change, after it has been undone.
+	 */
+	public interface RejectionListener {
+
+		/**
+		 * Called on the main thread when the server rejects a change.
+		 *
+		 * @param errorMessage Why the server rejected it.
+		 */
+		void onChangeRejected(String errorMessage);
+	}
+
+	/**
+	 * Sends changes to the server, such as through the
+	 * {@link com.example.budgetmanager.api.ApiInterface ApiInterface}. Each
+	 * callback is a {@link TransientFailureCallback}, which must be told
+	 * about failures that may pass through
+	 * {@link TransientFailureCallback#onTransientFailure}.
+	 */
+	public interface Sender {
+
+		/**
+		 * Checks whether changes can be sent now.
+		 *
+		 * @return <code>true</code> if the device is online.
+		 */
+		boolean isOnline();
+
+		/**
+		 * Creates <code>b</code> on the server, giving it its ID.
+		 *
+		 * @param b The budget to create.
+		 * @param callback Told the ID of the budget, or why it failed.
+		 */
+		void create(Budget b, ApiCallback<Long> callback);
+
+		/**
+		 * Creates <code>e</code> on the server, giving it its ID and
+		 * creation and update times.
+		 *
+		 * @param e The entry to create.
+		 * @param callback Told the ID of the entry, or why it failed.
+		 */
+		void create(Entry e, ApiCallback<Long> callback);
+
+		/**
+		 * Updates <code>b</code> on the server.
+		 *
+		 * @param b The budget to update.
+		 * @param callback Told whether the update succeeded.
+		 */
+		void update(Budget b, ApiCallback<Object> callback);
+
+		/**
+		 * Updates <code>e</code> on the server, giving it its update time.
+		 *
+		 * @param e The entry to update.
+		 * @param callback Told whether the update succeeded.
+		 */
+		void update(Entry e, ApiCallback<Object> callback);
+
+		/**
+		 * Removes <code>b</code> and its entries from the server.
+		 *
+		 * @param b The budget to remove.
+		 * @param callback Told whether the removal succeeded.
+		 */
+		void remove(Budget b, ApiCallback<Object> callback);
+
+		/**
+		 * Removes <code>e</code> from the server.
+		 *
+		 * @param e The entry to remove.
+		 * @param callback Told whether the removal succeeded.
+		 */
+		void remove(Entry e, ApiCallback<Object> callback);
+	}
+
+	/**
+	 * Creates an outbox kept in <code>file</code>, which sends failed
+	 * changes again on the main thread with the default retries and waits.
+	 * Call {@link #load()} to read the changes left in it.
+	 *
+	 * @param file The file to keep waiting changes in.
+	 * @param writer Writes the file, one task at a time, in order.
+	 * @param sender Sends the changes to the server.
+	 */
+	public Outbox(File file, Executor writer, Sender sender) {
+		this(file, writer, sender, new MainThreadTimer(),
+				new BackoffRetryPolicy(DEFAULT_MAX_RETRIES,
+						DEFAULT_BASE_RETRY_MILLIS, DEFAULT_MAX_RETRY_MILLIS,
+						new Random()));
+	}
+
+	/**
+	 * Creates an outbox kept in <code>file</code>. Call {@link #load()} to
+	 * read the changes left in it.
+	 *
+	 * @param file The file to keep waiting changes in.
+	 * @param writer Writes the file, one task at a time, in order.
+	 * @param sender Sends the changes to the server.
+	 * @param timer Sends failed changes again after their wait.
+	 * @param retryPolicy Decides how long to wait to send a change again
+	 *        while online, and when to give up on it.
+	 */
+	public Outbox(File file, Executor writer, Sender sender, Timer timer,
+			RetryPolicy retryPolicy) {
+		this.file = file;
+		this.writer = writer;
+		this.sender = sender;
+		this.timer = timer;
+		this.retryPolicy = retryPolicy;
+		this.changes = new ArrayList<PendingChange>();
+		this.inFlight = new ArrayList<PendingChange>();
+		this.nextTemporaryId = FIRST_TEMPORARY_ID;
+	}
+
+	/**
+	 * Reads the changes left waiting in the file, such as when the
+	 * application starts. A file that can't be read is ignored.
+	 */
+	public void load() {
+		changes.clear();
+		nextTemporaryId = FIRST_TEMPORARY_ID;
+		if (!file.exists()) {
+			return;
+		}
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(file)));
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException("Not an outbox");
+			}
+			long next = in.readLong();
+			int count = in.readInt();
+			List<PendingChange> read = new ArrayList<PendingChange>(count);
+			for (int i = 0; i < count; ++i) {
+				read.add(PendingChange.readFrom(in));
+			}
+			changes.addAll(read);
+			nextTemporaryId = next;
+		} catch (IOException e) {
+			// Nothing can be done with a damaged file.
+			file.delete();
+		} finally {
+			AtomicFiles.close(in);
+		}
+	}
+
+	/**
+	 * Returns how many changes are waiting to be sent.
+	 *
+	 * @return The number of changes waiting.
+	 */
+	public int getPendingCount() {
+		return changes.size();
+	}
+
+	/**
+	 * Sets who is told when the server rejects a change.
+	 *
+	 * @param listener Told of rejected changes, or <code>null</code>.
+	 */
+	public void setRejectionListener(RejectionListener listener) {
+		this.rejectionListener = listener;
+	}
+
+	/**
+	 * Adds <code>budget</code> to the repository with a temporary ID, and
+	 * records it to be created on the server.
+	 *
+	 * @param budget The budget to create.
+	 */
+	public void create(final Budget budget) {
+		budget.setId(nextTemporaryId--);
+		BudgetRepository.getInstance().add(budget);
+		PendingChange change = PendingChange.of(Kind.CREATE, budget);
+		change.undo = new Runnable() {
+			@Override
+			public void run() {
+				BudgetRepository.getInstance().remove(budget);
+			}
+		};
+		enqueue(change);
+	}
+
+	/**
+	 * Adds <code>entry</code> to its budget with a temporary ID, and records
+	 * it to be created on the server.
+	 *
+	 * @param entry The entry to create.
+	 */
+	public void create(final Entry entry) {
+		entry.setEntryId(nextTemporaryId--);
+		entry.getBudget().addEntry(entry);
+		PendingChange change = PendingChange.of(Kind.CREATE, entry);
+		change.undo = new Runnable() {
+			@Override
+			public void run() {
+				detach(entry);
+			}
+		};
+		enqueue(change);
+	}
+
+	/**
+	 * Copies the fields of <code>changed</code> into <code>budget</code>,
+	 * and records <code>budget</code> to be updated on the server.
+	 *
+	 * @param budget The budget to update.
+	 * @param changed A budget holding the new fields.
+	 */
+	public void update(final Budget budget, Budget changed) {
+		final Budget before = new Budget(budget.getName(),
+				budget.getBudgetAmount(), budget.isRecurring(),
+				budget.getStartDate(), budget.getDuration());
+		copyFields(budget, changed);
+		PendingChange change = PendingChange.of(Kind.UPDATE, budget);
+		change.undo = new Runnable() {
+			@Override
+			public void run() {
+				copyFields(budget, before);
+			}
+		};
+		enqueue(change);
+	}
+
+	/**
+	 * Copies the fields of <code>changed</code> into <code>entry</code>,
+	 * moving it to the budget of <code>changed</code> if that differs, and
+	 * records <code>entry</code> to be updated on the server.
+	 *
+	 * @param entry The entry to update.
+	 * @param changed An entry holding the new fields.
+	 */
+	public void update(final Entry entry, Entry changed) {
+		final Entry before = new Entry(entry.getAmount(), entry.getBudget(),
+				entry.getNotes(), entry.getDate());
+		copyFields(entry, changed);
+		PendingChange change = PendingChange.of(Kind.UPDATE, entry);
+		change.undo = new Runnable() {
+			@Override
+			public void run() {
+				copyFields(entry, before);
+			}
+		};
+		enqueue(change);
+	}
+
+	/**
+	 * Removes <code>budget</code> from the repository, and records it to be
+	 * removed from the server along with its entries.
+	 *
+	 * @param budget The budget to remove.
+	 */
+	public void remove(final Budget budget) {
+		BudgetRepository.getInstance().remove(budget);
+		PendingChange change = PendingChange.of(Kind.REMOVE, budget);
+		change.undo = new Runnable() {
+			@Override
+			public void run() {
+				BudgetRepository repository = BudgetRepository.getInstance();
+				// A full sync since may have brought it back already.
+				if (repository.getBudgetById(budget.getId()) == null) {
+					repository.add(budget);
+				}
+			}
+		};
+		enqueue(change);
+	}
+
+	/**
+	 * Removes <code>entry</code> from its budget, and records it to be
+	 * removed from the server.
+	 *
+	 * @param entry The entry to remove.
+	 */
+	public void remove(final Entry entry) {
+		final Budget budget = entry.getBudget();
+		budget.removeEntry(entry);
+		PendingChange change = PendingChange.of(Kind.REMOVE, entry);
+		change.undo = new Runnable() {
+			@Override
+			public void run() {
+				if (!budget.getEntries().contains(entry)) {
+					budget.addEntry(entry);
+				}
+			}
+		};
+		enqueue(change);
+	}
+
+	/**
+	 * Sends the waiting changes, if the device is online and they aren't
+	 * being sent already, such as when the network comes back.
+	 */
+	public void flush() {
+		if (!inFlight.isEmpty() || changes.isEmpty() || !sender.isOnline()) {
+			return;
+		}
+		stalled = false;
+		PendingChange first = changes.get(0);
+		int end = 1;
+		if (first.entry && first.kind != Kind.UPDATE) {
+			while (end < changes.size() && end < MAX_RUN
+					&& changes.get(end).entry
+					&& changes.get(end).kind == first.kind) {
+				++end;
+			}
+		}
+		// Replies may come before send returns, so mark the whole run as
+		// being sent first.
+		List<PendingChange> run = new ArrayList<PendingChange>(
+				changes.subList(0, end));
+		inFlight.addAll(run);
+		for (PendingChange change : run) {
+			send(change);
+		}
+	}
+
+	/**
+	 * Drops every waiting change, such as when the user logs out.
+	 */
+	public void clear() {
+		changes.clear();
+		inFlight.clear();
+		nextTemporaryId = FIRST_TEMPORARY_ID;
+		stalled = false;
+		save();
+	}
+
+	private void send(PendingChange change) {
+		if (change.kind == Kind.CREATE) {
+			sendCreate(change);
+		} else if (change.kind == Kind.UPDATE) {
+			sendUpdate(change);
+		} else if (change.entry) {
+			sender.remove(change.toEntry(), new Reply<Object>(change));
+		} else {
+			sender.remove(change.toBudget(), new Reply<Object>(change));
+		}
+	}
+
+	private void sendCreate(final PendingChange change) {
+		if (change.entry) {
+			final Entry sent = change.toEntry();
+			sender.create(sent, new Reply<Long>(change) {
+				@Override
+				void sent(Long id) {
+					Entry created = BudgetRepository.getInstance()
+							.findEntryById(change.id);
+					if (created != null) {
+						created.setEntryId(id);
+						created.setCreatedAt(sent.getCreatedAt());
+						created.setUpdatedAt(sent.getUpdatedAt());
+					}
+					replaceId(true, change.id, id);
+				}
+			});
+		} else {
+			sender.create(change.toBudget(), new Reply<Long>(change) {
+				@Override
+				void sent(Long id) {
+					Budget created = BudgetRepository.getInstance()
+							.getBudgetById(change.id);
+					if (created != null) {
+						created.setId(id);
+					}
+					replaceId(false, change.id, id);
+				}
+			});
+		}
+	}
+
+	private void sendUpdate(final PendingChange change) {
+		if (change.entry) {
+			final Entry sent = change.toEntry();
+			sender.update(sent, new Reply<Object>(change) {
+				@Override
+				void sent(Object result) {
+					Entry updated = BudgetRepository.getInstance()
+							.findEntryById(change.id);
+					if (updated != null) {
+						updated.setUpdatedAt(sent.getUpdatedAt());
+					}
+				}
+			});
+		} else {
+			sender.update(change.toBudget(), new Reply<Object>(change));
+		}
+	}
+
+	/*
+	 * Adds change to the end of the changes waiting, combining it with the
+	 * changes to the same budget or entry that aren't being sent.
+	 */
+	private void enqueue(PendingChange change) {
+		if (change.kind == Kind.UPDATE) {
+			for (int i = changes.size() - 1; i >= 0; --i) {
+				PendingChange waiting = changes.get(i);
+				if (!waiting.sameTarget(change)) {
+					continue;
+				}
+				if (waiting.kind == Kind.REMOVE || inFlight.contains(waiting)) {
+					break;
+				}
+				PendingChange combined = waiting.kind == Kind.CREATE
+						? change.as(Kind.CREATE) : change;
+				// Undoing both goes back to before the first.
+				combined.undo = waiting.undo;
+				combined.failures = waiting.failures;
+				if (change.entry) {
+					// The entry may have moved to a budget created since, so
+					// send it after that.
+					changes.remove(i);
+					changes.add(combined);
+				} else {
+					// Entries created since may be in this budget, so it
+					// must still be sent before them.
+					changes.set(i, combined);
+				}
+				save();
+				flush();
+				return;
+			}
+		} else if (change.kind == Kind.REMOVE) {
+			boolean neverSent = false;
+			PendingChange firstDropped = null;
+			for (int i = changes.size() - 1; i >= 0; --i) {
+				PendingChange waiting = changes.get(i);
+				if (inFlight.contains(waiting)) {
+					continue;
+				}
+				if (waiting.sameTarget(change)) {
+					neverSent |= waiting.kind == Kind.CREATE;
+					firstDropped = waiting;
+					changes.remove(i);
+				} else if (!change.entry && waiting.entry
+						&& waiting.budgetId == change.id) {
+					// The server removes the entries of a budget with it.
+					changes.remove(i);
+				}
+			}
+			if (neverSent) {
+				save();
+				return;
+			}
+			if (firstDropped != null) {
+				// Undoing the removal must also undo the updates it replaced.
+				change.undo = firstDropped.undo == null
+						? null : both(change.undo, firstDropped.undo);
+			}
+		}
+		changes.add(change);
+		save();
+		flush();
+	}
+
+	/*
+	 * Undoes change, unless it can't be undone or something it changed has
+	 * been changed again since, which is left to the next full sync.
+	 */
+	private void rollBack(PendingChange change) {
+		if (change.undo == null) {
+			return;
+		}
+		for (PendingChange waiting : changes) {
+			if (waiting != change && waiting.sameTarget(change)) {
+				return;
+			}
+		}
+		change.undo.run();
+	}
+
+	/* Sends the changes again after delayMillis, unless already scheduled. */
+	private void scheduleRetry(long delayMillis) {
+		if (retryScheduled) {
+			return;
+		}
+		retryScheduled = true;
+		timer.schedule(new Runnable() {
+			@Override
+			public void run() {
+				retryScheduled = false;
+				flush();
+			}
+		}, delayMillis);
+	}
+
+	/*
+	 * Undoes change, which the server won't take, marks the budgets as
+	 * needing a full sync to set right whatever that misses, and tells the
+	 * listener.
+	 */
+	private void reject(PendingChange change, String errorMessage) {
+		rollBack(change);
+		BudgetRepository.getInstance().forgetSyncedThrough();
+		if (rejectionListener != null) {
+			rejectionListener.onChangeRejected(errorMessage);
+		}
+	}
+
+	/* Replaces a temporary ID with the one the server gave. */
+	private void replaceId(boolean entry, long temporaryId, long id) {
+		for (PendingChange waiting : changes) {
+			if (waiting.entry == entry && waiting.id == temporaryId) {
+				waiting.id = id;
+			}
+			if (!entry && waiting.entry && waiting.budgetId == temporaryId) {
+				waiting.budgetId = id;
+			}
+		}
+	}
+
+	/* Copies the fields of changed into budget. */
+	private static void copyFields(Budget budget, Budget changed) {
+		budget.setName(changed.getName());
+		budget.setBudgetAmount(changed.getBudgetAmount());
+		budget.setRecurring(changed.isRecurring());
+		budget.setDuration(changed.getDuration());
+		budget.setStartDate(changed.getStartDate());
+	}
+
+	/*
+	 * Copies the fields of changed into entry, moving entry to the budget of
+	 * changed if that differs.
+	 */
+	private static void copyFields(Entry entry, Entry changed) {
+		Budget budget = changed.getBudget();
+		if (entry.getBudget() != budget) {
+			detach(entry);
+			entry.setBudget(budget);
+			budget.addEntry(entry);
+		}
+		entry.setAmount(changed.getAmount());
+		entry.setNotes(changed.getNotes());
+		entry.setDate(changed.getDate());
+	}
+
+	/* Removes entry from its budget, if it is still there. */
+	private static void detach(Entry entry) {
+		Budget budget = entry.getBudget();
+		if (budget.getEntries().contains(entry)) {
+			budget.removeEntry(entry);
+		}
+	}
+
+	/* Runs first, then second. */
+	private static Runnable both(final Runnable first, final Runnable second) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				first.run();
+				second.run();
+			}
+		};
+	}
+
+	/* Writes the waiting changes to the file, in the background. */
+	private void save() {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(nextTemporaryId);
+			out.writeInt(changes.size());
+			for (PendingChange change : changes) {
+				change.writeTo(out);
+			}
+			out.flush();
+		} catch (IOException e) {
+			// Writing to memory doesn't fail.
+			throw new IllegalStateException(e);
+		}
+		final byte[] encoded = bytes.toByteArray();
+		writer.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					AtomicFiles.replace(file, encoded);
+				} catch (IOException e) {
+					// The old file is still whole; try again next change.
+				}
+			}
+		});
+	}
+
+	/*
+	 * Finishes sending change, dropping it from the changes waiting unless
+	 * it is to be sent again, then sends the next changes once every change
+	 * being sent has finished. Ignored if the changes were cleared while it
+	 * was being sent.
+	 */
+	private void finished(PendingChange change, boolean drop) {
+		if (!inFlight.remove(change)) {
+			return;
+		}
+		if (drop) {
+			changes.remove(change);
+			save();
+		} else {
+			stalled = true;
+		}
+		if (inFlight.isEmpty() && !stalled) {
+			flush();
+		}
+	}
+
+	/* Handles the reply to sending a change. */
+	private class Reply<T> implements TransientFailureCallback<T> {
+		private final PendingChange change;
+
+		Reply(PendingChange change) {
+			this.change = change;
+		}
+
+		/* Applies what the server sent back. */
+		void sent(T result) {
+		}
+
+		@Override
+		public void onSuccess(T result) {
+			if (inFlight.contains(change)) {
+				sent(result);
+			}
+			finished(change, true);
+		}
+
+		@Override
+		public void onFailure(String errorMessage) {
+			if (inFlight.contains(change)) {
+				reject(change, errorMessage);
+			}
+			finished(change, true);
+		}
+
+		@Override
+		public void onTransientFailure(String errorMessage, Throwable cause) {
+			if (inFlight.contains(change) && sender.isOnline()) {
+				// Nothing else will send it again while online, so try again
+				// after a wait, unless it has failed too often already.
+				long delay = retryPolicy.getRetryDelay(++change.failures,
+						cause);
+				if (delay < 0) {
+					reject(change, errorMessage);
+					finished(change, true);
+					return;
+				}
+				scheduleRetry(delay);
+			}
+			// Otherwise try again when the network comes back.
+			finished(change, false);
+		}
+	}
+}
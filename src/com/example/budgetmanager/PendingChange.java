@@ -0,0 +1,211 @@
+package com.example.budgetmanager;
+
+import com.example.budgetmanager.Budget.Duration;
+
+import org.joda.time.LocalDate;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * A change to a budget or entry made on the device and waiting in the
+ * {@link Outbox} to be sent to the server. It holds the fields the changed
+ * budget or entry had when the change was made, so it can be sent as it
+ * was even if the budget or entry changes again.
+ */
+final class PendingChange {
+
+	/**
+	 * What kind of change was made.
+	 */
+	enum Kind {
+		CREATE, UPDATE, REMOVE
+	}
+
+	final Kind kind;
+
+	// Whether the change is to an entry, rather than to a budget
+	final boolean entry;
+
+	// The ID of the budget or entry changed, which is negative until the
+	// server gives it one. Changed when the server gives it one.
+	long id;
+
+	// For entries, the ID of the budget they belong to
+	long budgetId;
+
+	// Fields of budgets
+	final String name;
+	final boolean recur;
+	final LocalDate startDate;
+	final Duration duration;
+
+	// Fields of entries
+	final String notes;
+	final LocalDate date;
+
+	// The amount of the budget or entry, in cents
+	final int amount;
+
+	// Undoes the change on the device if the server rejects it, or null if
+	// it can't be, such as for a change read back from the file. Not kept in
+	// the file.
+	Runnable undo;
+
+	// How many times sending the change has failed while online, in a way
+	// that may pass. Not kept in the file.
+	int failures;
+
+	private PendingChange(Kind kind, boolean entry, long id, long budgetId,
+			String name, boolean recur, LocalDate startDate, Duration duration,
+			String notes, LocalDate date, int amount) {
+		this.kind = kind;
+		this.entry = entry;
+		this.id = id;
+		this.budgetId = budgetId;
+		this.name = name;
+		this.recur = recur;
+		this.startDate = startDate;
+		this.duration = duration;
+		this.notes = notes;
+		this.date = date;
+		this.amount = amount;
+	}
+
+	/**
+	 * Records a change to <code>budget</code>, as it is now.
+	 *
+	 * @param kind What kind of change was made.
+	 * @param budget The budget that was changed.
+	 * @return The change.
+	 */
+	static PendingChange of(Kind kind, Budget budget) {
+		return new PendingChange(kind, false, budget.getId(), 0,
+				budget.getName(), budget.isRecurring(), budget.getStartDate(),
+				budget.getDuration(), null, null, budget.getBudgetAmount());
+	}
+
+	/**
+	 * Records a change to <code>entry</code>, as it is now.
+	 *
+	 * @param kind What kind of change was made.
+	 * @param entry The entry that was changed.
+	 * @return The change.
+	 */
+	static PendingChange of(Kind kind, Entry entry) {
+		return new PendingChange(kind, true, entry.getEntryId(),
+				entry.getBudget().getId(), null, false, null, null,
+				entry.getNotes() == null ? "" : entry.getNotes(),
+				entry.getDate(), entry.getAmount());
+	}
+
+	/**
+	 * Returns this change as a different kind of change, such as an update
+	 * folded into the creation before it.
+	 *
+	 * @param newKind The kind of change to make it.
+	 * @return A change with the same fields, undo and failures, of kind
+	 *         <code>newKind</code>.
+	 */
+	PendingChange as(Kind newKind) {
+		PendingChange change = new PendingChange(newKind, entry, id, budgetId,
+				name, recur, startDate, duration, notes, date, amount);
+		change.undo = undo;
+		change.failures = failures;
+		return change;
+	}
+
+	/**
+	 * Checks whether this change and <code>other</code> change the same
+	 * budget or entry.
+	 *
+	 * @param other The other change.
+	 * @return <code>true</code> if both change the same budget or entry.
+	 */
+	boolean sameTarget(PendingChange other) {
+		return entry == other.entry && id == other.id;
+	}
+
+	/**
+	 * Builds a budget with the fields of this change, to send to the server.
+	 *
+	 * @return A budget that isn't in the repository.
+	 */
+	Budget toBudget() {
+		Budget budget = new Budget(name, amount, recur, startDate, duration);
+		budget.setId(id);
+		return budget;
+	}
+
+	/**
+	 * Builds an entry with the fields of this change, to send to the
+	 * server. Only the ID of the budget is sent, so the entry belongs to a
+	 * stand-in budget with just that ID.
+	 *
+	 * @return An entry that isn't in any budget.
+	 */
+	Entry toEntry() {
+		Budget budget = new Budget("", 0, false, date, Duration.WEEK);
+		budget.setId(budgetId);
+		return new Entry(id, amount, budget, notes, date);
+	}
+
+	/**
+	 * Writes this change to <code>out</code>.
+	 *
+	 * @param out The stream to write to.
+	 * @throws IOException if the stream can't be written
+	 */
+	void writeTo(DataOutputStream out) throws IOException {
+		out.writeByte(kind.ordinal());
+		out.writeBoolean(entry);
+		out.writeLong(id);
+		out.writeInt(amount);
+		if (entry) {
+			out.writeLong(budgetId);
+			out.writeUTF(notes);
+			out.writeInt(SpendingSeries.toDay(date));
+		} else {
+			out.writeUTF(name);
+			out.writeBoolean(recur);
+			out.writeInt(SpendingSeries.toDay(startDate));
+			out.writeUTF(duration.name());
+		}
+	}
+
+	/**
+	 * Reads a change written by {@link #writeTo(DataOutputStream)}.
+	 *
+	 * @param in The stream to read from.
+	 * @return The change read.
+	 * @throws IOException if the stream can't be read or holds no change
+	 */
+	static PendingChange readFrom(DataInputStream in) throws IOException {
+		int kind = in.readByte();
+		if (kind < 0 || kind >= Kind.values().length) {
+			throw new IOException("Unknown kind of change " + kind);
+		}
+		boolean entry = in.readBoolean();
+		long id = in.readLong();
+		int amount = in.readInt();
+		if (entry) {
+			long budgetId = in.readLong();
+			String notes = in.readUTF();
+			LocalDate date = CycleCalculator.fromEpochDay(in.readInt());
+			return new PendingChange(Kind.values()[kind], true, id, budgetId,
+					null, false, null, null, notes, date, amount);
+		}
+		String name = in.readUTF();
+		boolean recur = in.readBoolean();
+		LocalDate startDate = CycleCalculator.fromEpochDay(in.readInt());
+		Duration duration;
+		try {
+			duration = Duration.valueOf(in.readUTF());
+		} catch (IllegalArgumentException e) {
+			throw new IOException("Unknown duration");
+		}
+		return new PendingChange(Kind.values()[kind], false, id, 0, name,
+				recur, startDate, duration, null, null, amount);
+	}
+}
@@ -0,0 +1,208 @@
+package com.example.budgetmanager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A list kept sorted by a comparator as items are added, removed and
+ * changed, for the adapters to apply changes to without re-sorting.
+ *
+ * Items are placed by binary search, after any items they compare equal
+ * to, and are told apart by identity. Until an order is set, items are
+ * kept in the order they were added.
+ *
+ * @param <T> The type of the items.
+ */
+final class SortedItems<T> {
+	// Adding more than this share of the list at once sorts it again rather
+	// than inserting each item
+	private static final int BULK_DIVISOR = 8;
+
+	private final List<T> items;
+	private Comparator<? super T> order;
+
+	/**
+	 * Creates an empty list, in the order items are added.
+	 */
+	SortedItems() {
+		items = new ArrayList<T>();
+	}
+
+	/**
+	 * Returns the items, in order. Changes to the list must keep it sorted.
+	 *
+	 * @return The list of items itself.
+	 */
+	List<T> asList() {
+		return items;
+	}
+
+	/**
+	 * Sorts the items by <code>order</code>, and keeps them sorted by it
+	 * from now on.
+	 *
+	 * @param order The order to keep the items in.
+	 */
+	void setOrder(Comparator<? super T> order) {
+		this.order = order;
+		sort();
+	}
+
+	/**
+	 * Adds <code>item</code> at its place in the order.
+	 *
+	 * @param item The item to add.
+	 * @return The index <code>item</code> was added at.
+	 */
+	int insert(T item) {
+		int index = upperBound(item);
+		items.add(index, item);
+		return index;
+	}
+
+	/**
+	 * Adds every item of <code>added</code> at its place in the order.
+	 *
+	 * @param added The items to add.
+	 */
+	void insertAll(Collection<? extends T> added) {
+		if (added.size() > items.size() / BULK_DIVISOR) {
+			// Collections.sort is stable, so the new items still go after
+			// the items they compare equal to.
+			items.addAll(added);
+			sort();
+		} else {
+			for (T item : added) {
+				insert(item);
+			}
+		}
+	}
+
+	/**
+	 * Returns whether <code>item</code> is in the list.
+	 *
+	 * @param item The item to look for.
+	 * @return <code>true</code> if <code>item</code> is in the list.
+	 */
+	boolean contains(T item) {
+		return indexOf(item) >= 0;
+	}
+
+	/**
+	 * Removes <code>item</code>, which must not have changed its place in
+	 * the order since it was added.
+	 *
+	 * @param item The item to remove.
+	 * @return <code>true</code> if <code>item</code> was in the list.
+	 */
+	boolean remove(T item) {
+		int index = indexOf(item);
+		if (index < 0) {
+			return false;
+		}
+		items.remove(index);
+		return true;
+	}
+
+	/**
+	 * Moves <code>item</code> to its place in the order after it changed.
+	 *
+	 * @param item The item that changed.
+	 * @return <code>true</code> if <code>item</code> was in the list.
+	 */
+	boolean reposition(T item) {
+		// The item may have moved in the order, so look for it everywhere.
+		int index = identityIndexOf(item, 0, items.size());
+		if (index < 0) {
+			return false;
+		}
+		items.remove(index);
+		insert(item);
+		return true;
+	}
+
+	/**
+	 * Sorts the items again if they are no longer in order, such as after
+	 * a change that affects the order of many items at once.
+	 *
+	 * @return <code>true</code> if the items had to be sorted.
+	 */
+	boolean sortIfNeeded() {
+		if (order == null) {
+			return false;
+		}
+		for (int i = 1; i < items.size(); ++i) {
+			if (order.compare(items.get(i - 1), items.get(i)) > 0) {
+				sort();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/* Finds item, looking among the items that compare equal to it first. */
+	private int indexOf(T item) {
+		if (order == null) {
+			return identityIndexOf(item, 0, items.size());
+		}
+		int low = lowerBound(item);
+		int high = upperBound(item);
+		int index = identityIndexOf(item, low, high);
+		if (index < 0) {
+			// The item changed without being repositioned.
+			index = identityIndexOf(item, 0, items.size());
+		}
+		return index;
+	}
+
+	private int identityIndexOf(T item, int from, int to) {
+		for (int i = from; i < to; ++i) {
+			if (items.get(i) == item) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void sort() {
+		if (order != null) {
+			Collections.sort(items, order);
+		}
+	}
+
+	/* Index of the first item that doesn't come before item. */
+	private int lowerBound(T item) {
+		int low = 0;
+		int high = items.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (order.compare(items.get(mid), item) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/* Index of the first item that comes after item. */
+	private int upperBound(T item) {
+		if (order == null) {
+			return items.size();
+		}
+		int low = 0;
+		int high = items.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (order.compare(items.get(mid), item) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
@@ -0,0 +1,72 @@
+package com.example.budgetmanager;
+
+import org.joda.time.LocalDate;
+
+/**
+ * The running total of the amounts spent over a range of entries, in date
+ * order, as primitive values for drawing graphs without going through
+ * {@link Entry} objects.
+ */
+public final class SpendingSeries {
+	private final int[] days;
+	private final long[] totals;
+
+	/**
+	 * Creates a series from its points.
+	 *
+	 * @param days The date of each point, in days since 1970-01-01.
+	 * @param totals The running total at each point, in cents.
+	 */
+	SpendingSeries(int[] days, long[] totals) {
+		this.days = days;
+		this.totals = totals;
+	}
+
+	/**
+	 * Returns the number of points in this series.
+	 *
+	 * @return The number of points.
+	 */
+	public int size() {
+		return days.length;
+	}
+
+	/**
+	 * Returns the date of a point, in days since 1970-01-01.
+	 *
+	 * @param i The index of the point.
+	 * @return The date of point <code>i</code>, in days since 1970-01-01.
+	 */
+	public int getDay(int i) {
+		return days[i];
+	}
+
+	/**
+	 * Returns the total spent up to and including a point.
+	 *
+	 * @param i The index of the point.
+	 * @return The running total at point <code>i</code>, in cents.
+	 */
+	public long getTotal(int i) {
+		return totals[i];
+	}
+
+	/**
+	 * Returns the total spent over the whole series.
+	 *
+	 * @return The last running total, or 0 if the series is empty.
+	 */
+	public long getFinalTotal() {
+		return totals.length == 0 ? 0 : totals[totals.length - 1];
+	}
+
+	/**
+	 * Converts a date to days since 1970-01-01, as used by {@link #getDay}.
+	 *
+	 * @param date The date to convert.
+	 * @return The number of days from 1970-01-01 to <code>date</code>.
+	 */
+	public static int toDay(LocalDate date) {
+		return (int) CycleCalculator.epochDay(date);
+	}
+}
@@ -19,9 +19,6 @@ import android.widget.AdapterView.OnItemClickListener;
 import android.widget.ListView;
 import android.widget.RelativeLayout;
 
-import com.example.budgetmanager.api.ApiCallback;
-import com.example.budgetmanager.api.ApiInterface;
-
 /**
  * Fragment which displays list of budgets screen to the user, offering
  * brief information about budgets and add entry and add budget as well
@@ -48,17 +45,14 @@ public class SummaryTab extends Fragment {
 	@Override
 	public void onResume() {
 		super.onResume();
-		refreshList();
+		// The adapter follows changes to the budgets itself, so just redraw.
+		adapter.refresh();
 	}
 
-	/* Helper method to refresh the list of ListView of Budgets. */
-	private void refreshList() {
-		adapter.clear();
-		Log.d(TAG, String.format("Budget size: %d",
-				Budget.getBudgets().size()));
-		adapter.addAll(Budget.getBudgets());
-		adapter.sort(new BudgetSummaryAdapter.BudgetActiveComparator());
-		adapter.notifyDataSetChanged();
+	@Override
+	public void onDestroyView() {
+		BudgetRepository.getInstance().removeListener(adapter);
+		super.onDestroyView();
 	}
 
 	@Override
@@ -68,9 +62,12 @@ public class SummaryTab extends Fragment {
 				(RelativeLayout) inflater.inflate(R.layout.fragment_summary,
 						container, false);
 
-		// set adapter
+		// set adapter, and keep it up to date with changes to the budgets
 		adapter = new BudgetSummaryAdapter(getActivity(),
-				R.layout.list_budget_layout, Budget.getBudgets());
+				R.layout.list_budget_layout, BudgetRepository.getInstance().getBudgets());
+		BudgetRepository.getInstance().addListener(adapter,
+				Utilities.uiThreadExecutor(getActivity()));
+		Log.d(TAG, String.format("Budget size: %d", adapter.getCount()));
 
 		// set up Summary screen
 		listView = (ListView) layout.findViewById(R.id.budget_list);
@@ -168,26 +165,11 @@ public class SummaryTab extends Fragment {
 				public void onClick(DialogInterface dialog, int id) {
 					Log.d(TAG, "Delete called.");
 
-					ApiInterface.getInstance().remove(selectedBudget,
-							new ApiCallback<Object>() {
-						@Override
-						public void onSuccess(Object result) {
-							Log.d(TAG, "Delete Budget onSuccess entered.");
-
-							// remove selected Budget from the list of Budgets
-							Budget.removeBudget(selectedBudget);
-							selectedBudget = null;
-
-							// refresh the view upon change
-							refreshList();
-						}
-
-						@Override
-						public void onFailure(String errorMessage) {
-							// if the request fails, do nothing
-							Log.d(TAG, "Delete entry onFailure entered.");
-						}
-					});
+					// remove selected Budget from the list of Budgets,
+					// which removes it from the view as well; it is
+					// removed from the API when it can be
+					UBudgetApp.getOutbox().remove(selectedBudget);
+					selectedBudget = null;
 				}
 			});
 
@@ -0,0 +1,81 @@
+package com.example.budgetmanager;
+
+import org.joda.time.LocalDateTime;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The changes made to the user's budgets and entries on the server since
+ * the last sync, to be applied with
+ * {@link BudgetRepository#applyChanges(SyncDelta)}.
+ *
+ * Each changed budget is given with all of its fields, but only with those
+ * of its entries that changed. Budgets and entries deleted on the server are
+ * given by their IDs, as tombstones.
+ */
+public final class SyncDelta {
+	private final List<Budget> budgets;
+	private final long[] deletedBudgetIds;
+	private final long[] deletedEntryIds;
+	private final LocalDateTime syncedThrough;
+
+	/**
+	 * Creates a set of changes.
+	 *
+	 * @param budgets The budgets that were added or changed, or that have
+	 *        entries that were added or changed.
+	 * @param deletedBudgetIds The IDs of the budgets that were deleted.
+	 * @param deletedEntryIds The IDs of the entries that were deleted.
+	 * @param syncedThrough The latest time any of the changes was made on
+	 *        the server, or <code>null</code> if there are no changes.
+	 */
+	public SyncDelta(List<Budget> budgets, long[] deletedBudgetIds,
+			long[] deletedEntryIds, LocalDateTime syncedThrough) {
+		this.budgets = Collections.unmodifiableList(
+				new ArrayList<Budget>(budgets));
+		this.deletedBudgetIds = deletedBudgetIds.clone();
+		this.deletedEntryIds = deletedEntryIds.clone();
+		this.syncedThrough = syncedThrough;
+	}
+
+	/**
+	 * Gets the budgets that were added or changed, each holding only its
+	 * entries that were added or changed.
+	 *
+	 * @return An unmodifiable list of the changed budgets.
+	 */
+	public List<Budget> getBudgets() {
+		return budgets;
+	}
+
+	/**
+	 * Gets the IDs of the budgets that were deleted.
+	 *
+	 * @return A copy of the IDs of the deleted budgets.
+	 */
+	public long[] getDeletedBudgetIds() {
+		return deletedBudgetIds.clone();
+	}
+
+	/**
+	 * Gets the IDs of the entries that were deleted.
+	 *
+	 * @return A copy of the IDs of the deleted entries.
+	 */
+	public long[] getDeletedEntryIds() {
+		return deletedEntryIds.clone();
+	}
+
+	/**
+	 * Gets the latest time any of these changes was made on the server,
+	 * which the next sync asks for changes since.
+	 *
+	 * @return The time of the latest change, or <code>null</code> if there
+	 *         are no changes.
+	 */
+	public LocalDateTime getSyncedThrough() {
+		return syncedThrough;
+	}
+}
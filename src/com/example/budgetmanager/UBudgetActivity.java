@@ -42,6 +42,10 @@ public class UBudgetActivity extends Activity {
 		case R.id.menu_signout:
 			// sign the user out
 			ApiInterface.getInstance().logOut();
+			// Forget the user's budgets, here and on the device
+			BudgetRepository.getInstance().clear();
+			UBudgetApp.getBudgetCache().delete();
+			UBudgetApp.getOutbox().clear();
 			Intent logOut = new Intent(UBudgetActivity.this, LoginActivity.class);
 			// Clear the back stack so when you press the back button you will exit the app
 			logOut.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
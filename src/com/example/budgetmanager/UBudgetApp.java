@@ -1,7 +1,17 @@
 package com.example.budgetmanager;
 
 import android.app.Application;
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.widget.Toast;
+
+import com.example.budgetmanager.api.ApiInterface;
+
+import java.io.File;
+import java.util.concurrent.Executors;
 
 /**
  * Provides a way to access certain top level application state.
@@ -10,11 +20,39 @@ import android.content.Context;
  */
 public class UBudgetApp extends Application {
 	private static Context context;
+	private static BudgetCache budgetCache;
+	private static Outbox outbox;
 
 	@Override
 	public void onCreate() {
 		super.onCreate();
 		UBudgetApp.context = getApplicationContext();
+		UBudgetApp.budgetCache = new BudgetCache(
+				new File(getFilesDir(), "budgets.cache"),
+				Executors.newSingleThreadExecutor());
+		UBudgetApp.outbox = new Outbox(
+				new File(getFilesDir(), "changes.outbox"),
+				Executors.newSingleThreadExecutor(), new ApiSender());
+		outbox.load();
+		outbox.setRejectionListener(new Outbox.RejectionListener() {
+			@Override
+			public void onChangeRejected(String errorMessage) {
+				Toast.makeText(UBudgetApp.context,
+						getString(R.string.change_rejected, errorMessage),
+						Toast.LENGTH_LONG).show();
+			}
+		});
+
+		// Keep track of the network, and once it is back, run the requests
+		// waiting for it and send the changes made while offline.
+		registerReceiver(new BroadcastReceiver() {
+			@Override
+			public void onReceive(Context context, Intent intent) {
+				ApiInterface.getInstance().getConnectivityMonitor()
+						.onConnectivityChanged(intent);
+				outbox.flush();
+			}
+		}, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
 	}
 
 	/**
@@ -26,4 +64,24 @@ public class UBudgetApp extends Application {
 	public static Context getAppContext() {
 		return UBudgetApp.context;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Provides the cache of the budgets and entries last synced, which is
+	 * kept on the device between runs of the application.
+	 *
+	 * @return the application's BudgetCache.
+	 */
+	public static BudgetCache getBudgetCache() {
+		return UBudgetApp.budgetCache;
+	}
+
+	/**
+	 * Provides the changes to budgets and entries made on the device, which
+	 * wait there until they are sent to the server.
+	 *
+	 * @return the application's Outbox.
+	 */
+	public static Outbox getOutbox() {
+		return UBudgetApp.outbox;
+	}
+}
@@ -12,6 +12,7 @@ import org.joda.time.LocalDate;
 
 import java.util.Currency;
 import java.util.Locale;
+import java.util.concurrent.Executor;
 
 /**
  * Miscellaneous methods that we use in routine
@@ -77,6 +78,22 @@ public abstract class Utilities {
 		}
 	}
 
+	/**
+	 * Returns an Executor that runs tasks on the UI thread of
+	 * <code>act</code>, straight away if already on it.
+	 *
+	 * @param act The Activity whose UI thread to run tasks on.
+	 * @return Executor for the UI thread of <code>act</code>.
+	 */
+	public static Executor uiThreadExecutor(final Activity act) {
+		return new Executor() {
+			@Override
+			public void execute(Runnable task) {
+				act.runOnUiThread(task);
+			}
+		};
+	}
+
 	/**
 	 * Shortens text with given length with "..." appended at the end
 	 * @param s string to shorten
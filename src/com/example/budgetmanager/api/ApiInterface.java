@@ -2,14 +2,16 @@ package com.example.budgetmanager.api;
 
 import android.content.Context;
 import android.content.res.Resources;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
 import android.util.Log;
 
 import com.example.budgetmanager.Budget;
-import com.example.budgetmanager.Budget.Duration;
+import com.example.budgetmanager.BudgetRepository;
 import com.example.budgetmanager.Entry;
 import com.example.budgetmanager.R;
+import com.example.budgetmanager.SyncDelta;
 import com.example.budgetmanager.UBudgetApp;
 import com.loopj.android.http.AsyncHttpClient;
 import com.loopj.android.http.AsyncHttpResponseHandler;
@@ -17,16 +19,28 @@ import com.loopj.android.http.JsonHttpResponseHandler;
 import com.loopj.android.http.PersistentCookieStore;
 import com.loopj.android.http.RequestParams;
 
-import org.joda.time.LocalDate;
+import org.apache.http.Header;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.impl.client.DefaultHttpClient;
 import org.joda.time.LocalDateTime;
 import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.net.SocketTimeoutException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Singleton class that facilitates connections to the HTTP API.
@@ -40,6 +54,7 @@ public class ApiInterface {
 	// The singleton instance of ApiInterface.
 	private static ApiInterface instance;
 	private static final String TAG = "ApiInterface";
+	private static final String VALIDATORS_PREFERENCES = "http_validators";
 
 	private final String baseUrl;
 	private final String usersUrl;
@@ -47,12 +62,79 @@ public class ApiInterface {
 	private final String budgetsUrl;
 	private final String entriesUrl;
 	private final String budgetsAndEntriesUrl;
+	private final String budgetChangesUrl;
+	private final String entriesBatchUrl;
+	private final String entriesBatchDestroyUrl;
 
 	private final String DATE_FORMAT;
 
 	private final String DATETIME_FORMAT;
 
+	// Reads budgets and entries from responses
+	private final ApiParser parser;
+	// Reads the budgets with their entries in the compact form, if the
+	// server sends it, or as JSON
+	private final CompactWireFormat wireFormat;
+	private final DateTimeFormatter dateTimeFormatter;
+
+	// Responses are decoded on this many background threads at most
+	private static final int DEFAULT_MAX_DECODES = 2;
+	private static final long DECODE_KEEP_ALIVE_SECONDS = 30;
+
+	// How long the largest requests may take, in milliseconds
+	private static final int LONG_TIMEOUT_MILLIS = 30000;
+
+	// Decodes responses off the main thread
+	private final ThreadPoolExecutor decodePool;
+	private final Executor decodeExecutor;
+	// Hands decoded responses to the callbacks on the main thread
+	private final Executor deliveryExecutor;
+
+	// Requests for data being made, which callers asking for the same data
+	// wait for rather than making their own
+	private final InFlightRequests inFlight;
+
+	// The validators of the data last fetched, so that it isn't fetched
+	// again unless it changed
+	private final HttpValidators validators;
+
+	// The bytes sent and received for each endpoint, and the compression
+	// of request bodies
+	private final TransferStats transferStats;
+	private final HttpCompression compression;
+
+	// How long the requests to each endpoint take, and how they end
+	private final ApiMetrics metrics;
+
+	// Where the requests to each endpoint are measured, found once so that
+	// measuring a request doesn't allocate
+	private final ApiMetrics.Endpoint createBudgetMetrics;
+	private final ApiMetrics.Endpoint createEntryMetrics;
+	private final ApiMetrics.Endpoint updateBudgetMetrics;
+	private final ApiMetrics.Endpoint updateEntryMetrics;
+	private final ApiMetrics.Endpoint removeBudgetMetrics;
+	private final ApiMetrics.Endpoint removeEntryMetrics;
+	private final ApiMetrics.Endpoint createEntriesMetrics;
+	private final ApiMetrics.Endpoint removeEntriesMetrics;
+	private final ApiMetrics.Endpoint fetchBudgetsMetrics;
+	private final ApiMetrics.Endpoint fetchEntriesMetrics;
+	private final ApiMetrics.Endpoint fetchAllMetrics;
+	private final ApiMetrics.Endpoint fetchChangesMetrics;
+	private final ApiMetrics.Endpoint logInMetrics;
+	private final ApiMetrics.Endpoint createUserMetrics;
+	private final ApiMetrics.Endpoint checkLoginMetrics;
+
+	// Whether the device is online, as told by the connectivity broadcast,
+	// and the requests waiting for it to be
+	private final ConnectivityMonitor connectivity;
+
+	// Sends failed fetches, updates and deletions again, and stops sending
+	// to a server that keeps failing
+	private final RequestRetrier retrier;
+
 	private final AsyncHttpClient client;
+	// The same client, through which its transport and timeouts are set
+	private final TransportClient transportClient;
 	private final PersistentCookieStore cookieStore;
 
 	/**
@@ -77,19 +159,271 @@ public class ApiInterface {
 		budgetsUrl = baseUrl + r.getString(R.string.budgets);
 		entriesUrl = baseUrl + r.getString(R.string.entries);
 		budgetsAndEntriesUrl = baseUrl + r.getString(R.string.budgets_and_entries);
+		budgetChangesUrl = baseUrl + r.getString(R.string.budget_changes);
+		entriesBatchUrl = baseUrl + r.getString(R.string.entries_batch);
+		entriesBatchDestroyUrl = baseUrl
+				+ r.getString(R.string.entries_batch_destroy);
+
+		metrics = new ApiMetrics();
+		String budgets = r.getString(R.string.budgets);
+		String entries = r.getString(R.string.entries);
+		createBudgetMetrics = metrics.endpoint("POST " + budgets);
+		createEntryMetrics = metrics.endpoint("POST " + entries);
+		updateBudgetMetrics = metrics.endpoint("PUT " + budgets + "/:id");
+		updateEntryMetrics = metrics.endpoint("PUT " + entries + "/:id");
+		removeBudgetMetrics = metrics.endpoint("DELETE " + budgets + "/:id");
+		removeEntryMetrics = metrics.endpoint("DELETE " + entries + "/:id");
+		createEntriesMetrics = metrics.endpoint("POST "
+				+ r.getString(R.string.entries_batch));
+		removeEntriesMetrics = metrics.endpoint("POST "
+				+ r.getString(R.string.entries_batch_destroy));
+		fetchBudgetsMetrics = metrics.endpoint("GET " + budgets);
+		fetchEntriesMetrics = metrics.endpoint("GET " + entries
+				+ "/:id/by_budget");
+		fetchAllMetrics = metrics.endpoint("GET "
+				+ r.getString(R.string.budgets_and_entries));
+		fetchChangesMetrics = metrics.endpoint("GET "
+				+ r.getString(R.string.budget_changes));
+		logInMetrics = metrics.endpoint("POST " + r.getString(R.string.session));
+		createUserMetrics = metrics.endpoint("POST " + r.getString(R.string.users));
+		checkLoginMetrics = metrics.endpoint("GET " + r.getString(R.string.session));
 
 		DATE_FORMAT = r.getString(R.string.api_date_format);
 		DATETIME_FORMAT = r.getString(R.string.api_datetime_format);
+		parser = new ApiParser(DATE_FORMAT, DATETIME_FORMAT);
+		wireFormat = new CompactWireFormat(parser, budgetsAndEntriesUrl);
+		dateTimeFormatter = DateTimeFormat.forPattern(DATETIME_FORMAT);
+
+		decodePool = new ThreadPoolExecutor(DEFAULT_MAX_DECODES,
+				DEFAULT_MAX_DECODES, DECODE_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new DecodeThreadFactory());
+		decodePool.allowCoreThreadTimeOut(true);
+		decodeExecutor = decodePool;
+		final Handler mainHandler = new Handler(Looper.getMainLooper());
+		deliveryExecutor = new Executor() {
+			@Override
+			public void execute(Runnable task) {
+				mainHandler.post(task);
+			}
+		};
+
+		inFlight = new InFlightRequests();
+		connectivity = new ConnectivityMonitor(
+				ConnectivityMonitor.queryOnline(context),
+				new MainThreadTimer());
+		retrier = new RequestRetrier(new BackoffRetryPolicy(),
+				new MainThreadTimer(),
+				RequestRetrier.elapsedRealtimeClock(),
+				CircuitBreaker.DEFAULT_FAILURE_THRESHOLD,
+				CircuitBreaker.DEFAULT_OPEN_MILLIS);
+		validators = new HttpValidators(context.getSharedPreferences(
+				VALIDATORS_PREFERENCES, Context.MODE_PRIVATE));
 
 		cookieStore = new PersistentCookieStore(context);
-		client = new AsyncHttpClient();
-		client.setTimeout(10000);
+		transportClient = new TransportClient();
+		client = transportClient;
 		client.setCookieStore(cookieStore);
+		// Downloading everything, or sending a batch, takes longer than the
+		// other requests.
+		RequestTimeouts timeouts = transportClient.getTimeouts();
+		timeouts.set("GET", budgetsAndEntriesUrl, LONG_TIMEOUT_MILLIS);
+		timeouts.set("POST", entriesBatchUrl, LONG_TIMEOUT_MILLIS);
+		// Syncing everything mustn't hold up what the user is waiting for.
+		RequestScheduler scheduler = transportClient.getScheduler();
+		scheduler.setPriority("GET", budgetsAndEntriesUrl,
+				RequestScheduler.Priority.BACKGROUND);
+		scheduler.setPriority("GET", budgetChangesUrl,
+				RequestScheduler.Priority.BACKGROUND);
+		DefaultHttpClient httpClient = (DefaultHttpClient) client.getHttpClient();
+		httpClient.addResponseInterceptor(HttpValidators.RECORDER);
+		// The client already asks for gzipped responses and inflates them;
+		// this counts the bytes either side, and compresses large requests.
+		transferStats = new TransferStats();
+		compression = new HttpCompression(transferStats);
+		compression.install(httpClient);
+		wireFormat.install(httpClient);
+		HttpMetrics.install(httpClient);
 
 		// Need to specify that we want JSON back from the server.
 		client.addHeader("Accept", "application/json");
 	}
 
+	/**
+	 * Sets how many responses may be decoded at once on background threads.
+	 * Further responses wait for a decode to finish. Defaults to 2.
+	 *
+	 * @param count The number of responses to decode at once.
+	 * @throws IllegalArgumentException if <code>count</code> is less than 1
+	 */
+	public void setMaxConcurrentDecodes(int count) {
+		if (count < 1) {
+			throw new IllegalArgumentException("count must be at least 1");
+		}
+		// The core size can't exceed the maximum size, so change them in
+		// whichever order keeps that true.
+		if (count > decodePool.getMaximumPoolSize()) {
+			decodePool.setMaximumPoolSize(count);
+			decodePool.setCorePoolSize(count);
+		} else {
+			decodePool.setCorePoolSize(count);
+			decodePool.setMaximumPoolSize(count);
+		}
+	}
+
+	/**
+	 * Gets how many responses may be decoded at once on background threads.
+	 *
+	 * @return The number of responses decoded at once.
+	 */
+	public int getMaxConcurrentDecodes() {
+		return decodePool.getMaximumPoolSize();
+	}
+
+	/**
+	 * Gets how many requests for data were made. Calls asking for the same
+	 * data as a request already being made wait for it instead, and aren't
+	 * counted here.
+	 *
+	 * @return The number of requests for data made.
+	 */
+	public int getSharedRequestCount() {
+		return inFlight.getStartedCount();
+	}
+
+	/**
+	 * Gets how many calls waited for a request for the same data already
+	 * being made, rather than making their own.
+	 *
+	 * @return The number of requests saved.
+	 */
+	public int getSavedRequestCount() {
+		return inFlight.getSavedCount();
+	}
+
+	/**
+	 * Gets the validators sent with the data last fetched from each
+	 * endpoint. They are sent back when fetching the same data again, so
+	 * that the server doesn't send it again if it hasn't changed.
+	 *
+	 * @return The validators of the data last fetched.
+	 */
+	public HttpValidators getValidators() {
+		return validators;
+	}
+
+	/**
+	 * Gets what keeps track of whether the device is online. It should be
+	 * told about each connectivity broadcast. Requests for data made while
+	 * offline wait there for the network, up to its park deadline.
+	 *
+	 * @return The connectivity monitor.
+	 */
+	public ConnectivityMonitor getConnectivityMonitor() {
+		return connectivity;
+	}
+
+	/**
+	 * Sets what carries requests to the server from now on, such as
+	 * {@link UrlConnectionTransport}, or a {@link LoopbackTransport} for
+	 * benchmarks.
+	 *
+	 * @param transport The transport, or <code>null</code> for the default
+	 * pooled connections.
+	 */
+	public void setTransport(HttpTransport transport) {
+		transportClient.setTransport(transport);
+	}
+
+	/**
+	 * Gets how long each request to the server may take. Requests to
+	 * download everything and batches of entries may take 30 seconds, and
+	 * others 10.
+	 *
+	 * @return The timeouts of the requests, which can be changed.
+	 */
+	public RequestTimeouts getRequestTimeouts() {
+		return transportClient.getTimeouts();
+	}
+
+	/**
+	 * Gets what runs the requests by priority: changes the user made first,
+	 * then data they asked to see, then syncs of everything. It counts how
+	 * many requests of each priority wait, and for how long.
+	 *
+	 * @return The request scheduler.
+	 */
+	public RequestScheduler getRequestScheduler() {
+		return transportClient.getScheduler();
+	}
+
+	/**
+	 * Gets what sends requests again after they fail, which counts the
+	 * retries and the requests turned away while the server keeps failing.
+	 *
+	 * @return The request retrier.
+	 */
+	public RequestRetrier getRequestRetrier() {
+		return retrier;
+	}
+
+	/**
+	 * Sets what decides whether, and how soon, to send a fetch, update or
+	 * deletion again after it fails. Requests that create something are
+	 * never sent again, since the server may have created it already.
+	 *
+	 * @param policy The policy for requests sent from now on.
+	 */
+	public void setRetryPolicy(RetryPolicy policy) {
+		retrier.setPolicy(policy);
+	}
+
+	/**
+	 * Gets the bytes sent and received for each endpoint, as they went
+	 * over the network and as they were before compressing or after
+	 * decompressing.
+	 *
+	 * @return The bytes counted for each endpoint.
+	 */
+	public TransferStats getTransferStats() {
+		return transferStats;
+	}
+
+	/**
+	 * Gets how long the requests to each endpoint took to start answering,
+	 * to finish and to decode, how many bytes went each way and how they
+	 * ended. Requests are measured as they are made; the measurements can
+	 * be shown in the app, or dumped with {@link ApiMetrics#toJson()}.
+	 *
+	 * @return The measurements of each endpoint.
+	 */
+	public ApiMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Sets whether large request bodies, such as batches of entries, are
+	 * sent compressed with gzip. Off by default, as the server must accept
+	 * compressed requests.
+	 *
+	 * @param compress Whether to compress large request bodies.
+	 */
+	public void setCompressRequests(boolean compress) {
+		compression.setCompressRequests(compress);
+	}
+
+	/**
+	 * Sets whether the budgets with their entries are asked for in the
+	 * compact form of {@link CompactWireFormat}, which is smaller and
+	 * quicker to read than JSON. Off by default, as the server must know
+	 * the compact form; if it doesn't, it sends JSON, which is read as
+	 * before.
+	 *
+	 * @param accept Whether to ask for the compact form.
+	 */
+	public void setAcceptCompact(boolean accept) {
+		wireFormat.setAcceptCompact(accept);
+	}
+
 	/**
 	 * The format used to transfer dates between the client and server
 	 * @return A string holding the date format used by the server
@@ -112,6 +446,7 @@ public class ApiInterface {
 	public void logOut() {
 		// clears the cookies in the storage.
 		cookieStore.clear();
+		validators.clear();
 	}
 
 	/**
@@ -138,7 +473,7 @@ public class ApiInterface {
 		params.put("start_date", startDate);
 		params.put("recurrence_duration", b.getDuration().toString());
 
-		client.post(budgetsUrl, params, new JsonHttpResponseHandler() {
+		client.post(budgetsUrl, params, new MeteredJsonHandler(createBudgetMetrics) {
 			@Override
 			public void onSuccess(JSONObject obj) {
 				try {
@@ -160,12 +495,7 @@ public class ApiInterface {
 
 			@Override
 			public void onFailure(Throwable t, String message) {
-				if (t instanceof SocketTimeoutException) {
-					callback.onFailure(UBudgetApp.getAppContext()
-							.getString(R.string.error_network));
-				} else {
-					callback.onFailure(message);
-				}
+				fail(callback, t, message);
 			}
 		});
 	}
@@ -190,15 +520,15 @@ public class ApiInterface {
 		params.put("expenditure_date", e.getDate().toString(DATE_FORMAT));
 		params.put("budget_id", "" + e.getBudget().getId());
 
-		client.post(entriesUrl, params, new JsonHttpResponseHandler() {
+		client.post(entriesUrl, params, new MeteredJsonHandler(createEntryMetrics) {
 			@Override
 			public void onSuccess(JSONObject obj) {
 				try {
 					long id = obj.getLong("id");
 					LocalDateTime createdAt = LocalDateTime.parse(obj.getString("created_at"),
-							DateTimeFormat.forPattern(DATETIME_FORMAT));
+							dateTimeFormatter);
 					LocalDateTime updatedAt = LocalDateTime.parse(obj.getString("updated_at"),
-							DateTimeFormat.forPattern(DATETIME_FORMAT));
+							dateTimeFormatter);
 					e.setEntryId(id);
 					e.setCreatedAt(createdAt);
 					e.setUpdatedAt(updatedAt);
@@ -218,12 +548,7 @@ public class ApiInterface {
 
 			@Override
 			public void onFailure(Throwable t, String message) {
-				if (t instanceof SocketTimeoutException) {
-					callback.onFailure(UBudgetApp.getAppContext()
-							.getString(R.string.error_network));
-				} else {
-					callback.onFailure(message);
-				}
+				fail(callback, t, message);
 			}
 		});
 	}
@@ -241,7 +566,7 @@ public class ApiInterface {
 			return;
 		}
 
-		RequestParams params = new RequestParams();
+		final RequestParams params = new RequestParams();
 
 		String startDate = b.getStartDate().toString(DATE_FORMAT);
 
@@ -252,25 +577,31 @@ public class ApiInterface {
 		params.put("start_date", startDate);
 		params.put("recurrence_duration", b.getDuration().toString());
 
-		client.put(budgetsUrl + "/" + b.getId(), params, new JsonHttpResponseHandler() {
+		final String requestUrl = budgetsUrl + "/" + b.getId();
+		sendIdempotent(requestUrl, callback, new RequestRetrier.Request() {
 			@Override
-			public void onSuccess(JSONObject obj) {
-				callback.onSuccess(null);
-			}
+			public void send(final RequestRetrier.Tries tries) {
+				client.put(requestUrl, params, new MeteredJsonHandler(updateBudgetMetrics) {
+					@Override
+					public void onSuccess(JSONObject obj) {
+						tries.succeeded();
+						callback.onSuccess(null);
+					}
 
-			@Override
-			public void onFailure(Throwable t, JSONObject obj) {
-				onFailure(t, t.getMessage());
-			}
+					@Override
+					public void onFailure(Throwable t, JSONObject obj) {
+						onFailure(t, t.getMessage());
+					}
 
-			@Override
-			public void onFailure(Throwable t, String message) {
-				if (t instanceof SocketTimeoutException) {
-					callback.onFailure(UBudgetApp.getAppContext()
-							.getString(R.string.error_network));
-				} else {
-					callback.onFailure(message);
-				}
+					@Override
+					public void onFailure(Throwable t, String message) {
+						if (tries.retry(t)) {
+							Log.d(TAG, "Retrying after: " + t);
+						} else {
+							fail(callback, t, message);
+						}
+					}
+				});
 			}
 		});
 	}
@@ -289,41 +620,47 @@ public class ApiInterface {
 			return;
 		}
 
-		RequestParams params = new RequestParams();
+		final RequestParams params = new RequestParams();
 		params.put("id", "" + e.getEntryId());
 		params.put("amount", "" + e.getAmount());
 		params.put("notes", e.getNotes());
 		params.put("expenditure_date", e.getDate().toString(DATE_FORMAT));
 		params.put("budget_id", "" + e.getBudget().getId());
 
-		client.put(entriesUrl + "/" + e.getEntryId(), params, new JsonHttpResponseHandler() {
+		final String requestUrl = entriesUrl + "/" + e.getEntryId();
+		sendIdempotent(requestUrl, callback, new RequestRetrier.Request() {
 			@Override
-			public void onSuccess(JSONObject obj) {
-				try {
-					// Get the server-generated "updated-at" time.
-					LocalDateTime updatedAt = LocalDateTime.parse(
-							obj.getString("updated_at"),
-							DateTimeFormat.forPattern(DATETIME_FORMAT));
-					e.setUpdatedAt(updatedAt);
-					callback.onSuccess(null);
-				} catch (JSONException e) {
-					callback.onFailure(e.getMessage());
-				}
-			}
+			public void send(final RequestRetrier.Tries tries) {
+				client.put(requestUrl, params, new MeteredJsonHandler(updateEntryMetrics) {
+					@Override
+					public void onSuccess(JSONObject obj) {
+						tries.succeeded();
+						try {
+							// Get the server-generated "updated-at" time.
+							LocalDateTime updatedAt = LocalDateTime.parse(
+									obj.getString("updated_at"),
+									dateTimeFormatter);
+							e.setUpdatedAt(updatedAt);
+							callback.onSuccess(null);
+						} catch (JSONException e) {
+							callback.onFailure(e.getMessage());
+						}
+					}
 
-			@Override
-			public void onFailure(Throwable t, JSONObject obj) {
-				onFailure(t, t.getMessage());
-			}
+					@Override
+					public void onFailure(Throwable t, JSONObject obj) {
+						onFailure(t, t.getMessage());
+					}
 
-			@Override
-			public void onFailure(Throwable t, String message) {
-				if (t instanceof SocketTimeoutException) {
-					callback.onFailure(UBudgetApp.getAppContext()
-							.getString(R.string.error_network));
-				} else {
-					callback.onFailure(message);
-				}
+					@Override
+					public void onFailure(Throwable t, String message) {
+						if (tries.retry(t)) {
+							Log.d(TAG, "Retrying after: " + t);
+						} else {
+							fail(callback, t, message);
+						}
+					}
+				});
 			}
 		});
 	}
@@ -342,37 +679,43 @@ public class ApiInterface {
 			return;
 		}
 
-		client.delete(budgetsUrl + "/" + b.getId(), new JsonHttpResponseHandler() {
+		final String requestUrl = budgetsUrl + "/" + b.getId();
+		sendIdempotent(requestUrl, callback, new RequestRetrier.Request() {
 			@Override
-			public void onSuccess(JSONObject obj) {
-				try {
-					if (obj.has("destroyed") && obj.getBoolean("destroyed")) {
-						callback.onSuccess(null);
-					} else {
-						callback.onFailure(UBudgetApp.getAppContext()
-								.getString(R.string.error_delete_budget));
+			public void send(final RequestRetrier.Tries tries) {
+				client.delete(requestUrl, new MeteredJsonHandler(removeBudgetMetrics) {
+					@Override
+					public void onSuccess(JSONObject obj) {
+						tries.succeeded();
+						try {
+							if (obj.has("destroyed") && obj.getBoolean("destroyed")) {
+								callback.onSuccess(null);
+							} else {
+								callback.onFailure(UBudgetApp.getAppContext()
+										.getString(R.string.error_delete_budget));
+							}
+						} catch (JSONException e) {
+							// This will catch if the server doesn't send a destruction
+							// verification, but it's designed to always send one.
+							Log.e(TAG, e.getMessage());
+							callback.onFailure(e.getMessage());
+						}
 					}
-				} catch (JSONException e) {
-					// This will catch if the server doesn't send a destruction
-					// verification, but it's designed to always send one.
-					Log.e(TAG, e.getMessage());
-					callback.onFailure(e.getMessage());
-				}
-			}
 
-			@Override
-			public void onFailure(Throwable t, JSONObject obj) {
-				onFailure(t, t.getMessage());
-			}
+					@Override
+					public void onFailure(Throwable t, JSONObject obj) {
+						onFailure(t, t.getMessage());
+					}
 
-			@Override
-			public void onFailure(Throwable t, String message) {
-				if (t instanceof SocketTimeoutException) {
-					callback.onFailure(UBudgetApp.getAppContext()
-							.getString(R.string.error_network));
-				} else {
-					callback.onFailure(message);
-				}
+					@Override
+					public void onFailure(Throwable t, String message) {
+						if (tries.retry(t)) {
+							Log.d(TAG, "Retrying after: " + t);
+						} else {
+							fail(callback, t, message);
+						}
+					}
+				});
 			}
 		});
 	}
@@ -390,36 +733,132 @@ public class ApiInterface {
 			return;
 		}
 
-		client.delete(entriesUrl + "/" + e.getEntryId(), new JsonHttpResponseHandler() {
+		final String requestUrl = entriesUrl + "/" + e.getEntryId();
+		sendIdempotent(requestUrl, callback, new RequestRetrier.Request() {
 			@Override
-			public void onSuccess(JSONObject obj) {
-				try {
-					if (obj.has("destroyed") && obj.getBoolean("destroyed")) {
-						callback.onSuccess(null);
-					} else {
-						callback.onFailure(UBudgetApp.getAppContext()
-								.getString(R.string.error_delete_entry));
+			public void send(final RequestRetrier.Tries tries) {
+				client.delete(requestUrl, new MeteredJsonHandler(removeEntryMetrics) {
+					@Override
+					public void onSuccess(JSONObject obj) {
+						tries.succeeded();
+						try {
+							if (obj.has("destroyed") && obj.getBoolean("destroyed")) {
+								callback.onSuccess(null);
+							} else {
+								callback.onFailure(UBudgetApp.getAppContext()
+										.getString(R.string.error_delete_entry));
+							}
+						} catch (JSONException e) {
+							// This will catch if the server doesn't send a destruction
+							// verification, but it's designed to always send one.
+							Log.e(TAG, e.getMessage());
+							callback.onFailure(e.getMessage());
+						}
 					}
-				} catch (JSONException e) {
-					// This will catch if the server doesn't send a destruction
-					// verification, but it's designed to always send one.
-					Log.e(TAG, e.getMessage());
-					callback.onFailure(e.getMessage());
-				}
+
+					@Override
+					public void onFailure(Throwable t, JSONObject obj) {
+						onFailure(t, t.getMessage());
+					}
+
+					@Override
+					public void onFailure(Throwable t, String message) {
+						if (tries.retry(t)) {
+							Log.d(TAG, "Retrying after: " + t);
+						} else {
+							fail(callback, t, message);
+						}
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Creates several entries on the API server in one request.
+	 * Asynchronous. Each entry created is given its ID and creation and
+	 * update times, as by {@link #create(Entry, ApiCallback)}.
+	 *
+	 * @param entries Entry instances to send to the server.
+	 * @param callback Callbacks to run on success or failure.
+	 * For onSuccess, the object passed is an {@link EntryBatchResult}
+	 * telling which of the entries were created. onFailure is only called
+	 * if the request as a whole failed.
+	 * @throws IllegalArgumentException if <code>entries</code> is empty
+	 */
+	public void create(final List<Entry> entries,
+			final ApiCallback<EntryBatchResult> callback) {
+		if (entries.isEmpty()) {
+			throw new IllegalArgumentException("No entries to create");
+		}
+		if (failOnNoInternet(callback)) {
+			return;
+		}
+
+		JSONArray array = new JSONArray();
+		try {
+			for (Entry e : entries) {
+				JSONObject obj = new JSONObject();
+				obj.put("amount", e.getAmount());
+				obj.put("notes", e.getNotes());
+				obj.put("expenditure_date", e.getDate().toString(DATE_FORMAT));
+				obj.put("budget_id", e.getBudget().getId());
+				array.put(obj);
 			}
+		} catch (JSONException e) {
+			// Only thrown for keys that are null, which these aren't.
+			throw new IllegalStateException(e);
+		}
+		RequestParams params = new RequestParams();
+		params.put("entries", array.toString());
 
+		client.post(entriesBatchUrl, params, new BatchResponseHandler(createEntriesMetrics,
+				entries, callback) {
 			@Override
-			public void onFailure(Throwable t, JSONObject obj) {
-				onFailure(t, t.getMessage());
+			void succeeded(Entry e, JSONObject result) throws JSONException {
+				e.setEntryId(result.getLong("id"));
+				e.setCreatedAt(LocalDateTime.parse(
+						result.getString("created_at"), dateTimeFormatter));
+				e.setUpdatedAt(LocalDateTime.parse(
+						result.getString("updated_at"), dateTimeFormatter));
 			}
+		});
+	}
 
+	/**
+	 * Destroys several already existing entries on the API server in one
+	 * request. Asynchronous.
+	 *
+	 * @param entries Entry instances to destroy.
+	 * @param callback Callbacks to run on success or failure.
+	 * For onSuccess, the object passed is an {@link EntryBatchResult}
+	 * telling which of the entries were destroyed. onFailure is only called
+	 * if the request as a whole failed.
+	 * @throws IllegalArgumentException if <code>entries</code> is empty
+	 */
+	public void remove(final List<Entry> entries,
+			final ApiCallback<EntryBatchResult> callback) {
+		if (entries.isEmpty()) {
+			throw new IllegalArgumentException("No entries to remove");
+		}
+		if (failOnNoInternet(callback)) {
+			return;
+		}
+
+		JSONArray ids = new JSONArray();
+		for (Entry e : entries) {
+			ids.put(e.getEntryId());
+		}
+		RequestParams params = new RequestParams();
+		params.put("ids", ids.toString());
+
+		client.post(entriesBatchDestroyUrl, params, new BatchResponseHandler(removeEntriesMetrics,
+				entries, callback) {
 			@Override
-			public void onFailure(Throwable t, String message) {
-				if (t instanceof SocketTimeoutException) {
-					callback.onFailure(UBudgetApp.getAppContext()
-							.getString(R.string.error_network));
-				} else {
-					callback.onFailure(message);
+			void succeeded(Entry e, JSONObject result) throws JSONException {
+				if (!result.optBoolean("destroyed")) {
+					throw new JSONException(UBudgetApp.getAppContext()
+							.getString(R.string.error_delete_entry));
 				}
 			}
 		});
@@ -430,66 +869,64 @@ public class ApiInterface {
 	 *
 	 * @param callback Callbacks to run on success or failure, or
 	 * <code>null</code> for no callbacks.
-	 * For onSuccess, the object passed is a
+	 * For onSuccess, the object passed is an unmodifiable
 	 * {@link java.util.List}&lt;{@link Budget}&gt;
 	 * containing all Budgets for the current user.
+	 * If budgets are already being fetched, the callback is told the result
+	 * of that fetch instead. If the server says the budgets haven't changed
+	 * since they were last fetched, or they were all synced while fetching,
+	 * the budgets already held are passed.
 	 */
 	public void fetchBudgets(final ApiCallback<List<Budget>> callback) {
-		if (failOnNoInternet(callback)) {
+		if (parkWhileOffline(callback, new Runnable() {
+			@Override
+			public void run() {
+				fetchBudgets(callback);
+			}
+		})) {
 			return;
 		}
 
+		final ApiCallback<List<Budget>> shared =
+				inFlight.join("GET " + budgetsUrl, callback);
+		if (shared == null) {
+			Log.d(TAG, "Waiting for budgets already being fetched");
+			return;
+		}
 		Log.d(TAG, "Fetching budgets");
 
-		client.get(budgetsUrl, new JsonHttpResponseHandler() {
+		sendIdempotent(budgetsUrl, shared, new RequestRetrier.Request() {
 			@Override
-			public void onSuccess(JSONArray budgetsJson) {
-				List<Budget> budgetList = new ArrayList<Budget>();
-
-				int budgetsLen = budgetsJson.length();
-
-				// Iterate through the JSON array and create new
-				// budgets for each index.
-				for (int i = 0; i < budgetsLen; ++i) {
-					try {
-						JSONObject budgetObject = budgetsJson.getJSONObject(i);
-
-						String budgetName = budgetObject.getString("budget_name");
-						String duration = budgetObject.getString("recurrence_duration");
-						int amount = budgetObject.getInt("amount");
-						boolean recur = budgetObject.optBoolean("recur");
-						LocalDate startDate = LocalDate.parse(budgetObject.getString("start_date"),
-								DateTimeFormat.forPattern(DATE_FORMAT));
-						long id = budgetObject.getLong("id");
-
-						Budget newBudget = new Budget(budgetName, amount,
-								recur, startDate, Duration.valueOf(duration));
-						newBudget.setId(id);
-
-						budgetList.add(newBudget);
-					} catch (JSONException e) {
-						Log.e(TAG, e.getMessage());
-						callback.onFailure(e.getMessage());
-						return;
+			public void send(final RequestRetrier.Tries tries) {
+				client.get(null, budgetsUrl, conditionalHeaders(budgetsUrl, null), null,
+						new ConditionalResponseHandler<List<Budget>>(fetchBudgetsMetrics,
+								shared, budgetsUrl, tries) {
+					@Override
+					List<Budget> parse(Reader response) throws JSONException {
+						return Collections.unmodifiableList(
+								parser.readBudgets(response, false));
 					}
-				}
 
-				callback.onSuccess(budgetList);
-			}
-
-			@Override
-			public void onFailure(Throwable t, JSONObject obj) {
-				onFailure(t, t.getMessage());
-			}
+					@Override
+					void deliver(List<Budget> budgetList) {
+						BudgetRepository repository = BudgetRepository.getInstance();
+						// If everything was synced while fetching, these budgets are
+						// already held, along with their entries.
+						if (repository.getSyncedThrough() != null) {
+							shared.onSuccess(repository.getBudgets());
+							return;
+						}
+						// Publish the budgets together once all of them are built.
+						repository.addAll(budgetList);
+						keepValidators();
+						shared.onSuccess(budgetList);
+					}
 
-			@Override
-			public void onFailure(Throwable t, String message) {
-				if (t instanceof SocketTimeoutException) {
-					callback.onFailure(UBudgetApp.getAppContext()
-							.getString(R.string.error_network));
-				} else {
-					callback.onFailure(message);
-				}
+					@Override
+					void notModified() {
+						shared.onSuccess(BudgetRepository.getInstance().getBudgets());
+					}
+				});
 			}
 		});
 	}
@@ -503,67 +940,133 @@ public class ApiInterface {
 	 * For onSuccess, the object passed is a
 	 * {@link java.util.List}&lt;{@link Entry}&gt;
 	 * containing all Entries for the given Budget.
+	 * If the entries of <code>b</code> itself are already being fetched,
+	 * the callback is told the result of that fetch instead; a different
+	 * Budget with the same ID gets a fetch of its own. If
+	 * the server says they haven't changed since they were last fetched,
+	 * the entries already in <code>b</code> are passed.
 	 */
-	public void fetchEntries(final Budget b, final ApiCallback<List<Entry>> callback) {
-		if (failOnNoInternet(callback)) {
+	public void fetchEntries(final Budget b,
+			final ApiCallback<List<Entry>> callback) {
+		if (parkWhileOffline(callback, new Runnable() {
+			@Override
+			public void run() {
+				fetchEntries(b, callback);
+			}
+		})) {
 			return;
 		}
 
+		final String requestUrl = entriesUrl + "/" + b.getId() + "/by_budget";
+		final ApiCallback<List<Entry>> shared =
+				inFlight.join("GET " + requestUrl, b, callback);
+		if (shared == null) {
+			Log.d(TAG, "Waiting for entries already being fetched");
+			return;
+		}
 		Log.d(TAG, "Fetching entries for budget # " + b.getId());
-		String requestUrl = entriesUrl + "/" + b.getId() + "/by_budget";
 
-		client.get(requestUrl, new JsonHttpResponseHandler() {
+		sendIdempotent(requestUrl, shared, new RequestRetrier.Request() {
 			@Override
-			public void onSuccess(JSONArray entriesJson) {
-				int entriesLen = entriesJson.length();
+			public void send(final RequestRetrier.Tries tries) {
+				client.get(null, requestUrl, conditionalHeaders(requestUrl, b), null,
+						new ConditionalResponseHandler<List<Entry>>(fetchEntriesMetrics,
+								shared, requestUrl, tries) {
+					@Override
+					List<Entry> parse(Reader response) throws JSONException {
+						return parser.readEntries(response, b);
+					}
 
-				// Iterate through the JSON array and create new
-				// entries for each index.
-				for (int i = 0; i < entriesLen; ++i) {
-					try {
-						JSONObject entriesObject = entriesJson.getJSONObject(i);
-
-						long id = entriesObject.getLong("id");
-						int amount = entriesObject.getInt("amount");
-						LocalDate date = LocalDate.parse(
-								entriesObject.getString("expenditure_date"),
-								DateTimeFormat.forPattern(DATE_FORMAT));
-						LocalDateTime createdAt = LocalDateTime.parse(
-								entriesObject.getString("created_at"),
-								DateTimeFormat.forPattern(DATETIME_FORMAT));
-						LocalDateTime updatedAt = LocalDateTime.parse(
-								entriesObject.getString("updated_at"),
-								DateTimeFormat.forPattern(DATETIME_FORMAT));
-						String notes = entriesObject.getString("notes");
-
-						Entry newEntry = new Entry(id, amount, b, notes, date);
-						newEntry.setCreatedAt(createdAt);
-						newEntry.setUpdatedAt(updatedAt);
-
-						b.addEntry(newEntry);
-					} catch (JSONException e) {
-						Log.e(TAG, e.getMessage());
-						callback.onFailure(e.getMessage());
-						return;
+					@Override
+					void deliver(List<Entry> newEntries) {
+						if (b.getEntries().size() + newEntries.size()
+								>= ApiParser.COMPACT_ENTRY_COUNT) {
+							b.setCompactStorage(true);
+						}
+						b.addEntries(newEntries);
+						keepValidators();
+
+						shared.onSuccess(b.getEntries());
 					}
-				}
 
-				callback.onSuccess(b.getEntries());
+					@Override
+					void notModified() {
+						shared.onSuccess(b.getEntries());
+					}
+				});
 			}
+		});
+	}
 
+	/**
+	 * Fetches one page of the Entries of a given Budget, newest first, so
+	 * that the first entries can be shown without waiting for all of them.
+	 * The Entries on the page that the Budget doesn't already have are added
+	 * to it, unless it was replaced while fetching.
+	 *
+	 * @param b Budget to fetch Entries from.
+	 * @param cursor The cursor of the page to fetch, from the page before
+	 * it, or <code>null</code> for the first page.
+	 * @param pageSize The most Entries to fetch.
+	 * @param callback Callbacks to run on success or failure, or
+	 * <code>null</code> for no callbacks.
+	 * For onSuccess, the object passed is the {@link EntryPage}, holding
+	 * every Entry on it and the cursor of the next page.
+	 * If the same page of <code>b</code> itself is already being fetched,
+	 * the callback is told the result of that fetch instead.
+	 */
+	public void fetchEntries(final Budget b, final String cursor,
+			final int pageSize, final ApiCallback<EntryPage> callback) {
+		if (parkWhileOffline(callback, new Runnable() {
 			@Override
-			public void onFailure(Throwable t, JSONObject obj) {
-				onFailure(t, t.getMessage());
+			public void run() {
+				fetchEntries(b, cursor, pageSize, callback);
 			}
+		})) {
+			return;
+		}
+
+		final RequestParams params = new RequestParams();
+		params.put("limit", "" + pageSize);
+		if (cursor != null) {
+			params.put("cursor", cursor);
+		}
+		final String requestUrl = entriesUrl + "/" + b.getId() + "/by_budget";
+		final ApiCallback<EntryPage> shared = inFlight.join("GET "
+				+ AsyncHttpClient.getUrlWithQueryString(requestUrl, params),
+				b, callback);
+		if (shared == null) {
+			Log.d(TAG, "Waiting for a page of entries already being fetched");
+			return;
+		}
+		Log.d(TAG, "Fetching a page of entries for budget # " + b.getId());
 
+		sendIdempotent(requestUrl, shared, new RequestRetrier.Request() {
 			@Override
-			public void onFailure(Throwable t, String message) {
-				if (t instanceof SocketTimeoutException) {
-					callback.onFailure(UBudgetApp.getAppContext()
-							.getString(R.string.error_network));
-				} else {
-					callback.onFailure(message);
-				}
+			public void send(final RequestRetrier.Tries tries) {
+				client.get(requestUrl, params,
+						new ParsingResponseHandler<EntryPage>(fetchEntriesMetrics,
+								shared, tries) {
+					@Override
+					EntryPage parse(Reader response) throws JSONException {
+						return parser.readEntryPage(response, b);
+					}
+
+					@Override
+					void deliver(EntryPage page) {
+						// Entries may already be here, such as from a sync.
+						if (BudgetRepository.getInstance().getBudgetById(b.getId()) == b) {
+							List<Entry> added = new ArrayList<Entry>();
+							for (Entry e : page.getEntries()) {
+								if (b.getEntryById(e.getEntryId()) == null) {
+									added.add(e);
+								}
+							}
+							b.addEntries(added);
+						}
+						shared.onSuccess(page);
+					}
+				});
 			}
 		});
 	}
@@ -573,97 +1076,149 @@ public class ApiInterface {
 	 *
 	 * @param callback Callbacks to run on success or failure, or
 	 * <code>null</code> for no callbacks.
-	 * For onSuccess, the object passed is a
+	 * For onSuccess, the object passed is an unmodifiable
 	 * {@link java.util.List}&lt;{@link Budget}&gt;
 	 * containing all Budgets for the current user, each
 	 * containing all of its Entries.
+	 * If everything is already being fetched, the callback is told the
+	 * result of that fetch instead. If the server says nothing has changed
+	 * since it was last fetched, the budgets already held are passed.
 	 */
-	public void fetchBudgetsAndEntries(final ApiCallback<List<Budget>> callback) {
-		if (failOnNoInternet(callback)) {
+	public void fetchBudgetsAndEntries(
+			final ApiCallback<List<Budget>> callback) {
+		if (parkWhileOffline(callback, new Runnable() {
+			@Override
+			public void run() {
+				fetchBudgetsAndEntries(callback);
+			}
+		})) {
 			return;
 		}
 
+		final ApiCallback<List<Budget>> shared =
+				inFlight.join("GET " + budgetsAndEntriesUrl, callback);
+		if (shared == null) {
+			Log.d(TAG, "Waiting for budgets and entries already being fetched");
+			return;
+		}
 		Log.d(TAG, "Fetching all budgets and entries");
 
-		client.get(budgetsAndEntriesUrl, new JsonHttpResponseHandler() {
+		sendIdempotent(budgetsAndEntriesUrl, shared, new RequestRetrier.Request() {
 			@Override
-			public void onSuccess(JSONArray budgetsJson) {
-				List<Budget> budgetList = new ArrayList<Budget>();
-
-				int budgetsLen = budgetsJson.length();
-
-				// Iterate through the JSON array and create new
-				// budgets for each index.
-				for (int i = 0; i < budgetsLen; ++i) {
-					try {
-						JSONObject budgetObject = budgetsJson.getJSONObject(i);
-
-						String budgetName = budgetObject.getString("budget_name");
-						String duration = budgetObject.getString("recurrence_duration");
-						int amount = budgetObject.getInt("amount");
-						boolean recur = budgetObject.optBoolean("recur");
-						LocalDate startDate = LocalDate.parse(budgetObject.getString("start_date"),
-								DateTimeFormat.forPattern(DATE_FORMAT));
-						long id = budgetObject.getLong("id");
-
-
-						Budget newBudget = new Budget(budgetName, amount,
-								recur, startDate, Duration.valueOf(duration));
-						newBudget.setId(id);
-
-						JSONArray entriesJson = budgetObject.getJSONArray("entries");
-						int entriesLen = entriesJson.length();
-
-						// Iterate through the JSON array and create new
-						// entries for each index.
-						for (int j = 0; j < entriesLen; j++) {
-							JSONObject entriesObject = entriesJson.getJSONObject(j);
-
-							long entryId = entriesObject.getLong("id");
-							int entryAmount = entriesObject.getInt("amount");
-							LocalDate entryDate = LocalDate.parse(
-									entriesObject.getString("expenditure_date"),
-									DateTimeFormat.forPattern(DATE_FORMAT));
-							LocalDateTime createdAt = LocalDateTime.parse(
-									entriesObject.getString("created_at"),
-									DateTimeFormat.forPattern(DATETIME_FORMAT));
-							LocalDateTime updatedAt = LocalDateTime.parse(
-									entriesObject.getString("updated_at"),
-									DateTimeFormat.forPattern(DATETIME_FORMAT));
-							String entryNotes = entriesObject.getString("notes");
-
-							Entry newEntry = new Entry(entryId, entryAmount,
-									newBudget, entryNotes, entryDate);
-							newEntry.setCreatedAt(createdAt);
-							newEntry.setUpdatedAt(updatedAt);
-
-							newBudget.addEntry(newEntry);
-						}
+			public void send(final RequestRetrier.Tries tries) {
+				client.get(null, budgetsAndEntriesUrl,
+						conditionalHeaders(budgetsAndEntriesUrl, null), null,
+						new ConditionalResponseHandler<SyncDelta>(fetchAllMetrics,
+								shared, budgetsAndEntriesUrl,
+								tries) {
+					@Override
+					SyncDelta parse(Reader response) throws JSONException {
+						return wireFormat.readAllChanges(response);
+					}
 
-						budgetList.add(newBudget);
-					} catch (JSONException e) {
-						Log.e(TAG, e.getMessage());
-						callback.onFailure(e.getMessage());
-						return;
+					@Override
+					void deliver(SyncDelta all) {
+						// Replace the user's budgets in one step, so that nothing sees
+						// a mix of old and new budgets.
+						BudgetRepository.getInstance().replaceAll(all.getBudgets(),
+								all.getSyncedThrough());
+						keepValidators();
+						shared.onSuccess(all.getBudgets());
 					}
-				}
 
-				callback.onSuccess(budgetList);
+					@Override
+					void notModified() {
+						shared.onSuccess(BudgetRepository.getInstance().getBudgets());
+					}
+				});
 			}
+		});
+	}
 
+	/**
+	 * Brings the user's Budgets and Entries up to date with the server,
+	 * fetching only what changed since they were last synced. The Budgets
+	 * and Entries already loaded are updated in place, and those deleted on
+	 * the server are removed. If they have never been synced, such as after
+	 * logging in, everything is fetched as by
+	 * {@link #fetchBudgetsAndEntries(ApiCallback)}.
+	 *
+	 * The server is asked for the changes made at or after the latest
+	 * <code>updated_at</code> it has sent, so changes made in the same
+	 * second aren't missed; changes sent twice are applied harmlessly. If
+	 * the server says nothing has changed since the same changes were last
+	 * fetched, nothing is parsed or applied.
+	 *
+	 * @param callback Callbacks to run on success or failure, or
+	 * <code>null</code> for no callbacks.
+	 * For onSuccess, the object passed is an unmodifiable
+	 * {@link java.util.List}&lt;{@link Budget}&gt;
+	 * containing all Budgets for the current user, each
+	 * containing all of its Entries.
+	 * If the same changes are already being fetched, the callback is told
+	 * the result of that fetch instead.
+	 */
+	public void syncBudgetsAndEntries(
+			final ApiCallback<List<Budget>> callback) {
+		final LocalDateTime since =
+				BudgetRepository.getInstance().getSyncedThrough();
+		if (since == null) {
+			fetchBudgetsAndEntries(callback);
+			return;
+		}
+		if (parkWhileOffline(callback, new Runnable() {
 			@Override
-			public void onFailure(Throwable t, JSONObject obj) {
-				onFailure(t, t.getMessage());
+			public void run() {
+				syncBudgetsAndEntries(callback);
 			}
+		})) {
+			return;
+		}
+
+		String updatedSince = since.toString(DATETIME_FORMAT);
+		final ApiCallback<List<Budget>> shared = inFlight.join(
+				"GET " + budgetChangesUrl + "?updated_since=" + updatedSince,
+				callback);
+		if (shared == null) {
+			Log.d(TAG, "Waiting for changes already being fetched");
+			return;
+		}
+		Log.d(TAG, "Fetching budgets and entries changed since " + since);
+
+		final RequestParams params = new RequestParams();
+		params.put("updated_since", updatedSince);
+		final String requestUrl =
+				AsyncHttpClient.getUrlWithQueryString(budgetChangesUrl, params);
 
+		sendIdempotent(requestUrl, shared, new RequestRetrier.Request() {
 			@Override
-			public void onFailure(Throwable t, String message) {
-				if (t instanceof SocketTimeoutException) {
-					callback.onFailure(UBudgetApp.getAppContext()
-							.getString(R.string.error_network));
-				} else {
-					callback.onFailure(message);
-				}
+			public void send(final RequestRetrier.Tries tries) {
+				client.get(null, budgetChangesUrl, conditionalHeaders(requestUrl, null),
+						params, new ConditionalResponseHandler<SyncDelta>(
+								fetchChangesMetrics, shared, requestUrl, tries) {
+					@Override
+					SyncDelta parse(Reader response) throws JSONException {
+						return parser.readChanges(response);
+					}
+
+					@Override
+					void deliver(SyncDelta changes) {
+						BudgetRepository repository = BudgetRepository.getInstance();
+						// If the budgets were cleared while fetching, such as by
+						// logging out, the changes no longer apply to anything.
+						if (repository.getSyncedThrough() != null) {
+							repository.applyChanges(changes);
+							keepValidators();
+						}
+						shared.onSuccess(repository.getBudgets());
+					}
+
+					@Override
+					void notModified() {
+						// Nothing changed, so there is nothing to apply.
+						shared.onSuccess(BudgetRepository.getInstance().getBudgets());
+					}
+				});
 			}
 		});
 	}
@@ -689,7 +1244,7 @@ public class ApiInterface {
 
 		Log.d(TAG, "logging in as " + email);
 
-		client.post(sessionUrl, params, new JsonHttpResponseHandler() {
+		client.post(sessionUrl, params, new MeteredJsonHandler(logInMetrics) {
 			@Override
 			public void onSuccess(JSONObject obj) {
 				Log.d(TAG, "User " + email + " logged in");
@@ -714,12 +1269,7 @@ public class ApiInterface {
 
 			@Override
 			public void onFailure(Throwable t, String message) {
-				if (t instanceof SocketTimeoutException) {
-					callback.onFailure(UBudgetApp.getAppContext()
-							.getString(R.string.error_network));
-				} else {
-					callback.onFailure(message);
-				}
+				fail(callback, t, message);
 			}
 		});
 	}
@@ -745,7 +1295,7 @@ public class ApiInterface {
 
 		Log.d(TAG, "Creating user " + email);
 
-		client.post(usersUrl, params, new JsonHttpResponseHandler() {
+		client.post(usersUrl, params, new MeteredJsonHandler(createUserMetrics) {
 			@Override
 			public void onSuccess(JSONObject obj) {
 				Log.d(TAG, "User " + email + " created");
@@ -770,12 +1320,7 @@ public class ApiInterface {
 
 			@Override
 			public void onFailure(Throwable t, String message) {
-				if (t instanceof SocketTimeoutException) {
-					callback.onFailure(UBudgetApp.getAppContext()
-							.getString(R.string.error_network));
-				} else {
-					callback.onFailure(message);
-				}
+				fail(callback, t, message);
 			}
 		});
 	}
@@ -788,27 +1333,106 @@ public class ApiInterface {
 	 * as its parameter.
 	 * If no user is logged in, it will call onFailure with <code>null</code>
 	 * as its parameter.
+	 * If the status is already being checked, the callback is told the
+	 * result of that check instead.
 	 */
 	public void checkLoginStatus(final ApiCallback<Object> callback) {
-		if (failOnNoInternet(callback)) {
+		if (parkWhileOffline(callback, new Runnable() {
+			@Override
+			public void run() {
+				checkLoginStatus(callback);
+			}
+		})) {
 			return;
 		}
 
-		client.get(sessionUrl, new AsyncHttpResponseHandler() {
+		final ApiCallback<Object> shared =
+				inFlight.join("GET " + sessionUrl, callback);
+		if (shared == null) {
+			Log.d(TAG, "Waiting for login status already being checked");
+			return;
+		}
+
+		sendIdempotent(sessionUrl, shared, new RequestRetrier.Request() {
 			@Override
-			public void onSuccess(String response) {
-				if (callback != null) {
-					callback.onSuccess(null);
-				}
+			public void send(final RequestRetrier.Tries tries) {
+				client.get(sessionUrl, new MeteredHandler(checkLoginMetrics) {
+					@Override
+					public void onSuccess(String response) {
+						tries.succeeded();
+						shared.onSuccess(null);
+					}
+
+					@Override
+					public void onFailure(Throwable t, String response) {
+						if (tries.retry(t)) {
+							return;
+						}
+						shared.onFailure(null);
+					}
+				});
 			}
+		});
+	}
 
+	/**
+	 * Checks if there is an active connection to the Internet.
+	 *
+	 * @return <code>true</code> if the device is online.
+	 */
+	public boolean isOnline() {
+		return connectivity.isOnline();
+	}
+
+	/**
+	 * Checks if there is an active connection to the Internet. If there is
+	 * no connection, <code>request</code> is parked until there is, and if
+	 * the park deadline passes first, the callback is alerted via onFailure
+	 * with an error specifying so.
+	 *
+	 * @param callback The callback to call onFailure on if the Internet
+	 * doesn't return in time, or <code>null</code> for no callbacks.
+	 * @param request Makes the request again, once there is a connection.
+	 * @return <code>true</code> if the request was parked,
+	 * <code>false</code> if it can be made now.
+	 */
+	private boolean parkWhileOffline(final ApiCallback<?> callback,
+			Runnable request) {
+		if (connectivity.isOnline()) {
+			return false;
+		}
+
+		Log.d(TAG, "No internet connection found, waiting for one.");
+		connectivity.park(request, new Runnable() {
 			@Override
-			public void onFailure(Throwable t, String response) {
+			public void run() {
 				if (callback != null) {
-					callback.onFailure(null);
+					failTransiently(callback, null);
 				}
 			}
 		});
+		return true;
+	}
+
+	/**
+	 * Sends a request that is safe to send more than once, and sends it
+	 * again after a wait each time it fails in a way that may pass. If the
+	 * server has been failing, the callback is alerted via onFailure straight
+	 * away instead.
+	 *
+	 * @param url The URL the request is sent to.
+	 * @param callback The callback to call onFailure on if the request
+	 * isn't sent, or <code>null</code> for no callbacks.
+	 * @param request Sends the request, and again for each retry.
+	 */
+	private void sendIdempotent(String url, ApiCallback<?> callback,
+			RequestRetrier.Request request) {
+		if (!retrier.send(url, request)) {
+			Log.d(TAG, "Server keeps failing, not sending to " + url);
+			if (callback != null) {
+				failTransiently(callback, null);
+			}
+		}
 	}
 
 	/**
@@ -819,19 +1443,427 @@ public class ApiInterface {
 	 * @return <code>true</code> if failure occurs (no internet), <code>false</code> otherwise.
 	 */
 	private boolean failOnNoInternet(ApiCallback<?> callback) {
-		ConnectivityManager conMgr = (ConnectivityManager)
-				UBudgetApp.getAppContext().getSystemService(
-						Context.CONNECTIVITY_SERVICE);
-		NetworkInfo activeNetwork = conMgr.getActiveNetworkInfo();
-
-		if (activeNetwork != null && activeNetwork.isConnected()) {
+		if (isOnline()) {
 			Log.d(TAG, "Internet connection found.");
 			return false;
 		}
 
 		Log.d(TAG, "No internet connection found.");
-		callback.onFailure(UBudgetApp.getAppContext()
-				.getString(R.string.error_network));
+		failTransiently(callback, null);
 		return true;
 	}
+
+	/**
+	 * Alerts <code>callback</code> that its request failed with
+	 * <code>t</code>. Failures that may pass later are reported as the
+	 * network error, and to a {@link TransientFailureCallback} as such; the
+	 * rest with <code>message</code>.
+	 *
+	 * @param callback The callback to alert.
+	 * @param t Why the request failed.
+	 * @param message The error the server sent, if any.
+	 */
+	private static void fail(ApiCallback<?> callback, Throwable t,
+			String message) {
+		if (RequestRetrier.isTransient(t)) {
+			failTransiently(callback, t);
+		} else {
+			callback.onFailure(message);
+		}
+	}
+
+	/**
+	 * Alerts <code>callback</code> with the network error that its request
+	 * failed in a way that may pass later.
+	 *
+	 * @param callback The callback to alert.
+	 * @param cause Why the request failed, or <code>null</code> if it
+	 * wasn't sent.
+	 */
+	private static void failTransiently(ApiCallback<?> callback,
+			Throwable cause) {
+		failTransiently(callback, UBudgetApp.getAppContext()
+				.getString(R.string.error_network), cause);
+	}
+
+	/**
+	 * Alerts <code>callback</code> that its request failed in a way that may
+	 * pass later, through {@link TransientFailureCallback#onTransientFailure}
+	 * if it has one.
+	 *
+	 * @param callback The callback to alert.
+	 * @param errorMessage Why the request failed.
+	 * @param cause Why the request failed, or <code>null</code> if it
+	 * wasn't sent.
+	 */
+	static void failTransiently(ApiCallback<?> callback, String errorMessage,
+			Throwable cause) {
+		if (callback instanceof TransientFailureCallback) {
+			((TransientFailureCallback<?>) callback)
+					.onTransientFailure(errorMessage, cause);
+		} else {
+			callback.onFailure(errorMessage);
+		}
+	}
+
+	/*
+	 * Gets the headers asking for url only if it changed since it was last
+	 * fetched. They are only sent while the budgets hold a full sync, and
+	 * for the entries of a budget, while that budget is one of them, since
+	 * otherwise what was fetched from url may no longer be held.
+	 */
+	private Header[] conditionalHeaders(String url, Budget b) {
+		BudgetRepository repository = BudgetRepository.getInstance();
+		if (repository.getSyncedThrough() == null
+				|| (b != null && repository.getBudgetById(b.getId()) != b)) {
+			return new Header[0];
+		}
+		return validators.getRequestHeaders(url);
+	}
+
+	/**
+	 * Handles the response to a batch of entries, which holds a result for
+	 * each entry sent, in the same order. A result holds either the fields
+	 * the server gave the entry or an <code>error</code>.
+	 */
+	private abstract class BatchResponseHandler extends MeteredJsonHandler {
+		private final List<Entry> entries;
+		private final ApiCallback<EntryBatchResult> callback;
+
+		BatchResponseHandler(ApiMetrics.Endpoint endpoint, List<Entry> entries,
+				ApiCallback<EntryBatchResult> callback) {
+			super(endpoint);
+			this.entries = entries;
+			this.callback = callback;
+		}
+
+		/**
+		 * Applies the result for an entry that succeeded.
+		 *
+		 * @param e The entry.
+		 * @param result The result the server sent for it.
+		 * @throws JSONException if the result is missing a field
+		 */
+		abstract void succeeded(Entry e, JSONObject result) throws JSONException;
+
+		@Override
+		public void onSuccess(JSONObject obj) {
+			List<String> errors = new ArrayList<String>(entries.size());
+			try {
+				JSONArray results = obj.getJSONArray("results");
+				if (results.length() != entries.size()) {
+					callback.onFailure("Expected " + entries.size()
+							+ " results but got " + results.length());
+					return;
+				}
+				for (int i = 0; i < results.length(); ++i) {
+					JSONObject result = results.getJSONObject(i);
+					if (result.has("error")) {
+						errors.add(result.getString("error"));
+						continue;
+					}
+					try {
+						succeeded(entries.get(i), result);
+						errors.add(null);
+					} catch (JSONException e) {
+						errors.add(e.getMessage());
+					}
+				}
+			} catch (JSONException e) {
+				Log.e(TAG, e.getMessage());
+				callback.onFailure(e.getMessage());
+				return;
+			}
+			callback.onSuccess(new EntryBatchResult(entries, errors));
+		}
+
+		@Override
+		public void onFailure(Throwable t, JSONObject obj) {
+			onFailure(t, t.getMessage());
+		}
+
+		@Override
+		public void onFailure(Throwable t, String message) {
+			fail(callback, t, message);
+		}
+	}
+
+	/**
+	 * Handles a response of JSON by reading it with the {@link ApiParser},
+	 * without building a <code>JSONArray</code> of it first. The response is
+	 * read on a background thread, and the result handed back on the main
+	 * thread. Failures are passed to the callback the same way as for a
+	 * <code>JsonHttpResponseHandler</code>.
+	 *
+	 * @param <T> The type read from the response.
+	 */
+	private abstract class ParsingResponseHandler<T>
+	extends MeteredHandler {
+		private final ApiCallback<?> callback;
+		// Told how the request went, and sends it again if it may pass
+		private final RequestRetrier.Tries tries;
+
+		ParsingResponseHandler(ApiMetrics.Endpoint endpoint,
+				ApiCallback<?> callback, RequestRetrier.Tries tries) {
+			super(endpoint);
+			this.callback = callback;
+			this.tries = tries;
+		}
+
+		/**
+		 * Reads the result from the body of the response. Called on a
+		 * background thread, so it must not touch anything the main thread
+		 * may be using.
+		 *
+		 * @param response The body of the response.
+		 * @return The result read from <code>response</code>.
+		 * @throws JSONException if the response can't be read
+		 */
+		abstract T parse(Reader response) throws JSONException;
+
+		/**
+		 * Hands the result read from the response to the callback. Called
+		 * on the main thread.
+		 *
+		 * @param result The result read from the response.
+		 */
+		abstract void deliver(T result);
+
+		@Override
+		public void onSuccess(final String response) {
+			tries.succeeded();
+			decodeExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					decode(response == null ? "" : response);
+				}
+			});
+		}
+
+		private void decode(String response) {
+			final T result;
+			long start = System.nanoTime();
+			try {
+				result = parse(new StringReader(response));
+			} catch (final JSONException e) {
+				recordDecode(start, false);
+				Log.e(TAG, e.getMessage());
+				deliveryExecutor.execute(new Runnable() {
+					@Override
+					public void run() {
+						callback.onFailure(e.getMessage());
+					}
+				});
+				return;
+			}
+			recordDecode(start, true);
+			deliveryExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					deliver(result);
+				}
+			});
+		}
+
+		@Override
+		public void onFailure(Throwable t, String response) {
+			if (tries.retry(t)) {
+				Log.d(TAG, "Retrying after: " + t);
+			} else if (RequestRetrier.isTransient(t)) {
+				failTransiently(callback, t);
+			} else if (response == null) {
+				callback.onFailure("");
+			} else if (response.trim().startsWith("{")
+					|| response.trim().startsWith("[")) {
+				// A JSON error body, so report the error itself.
+				callback.onFailure(t.getMessage());
+			} else {
+				callback.onFailure(response);
+			}
+		}
+	}
+
+
+	/**
+	 * Handles a response to a request sent with the validators of the last
+	 * response to its URL. The server may answer <code>304 Not
+	 * Modified</code>, in which case {@link #notModified()} is called
+	 * instead of parsing anything. The validators of a new response are
+	 * kept once its result has been applied.
+	 *
+	 * @param <T> The type read from the response.
+	 */
+	private abstract class ConditionalResponseHandler<T>
+	extends ParsingResponseHandler<T> {
+		// The URL requested with validators
+		private final String conditionalUrl;
+		// The validators sent with the response
+		private String[] received;
+
+		/**
+		 * Creates a handler for a request that may be answered with
+		 * <code>304 Not Modified</code>.
+		 *
+		 * @param endpoint Where the request is measured.
+		 * @param callback Told about failures.
+		 * @param conditionalUrl The URL requested, including its query.
+		 * @param tries Told how the request went.
+		 */
+		ConditionalResponseHandler(ApiMetrics.Endpoint endpoint,
+				ApiCallback<?> callback, String conditionalUrl,
+				RequestRetrier.Tries tries) {
+			super(endpoint, callback, tries);
+			this.conditionalUrl = conditionalUrl;
+		}
+
+		/**
+		 * Hands the data already held to the callback, since the server
+		 * said it hasn't changed. Called on the main thread.
+		 */
+		abstract void notModified();
+
+		/**
+		 * Remembers the validators sent with the response, so that the
+		 * same data isn't sent again. Called once the result has been
+		 * applied.
+		 */
+		void keepValidators() {
+			if (received != null) {
+				validators.put(conditionalUrl, received[0], received[1]);
+			}
+		}
+
+		@Override
+		protected void sendSuccessMessage(int statusCode, String response) {
+			// Called on the thread that read the response, where its
+			// validators were recorded.
+			received = HttpValidators.takeReceived();
+			super.sendSuccessMessage(statusCode, response);
+		}
+
+		@Override
+		public void onFailure(Throwable t, String response) {
+			if (t instanceof HttpResponseException
+					&& ((HttpResponseException) t).getStatusCode()
+					== HttpStatus.SC_NOT_MODIFIED) {
+				Log.d(TAG, "Not modified: " + conditionalUrl);
+				super.tries.succeeded();
+				notModified();
+			} else {
+				super.onFailure(t, response);
+			}
+		}
+	}
+
+	/*
+	 * Measures its request into the metrics, marking its start and end on
+	 * the thread that makes it.
+	 */
+	private static class MeteredHandler extends AsyncHttpResponseHandler {
+		// Where the request is measured
+		private final ApiMetrics.Endpoint endpoint;
+		// Whether the request was measured, once it has succeeded
+		private boolean measured;
+
+		MeteredHandler(ApiMetrics.Endpoint endpoint) {
+			this.endpoint = endpoint;
+		}
+
+		@Override
+		protected void sendStartMessage() {
+			HttpMetrics.begin(endpoint);
+			super.sendStartMessage();
+		}
+
+		@Override
+		protected void sendSuccessMessage(int statusCode, String response) {
+			measured = HttpMetrics.finish(null) != null;
+			super.sendSuccessMessage(statusCode, response);
+		}
+
+		@Override
+		protected void sendFailureMessage(Throwable e, String response) {
+			HttpMetrics.finish(e);
+			super.sendFailureMessage(e, response);
+		}
+
+		/**
+		 * Records how long the response took to decode, if the request was
+		 * measured.
+		 *
+		 * @param startNanos When decoding started.
+		 * @param parsed Whether the response could be read.
+		 */
+		void recordDecode(long startNanos, boolean parsed) {
+			if (measured) {
+				endpoint.recordDecode(HttpMetrics.microsSince(startNanos), parsed);
+			}
+		}
+	}
+
+	/*
+	 * Measures its request into the metrics like a MeteredHandler, along
+	 * with how long its response takes to parse.
+	 */
+	private static class MeteredJsonHandler extends JsonHttpResponseHandler {
+		// Where the request is measured
+		private final ApiMetrics.Endpoint endpoint;
+		// Whether the request was measured, once it has succeeded
+		private boolean measured;
+
+		MeteredJsonHandler(ApiMetrics.Endpoint endpoint) {
+			this.endpoint = endpoint;
+		}
+
+		@Override
+		protected void sendStartMessage() {
+			HttpMetrics.begin(endpoint);
+			super.sendStartMessage();
+		}
+
+		@Override
+		protected void sendSuccessMessage(int statusCode, String response) {
+			measured = HttpMetrics.finish(null) != null;
+			super.sendSuccessMessage(statusCode, response);
+		}
+
+		@Override
+		protected void sendFailureMessage(Throwable e, String response) {
+			HttpMetrics.finish(e);
+			super.sendFailureMessage(e, response);
+		}
+
+		@Override
+		protected Object parseResponse(String response) throws JSONException {
+			long start = System.nanoTime();
+			boolean parsed = false;
+			try {
+				Object result = super.parseResponse(response);
+				parsed = true;
+				return result;
+			} finally {
+				if (measured) {
+					endpoint.recordDecode(HttpMetrics.microsSince(start), parsed);
+				}
+			}
+		}
+	}
+
+	/* Creates the background threads that decode responses. */
+	private static class DecodeThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(final Runnable task) {
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+					task.run();
+				}
+			}, "ApiDecode-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
 }
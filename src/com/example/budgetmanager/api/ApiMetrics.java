@@ -0,0 +1,342 @@
+package com.example.budgetmanager.api;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Measures the requests made to each endpoint: how long until the first
+ * byte of the response, how long in all, how long its body took to decode,
+ * how many bytes went each way, and how each ended.
+ *
+ * Endpoints are told apart by method and path, with ids in the path
+ * replaced by <code>:id</code>, such as
+ * <code>GET /budgets/:id/entries</code>, so that there is one set of
+ * measurements for each kind of request rather than for each thing
+ * requested. Times are in microseconds.
+ */
+public final class ApiMetrics {
+
+	/**
+	 * How a request ended.
+	 */
+	public enum Outcome {
+		/** A response with a status below 300. */
+		SUCCESS,
+		/** A <code>304 Not Modified</code> response. */
+		NOT_MODIFIED,
+		/** A response with any other status below 500. */
+		CLIENT_ERROR,
+		/** A response with a status of 500 or more. */
+		SERVER_ERROR,
+		/** No response in time. */
+		TIMEOUT,
+		/** No response, because of the network. */
+		NETWORK,
+		/**
+		 * A successful response whose body couldn't be read. It is counted
+		 * as a success as well.
+		 */
+		PARSE,
+		/** No response, for any other reason. */
+		OTHER
+	}
+
+	private static final Outcome[] OUTCOMES = Outcome.values();
+
+	/**
+	 * The measurements of the requests made to one endpoint. They can be
+	 * recorded from any thread, without allocating.
+	 */
+	public static final class Endpoint {
+		private final String name;
+		private final Histogram firstByte = new Histogram();
+		private final Histogram total = new Histogram();
+		private final Histogram decode = new Histogram();
+		private final Histogram bytesSent = new Histogram();
+		private final Histogram bytesReceived = new Histogram();
+		private final AtomicLongArray outcomes = new AtomicLongArray(OUTCOMES.length);
+
+		Endpoint(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Records a request that has ended.
+		 *
+		 * @param outcome How it ended.
+		 * @param firstByteMicros How long until the response started, or a
+		 *        negative number if there was none.
+		 * @param totalMicros How long until the response had been read, or
+		 *        the request failed.
+		 * @param sent The bytes of the request body.
+		 * @param received The bytes of the response body, as received.
+		 */
+		public void record(Outcome outcome, long firstByteMicros,
+				long totalMicros, long sent, long received) {
+			outcomes.incrementAndGet(outcome.ordinal());
+			if (firstByteMicros >= 0) {
+				firstByte.record(firstByteMicros);
+			}
+			total.record(totalMicros);
+			bytesSent.record(sent);
+			bytesReceived.record(received);
+		}
+
+		/**
+		 * Records how long the body of a response took to decode.
+		 *
+		 * @param micros How long it took.
+		 * @param parsed Whether it could be read. If not, the request is
+		 *        counted as {@link Outcome#PARSE}.
+		 */
+		public void recordDecode(long micros, boolean parsed) {
+			decode.record(micros);
+			if (!parsed) {
+				outcomes.incrementAndGet(Outcome.PARSE.ordinal());
+			}
+		}
+
+		/**
+		 * Gets the endpoint measured.
+		 *
+		 * @return The method and path, such as <code>GET /budgets</code>.
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Gets how many requests ended in the given way.
+		 *
+		 * @param outcome How they ended.
+		 * @return The number of requests.
+		 */
+		public long getCount(Outcome outcome) {
+			return outcomes.get(outcome.ordinal());
+		}
+
+		/**
+		 * Gets how long responses took to start, once a request was sent.
+		 *
+		 * @return The times to the first byte, in microseconds.
+		 */
+		public Histogram getFirstByte() {
+			return firstByte;
+		}
+
+		/**
+		 * Gets how long requests took, until their responses had been read
+		 * or they failed.
+		 *
+		 * @return The total times, in microseconds.
+		 */
+		public Histogram getTotal() {
+			return total;
+		}
+
+		/**
+		 * Gets how long the bodies of responses took to decode.
+		 *
+		 * @return The decode times, in microseconds.
+		 */
+		public Histogram getDecode() {
+			return decode;
+		}
+
+		/**
+		 * Gets the sizes of the request bodies, as sent.
+		 *
+		 * @return The bytes sent.
+		 */
+		public Histogram getBytesSent() {
+			return bytesSent;
+		}
+
+		/**
+		 * Gets the sizes of the response bodies, as received.
+		 *
+		 * @return The bytes received.
+		 */
+		public Histogram getBytesReceived() {
+			return bytesReceived;
+		}
+
+		void clear() {
+			for (int i = 0; i < OUTCOMES.length; ++i) {
+				outcomes.set(i, 0);
+			}
+			firstByte.clear();
+			total.clear();
+			decode.clear();
+			bytesSent.clear();
+			bytesReceived.clear();
+		}
+
+		/**
+		 * Describes the measurements as JSON.
+		 *
+		 * @return The description.
+		 * @throws JSONException never, in practice
+		 */
+		public JSONObject toJson() throws JSONException {
+			JSONObject counts = new JSONObject();
+			for (Outcome outcome : OUTCOMES) {
+				counts.put(outcome.name().toLowerCase(Locale.US), getCount(outcome));
+			}
+			JSONObject json = new JSONObject();
+			json.put("outcomes", counts);
+			json.put("first_byte_us", firstByte.toJson());
+			json.put("total_us", total.toJson());
+			json.put("decode_us", decode.toJson());
+			json.put("bytes_sent", bytesSent.toJson());
+			json.put("bytes_received", bytesReceived.toJson());
+			return json;
+		}
+	}
+
+	private final ConcurrentMap<String, Endpoint> endpoints =
+			new ConcurrentHashMap<String, Endpoint>();
+
+	/**
+	 * Gets the measurements of an endpoint, starting them if it hasn't been
+	 * measured yet.
+	 *
+	 * @param name The method and path of the endpoint, as given by
+	 *        {@link #endpointOf(String, String)}.
+	 * @return Its measurements.
+	 */
+	public Endpoint endpoint(String name) {
+		Endpoint endpoint = endpoints.get(name);
+		if (endpoint == null) {
+			Endpoint created = new Endpoint(name);
+			endpoint = endpoints.putIfAbsent(name, created);
+			if (endpoint == null) {
+				endpoint = created;
+			}
+		}
+		return endpoint;
+	}
+
+	/**
+	 * Gets the measurements of each endpoint requested so far, for showing
+	 * in the app.
+	 *
+	 * @return An unmodifiable map from each endpoint to its measurements,
+	 *         in order of endpoint.
+	 */
+	public SortedMap<String, Endpoint> getEndpoints() {
+		return Collections.unmodifiableSortedMap(
+				new TreeMap<String, Endpoint>(endpoints));
+	}
+
+	/**
+	 * Forgets every measurement.
+	 */
+	public void clear() {
+		for (Endpoint endpoint : endpoints.values()) {
+			endpoint.clear();
+		}
+	}
+
+	/**
+	 * Describes the measurements of every endpoint as JSON, keyed by
+	 * endpoint.
+	 *
+	 * @return The description.
+	 */
+	public JSONObject toJson() {
+		JSONObject json = new JSONObject();
+		try {
+			for (Map.Entry<String, Endpoint> e : getEndpoints().entrySet()) {
+				json.put(e.getKey(), e.getValue().toJson());
+			}
+		} catch (JSONException e) {
+			throw new IllegalStateException(e);
+		}
+		return json;
+	}
+
+	/**
+	 * Gets the endpoint a request is measured under: its method and path,
+	 * with each part of the path that is a number replaced by
+	 * <code>:id</code>.
+	 *
+	 * @param method The method of the request.
+	 * @param path The path of the request, without the query.
+	 * @return The endpoint, such as <code>DELETE /entries/:id</code>.
+	 */
+	public static String endpointOf(String method, String path) {
+		StringBuilder sb = new StringBuilder(method.length() + 1 + path.length());
+		sb.append(method).append(' ');
+		int start = 0;
+		while (start <= path.length()) {
+			int end = path.indexOf('/', start);
+			if (end < 0) {
+				end = path.length();
+			}
+			if (start > 0) {
+				sb.append('/');
+			}
+			if (end > start && isNumber(path, start, end)) {
+				sb.append(":id");
+			} else {
+				sb.append(path, start, end);
+			}
+			start = end + 1;
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Gets how a request ended, from why it failed.
+	 *
+	 * @param failure Why it failed, or <code>null</code> if it succeeded.
+	 * @return How it ended.
+	 */
+	public static Outcome outcomeOf(Throwable failure) {
+		if (failure == null) {
+			return Outcome.SUCCESS;
+		}
+		if (failure instanceof HttpResponseException) {
+			int status = ((HttpResponseException) failure).getStatusCode();
+			if (status == HttpStatus.SC_NOT_MODIFIED) {
+				return Outcome.NOT_MODIFIED;
+			}
+			return status >= HttpStatus.SC_INTERNAL_SERVER_ERROR
+					? Outcome.SERVER_ERROR : Outcome.CLIENT_ERROR;
+		}
+		// Both connecting and reading time out this way.
+		if (failure instanceof InterruptedIOException) {
+			return Outcome.TIMEOUT;
+		}
+		if (failure instanceof IOException) {
+			return Outcome.NETWORK;
+		}
+		if (failure instanceof JSONException) {
+			return Outcome.PARSE;
+		}
+		return Outcome.OTHER;
+	}
+
+	private static boolean isNumber(String s, int start, int end) {
+		for (int i = start; i < end; ++i) {
+			if (!Character.isDigit(s.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
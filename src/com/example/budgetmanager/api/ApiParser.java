@@ -0,0 +1,468 @@
+package com.example.budgetmanager.api;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import com.example.budgetmanager.Budget;
+import com.example.budgetmanager.Budget.Duration;
+import com.example.budgetmanager.Entry;
+import com.example.budgetmanager.SyncDelta;
+
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads budgets and entries straight from the JSON responses of the API,
+ * one token at a time, without building a tree of the whole response first.
+ *
+ * Fields the client doesn't know are skipped. A missing field, a value of
+ * the wrong type, or malformed JSON is reported as a {@link JSONException}
+ * with the same kind of message <code>JSONObject</code> gives, such as
+ * "No value for budget_name".
+ */
+public final class ApiParser {
+	// Budgets with at least this many entries keep them in compact storage
+	static final int COMPACT_ENTRY_COUNT = 1000;
+
+	private final DateTimeFormatter dateFormat;
+	private final DateTimeFormatter dateTimeFormat;
+
+	/**
+	 * Creates a parser for responses that use the given date formats.
+	 *
+	 * @param dateFormat The pattern of dates, such as "yyyy-MM-dd".
+	 * @param dateTimeFormat The pattern of date-times.
+	 */
+	public ApiParser(String dateFormat, String dateTimeFormat) {
+		this.dateFormat = DateTimeFormat.forPattern(dateFormat);
+		this.dateTimeFormat = DateTimeFormat.forPattern(dateTimeFormat);
+	}
+
+	/**
+	 * Reads a JSON array of budgets, such as the response of
+	 * <code>/budgets</code> or <code>/budgets/with_entries</code>.
+	 *
+	 * @param in The JSON to read.
+	 * @param withEntries <code>true</code> if each budget has an array of
+	 *        its entries, which are read into it.
+	 * @return The budgets, in the order they were read.
+	 * @throws JSONException if the JSON is malformed or a budget or entry is
+	 *         missing a field
+	 */
+	public List<Budget> readBudgets(Reader in, boolean withEntries)
+			throws JSONException {
+		JsonReader reader = new JsonReader(in);
+		try {
+			return readBudgetArray(reader, withEntries, new Latest());
+		} catch (IOException e) {
+			throw invalid(e);
+		} catch (RuntimeException e) {
+			throw invalid(e);
+		} finally {
+			close(reader);
+		}
+	}
+
+	/**
+	 * Reads a JSON array of budgets, each with an array of its entries, such
+	 * as the response of <code>/budgets/with_entries</code>, as the changes
+	 * since the budgets were never synced.
+	 *
+	 * @param in The JSON to read.
+	 * @return Changes holding every budget, with no tombstones, synced
+	 *         through the latest time a budget or entry was updated.
+	 * @throws JSONException if the JSON is malformed or a budget or entry is
+	 *         missing a field
+	 */
+	public SyncDelta readAllChanges(Reader in) throws JSONException {
+		JsonReader reader = new JsonReader(in);
+		try {
+			Latest latest = new Latest();
+			List<Budget> budgets = readBudgetArray(reader, true, latest);
+			return new SyncDelta(budgets, new long[0], new long[0],
+					latest.time);
+		} catch (IOException e) {
+			throw invalid(e);
+		} catch (RuntimeException e) {
+			throw invalid(e);
+		} finally {
+			close(reader);
+		}
+	}
+
+	/**
+	 * Reads the changes since a given time, such as the response of
+	 * <code>/budgets/changes</code>. The changes are a JSON object with
+	 * <ul>
+	 * <li><code>budgets</code>, an array of the changed budgets, each with
+	 * an array of its changed <code>entries</code>,</li>
+	 * <li><code>deleted_budgets</code> and <code>deleted_entries</code>,
+	 * arrays of tombstones, each an object with the <code>id</code> of what
+	 * was deleted and when it was, <code>deleted_at</code>.</li>
+	 * </ul>
+	 *
+	 * @param in The JSON to read.
+	 * @return The changes, synced through the latest time a budget or entry
+	 *         was updated or deleted.
+	 * @throws JSONException if the JSON is malformed or a budget, entry or
+	 *         tombstone is missing a field
+	 */
+	public SyncDelta readChanges(Reader in) throws JSONException {
+		JsonReader reader = new JsonReader(in);
+		try {
+			Latest latest = new Latest();
+			List<Budget> budgets = null;
+			long[] deletedBudgets = null;
+			long[] deletedEntries = null;
+
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String field = reader.nextName();
+				if (reader.peek() == JsonToken.NULL) {
+					reader.skipValue();
+				} else if (field.equals("budgets")) {
+					budgets = readBudgetArray(reader, true, latest);
+				} else if (field.equals("deleted_budgets")) {
+					deletedBudgets = readTombstones(reader, latest);
+				} else if (field.equals("deleted_entries")) {
+					deletedEntries = readTombstones(reader, latest);
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+
+			return new SyncDelta(require(budgets, "budgets"),
+					require(deletedBudgets, "deleted_budgets"),
+					require(deletedEntries, "deleted_entries"), latest.time);
+		} catch (IOException e) {
+			throw invalid(e);
+		} catch (RuntimeException e) {
+			throw invalid(e);
+		} finally {
+			close(reader);
+		}
+	}
+
+	/**
+	 * Reads a JSON array of the entries of <code>budget</code>, such as the
+	 * response of <code>/entries/:id/by_budget</code>. The entries are not
+	 * added to <code>budget</code>.
+	 *
+	 * @param in The JSON to read.
+	 * @param budget The budget the entries belong to.
+	 * @return The entries, in the order they were read.
+	 * @throws JSONException if the JSON is malformed or an entry is missing
+	 *         a field
+	 */
+	public List<Entry> readEntries(Reader in, Budget budget)
+			throws JSONException {
+		JsonReader reader = new JsonReader(in);
+		try {
+			return readEntryArray(reader, budget, new Latest());
+		} catch (IOException e) {
+			throw invalid(e);
+		} catch (RuntimeException e) {
+			throw invalid(e);
+		} finally {
+			close(reader);
+		}
+	}
+
+	/**
+	 * Reads one page of the entries of <code>budget</code>, such as the
+	 * response of <code>/entries/:id/by_budget</code> when asked for a page.
+	 * The page is a JSON object with <code>entries</code>, an array of the
+	 * entries on the page, and <code>next_cursor</code>, which asks for the
+	 * next page and is <code>null</code> or missing on the last page. The
+	 * entries are not added to <code>budget</code>.
+	 *
+	 * @param in The JSON to read.
+	 * @param budget The budget the entries belong to.
+	 * @return The page, with its entries in the order they were read.
+	 * @throws JSONException if the JSON is malformed or an entry is missing
+	 *         a field
+	 */
+	public EntryPage readEntryPage(Reader in, Budget budget)
+			throws JSONException {
+		JsonReader reader = new JsonReader(in);
+		try {
+			List<Entry> entries = null;
+			String nextCursor = null;
+
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String field = reader.nextName();
+				if (reader.peek() == JsonToken.NULL) {
+					reader.skipValue();
+				} else if (field.equals("entries")) {
+					entries = readEntryArray(reader, budget, new Latest());
+				} else if (field.equals("next_cursor")) {
+					nextCursor = reader.nextString();
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+
+			return new EntryPage(require(entries, "entries"), nextCursor);
+		} catch (IOException e) {
+			throw invalid(e);
+		} catch (RuntimeException e) {
+			throw invalid(e);
+		} finally {
+			close(reader);
+		}
+	}
+
+	private List<Budget> readBudgetArray(JsonReader reader,
+			boolean withEntries, Latest latest)
+			throws IOException, JSONException {
+		List<Budget> budgets = new ArrayList<Budget>();
+		reader.beginArray();
+		while (reader.hasNext()) {
+			budgets.add(readBudget(reader, withEntries, latest));
+		}
+		reader.endArray();
+		return budgets;
+	}
+
+	private Budget readBudget(JsonReader reader, boolean withEntries,
+			Latest latest) throws IOException, JSONException {
+		String name = null;
+		String duration = null;
+		Integer amount = null;
+		boolean recur = false;
+		String startDate = null;
+		Long id = null;
+		// The budget can't be built until all of its fields are read, so its
+		// entries are read without a budget and given it afterwards.
+		List<Entry> entries = null;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String field = reader.nextName();
+			if (reader.peek() == JsonToken.NULL) {
+				reader.skipValue();
+			} else if (field.equals("budget_name")) {
+				name = reader.nextString();
+			} else if (field.equals("recurrence_duration")) {
+				duration = reader.nextString();
+			} else if (field.equals("amount")) {
+				amount = reader.nextInt();
+			} else if (field.equals("recur")) {
+				recur = readOptBoolean(reader);
+			} else if (field.equals("start_date")) {
+				startDate = reader.nextString();
+			} else if (field.equals("id")) {
+				id = reader.nextLong();
+			} else if (field.equals("updated_at")) {
+				// Older responses don't give when budgets were updated.
+				latest.offer(parseDateTime(reader.nextString(), "updated_at"));
+			} else if (withEntries && field.equals("entries")) {
+				entries = readEntryArray(reader, null, latest);
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		Budget budget = new Budget(require(name, "budget_name"),
+				require(amount, "amount"), recur,
+				parseDate(require(startDate, "start_date"), "start_date"),
+				parseDuration(require(duration, "recurrence_duration")));
+		budget.setId(require(id, "id"));
+
+		if (withEntries) {
+			require(entries, "entries");
+			for (Entry e : entries) {
+				e.setBudget(budget);
+			}
+			if (entries.size() >= COMPACT_ENTRY_COUNT) {
+				budget.setCompactStorage(true);
+			}
+			budget.addEntries(entries);
+		}
+		return budget;
+	}
+
+	private List<Entry> readEntryArray(JsonReader reader, Budget budget,
+			Latest latest) throws IOException, JSONException {
+		List<Entry> entries = new ArrayList<Entry>();
+		reader.beginArray();
+		while (reader.hasNext()) {
+			Entry entry = readEntry(reader, budget);
+			latest.offer(entry.getUpdatedAt());
+			entries.add(entry);
+		}
+		reader.endArray();
+		return entries;
+	}
+
+	private Entry readEntry(JsonReader reader, Budget budget)
+			throws IOException, JSONException {
+		Long id = null;
+		Integer amount = null;
+		String date = null;
+		String createdAt = null;
+		String updatedAt = null;
+		String notes = null;
+
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String field = reader.nextName();
+			if (field.equals("notes") && reader.peek() == JsonToken.NULL) {
+				// Entries can be saved without notes.
+				reader.skipValue();
+				notes = "";
+			} else if (reader.peek() == JsonToken.NULL) {
+				reader.skipValue();
+			} else if (field.equals("id")) {
+				id = reader.nextLong();
+			} else if (field.equals("amount")) {
+				amount = reader.nextInt();
+			} else if (field.equals("expenditure_date")) {
+				date = reader.nextString();
+			} else if (field.equals("created_at")) {
+				createdAt = reader.nextString();
+			} else if (field.equals("updated_at")) {
+				updatedAt = reader.nextString();
+			} else if (field.equals("notes")) {
+				notes = reader.nextString();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		Entry entry = new Entry(require(id, "id"), require(amount, "amount"),
+				budget, require(notes, "notes"),
+				parseDate(require(date, "expenditure_date"),
+						"expenditure_date"));
+		entry.setCreatedAt(parseDateTime(require(createdAt, "created_at"),
+				"created_at"));
+		entry.setUpdatedAt(parseDateTime(require(updatedAt, "updated_at"),
+				"updated_at"));
+		return entry;
+	}
+
+	/* Reads an array of tombstones into the IDs of what was deleted. */
+	private long[] readTombstones(JsonReader reader, Latest latest)
+			throws IOException, JSONException {
+		long[] ids = new long[8];
+		int count = 0;
+		reader.beginArray();
+		while (reader.hasNext()) {
+			Long id = null;
+			String deletedAt = null;
+			reader.beginObject();
+			while (reader.hasNext()) {
+				String field = reader.nextName();
+				if (reader.peek() == JsonToken.NULL) {
+					reader.skipValue();
+				} else if (field.equals("id")) {
+					id = reader.nextLong();
+				} else if (field.equals("deleted_at")) {
+					deletedAt = reader.nextString();
+				} else {
+					reader.skipValue();
+				}
+			}
+			reader.endObject();
+
+			if (count == ids.length) {
+				ids = Arrays.copyOf(ids, count * 2);
+			}
+			ids[count++] = require(id, "id");
+			latest.offer(parseDateTime(require(deletedAt, "deleted_at"),
+					"deleted_at"));
+		}
+		reader.endArray();
+		return Arrays.copyOf(ids, count);
+	}
+
+	/* Reads a boolean the way JSONObject.optBoolean does. */
+	private static boolean readOptBoolean(JsonReader reader)
+			throws IOException {
+		JsonToken token = reader.peek();
+		if (token == JsonToken.BOOLEAN) {
+			return reader.nextBoolean();
+		} else if (token == JsonToken.STRING) {
+			return "true".equalsIgnoreCase(reader.nextString());
+		}
+		reader.skipValue();
+		return false;
+	}
+
+	private LocalDate parseDate(String value, String field)
+			throws JSONException {
+		try {
+			return LocalDate.parse(value, dateFormat);
+		} catch (IllegalArgumentException e) {
+			throw mistyped(value, field, "LocalDate");
+		}
+	}
+
+	private LocalDateTime parseDateTime(String value, String field)
+			throws JSONException {
+		try {
+			return LocalDateTime.parse(value, dateTimeFormat);
+		} catch (IllegalArgumentException e) {
+			throw mistyped(value, field, "LocalDateTime");
+		}
+	}
+
+	static Duration parseDuration(String value) throws JSONException {
+		try {
+			return Duration.valueOf(value);
+		} catch (IllegalArgumentException e) {
+			throw mistyped(value, "recurrence_duration", "Duration");
+		}
+	}
+
+	private static <T> T require(T value, String field) throws JSONException {
+		if (value == null) {
+			throw new JSONException("No value for " + field);
+		}
+		return value;
+	}
+
+	private static JSONException mistyped(String value, String field,
+			String type) {
+		return new JSONException("Value " + value + " at " + field
+				+ " cannot be converted to " + type);
+	}
+
+	/* Reports malformed JSON, or a value of the wrong type. */
+	private static JSONException invalid(Exception e) {
+		return new JSONException(e.getMessage());
+	}
+
+	/* The latest of the times offered to it. */
+	private static final class Latest {
+		private LocalDateTime time;
+
+		void offer(LocalDateTime t) {
+			if (time == null || t.isAfter(time)) {
+				time = t;
+			}
+		}
+	}
+
+	private static void close(JsonReader reader) {
+		try {
+			reader.close();
+		} catch (IOException e) {
+			// Nothing more to read, so nothing to report.
+		}
+	}
+}
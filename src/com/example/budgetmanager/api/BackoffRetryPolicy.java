@@ -0,0 +1,70 @@
+package com.example.budgetmanager.api;
+
+import java.util.Random;
+
+/**
+ * Retries a few times, waiting exponentially longer after each failure.
+ * Each wait is picked at random between nothing and its limit, so that
+ * clients which failed together don't all try again together.
+ */
+public final class BackoffRetryPolicy implements RetryPolicy {
+
+	/** How many times to send a request again, by default. */
+	public static final int DEFAULT_MAX_RETRIES = 3;
+
+	/** The limit of the first wait, by default, in milliseconds. */
+	public static final long DEFAULT_BASE_MILLIS = 500;
+
+	/** The limit of any wait, by default, in milliseconds. */
+	public static final long DEFAULT_MAX_MILLIS = 8000;
+
+	private final int maxRetries;
+	private final long baseMillis;
+	private final long maxMillis;
+	private final Random random;
+
+	/**
+	 * Creates a policy with the default retries and waits.
+	 */
+	public BackoffRetryPolicy() {
+		this(DEFAULT_MAX_RETRIES, DEFAULT_BASE_MILLIS, DEFAULT_MAX_MILLIS,
+				new Random());
+	}
+
+	/**
+	 * Creates a policy.
+	 *
+	 * @param maxRetries How many times to send a request again.
+	 * @param baseMillis The limit of the first wait, in milliseconds. Each
+	 *        wait after it has twice the limit of the one before.
+	 * @param maxMillis The limit of any wait, in milliseconds.
+	 * @param random Picks each wait.
+	 * @throws IllegalArgumentException if any count or time is negative
+	 */
+	public BackoffRetryPolicy(int maxRetries, long baseMillis, long maxMillis,
+			Random random) {
+		if (maxRetries < 0 || baseMillis < 0 || maxMillis < 0) {
+			throw new IllegalArgumentException(
+					"Retries and waits must not be negative");
+		}
+		this.maxRetries = maxRetries;
+		this.baseMillis = baseMillis;
+		this.maxMillis = maxMillis;
+		this.random = random;
+	}
+
+	@Override
+	public long getRetryDelay(int failures, Throwable error) {
+		if (failures > maxRetries) {
+			return -1;
+		}
+		// Doubles for each failure, without overflowing.
+		long limit = maxMillis;
+		if (failures <= 31) {
+			limit = Math.min(maxMillis, baseMillis << (failures - 1));
+		}
+		synchronized (random) {
+			return (long) (random.nextDouble() * limit);
+		}
+	}
+}
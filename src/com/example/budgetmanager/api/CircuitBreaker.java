@@ -0,0 +1,122 @@
+package com.example.budgetmanager.api;
+
+/**
+ * Stops requests to a host that keeps failing, so that they fail straight
+ * away instead of waiting to time out and adding to its load.
+ *
+ * The breaker opens after enough failures in a row. While it is open,
+ * requests are turned away, until a cool-down passes and one request is let
+ * through to try the host. If that request succeeds, the breaker closes,
+ * and if it fails, the breaker opens for another cool-down.
+ */
+public final class CircuitBreaker {
+
+	/** How many failures in a row open a breaker, by default. */
+	public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+
+	/** How long a breaker stays open for, by default, in milliseconds. */
+	public static final long DEFAULT_OPEN_MILLIS = 30000;
+
+	private final int failureThreshold;
+	private final long openMillis;
+
+	private int failures;
+	// When the breaker last opened, or -1 if it is closed
+	private long openedAt = -1;
+	// Whether a request has been let through to try the host
+	private boolean trying;
+
+	// Times opened, and requests turned away
+	private int openedCount;
+	private int rejectedCount;
+
+	/**
+	 * Creates a closed breaker.
+	 *
+	 * @param failureThreshold How many failures in a row open the breaker.
+	 * @param openMillis How long it stays open for, in milliseconds.
+	 * @throws IllegalArgumentException if <code>failureThreshold</code> is
+	 *         less than 1
+	 */
+	public CircuitBreaker(int failureThreshold, long openMillis) {
+		if (failureThreshold < 1) {
+			throw new IllegalArgumentException(
+					"failureThreshold must be at least 1");
+		}
+		this.failureThreshold = failureThreshold;
+		this.openMillis = openMillis;
+	}
+
+	/**
+	 * Asks whether a request may be sent now. Once the cool-down has
+	 * passed, only the first request asking is let through, until it
+	 * succeeds or fails.
+	 *
+	 * @param now The time now, in milliseconds.
+	 * @return <code>true</code> if the request may be sent,
+	 *         <code>false</code> if it should fail straight away.
+	 */
+	public synchronized boolean allowRequest(long now) {
+		if (openedAt < 0) {
+			return true;
+		}
+		if (!trying && now - openedAt >= openMillis) {
+			trying = true;
+			return true;
+		}
+		++rejectedCount;
+		return false;
+	}
+
+	/**
+	 * Records that the host answered, closing the breaker.
+	 */
+	public synchronized void recordSuccess() {
+		failures = 0;
+		openedAt = -1;
+		trying = false;
+	}
+
+	/**
+	 * Records that the host failed to answer, opening the breaker if it has
+	 * failed enough times in a row, or failed the request let through to
+	 * try it.
+	 *
+	 * @param now The time now, in milliseconds.
+	 */
+	public synchronized void recordFailure(long now) {
+		++failures;
+		if (trying || (openedAt < 0 && failures >= failureThreshold)) {
+			openedAt = now;
+			trying = false;
+			++openedCount;
+		}
+	}
+
+	/**
+	 * Gets whether requests are being turned away.
+	 *
+	 * @return <code>true</code> if the breaker is open.
+	 */
+	public synchronized boolean isOpen() {
+		return openedAt >= 0;
+	}
+
+	/**
+	 * Gets how many times the breaker has opened.
+	 *
+	 * @return The number of times it opened.
+	 */
+	public synchronized int getOpenedCount() {
+		return openedCount;
+	}
+
+	/**
+	 * Gets how many requests the breaker has turned away.
+	 *
+	 * @return The number of requests turned away.
+	 */
+	public synchronized int getRejectedCount() {
+		return rejectedCount;
+	}
+}
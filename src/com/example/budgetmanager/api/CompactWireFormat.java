@@ -0,0 +1,385 @@
+package com.example.budgetmanager.api;
+
+import com.example.budgetmanager.Budget;
+import com.example.budgetmanager.Entry;
+import com.example.budgetmanager.SyncDelta;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.protocol.HttpContext;
+import org.joda.time.DateTimeConstants;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+import org.json.JSONException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compact binary form of the budgets with their entries, which the
+ * server may send for <code>/budgets/with_entries</code> in place of JSON.
+ * Field names aren't repeated for every entry, ids and amounts are
+ * varints, dates are days since 1970-01-01 and times are milliseconds
+ * since then, so nothing has to be parsed with a date format.
+ *
+ * It is asked for with the <code>Accept</code> header, which still accepts
+ * JSON, and the response is read as whichever the server sent. The compact
+ * form is
+ * <pre>
+ * response: 0xCB 0x01 count budget*
+ * budget:   id name amount flags duration start_date [updated_at]
+ *           count entry*
+ * entry:    id amount expenditure_date created_at (updated_at - created_at)
+ *           notes
+ * </pre>
+ * where counts and ids are unsigned varints, amounts, dates and times are
+ * zigzag varints, strings are a varint length and that many bytes of UTF-8,
+ * and <code>flags</code> is a byte whose bit 0 is <code>recur</code> and
+ * bit 1 says whether <code>updated_at</code> follows.
+ */
+public final class CompactWireFormat {
+	/** The content type of the compact form. */
+	public static final String CONTENT_TYPE = "application/vnd.ubudget.compact";
+
+	private static final String ACCEPT = "Accept";
+	private static final String ACCEPT_COMPACT =
+			CONTENT_TYPE + ", application/json;q=0.5";
+	// The response is handed on as a string with one character for each
+	// byte, which this charset gives.
+	private static final String BYTE_CHARSET = "ISO-8859-1";
+
+	private static final int MAGIC = 0xCB;
+	private static final int VERSION = 1;
+	private static final int RECUR = 1;
+	private static final int HAS_UPDATED_AT = 2;
+
+	private final ApiParser parser;
+	private final String path;
+	private volatile boolean acceptCompact;
+
+	/* Asks for the compact form, if turned on. */
+	private final HttpRequestInterceptor negotiator = new HttpRequestInterceptor() {
+		@Override
+		public void process(HttpRequest request, HttpContext context) {
+			if (acceptCompact
+					&& HttpCompression.endpointOf(request).equals("GET " + path)) {
+				request.removeHeaders(ACCEPT);
+				request.addHeader(ACCEPT, ACCEPT_COMPACT);
+			}
+		}
+	};
+
+	/* Keeps the bytes of a compact response as they are when it is read. */
+	private final HttpResponseInterceptor byteCharset = new HttpResponseInterceptor() {
+		@Override
+		public void process(HttpResponse response, HttpContext context) {
+			HttpEntity body = response.getEntity();
+			if (body == null || body.getContentType() == null
+					|| !body.getContentType().getValue().startsWith(CONTENT_TYPE)) {
+				return;
+			}
+			response.setEntity(new HttpEntityWrapper(body) {
+				@Override
+				public Header getContentType() {
+					return new BasicHeader("Content-Type",
+							CONTENT_TYPE + "; charset=" + BYTE_CHARSET);
+				}
+			});
+		}
+	};
+
+	/**
+	 * Creates the format for the budgets with their entries at
+	 * <code>url</code>. It isn't asked for until
+	 * {@link #setAcceptCompact(boolean)} turns it on.
+	 *
+	 * @param parser Reads the response when it is JSON.
+	 * @param url The URL of the budgets with their entries.
+	 */
+	public CompactWireFormat(ApiParser parser, String url) {
+		this.parser = parser;
+		this.path = URI.create(url).getRawPath();
+	}
+
+	/**
+	 * Sets whether the compact form is asked for. The server must know it
+	 * for this to make a difference; otherwise JSON is sent as before.
+	 *
+	 * @param accept Whether to ask for the compact form.
+	 */
+	public void setAcceptCompact(boolean accept) {
+		acceptCompact = accept;
+	}
+
+	/**
+	 * Gets whether the compact form is asked for.
+	 *
+	 * @return Whether the compact form is asked for.
+	 */
+	public boolean isAcceptCompact() {
+		return acceptCompact;
+	}
+
+	/**
+	 * Adds the interceptors that ask for the compact form and keep its
+	 * bytes to <code>client</code>. They go after any that the client
+	 * already has, so that they see its headers and inflated responses.
+	 *
+	 * @param client The client to ask with.
+	 */
+	public void install(DefaultHttpClient client) {
+		client.addRequestInterceptor(negotiator);
+		client.addResponseInterceptor(byteCharset);
+	}
+
+	/**
+	 * Reads the budgets with their entries, in the compact form or as JSON,
+	 * as the changes since the budgets were never synced, like
+	 * {@link ApiParser#readAllChanges(Reader)}.
+	 *
+	 * @param in The response, with one character for each byte if it is
+	 *        in the compact form.
+	 * @return Changes holding every budget, with no tombstones, synced
+	 *         through the latest time a budget or entry was updated.
+	 * @throws JSONException if the response is malformed or a budget or
+	 *         entry is missing a field
+	 */
+	public SyncDelta readAllChanges(Reader in) throws JSONException {
+		PushbackReader reader = new PushbackReader(in, 1);
+		try {
+			int first = reader.read();
+			if (first != MAGIC) {
+				if (first >= 0) {
+					reader.unread(first);
+				}
+				return parser.readAllChanges(reader);
+			}
+			return decode(readBytes(reader));
+		} catch (IOException e) {
+			throw new JSONException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Writes budgets with their entries in the compact form, as the server
+	 * would send them.
+	 *
+	 * @param budgets The budgets.
+	 * @return The compact form, including its header.
+	 */
+	public static byte[] encode(List<Budget> budgets) {
+		Output out = new Output();
+		out.write(MAGIC);
+		out.write(VERSION);
+		out.writeVarint(budgets.size());
+		for (Budget b : budgets) {
+			out.writeVarint(b.getId());
+			out.writeString(b.getName());
+			out.writeZigZag(b.getBudgetAmount());
+			out.write(b.isRecurring() ? RECUR : 0);
+			out.writeString(b.getDuration().name());
+			out.writeZigZag(epochDay(b.getStartDate()));
+			List<Entry> entries = b.getEntries();
+			out.writeVarint(entries.size());
+			for (Entry e : entries) {
+				long createdAt = epochMillis(e.getCreatedAt());
+				out.writeVarint(e.getEntryId());
+				out.writeZigZag(e.getAmount());
+				out.writeZigZag(epochDay(e.getDate()));
+				out.writeZigZag(createdAt);
+				out.writeZigZag(epochMillis(e.getUpdatedAt()) - createdAt);
+				out.writeString(e.getNotes());
+			}
+		}
+		return out.toByteArray();
+	}
+
+	private SyncDelta decode(byte[] bytes) throws JSONException {
+		Input in = new Input(bytes);
+		int version = in.read();
+		if (version != VERSION) {
+			throw new JSONException("Unknown compact version " + version);
+		}
+		LocalDateTime latest = null;
+		int budgetCount = in.readCount();
+		List<Budget> budgets = new ArrayList<Budget>(budgetCount);
+		for (int i = 0; i < budgetCount; ++i) {
+			long id = in.readVarint();
+			String name = in.readString();
+			int amount = (int) in.readZigZag();
+			int flags = in.read();
+			Budget.Duration duration = ApiParser.parseDuration(in.readString());
+			LocalDate startDate = toDate(in.readZigZag());
+			if ((flags & HAS_UPDATED_AT) != 0) {
+				latest = later(latest, toDateTime(in.readZigZag()));
+			}
+			Budget budget = new Budget(name, amount, (flags & RECUR) != 0,
+					startDate, duration);
+			budget.setId(id);
+
+			int entryCount = in.readCount();
+			List<Entry> entries = new ArrayList<Entry>(entryCount);
+			for (int j = 0; j < entryCount; ++j) {
+				long entryId = in.readVarint();
+				int entryAmount = (int) in.readZigZag();
+				LocalDate date = toDate(in.readZigZag());
+				long createdAt = in.readZigZag();
+				long updatedAt = createdAt + in.readZigZag();
+				Entry entry = new Entry(entryId, entryAmount, budget,
+						in.readString(), date);
+				entry.setCreatedAt(toDateTime(createdAt));
+				entry.setUpdatedAt(toDateTime(updatedAt));
+				latest = later(latest, entry.getUpdatedAt());
+				entries.add(entry);
+			}
+			if (entryCount >= ApiParser.COMPACT_ENTRY_COUNT) {
+				budget.setCompactStorage(true);
+			}
+			budget.addEntries(entries);
+			budgets.add(budget);
+		}
+		if (in.remaining() != 0) {
+			throw new JSONException(in.remaining()
+					+ " bytes left after the budgets");
+		}
+		return new SyncDelta(budgets, new long[0], new long[0], latest);
+	}
+
+	/* Reads the rest of a response of one character for each byte. */
+	private static byte[] readBytes(Reader reader) throws IOException,
+			JSONException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		char[] buffer = new char[8192];
+		int n;
+		while ((n = reader.read(buffer)) >= 0) {
+			for (int i = 0; i < n; ++i) {
+				if (buffer[i] > 0xFF) {
+					throw new JSONException("Compact response read as text");
+				}
+				out.write(buffer[i]);
+			}
+		}
+		return out.toByteArray();
+	}
+
+	private static LocalDateTime later(LocalDateTime a, LocalDateTime b) {
+		return a == null || b.isAfter(a) ? b : a;
+	}
+
+	private static long epochDay(LocalDate date) {
+		return date.toDateTimeAtStartOfDay(DateTimeZone.UTC).getMillis()
+				/ DateTimeConstants.MILLIS_PER_DAY;
+	}
+
+	private static LocalDate toDate(long epochDay) {
+		return new LocalDate(epochDay * DateTimeConstants.MILLIS_PER_DAY,
+				DateTimeZone.UTC);
+	}
+
+	// Times are sent without a zone, so they are counted as if in UTC.
+	private static long epochMillis(LocalDateTime time) {
+		return time.toDateTime(DateTimeZone.UTC).getMillis();
+	}
+
+	private static LocalDateTime toDateTime(long epochMillis) {
+		return new LocalDateTime(epochMillis, DateTimeZone.UTC);
+	}
+
+	/* Reads the compact form, failing on anything malformed. */
+	private static final class Input {
+		private final byte[] bytes;
+		private int position;
+
+		Input(byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+		int remaining() {
+			return bytes.length - position;
+		}
+
+		int read() throws JSONException {
+			if (position >= bytes.length) {
+				throw new JSONException("Compact response ended early");
+			}
+			return bytes[position++] & 0xFF;
+		}
+
+		long readVarint() throws JSONException {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				int b = read();
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+			throw new JSONException("Varint too long");
+		}
+
+		long readZigZag() throws JSONException {
+			long value = readVarint();
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+		/* Reads a count, which can be no more than the bytes left. */
+		int readCount() throws JSONException {
+			long count = readVarint();
+			if (count > remaining()) {
+				throw new JSONException("Count " + count + " past the end");
+			}
+			return (int) count;
+		}
+
+		String readString() throws JSONException {
+			int length = readCount();
+			try {
+				String s = new String(bytes, position, length, "UTF-8");
+				position += length;
+				return s;
+			} catch (UnsupportedEncodingException e) {
+				throw new AssertionError(e);
+			}
+		}
+	}
+
+	/* Writes the compact form. */
+	private static final class Output extends ByteArrayOutputStream {
+
+		void writeVarint(long value) {
+			while ((value & ~0x7FL) != 0) {
+				write((int) (value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			write((int) value);
+		}
+
+		void writeZigZag(long value) {
+			writeVarint((value << 1) ^ (value >> 63));
+		}
+
+		void writeString(String s) {
+			try {
+				byte[] utf8 = s.getBytes("UTF-8");
+				writeVarint(utf8.length);
+				write(utf8, 0, utf8.length);
+			} catch (UnsupportedEncodingException e) {
+				throw new AssertionError(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,221 @@
+package com.example.budgetmanager.api;
+
+import android.content.Context;
+import android.content.Intent;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps track of whether the device is online, as told by the connectivity
+ * broadcast, so that checking it before each request is only a read of a
+ * field rather than a call to the system.
+ *
+ * Requests made while offline can be parked until the network returns.
+ * Each parked request is given a deadline, after which it is given up on
+ * instead.
+ */
+public final class ConnectivityMonitor {
+
+	/** How long requests are parked for, by default, in milliseconds. */
+	public static final long DEFAULT_PARK_MILLIS = 10000;
+
+	private final Timer timer;
+
+	private volatile boolean online;
+	private volatile long parkMillis = DEFAULT_PARK_MILLIS;
+
+	// The requests waiting for the network, in the order they were parked
+	private final List<Parked> parked = new ArrayList<Parked>();
+
+	// Requests parked, run once online, and given up on
+	private int parkedCount;
+	private int resumedCount;
+	private int expiredCount;
+
+	/**
+	 * Creates a monitor.
+	 *
+	 * @param online Whether the device is online to begin with.
+	 * @param timer Gives up on parked requests once their deadline passes.
+	 */
+	public ConnectivityMonitor(boolean online, Timer timer) {
+		this.online = online;
+		this.timer = timer;
+	}
+
+	/**
+	 * Asks the system whether the device is online. This is a call to
+	 * another process, so should only be made when the monitor is created.
+	 *
+	 * @param context Any context of the application.
+	 * @return <code>true</code> if the device is online.
+	 */
+	public static boolean queryOnline(Context context) {
+		ConnectivityManager conMgr = (ConnectivityManager)
+				context.getSystemService(Context.CONNECTIVITY_SERVICE);
+		NetworkInfo activeNetwork = conMgr.getActiveNetworkInfo();
+		return activeNetwork != null && activeNetwork.isConnected();
+	}
+
+	/**
+	 * Updates the state from a connectivity broadcast, running the parked
+	 * requests if the device is now online.
+	 *
+	 * @param intent A {@link ConnectivityManager#CONNECTIVITY_ACTION}
+	 *        broadcast.
+	 */
+	public void onConnectivityChanged(Intent intent) {
+		setOnline(!intent.getBooleanExtra(
+				ConnectivityManager.EXTRA_NO_CONNECTIVITY, false));
+	}
+
+	/**
+	 * Gets whether the device is online, as of the last broadcast.
+	 *
+	 * @return <code>true</code> if the device is online.
+	 */
+	public boolean isOnline() {
+		return online;
+	}
+
+	/**
+	 * Sets whether the device is online. Once it is, the parked requests
+	 * are run, in the order they were parked, on the calling thread.
+	 *
+	 * @param online Whether the device is online.
+	 */
+	public void setOnline(boolean online) {
+		List<Parked> ready;
+		synchronized (this) {
+			this.online = online;
+			if (!online) {
+				return;
+			}
+			ready = new ArrayList<Parked>(parked);
+			parked.clear();
+			resumedCount += ready.size();
+		}
+		for (Parked p : ready) {
+			p.request.run();
+		}
+	}
+
+	/**
+	 * Sets how long requests are parked for while offline. Zero gives up
+	 * on requests made while offline straight away.
+	 *
+	 * @param millis How long to park requests for, in milliseconds.
+	 * @throws IllegalArgumentException if <code>millis</code> is negative
+	 */
+	public void setParkMillis(long millis) {
+		if (millis < 0) {
+			throw new IllegalArgumentException("millis must not be negative");
+		}
+		parkMillis = millis;
+	}
+
+	/**
+	 * Gets how long requests are parked for while offline.
+	 *
+	 * @return How long requests are parked for, in milliseconds.
+	 */
+	public long getParkMillis() {
+		return parkMillis;
+	}
+
+	/**
+	 * Runs <code>request</code> now if the device is online, or else once
+	 * it is, unless the park deadline passes first, in which case
+	 * <code>expired</code> is run instead.
+	 *
+	 * @param request Makes the request.
+	 * @param expired Gives up on the request.
+	 */
+	public void park(Runnable request, Runnable expired) {
+		final Parked p = new Parked(request, expired);
+		long millis = parkMillis;
+		boolean runNow;
+		synchronized (this) {
+			// Checked together with parking, so that the network can't
+			// return in between and leave the request waiting.
+			runNow = online;
+			if (!runNow && millis > 0) {
+				parked.add(p);
+				++parkedCount;
+			} else if (!runNow) {
+				++expiredCount;
+			}
+		}
+		if (runNow) {
+			request.run();
+		} else if (millis == 0) {
+			expired.run();
+		} else {
+			timer.schedule(new Runnable() {
+				@Override
+				public void run() {
+					boolean waiting;
+					synchronized (ConnectivityMonitor.this) {
+						waiting = parked.remove(p);
+						if (waiting) {
+							++expiredCount;
+						}
+					}
+					if (waiting) {
+						p.expired.run();
+					}
+				}
+			}, millis);
+		}
+	}
+
+	/**
+	 * Gets how many requests are waiting for the network.
+	 *
+	 * @return The number of requests parked now.
+	 */
+	public synchronized int getWaitingCount() {
+		return parked.size();
+	}
+
+	/**
+	 * Gets how many requests have been parked.
+	 *
+	 * @return The number of requests parked so far.
+	 */
+	public synchronized int getParkedCount() {
+		return parkedCount;
+	}
+
+	/**
+	 * Gets how many parked requests were run once the network returned.
+	 *
+	 * @return The number of parked requests run.
+	 */
+	public synchronized int getResumedCount() {
+		return resumedCount;
+	}
+
+	/**
+	 * Gets how many requests were given up on while offline.
+	 *
+	 * @return The number of requests given up on.
+	 */
+	public synchronized int getExpiredCount() {
+		return expiredCount;
+	}
+
+	/* A request waiting for the network. */
+	private static final class Parked {
+		final Runnable request;
+		final Runnable expired;
+
+		Parked(Runnable request, Runnable expired) {
+			this.request = request;
+			this.expired = expired;
+		}
+	}
+}
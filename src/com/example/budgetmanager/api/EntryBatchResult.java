@@ -0,0 +1,81 @@
+package com.example.budgetmanager.api;
+
+import com.example.budgetmanager.Entry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of creating or removing several entries on the server in one
+ * request. Each entry may succeed or fail on its own.
+ */
+public final class EntryBatchResult {
+	private final List<Entry> entries;
+	private final Map<Entry, String> errors;
+
+	/**
+	 * Creates the outcome of a batch.
+	 *
+	 * @param entries The entries sent, in the order they were sent.
+	 * @param errors For each entry, in the same order, why it failed, or
+	 *        <code>null</code> if it succeeded.
+	 * @throws IllegalArgumentException if there isn't one error for each
+	 *         entry
+	 */
+	public EntryBatchResult(List<Entry> entries, List<String> errors) {
+		if (entries.size() != errors.size()) {
+			throw new IllegalArgumentException(
+					"Expected " + entries.size() + " results");
+		}
+		this.entries = Collections.unmodifiableList(
+				new ArrayList<Entry>(entries));
+		this.errors = new IdentityHashMap<Entry, String>();
+		for (int i = 0; i < errors.size(); ++i) {
+			if (errors.get(i) != null) {
+				this.errors.put(entries.get(i), errors.get(i));
+			}
+		}
+	}
+
+	/**
+	 * Gets the entries sent, in the order they were sent.
+	 *
+	 * @return An unmodifiable list of the entries.
+	 */
+	public List<Entry> getEntries() {
+		return entries;
+	}
+
+	/**
+	 * Checks whether <code>entry</code> was created or removed.
+	 *
+	 * @param entry One of the entries sent.
+	 * @return <code>true</code> if the server took the change.
+	 */
+	public boolean succeeded(Entry entry) {
+		return !errors.containsKey(entry);
+	}
+
+	/**
+	 * Gets why <code>entry</code> couldn't be created or removed.
+	 *
+	 * @param entry One of the entries sent.
+	 * @return The reason the server gave, or <code>null</code> if it
+	 *         succeeded.
+	 */
+	public String getError(Entry entry) {
+		return errors.get(entry);
+	}
+
+	/**
+	 * Gets how many of the entries failed.
+	 *
+	 * @return The number of entries that failed.
+	 */
+	public int getFailureCount() {
+		return errors.size();
+	}
+}
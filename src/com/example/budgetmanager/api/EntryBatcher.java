@@ -0,0 +1,208 @@
+package com.example.budgetmanager.api;
+
+import com.example.budgetmanager.Entry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the entries created or removed within a short window, and sends
+ * them to the server together, in one request for the creations and one for
+ * the removals, rather than one request for each entry. Each caller is
+ * still told about its own entry, as if it had been sent alone.
+ *
+ * A window starts with the first entry collected, and ends after a delay,
+ * or once enough entries have been collected to fill a batch. A window with
+ * only one entry sends it through the usual single-entry request.
+ *
+ * Creations are sent before removals, but in separate requests which the
+ * server may handle in either order, so an entry shouldn't be removed in
+ * the same window it was created in. All methods must be called on the
+ * main thread.
+ */
+public final class EntryBatcher {
+
+	/** How long to collect entries for, by default, in milliseconds. */
+	public static final long DEFAULT_WINDOW_MILLIS = 50;
+
+	/** The most entries sent in one request, by default. */
+	public static final int DEFAULT_MAX_BATCH_SIZE = 50;
+
+	private final ApiInterface api;
+	private final Timer timer;
+	private final long windowMillis;
+	private final int maxBatchSize;
+
+	private List<Pending<Long>> creates = new ArrayList<Pending<Long>>();
+	private List<Pending<Object>> removes = new ArrayList<Pending<Object>>();
+
+	// Whether the end of the window has been scheduled
+	private boolean scheduled;
+
+	/**
+	 * Creates a batcher with the default window and batch size, which runs
+	 * on the main thread.
+	 *
+	 * @param api The interface to send the entries through.
+	 */
+	public EntryBatcher(ApiInterface api) {
+		this(api, new MainThreadTimer(), DEFAULT_WINDOW_MILLIS,
+				DEFAULT_MAX_BATCH_SIZE);
+	}
+
+	/**
+	 * Creates a batcher.
+	 *
+	 * @param api The interface to send the entries through.
+	 * @param timer Ends each window.
+	 * @param windowMillis How long to collect entries for, in milliseconds.
+	 * @param maxBatchSize The most entries to send in one request.
+	 * @throws IllegalArgumentException if <code>maxBatchSize</code> is less
+	 *         than 1
+	 */
+	public EntryBatcher(ApiInterface api, Timer timer, long windowMillis,
+			int maxBatchSize) {
+		if (maxBatchSize < 1) {
+			throw new IllegalArgumentException(
+					"maxBatchSize must be at least 1");
+		}
+		this.api = api;
+		this.timer = timer;
+		this.windowMillis = windowMillis;
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	/**
+	 * Creates <code>entry</code> on the server with the next batch, as by
+	 * {@link ApiInterface#create(Entry, ApiCallback)}.
+	 *
+	 * @param entry The entry to create.
+	 * @param callback Told the ID of the entry, or why it failed.
+	 */
+	public void create(Entry entry, ApiCallback<Long> callback) {
+		creates.add(new Pending<Long>(entry, callback));
+		collected(creates.size());
+	}
+
+	/**
+	 * Removes <code>entry</code> from the server with the next batch, as by
+	 * {@link ApiInterface#remove(Entry, ApiCallback)}.
+	 *
+	 * @param entry The entry to remove.
+	 * @param callback Told whether the removal succeeded.
+	 */
+	public void remove(Entry entry, ApiCallback<Object> callback) {
+		removes.add(new Pending<Object>(entry, callback));
+		collected(removes.size());
+	}
+
+	/**
+	 * Sends the entries collected so far without waiting for the window to
+	 * end.
+	 */
+	public void flush() {
+		List<Pending<Long>> sendCreates = creates;
+		List<Pending<Object>> sendRemoves = removes;
+		creates = new ArrayList<Pending<Long>>();
+		removes = new ArrayList<Pending<Object>>();
+
+		if (sendCreates.size() == 1) {
+			Pending<Long> only = sendCreates.get(0);
+			api.create(only.entry, only.callback);
+		} else if (!sendCreates.isEmpty()) {
+			api.create(entriesOf(sendCreates),
+					new Distributor<Long>(sendCreates) {
+				@Override
+				Long resultFor(Entry entry) {
+					return entry.getEntryId();
+				}
+			});
+		}
+
+		if (sendRemoves.size() == 1) {
+			Pending<Object> only = sendRemoves.get(0);
+			api.remove(only.entry, only.callback);
+		} else if (!sendRemoves.isEmpty()) {
+			api.remove(entriesOf(sendRemoves),
+					new Distributor<Object>(sendRemoves) {
+				@Override
+				Object resultFor(Entry entry) {
+					return null;
+				}
+			});
+		}
+	}
+
+	/* Ends the window early if a batch is full, or else schedules its end. */
+	private void collected(int size) {
+		if (size >= maxBatchSize) {
+			flush();
+		} else if (!scheduled) {
+			scheduled = true;
+			timer.schedule(new Runnable() {
+				@Override
+				public void run() {
+					scheduled = false;
+					flush();
+				}
+			}, windowMillis);
+		}
+	}
+
+	private static List<Entry> entriesOf(List<? extends Pending<?>> pending) {
+		List<Entry> entries = new ArrayList<Entry>(pending.size());
+		for (Pending<?> p : pending) {
+			entries.add(p.entry);
+		}
+		return entries;
+	}
+
+	/* An entry waiting to be sent, and whom to tell about it. */
+	private static final class Pending<T> {
+		final Entry entry;
+		final ApiCallback<T> callback;
+
+		Pending(Entry entry, ApiCallback<T> callback) {
+			this.entry = entry;
+			this.callback = callback;
+		}
+	}
+
+	/* Tells each caller in a batch about its own entry. */
+	private abstract static class Distributor<T>
+	implements TransientFailureCallback<EntryBatchResult> {
+		private final List<Pending<T>> batch;
+
+		Distributor(List<Pending<T>> batch) {
+			this.batch = batch;
+		}
+
+		/* The result to pass a caller whose entry succeeded. */
+		abstract T resultFor(Entry entry);
+
+		@Override
+		public void onSuccess(EntryBatchResult result) {
+			for (Pending<T> p : batch) {
+				if (result.succeeded(p.entry)) {
+					p.callback.onSuccess(resultFor(p.entry));
+				} else {
+					p.callback.onFailure(result.getError(p.entry));
+				}
+			}
+		}
+
+		@Override
+		public void onFailure(String errorMessage) {
+			for (Pending<T> p : batch) {
+				p.callback.onFailure(errorMessage);
+			}
+		}
+
+		@Override
+		public void onTransientFailure(String errorMessage, Throwable cause) {
+			for (Pending<T> p : batch) {
+				ApiInterface.failTransiently(p.callback, errorMessage, cause);
+			}
+		}
+	}
+}
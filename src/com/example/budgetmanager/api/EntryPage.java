@@ -0,0 +1,57 @@
+package com.example.budgetmanager.api;
+
+import com.example.budgetmanager.Entry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of the entries of a budget, newest first, along with the cursor
+ * that asks for the page after it.
+ */
+public final class EntryPage {
+	private final List<Entry> entries;
+	private final String nextCursor;
+
+	/**
+	 * Creates a page of entries.
+	 *
+	 * @param entries The entries on the page, in the order they were sent.
+	 * @param nextCursor The cursor of the next, older page, or
+	 *        <code>null</code> if this is the last page.
+	 */
+	public EntryPage(List<Entry> entries, String nextCursor) {
+		this.entries = Collections.unmodifiableList(
+				new ArrayList<Entry>(entries));
+		this.nextCursor = nextCursor;
+	}
+
+	/**
+	 * Gets the entries on the page, including any that were already held.
+	 *
+	 * @return An unmodifiable list of the entries on the page.
+	 */
+	public List<Entry> getEntries() {
+		return entries;
+	}
+
+	/**
+	 * Gets the cursor that asks for the next, older page.
+	 *
+	 * @return The cursor of the next page, or <code>null</code> if this is
+	 *         the last page.
+	 */
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	/**
+	 * Gets whether there are older entries after this page.
+	 *
+	 * @return Whether there is a next page.
+	 */
+	public boolean hasMore() {
+		return nextCursor != null;
+	}
+}
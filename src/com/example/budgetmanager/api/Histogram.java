@@ -0,0 +1,164 @@
+package com.example.budgetmanager.api;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts how many values fell in each of a fixed set of ranges, so that
+ * percentiles can be estimated without keeping the values. Each power of
+ * two is split into four ranges, so estimates are within a quarter of the
+ * true value.
+ *
+ * Recording a value only updates counters, without allocating or locking,
+ * so it can be done from any thread, on every request.
+ */
+public final class Histogram {
+
+	// Ranges each power of two is split into
+	private static final int SUB_BUCKETS = 4;
+	private static final int SUB_BUCKET_BITS = 2;
+	// Values from 2^MAX_POWER up share the last range
+	private static final int MAX_POWER = 40;
+	private static final int BUCKET_COUNT =
+			SUB_BUCKETS + (MAX_POWER - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sum = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a value.
+	 *
+	 * @param value The value. Negative values are recorded as 0.
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		counts.incrementAndGet(bucketOf(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		long highest = max.get();
+		while (value > highest && !max.compareAndSet(highest, value)) {
+			highest = max.get();
+		}
+	}
+
+	/**
+	 * Gets how many values have been recorded.
+	 *
+	 * @return The number of values.
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Gets the mean of the values recorded.
+	 *
+	 * @return The mean, or 0 if none have been recorded.
+	 */
+	public double getMean() {
+		long n = count.get();
+		return n == 0 ? 0 : (double) sum.get() / n;
+	}
+
+	/**
+	 * Gets the largest value recorded.
+	 *
+	 * @return The largest value, or 0 if none have been recorded.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Estimates the value that the given fraction of values are at or
+	 * below, as the top of the range it fell in.
+	 *
+	 * @param fraction The fraction, from 0 to 1, such as 0.99 for the 99th
+	 *        percentile.
+	 * @return The estimate, or 0 if no values have been recorded.
+	 */
+	public long getPercentile(double fraction) {
+		long n = count.get();
+		if (n == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(fraction * n));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; ++i) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(lowestOf(i + 1) - 1, max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Forgets every value recorded.
+	 */
+	public void clear() {
+		for (int i = 0; i < BUCKET_COUNT; ++i) {
+			counts.set(i, 0);
+		}
+		count.set(0);
+		sum.set(0);
+		max.set(0);
+	}
+
+	/**
+	 * Describes the values recorded as JSON: how many there were, their
+	 * mean, median, 90th and 99th percentiles and largest, and how many fell
+	 * at or above the bottom of each range that any did.
+	 *
+	 * @return The description.
+	 * @throws JSONException never, in practice
+	 */
+	public JSONObject toJson() throws JSONException {
+		JSONObject json = new JSONObject();
+		json.put("count", getCount());
+		json.put("mean", getMean());
+		json.put("p50", getPercentile(0.5));
+		json.put("p90", getPercentile(0.9));
+		json.put("p99", getPercentile(0.99));
+		json.put("max", getMax());
+		JSONObject buckets = new JSONObject();
+		for (int i = 0; i < BUCKET_COUNT; ++i) {
+			long inBucket = counts.get(i);
+			if (inBucket > 0) {
+				buckets.put(Long.toString(lowestOf(i)), inBucket);
+			}
+		}
+		json.put("buckets", buckets);
+		return json;
+	}
+
+	/* Gets the range a value falls in. */
+	static int bucketOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int power = 63 - Long.numberOfLeadingZeros(value);
+		if (power >= MAX_POWER) {
+			return BUCKET_COUNT - 1;
+		}
+		int sub = (int) (value >>> (power - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return SUB_BUCKETS + (power - SUB_BUCKET_BITS) * SUB_BUCKETS + sub;
+	}
+
+	/* Gets the lowest value in a range, or past the last range. */
+	static long lowestOf(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int power = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+		int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+		return (long) (SUB_BUCKETS + sub) << (power - SUB_BUCKET_BITS);
+	}
+}
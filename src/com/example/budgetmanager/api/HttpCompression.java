@@ -0,0 +1,282 @@
+package com.example.budgetmanager.api;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses large request bodies with gzip, if turned on, and counts the
+ * bytes of each request and response body as they go over the network and
+ * as they are before compressing or after decompressing.
+ *
+ * Responses are already asked for with <code>Accept-Encoding: gzip</code>
+ * and inflated as they are read by {@link com.loopj.android.http.AsyncHttpClient
+ * AsyncHttpClient}; the counting is done on either side of that. The bytes
+ * of the last request and response made on each thread, as they went over
+ * the network, are kept for {@link HttpMetrics} to read.
+ */
+public final class HttpCompression {
+	/** Request bodies smaller than this are never compressed. */
+	public static final int MIN_COMPRESSED_BYTES = 1024;
+
+	private static final String GZIP = "gzip";
+	private static final String CONTENT_ENCODING = "Content-Encoding";
+
+	// The endpoint of the request being made on each thread, as a request
+	// and its response are handled on the same thread
+	private static final ThreadLocal<String> ENDPOINT = new ThreadLocal<String>();
+	// The counted body of the response being read on each thread, before
+	// it is inflated
+	// It is kept until the next request, so the bytes can be read once the
+	// response has been.
+	private static final ThreadLocal<CountingEntity> WIRE =
+			new ThreadLocal<CountingEntity>();
+	// The bytes of the request body sent on each thread, as they went over
+	// the network, in a holder so that setting them doesn't allocate
+	private static final ThreadLocal<long[]> SENT = new ThreadLocal<long[]>() {
+		@Override
+		protected long[] initialValue() {
+			return new long[1];
+		}
+	};
+
+	private final TransferStats stats;
+	private volatile boolean compressRequests;
+
+	/* Notes the endpoint, and compresses and counts the request body. */
+	private final HttpRequestInterceptor requestInterceptor =
+			new HttpRequestInterceptor() {
+		@Override
+		public void process(HttpRequest request, HttpContext context)
+				throws IOException {
+			String requested = endpointOf(request);
+			ENDPOINT.set(requested);
+			WIRE.remove();
+			long[] sent = SENT.get();
+			sent[0] = 0;
+			if (!(request instanceof HttpEntityEnclosingRequest)) {
+				return;
+			}
+			HttpEntityEnclosingRequest enclosing = (HttpEntityEnclosingRequest) request;
+			HttpEntity body = enclosing.getEntity();
+			if (body == null) {
+				return;
+			}
+			long length = body.getContentLength();
+			if (!compressRequests || length < MIN_COMPRESSED_BYTES
+					|| body.getContentEncoding() != null
+					|| request.containsHeader(CONTENT_ENCODING)) {
+				stats.recordSent(requested, length, length);
+				sent[0] = Math.max(length, 0);
+				return;
+			}
+			ByteArrayOutputStream raw = new ByteArrayOutputStream((int) length);
+			body.writeTo(raw);
+			ByteArrayEntity compressed = new ByteArrayEntity(gzip(raw.toByteArray()));
+			compressed.setContentType(body.getContentType());
+			compressed.setContentEncoding(GZIP);
+			enclosing.setEntity(compressed);
+			stats.recordSent(requested, compressed.getContentLength(), raw.size());
+			sent[0] = compressed.getContentLength();
+		}
+	};
+
+	/* Counts the response body as it comes off the network. */
+	private final HttpResponseInterceptor wireCounter = new HttpResponseInterceptor() {
+		@Override
+		public void process(HttpResponse response, HttpContext context) {
+			HttpEntity body = response.getEntity();
+			if (body == null) {
+				WIRE.remove();
+				return;
+			}
+			CountingEntity counted = new CountingEntity(body, null, null);
+			WIRE.set(counted);
+			response.setEntity(counted);
+		}
+	};
+
+	/* Counts the response body as it is handed on, and records both. */
+	private final HttpResponseInterceptor decodedCounter = new HttpResponseInterceptor() {
+		@Override
+		public void process(HttpResponse response, HttpContext context) {
+			CountingEntity counted = WIRE.get();
+			HttpEntity body = response.getEntity();
+			if (body == null || counted == null) {
+				return;
+			}
+			response.setEntity(new CountingEntity(body, counted, ENDPOINT.get()));
+		}
+	};
+
+	/**
+	 * Creates compression that counts into <code>stats</code>. Request
+	 * bodies aren't compressed until {@link #setCompressRequests(boolean)}
+	 * turns it on.
+	 *
+	 * @param stats Where to count the bytes sent and received.
+	 */
+	public HttpCompression(TransferStats stats) {
+		this.stats = stats;
+	}
+
+	/**
+	 * Sets whether request bodies of at least
+	 * {@link #MIN_COMPRESSED_BYTES} are sent compressed. The server must
+	 * accept <code>Content-Encoding: gzip</code> for this to be turned on.
+	 *
+	 * @param compress Whether to compress large request bodies.
+	 */
+	public void setCompressRequests(boolean compress) {
+		compressRequests = compress;
+	}
+
+	/**
+	 * Gets whether large request bodies are sent compressed.
+	 *
+	 * @return Whether large request bodies are compressed.
+	 */
+	public boolean isCompressRequests() {
+		return compressRequests;
+	}
+
+	/**
+	 * Adds the interceptors that compress and count to <code>client</code>.
+	 * They go around any that the client already has, so that the bytes
+	 * on the network are counted before anything else reads them.
+	 *
+	 * @param client The client to compress and count for.
+	 */
+	public void install(DefaultHttpClient client) {
+		client.addRequestInterceptor(requestInterceptor, 0);
+		client.addResponseInterceptor(wireCounter, 0);
+		client.addResponseInterceptor(decodedCounter);
+	}
+
+	/**
+	 * Gets the endpoint of a request: its method and path, without the
+	 * query.
+	 *
+	 * @param request The request.
+	 * @return The endpoint, such as <code>GET /budgets</code>.
+	 */
+	static String endpointOf(HttpRequest request) {
+		String uri = request.getRequestLine().getUri();
+		String path;
+		try {
+			path = new URI(uri).getRawPath();
+		} catch (Exception e) {
+			int query = uri.indexOf('?');
+			path = query < 0 ? uri : uri.substring(0, query);
+		}
+		return request.getRequestLine().getMethod() + " " + path;
+	}
+
+	/**
+	 * Gets the bytes of the request body last sent on this thread, as they
+	 * went over the network.
+	 *
+	 * @return The bytes sent, or 0 if the request had no body.
+	 */
+	static long getWireBytesSent() {
+		return SENT.get()[0];
+	}
+
+	/**
+	 * Gets the bytes of the response body read so far on this thread, as
+	 * they came over the network.
+	 *
+	 * @return The bytes read, or 0 if the response had no body.
+	 */
+	static long getWireBytesReceived() {
+		CountingEntity counted = WIRE.get();
+		return counted == null ? 0 : counted.getCount();
+	}
+
+	/**
+	 * Compresses <code>body</code> with gzip.
+	 *
+	 * @param body The bytes to compress.
+	 * @return The compressed bytes.
+	 * @throws IOException never, as everything is in memory
+	 */
+	static byte[] gzip(byte[] body) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4);
+		GZIPOutputStream gzip = new GZIPOutputStream(out);
+		gzip.write(body);
+		gzip.close();
+		return out.toByteArray();
+	}
+
+	/* A body whose bytes are counted as they are read. */
+	private final class CountingEntity extends HttpEntityWrapper {
+		private final CountingEntity wireBody;
+		private final String requested;
+		private long count;
+		private boolean recorded;
+
+		/*
+		 * Counts the bytes read from body. Once they have all been read, if
+		 * wireBody is given, records them against the bytes read from it.
+		 */
+		CountingEntity(HttpEntity body, CountingEntity wireBody,
+				String requested) {
+			super(body);
+			this.wireBody = wireBody;
+			this.requested = requested;
+		}
+
+		@Override
+		public InputStream getContent() throws IOException {
+			return new FilterInputStream(super.getContent()) {
+				@Override
+				public int read() throws IOException {
+					int b = super.read();
+					counted(b < 0 ? -1 : 1);
+					return b;
+				}
+
+				@Override
+				public int read(byte[] buffer, int offset, int length)
+						throws IOException {
+					int n = super.read(buffer, offset, length);
+					counted(n);
+					return n;
+				}
+
+				@Override
+				public void close() throws IOException {
+					super.close();
+					counted(-1);
+				}
+			};
+		}
+
+		private synchronized void counted(int n) {
+			if (n > 0) {
+				count += n;
+			} else if (n < 0 && wireBody != null && !recorded) {
+				recorded = true;
+				stats.recordReceived(requested, wireBody.getCount(), count);
+			}
+		}
+
+		synchronized long getCount() {
+			return count;
+		}
+	}
+}
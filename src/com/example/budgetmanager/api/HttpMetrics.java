@@ -0,0 +1,144 @@
+package com.example.budgetmanager.api;
+
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Measures each request into {@link ApiMetrics}, on the thread that makes
+ * it. A response handler marks when its request starts and ends, and where
+ * it is measured, by calling {@link #begin(ApiMetrics.Endpoint)} and
+ * {@link #finish(Throwable)} from <code>sendStartMessage</code> and from
+ * <code>sendSuccessMessage</code> or <code>sendFailureMessage</code>, which
+ * are called on that thread; the interceptors note when the request was
+ * sent and when the response started. Requests whose handlers don't mark
+ * them aren't measured.
+ *
+ * The sizes of the request and response bodies are taken from the counts
+ * {@link HttpCompression} keeps, so it must be installed on the same
+ * client. Each thread measures its requests in the same {@link Sample}, so
+ * nothing is allocated to record them.
+ */
+public final class HttpMetrics {
+
+	// The request being made on each thread, as a request and its response
+	// are handled on the same thread
+	private static final ThreadLocal<Sample> SAMPLE = new ThreadLocal<Sample>() {
+		@Override
+		protected Sample initialValue() {
+			return new Sample();
+		}
+	};
+
+	/* Notes that the request was sent. */
+	private static final HttpRequestInterceptor REQUEST_INTERCEPTOR =
+			new HttpRequestInterceptor() {
+		@Override
+		public void process(HttpRequest request, HttpContext context) {
+			Sample sample = SAMPLE.get();
+			if (sample.active) {
+				sample.sent = true;
+			}
+		}
+	};
+
+	/* Notes when the response started. */
+	private static final HttpResponseInterceptor RESPONSE_INTERCEPTOR =
+			new HttpResponseInterceptor() {
+		@Override
+		public void process(HttpResponse response, HttpContext context) {
+			Sample sample = SAMPLE.get();
+			if (sample.active) {
+				sample.firstByteNanos = System.nanoTime();
+			}
+		}
+	};
+
+	private HttpMetrics() {
+	}
+
+	/**
+	 * Adds the interceptors that measure to <code>client</code>. The
+	 * request is noted after every other interceptor, once it is about to
+	 * be sent, and the response before every other, as soon as it starts.
+	 *
+	 * @param client The client to measure for.
+	 */
+	public static void install(DefaultHttpClient client) {
+		client.addRequestInterceptor(REQUEST_INTERCEPTOR);
+		client.addResponseInterceptor(RESPONSE_INTERCEPTOR, 0);
+	}
+
+	/**
+	 * Marks the start of a request made on this thread, before it connects.
+	 *
+	 * @param endpoint Where the request is measured.
+	 */
+	public static void begin(ApiMetrics.Endpoint endpoint) {
+		Sample sample = SAMPLE.get();
+		sample.active = true;
+		sample.sent = false;
+		sample.endpoint = endpoint;
+		sample.startNanos = System.nanoTime();
+		sample.firstByteNanos = 0;
+	}
+
+	/**
+	 * Marks the end of the request made on this thread, once its response
+	 * has been read or it has failed, and records it. A request that failed
+	 * before it was sent, such as because the host couldn't be found or
+	 * refused the connection, is recorded with no response and no bytes.
+	 *
+	 * @param failure Why it failed, or <code>null</code> if it succeeded.
+	 * @return The measurements it was recorded in, or <code>null</code> if
+	 *         it wasn't being measured.
+	 */
+	public static ApiMetrics.Endpoint finish(Throwable failure) {
+		Sample sample = SAMPLE.get();
+		if (!sample.active) {
+			return null;
+		}
+		sample.active = false;
+		ApiMetrics.Endpoint endpoint = sample.endpoint;
+		sample.endpoint = null;
+		long total = micros(System.nanoTime() - sample.startNanos);
+		if (!sample.sent) {
+			// It failed before it was sent, such as while connecting, so
+			// nothing was sent or received; the counts are another request's.
+			endpoint.record(ApiMetrics.outcomeOf(failure), -1, total, 0, 0);
+			return endpoint;
+		}
+		long firstByte = sample.firstByteNanos == 0
+				? -1 : micros(sample.firstByteNanos - sample.startNanos);
+		endpoint.record(ApiMetrics.outcomeOf(failure), firstByte, total,
+				HttpCompression.getWireBytesSent(),
+				HttpCompression.getWireBytesReceived());
+		return endpoint;
+	}
+
+	/**
+	 * Gets the microseconds since <code>startNanos</code>.
+	 *
+	 * @param startNanos A time from {@link System#nanoTime()}.
+	 * @return The microseconds since.
+	 */
+	public static long microsSince(long startNanos) {
+		return micros(System.nanoTime() - startNanos);
+	}
+
+	private static long micros(long nanos) {
+		return nanos / 1000;
+	}
+
+	/* The request being measured on a thread. */
+	private static final class Sample {
+		private boolean active;
+		private boolean sent;
+		private ApiMetrics.Endpoint endpoint;
+		private long startNanos;
+		private long firstByteNanos;
+	}
+}
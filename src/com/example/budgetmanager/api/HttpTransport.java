@@ -0,0 +1,31 @@
+package com.example.budgetmanager.api;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+
+import java.io.IOException;
+
+/**
+ * Carries requests to the server and brings back its responses, for a
+ * {@link TransportClient}. The client's interceptors and cookies are
+ * applied to each request before it is handed over, and to its response
+ * after, whichever transport carries it.
+ */
+public interface HttpTransport {
+
+	/**
+	 * Sends a request and waits for its response. Called on a background
+	 * thread, possibly on several at once.
+	 *
+	 * @param request The request, with an absolute URI and all of its
+	 *        headers set.
+	 * @param timeoutMillis How long to wait to connect, and for each read,
+	 *        in milliseconds.
+	 * @return The response. Its body must be readable once, after which
+	 *         anything it holds may be reused.
+	 * @throws IOException if the server couldn't be reached, or stopped
+	 *         answering
+	 */
+	HttpResponse execute(HttpUriRequest request, int timeoutMillis)
+			throws IOException;
+}
@@ -0,0 +1,162 @@
+package com.example.budgetmanager.api;
+
+import android.content.SharedPreferences;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.protocol.HttpContext;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Remembers the validators, the <code>ETag</code> and
+ * <code>Last-Modified</code> headers, that the server sent with the data
+ * last fetched from each endpoint, so that the next request can ask for the
+ * data only if it has changed. They are kept in shared preferences, so they
+ * outlive the process along with the cached budgets.
+ *
+ * One set of validators is kept for each endpoint, along with the full URL
+ * they were sent for; they are only used for a request to that same URL.
+ */
+public final class HttpValidators {
+	static final String IF_NONE_MATCH = "If-None-Match";
+	static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+
+	private static final String ETAG = "ETag";
+	private static final String LAST_MODIFIED = "Last-Modified";
+
+	private static final Header[] NO_HEADERS = new Header[0];
+
+	// The validators of the latest response read on each thread, put there
+	// by RECORDER before the response is handed to its handler
+	private static final ThreadLocal<String[]> RECEIVED =
+			new ThreadLocal<String[]>();
+
+	/**
+	 * Records the validators of each response, to be taken on the same
+	 * thread by {@link #takeReceived()}.
+	 */
+	static final HttpResponseInterceptor RECORDER = new HttpResponseInterceptor() {
+		@Override
+		public void process(HttpResponse response, HttpContext context) {
+			Header etag = response.getFirstHeader(ETAG);
+			Header lastModified = response.getFirstHeader(LAST_MODIFIED);
+			RECEIVED.set(new String[] {
+					etag == null ? null : etag.getValue(),
+					lastModified == null ? null : lastModified.getValue()
+			});
+		}
+	};
+
+	private final SharedPreferences preferences;
+
+	/**
+	 * Creates validators kept in <code>preferences</code>, reading any that
+	 * were kept before.
+	 *
+	 * @param preferences Where to keep the validators.
+	 */
+	public HttpValidators(SharedPreferences preferences) {
+		this.preferences = preferences;
+	}
+
+	/**
+	 * Takes the validators of the latest response read on this thread.
+	 *
+	 * @return The <code>ETag</code> and <code>Last-Modified</code> values,
+	 *         either of which may be <code>null</code>, or <code>null</code>
+	 *         if no response has been read on this thread.
+	 */
+	static String[] takeReceived() {
+		String[] validators = RECEIVED.get();
+		RECEIVED.remove();
+		return validators;
+	}
+
+	/**
+	 * Gets the headers that ask for <code>url</code> only if it has changed
+	 * since the data held was fetched from it.
+	 *
+	 * @param url The URL to be requested, including its query.
+	 * @return The conditional headers, which are empty if there are no
+	 *         validators for <code>url</code>.
+	 */
+	public Header[] getRequestHeaders(String url) {
+		JSONObject kept = read(url);
+		if (kept == null) {
+			return NO_HEADERS;
+		}
+		String etag = kept.optString("etag", null);
+		String lastModified = kept.optString("last_modified", null);
+		if (etag != null && lastModified != null) {
+			return new Header[] {
+					new BasicHeader(IF_NONE_MATCH, etag),
+					new BasicHeader(IF_MODIFIED_SINCE, lastModified)
+			};
+		} else if (etag != null) {
+			return new Header[] { new BasicHeader(IF_NONE_MATCH, etag) };
+		} else if (lastModified != null) {
+			return new Header[] {
+					new BasicHeader(IF_MODIFIED_SINCE, lastModified)
+			};
+		}
+		return NO_HEADERS;
+	}
+
+	/**
+	 * Remembers the validators sent with the data now held for
+	 * <code>url</code>, replacing any kept for the same endpoint. Should only
+	 * be called once the data has been applied.
+	 *
+	 * @param url The URL the data was fetched from, including its query.
+	 * @param etag The <code>ETag</code> sent, or <code>null</code>.
+	 * @param lastModified The <code>Last-Modified</code> date sent, or
+	 *        <code>null</code>.
+	 */
+	public void put(String url, String etag, String lastModified) {
+		String endpoint = endpointOf(url);
+		if (etag == null && lastModified == null) {
+			preferences.edit().remove(endpoint).apply();
+			return;
+		}
+		try {
+			JSONObject kept = new JSONObject()
+					.put("url", url)
+					.put("etag", etag)
+					.put("last_modified", lastModified);
+			preferences.edit().putString(endpoint, kept.toString()).apply();
+		} catch (JSONException e) {
+			// Only thrown for bad numbers, and these are all strings.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Forgets all validators, such as when the user logs out.
+	 */
+	public void clear() {
+		preferences.edit().clear().apply();
+	}
+
+	/* Reads the validators kept for url, or null if there are none. */
+	private JSONObject read(String url) {
+		String kept = preferences.getString(endpointOf(url), null);
+		if (kept == null) {
+			return null;
+		}
+		try {
+			JSONObject validators = new JSONObject(kept);
+			return url.equals(validators.optString("url")) ? validators : null;
+		} catch (JSONException e) {
+			return null;
+		}
+	}
+
+	/* The URL without its query. */
+	private static String endpointOf(String url) {
+		int query = url.indexOf('?');
+		return query < 0 ? url : url.substring(0, query);
+	}
+}
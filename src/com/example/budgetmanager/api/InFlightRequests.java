@@ -0,0 +1,158 @@
+package com.example.budgetmanager.api;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps track of the requests being made, so that a caller asking for the
+ * same thing as a request already being made waits for that request rather
+ * than making another. Requests are told apart by a key, such as their
+ * method, URL and parameters.
+ *
+ * Only requests that don't change anything on the server should be shared.
+ */
+public final class InFlightRequests {
+	private final Map<Object, Shared<?>> requests =
+			new HashMap<Object, Shared<?>>();
+
+	// Requests made, and calls that waited for one instead
+	private int startedCount;
+	private int savedCount;
+
+	/**
+	 * Joins the request for <code>key</code>, if one is being made, or else
+	 * starts one. If a request is started, the callback returned must be
+	 * used for it; it tells every caller that joined it about the result,
+	 * then lets the next call for <code>key</code> start a new request.
+	 *
+	 * @param <T> The type of the result of the request.
+	 * @param key Identifies the request.
+	 * @param callback Told the result of the request, or <code>null</code>
+	 *        for no callbacks.
+	 * @return The callback for the new request, or <code>null</code> if a
+	 *         request for <code>key</code> was already being made, in which
+	 *         case no request should be made.
+	 */
+	public <T> ApiCallback<T> join(String key, ApiCallback<T> callback) {
+		return joinRequest(key, callback);
+	}
+
+	/**
+	 * Joins the request for <code>key</code> whose result goes into
+	 * <code>target</code>, if one is being made, or else starts one, as
+	 * {@link #join(String, ApiCallback)} does. Requests for the same key
+	 * that fill different objects, even equal ones, are made separately, so
+	 * each caller's object gets the result.
+	 *
+	 * @param <T> The type of the result of the request.
+	 * @param key Identifies the request.
+	 * @param target The object the result of the request is put into.
+	 * @param callback Told the result of the request, or <code>null</code>
+	 *        for no callbacks.
+	 * @return The callback for the new request, or <code>null</code> if a
+	 *         request for <code>key</code> into <code>target</code> was
+	 *         already being made, in which case no request should be made.
+	 */
+	public <T> ApiCallback<T> join(String key, Object target,
+			ApiCallback<T> callback) {
+		return joinRequest(new TargetKey(key, target), callback);
+	}
+
+	@SuppressWarnings("unchecked")
+	private synchronized <T> ApiCallback<T> joinRequest(Object key,
+			ApiCallback<T> callback) {
+		Shared<T> request = (Shared<T>) requests.get(key);
+		if (request != null) {
+			request.callbacks.add(callback);
+			++savedCount;
+			return null;
+		}
+		request = new Shared<T>(key);
+		request.callbacks.add(callback);
+		requests.put(key, request);
+		++startedCount;
+		return request;
+	}
+
+	/**
+	 * Gets how many shared requests were made.
+	 *
+	 * @return The number of requests made.
+	 */
+	public synchronized int getStartedCount() {
+		return startedCount;
+	}
+
+	/**
+	 * Gets how many calls waited for a request already being made, and so
+	 * saved making a request of their own.
+	 *
+	 * @return The number of requests saved.
+	 */
+	public synchronized int getSavedCount() {
+		return savedCount;
+	}
+
+	/* Takes the callbacks waiting for a request, letting a new one start. */
+	private synchronized <T> List<ApiCallback<T>> finish(Shared<T> request) {
+		if (requests.get(request.key) == request) {
+			requests.remove(request.key);
+		}
+		return new ArrayList<ApiCallback<T>>(request.callbacks);
+	}
+
+	/* A request being made, and the callers waiting for it. */
+	private final class Shared<T> implements ApiCallback<T> {
+		final Object key;
+		final List<ApiCallback<T>> callbacks = new ArrayList<ApiCallback<T>>();
+
+		Shared(Object key) {
+			this.key = key;
+		}
+
+		@Override
+		public void onSuccess(T result) {
+			for (ApiCallback<T> callback : finish(this)) {
+				if (callback != null) {
+					callback.onSuccess(result);
+				}
+			}
+		}
+
+		@Override
+		public void onFailure(String errorMessage) {
+			for (ApiCallback<T> callback : finish(this)) {
+				if (callback != null) {
+					callback.onFailure(errorMessage);
+				}
+			}
+		}
+	}
+
+	/* A key, and the object the result goes into, told apart by identity. */
+	private static final class TargetKey {
+		private final String key;
+		private final Object target;
+
+		TargetKey(String key, Object target) {
+			this.key = key;
+			this.target = target;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof TargetKey)) {
+				return false;
+			}
+			TargetKey other = (TargetKey) o;
+			return key.equals(other.key) && target == other.target;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * key.hashCode() + System.identityHashCode(target);
+		}
+	}
+}
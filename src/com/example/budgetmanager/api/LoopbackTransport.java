@@ -0,0 +1,85 @@
+package com.example.budgetmanager.api;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Answers requests in the same process, without a network, so that the
+ * cost of everything but the network can be measured, or compared between
+ * clients. The answers come from a {@link Server}, on the thread that sent
+ * the request.
+ */
+public final class LoopbackTransport implements HttpTransport {
+
+	/**
+	 * Answers the requests carried by a loopback transport.
+	 */
+	public interface Server {
+
+		/**
+		 * Answers a request.
+		 *
+		 * @param request The request, as it would have been sent.
+		 * @return The response to it.
+		 * @throws IOException to fail the request as if the network had
+		 */
+		HttpResponse serve(HttpUriRequest request) throws IOException;
+	}
+
+	private final Server server;
+	private final AtomicInteger requestCount = new AtomicInteger();
+
+	/**
+	 * Creates a transport whose requests are answered by
+	 * <code>server</code>.
+	 *
+	 * @param server Answers the requests.
+	 */
+	public LoopbackTransport(Server server) {
+		this.server = server;
+	}
+
+	/**
+	 * Builds a response with a JSON body, for servers to answer with.
+	 *
+	 * @param status The status code of the response.
+	 * @param json The body of the response.
+	 * @return The response.
+	 */
+	public static HttpResponse respond(int status, String json) {
+		HttpResponse response = new BasicHttpResponse(
+				new BasicStatusLine(HttpVersion.HTTP_1_1, status, ""));
+		try {
+			ByteArrayEntity body = new ByteArrayEntity(json.getBytes("UTF-8"));
+			body.setContentType("application/json; charset=utf-8");
+			response.setEntity(body);
+		} catch (UnsupportedEncodingException e) {
+			throw new AssertionError(e);
+		}
+		return response;
+	}
+
+	@Override
+	public HttpResponse execute(HttpUriRequest request, int timeoutMillis)
+			throws IOException {
+		requestCount.incrementAndGet();
+		return server.serve(request);
+	}
+
+	/**
+	 * Gets how many requests have been carried.
+	 *
+	 * @return The number of requests.
+	 */
+	public int getRequestCount() {
+		return requestCount.get();
+	}
+}
@@ -0,0 +1,16 @@
+package com.example.budgetmanager.api;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * A {@link Timer} that runs tasks on the main thread.
+ */
+public final class MainThreadTimer implements Timer {
+	private final Handler handler = new Handler(Looper.getMainLooper());
+
+	@Override
+	public void schedule(Runnable task, long delayMillis) {
+		handler.postDelayed(task, delayMillis);
+	}
+}
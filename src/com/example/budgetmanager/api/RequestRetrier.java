@@ -0,0 +1,279 @@
+package com.example.budgetmanager.api;
+
+import android.os.SystemClock;
+
+import org.apache.http.client.HttpResponseException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sends requests that are safe to send more than once, such as fetches,
+ * and updates and deletions by ID, again after a wait when they fail in a
+ * way that another try may fix. How many times, and how long to wait, is up
+ * to a {@link RetryPolicy}.
+ *
+ * Each host has a {@link CircuitBreaker}, which turns requests away while
+ * the host keeps failing, rather than waiting on it and retrying.
+ */
+public final class RequestRetrier {
+
+	/**
+	 * Tells the time, for the circuit breakers.
+	 */
+	public interface Clock {
+
+		/**
+		 * Gets the time now, in milliseconds, from any fixed point.
+		 *
+		 * @return The time now.
+		 */
+		long now();
+	}
+
+	/**
+	 * A request that can be sent more than once.
+	 */
+	public interface Request {
+
+		/**
+		 * Sends the request. Its response handler must tell
+		 * <code>tries</code> whether it succeeded.
+		 *
+		 * @param tries The tries of this request.
+		 */
+		void send(Tries tries);
+	}
+
+	private final Timer timer;
+	private final Clock clock;
+	private final int failureThreshold;
+	private final long openMillis;
+	private volatile RetryPolicy policy;
+
+	// The breaker of each host, by host name
+	private final Map<String, CircuitBreaker> breakers =
+			new HashMap<String, CircuitBreaker>();
+
+	// Requests sent again, and failures reported after retrying
+	private int retryCount;
+	private int gaveUpCount;
+
+	/**
+	 * Creates a retrier.
+	 *
+	 * @param policy Decides when to send a request again.
+	 * @param timer Sends requests again after their wait.
+	 * @param clock Tells the time, for the circuit breakers.
+	 * @param failureThreshold How many failures in a row open the breaker
+	 *        of a host.
+	 * @param openMillis How long a breaker stays open for, in milliseconds.
+	 */
+	public RequestRetrier(RetryPolicy policy, Timer timer,
+			Clock clock, int failureThreshold, long openMillis) {
+		this.policy = policy;
+		this.timer = timer;
+		this.clock = clock;
+		this.failureThreshold = failureThreshold;
+		this.openMillis = openMillis;
+	}
+
+	/**
+	 * Creates a clock that tells the time since the device booted, which
+	 * doesn't jump when the user changes the date.
+	 *
+	 * @return A clock using {@link SystemClock#elapsedRealtime()}.
+	 */
+	public static Clock elapsedRealtimeClock() {
+		return new Clock() {
+			@Override
+			public long now() {
+				return SystemClock.elapsedRealtime();
+			}
+		};
+	}
+
+	/**
+	 * Gets whether a failure may pass on another try: a failure to reach
+	 * the server or read its response, or an error on the server.
+	 *
+	 * @param error Why a request failed.
+	 * @return <code>true</code> if it may be worth sending again.
+	 */
+	public static boolean isTransient(Throwable error) {
+		if (error instanceof HttpResponseException) {
+			return ((HttpResponseException) error).getStatusCode() >= 500;
+		}
+		return error instanceof IOException;
+	}
+
+	/**
+	 * Sets what decides when to send a request again.
+	 *
+	 * @param policy The policy for requests sent from now on.
+	 */
+	public void setPolicy(RetryPolicy policy) {
+		this.policy = policy;
+	}
+
+	/**
+	 * Sends <code>request</code>, unless the breaker of its host is open.
+	 *
+	 * @param url The URL the request is sent to.
+	 * @param request Sends the request, and again for each retry.
+	 * @return <code>true</code> if the request was sent,
+	 *         <code>false</code> if it was turned away.
+	 */
+	public boolean send(String url, Request request) {
+		CircuitBreaker breaker = getBreaker(hostOf(url));
+		if (!breaker.allowRequest(clock.now())) {
+			return false;
+		}
+		request.send(new Tries(breaker, request, policy));
+		return true;
+	}
+
+	/**
+	 * Gets the breaker of a host, if a request has been sent to it.
+	 *
+	 * @param host The name of the host.
+	 * @return Its breaker, or <code>null</code> if it has none.
+	 */
+	public synchronized CircuitBreaker getCircuitBreaker(String host) {
+		return breakers.get(host);
+	}
+
+	/**
+	 * Gets how many times requests have been sent again.
+	 *
+	 * @return The number of retries.
+	 */
+	public synchronized int getRetryCount() {
+		return retryCount;
+	}
+
+	/**
+	 * Gets how many requests failed in a way that may pass on another try,
+	 * but were not tried again, because of the policy or an open breaker.
+	 *
+	 * @return The number of requests given up on.
+	 */
+	public synchronized int getGaveUpCount() {
+		return gaveUpCount;
+	}
+
+	/**
+	 * Gets how many times the breakers of all hosts have opened.
+	 *
+	 * @return The number of times a breaker opened.
+	 */
+	public synchronized int getOpenedCount() {
+		int count = 0;
+		for (CircuitBreaker breaker : breakers.values()) {
+			count += breaker.getOpenedCount();
+		}
+		return count;
+	}
+
+	/**
+	 * Gets how many requests the breakers of all hosts have turned away.
+	 *
+	 * @return The number of requests turned away.
+	 */
+	public synchronized int getRejectedCount() {
+		int count = 0;
+		for (CircuitBreaker breaker : breakers.values()) {
+			count += breaker.getRejectedCount();
+		}
+		return count;
+	}
+
+	private synchronized CircuitBreaker getBreaker(String host) {
+		CircuitBreaker breaker = breakers.get(host);
+		if (breaker == null) {
+			breaker = new CircuitBreaker(failureThreshold, openMillis);
+			breakers.put(host, breaker);
+		}
+		return breaker;
+	}
+
+	private synchronized void counted(boolean retried) {
+		if (retried) {
+			++retryCount;
+		} else {
+			++gaveUpCount;
+		}
+	}
+
+	/* Gets the host of a URL, or the URL itself if it has none. */
+	private static String hostOf(String url) {
+		try {
+			String host = new URI(url).getHost();
+			return host == null ? url : host;
+		} catch (URISyntaxException e) {
+			return url;
+		}
+	}
+
+	/**
+	 * The tries of one request, which its response handler tells how each
+	 * try went.
+	 */
+	public final class Tries {
+		private final CircuitBreaker breaker;
+		private final Request request;
+		private final RetryPolicy policy;
+		private int failures;
+
+		private Tries(CircuitBreaker breaker, Request request,
+				RetryPolicy policy) {
+			this.breaker = breaker;
+			this.request = request;
+			this.policy = policy;
+		}
+
+		/**
+		 * Records that the request got a response from its host.
+		 */
+		public void succeeded() {
+			breaker.recordSuccess();
+		}
+
+		/**
+		 * Records that the request failed, and sends it again after a wait
+		 * if the failure may pass, the policy allows it, and the breaker of
+		 * its host is still closed.
+		 *
+		 * @param error Why the request failed.
+		 * @return <code>true</code> if the request will be sent again, so
+		 *         the failure shouldn't be reported, <code>false</code> if
+		 *         it should be.
+		 */
+		public boolean retry(Throwable error) {
+			if (!isTransient(error)) {
+				// The server answered, if only to refuse the request.
+				breaker.recordSuccess();
+				return false;
+			}
+
+			breaker.recordFailure(clock.now());
+			++failures;
+			long delay = breaker.isOpen() ? -1
+					: policy.getRetryDelay(failures, error);
+			counted(delay >= 0);
+			if (delay < 0) {
+				return false;
+			}
+			timer.schedule(new Runnable() {
+				@Override
+				public void run() {
+					request.send(Tries.this);
+				}
+			}, delay);
+			return true;
+		}
+	}
+}
@@ -0,0 +1,356 @@
+package com.example.budgetmanager.api;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs requests on a pool of threads by priority, so that what the user is
+ * waiting for isn't held up behind a background sync. Each
+ * {@link Priority} may run only so many requests at once, and no more than
+ * a total between them; the rest wait, the more urgent first.
+ *
+ * Background requests don't start while any interactive request is
+ * waiting, so one that arrives goes ahead of all the background requests
+ * already queued. Background requests already running are left to finish.
+ *
+ * It is given to an {@link com.loopj.android.http.AsyncHttpClient
+ * AsyncHttpClient} as its thread pool. The priority of each request is
+ * found from its method and URL, and set with
+ * {@link #setNextPriority(Priority)} just before the client hands the
+ * request over on the same thread.
+ */
+public final class RequestScheduler extends ThreadPoolExecutor {
+
+	/**
+	 * How urgent a request is, most urgent first.
+	 */
+	public enum Priority {
+		/** A change the user made and is waiting to see saved. */
+		INTERACTIVE_WRITE,
+		/** Data the user asked to see. */
+		INTERACTIVE_READ,
+		/** Data fetched to bring everything up to date. */
+		BACKGROUND
+	}
+
+	/** How many requests may run at once in all, by default. */
+	public static final int DEFAULT_MAX_TOTAL = 4;
+	/** How many interactive writes, or reads, may run at once, by default. */
+	public static final int DEFAULT_MAX_INTERACTIVE = 4;
+	/** How many background requests may run at once, by default. */
+	public static final int DEFAULT_MAX_BACKGROUND = 2;
+
+	private static final long KEEP_ALIVE_SECONDS = 10;
+	private static final Priority[] PRIORITIES = Priority.values();
+
+	// The priority of the request being handed over on each thread
+	private final ThreadLocal<Priority> nextPriority = new ThreadLocal<Priority>();
+
+	// The priorities set, most recently set first
+	private final List<Rule> rules = new ArrayList<Rule>();
+
+	// Guarded by this
+	private final List<Queue<Queued>> queues;
+	private final int[] limits = new int[PRIORITIES.length];
+	private final int[] running = new int[PRIORITIES.length];
+	private final int[] maxQueued = new int[PRIORITIES.length];
+	private int maxTotal;
+	private int runningTotal;
+	private int preemptedCount;
+
+	private final Histogram[] waits = new Histogram[PRIORITIES.length];
+
+	/**
+	 * Creates a scheduler with the default limits.
+	 */
+	public RequestScheduler() {
+		this(DEFAULT_MAX_TOTAL, DEFAULT_MAX_INTERACTIVE,
+				DEFAULT_MAX_INTERACTIVE, DEFAULT_MAX_BACKGROUND);
+	}
+
+	/**
+	 * Creates a scheduler.
+	 *
+	 * @param maxTotal How many requests may run at once in all.
+	 * @param maxWrites How many interactive writes may run at once.
+	 * @param maxReads How many interactive reads may run at once.
+	 * @param maxBackground How many background requests may run at once.
+	 * @throws IllegalArgumentException if a limit is less than 1
+	 */
+	public RequestScheduler(int maxTotal, int maxWrites, int maxReads,
+			int maxBackground) {
+		super(checkLimit(maxTotal), maxTotal, KEEP_ALIVE_SECONDS,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new RequestThreadFactory());
+		allowCoreThreadTimeOut(true);
+		this.maxTotal = maxTotal;
+		limits[Priority.INTERACTIVE_WRITE.ordinal()] = checkLimit(maxWrites);
+		limits[Priority.INTERACTIVE_READ.ordinal()] = checkLimit(maxReads);
+		limits[Priority.BACKGROUND.ordinal()] = checkLimit(maxBackground);
+		queues = new ArrayList<Queue<Queued>>(PRIORITIES.length);
+		for (int i = 0; i < PRIORITIES.length; ++i) {
+			queues.add(new ArrayDeque<Queued>());
+			waits[i] = new Histogram();
+		}
+	}
+
+	/**
+	 * Sets the priority of requests with a method, to URLs starting with a
+	 * prefix. If more than one fits a request, the one set last is used.
+	 * Other requests are {@link Priority#INTERACTIVE_READ} if they are
+	 * <code>GET</code>s, and {@link Priority#INTERACTIVE_WRITE} otherwise.
+	 *
+	 * @param method The method of the requests, such as <code>GET</code>.
+	 * @param urlPrefix The start of their URLs.
+	 * @param priority Their priority.
+	 */
+	public synchronized void setPriority(String method, String urlPrefix,
+			Priority priority) {
+		rules.add(0, new Rule(method, urlPrefix, priority));
+	}
+
+	/**
+	 * Gets the priority of a request.
+	 *
+	 * @param method The method of the request.
+	 * @param url The URL of the request.
+	 * @return Its priority.
+	 */
+	public synchronized Priority getPriority(String method, String url) {
+		for (Rule rule : rules) {
+			if (rule.method.equals(method) && url.startsWith(rule.urlPrefix)) {
+				return rule.priority;
+			}
+		}
+		return "GET".equals(method)
+				? Priority.INTERACTIVE_READ : Priority.INTERACTIVE_WRITE;
+	}
+
+	/**
+	 * Sets the priority of the next request handed over on this thread,
+	 * through {@link #execute(Runnable)}.
+	 *
+	 * @param priority Its priority.
+	 */
+	public void setNextPriority(Priority priority) {
+		nextPriority.set(priority);
+	}
+
+	/**
+	 * Runs a request when its priority allows, with the priority set by
+	 * {@link #setNextPriority(Priority)} on this thread, or else as an
+	 * {@link Priority#INTERACTIVE_READ}.
+	 *
+	 * @param task The request.
+	 */
+	@Override
+	public void execute(Runnable task) {
+		Priority priority = nextPriority.get();
+		nextPriority.remove();
+		execute(task, priority == null ? Priority.INTERACTIVE_READ : priority);
+	}
+
+	/**
+	 * Runs a request when its priority allows.
+	 *
+	 * @param task The request.
+	 * @param priority Its priority.
+	 */
+	public synchronized void execute(Runnable task, Priority priority) {
+		if (task == null) {
+			throw new NullPointerException();
+		}
+		if (priority != Priority.BACKGROUND
+				&& !queue(Priority.BACKGROUND).isEmpty()) {
+			++preemptedCount;
+		}
+		Queue<Queued> queue = queue(priority);
+		queue.add(new Queued(task, priority, System.nanoTime()));
+		int i = priority.ordinal();
+		maxQueued[i] = Math.max(maxQueued[i], queue.size());
+		dispatch();
+	}
+
+	/**
+	 * Sets how many requests of a priority may run at once. Requests
+	 * already running are left to finish.
+	 *
+	 * @param priority The priority.
+	 * @param limit How many may run at once.
+	 * @throws IllegalArgumentException if <code>limit</code> is less than 1
+	 */
+	public synchronized void setMaxRunning(Priority priority, int limit) {
+		limits[priority.ordinal()] = checkLimit(limit);
+		dispatch();
+	}
+
+	/**
+	 * Sets how many requests may run at once in all.
+	 *
+	 * @param limit How many may run at once.
+	 * @throws IllegalArgumentException if <code>limit</code> is less than 1
+	 */
+	public synchronized void setMaxTotal(int limit) {
+		checkLimit(limit);
+		// The core size can't exceed the maximum size, so change them in
+		// whichever order keeps that true.
+		if (limit > getMaximumPoolSize()) {
+			setMaximumPoolSize(limit);
+			setCorePoolSize(limit);
+		} else {
+			setCorePoolSize(limit);
+			setMaximumPoolSize(limit);
+		}
+		maxTotal = limit;
+		dispatch();
+	}
+
+	/**
+	 * Gets how many requests of a priority are waiting to run.
+	 *
+	 * @param priority The priority.
+	 * @return The number waiting.
+	 */
+	public synchronized int getQueueDepth(Priority priority) {
+		return queue(priority).size();
+	}
+
+	/**
+	 * Gets the most requests of a priority that have waited at once.
+	 *
+	 * @param priority The priority.
+	 * @return The most that waited.
+	 */
+	public synchronized int getMaxQueueDepth(Priority priority) {
+		return maxQueued[priority.ordinal()];
+	}
+
+	/**
+	 * Gets how many requests of a priority are running.
+	 *
+	 * @param priority The priority.
+	 * @return The number running.
+	 */
+	public synchronized int getRunningCount(Priority priority) {
+		return running[priority.ordinal()];
+	}
+
+	/**
+	 * Gets how many interactive requests went ahead of background requests
+	 * that were already waiting.
+	 *
+	 * @return The number of interactive requests.
+	 */
+	public synchronized int getPreemptedCount() {
+		return preemptedCount;
+	}
+
+	/**
+	 * Gets how long requests of a priority waited before they started.
+	 *
+	 * @param priority The priority.
+	 * @return The waits, in microseconds.
+	 */
+	public Histogram getWaitTime(Priority priority) {
+		return waits[priority.ordinal()];
+	}
+
+	/* Starts the most urgent requests there is room for. */
+	private void dispatch() {
+		while (runningTotal < maxTotal) {
+			Priority next = null;
+			for (Priority p : PRIORITIES) {
+				if (!queue(p).isEmpty() && running[p.ordinal()] < limits[p.ordinal()]) {
+					next = p;
+					break;
+				}
+			}
+			if (next == null || (next == Priority.BACKGROUND
+					&& interactiveWaiting())) {
+				return;
+			}
+			Queued queued = queue(next).poll();
+			++running[next.ordinal()];
+			++runningTotal;
+			waits[next.ordinal()].record(
+					(System.nanoTime() - queued.queuedNanos) / 1000);
+			super.execute(queued);
+		}
+	}
+
+	private boolean interactiveWaiting() {
+		return !queue(Priority.INTERACTIVE_WRITE).isEmpty()
+				|| !queue(Priority.INTERACTIVE_READ).isEmpty();
+	}
+
+	private synchronized void finished(Priority priority) {
+		--running[priority.ordinal()];
+		--runningTotal;
+		dispatch();
+	}
+
+	private Queue<Queued> queue(Priority priority) {
+		return queues.get(priority.ordinal());
+	}
+
+	private static int checkLimit(int limit) {
+		if (limit < 1) {
+			throw new IllegalArgumentException("limit must be at least 1");
+		}
+		return limit;
+	}
+
+	/* A request waiting to run, which makes room for the next once done. */
+	private final class Queued implements Runnable {
+		private final Runnable task;
+		private final Priority priority;
+		private final long queuedNanos;
+
+		Queued(Runnable task, Priority priority, long queuedNanos) {
+			this.task = task;
+			this.priority = priority;
+			this.queuedNanos = queuedNanos;
+		}
+
+		@Override
+		public void run() {
+			try {
+				task.run();
+			} finally {
+				finished(priority);
+			}
+		}
+	}
+
+	/* A priority for some requests. */
+	private static final class Rule {
+		final String method;
+		final String urlPrefix;
+		final Priority priority;
+
+		Rule(String method, String urlPrefix, Priority priority) {
+			this.method = method;
+			this.urlPrefix = urlPrefix;
+			this.priority = priority;
+		}
+	}
+
+	/* Creates the threads that run requests. */
+	private static final class RequestThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable task) {
+			Thread thread = new Thread(task, "ApiRequest-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package com.example.budgetmanager.api;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * How long each request may take, by method and URL, so that a large
+ * download can be given longer than a quick check, rather than every
+ * request sharing one timeout.
+ */
+public final class RequestTimeouts {
+
+	/** How long requests may take, unless set otherwise, in milliseconds. */
+	public static final int DEFAULT_TIMEOUT_MILLIS = 10000;
+
+	// The timeouts set, most recently set first
+	private final List<Rule> rules = new ArrayList<Rule>();
+	private volatile int defaultMillis = DEFAULT_TIMEOUT_MILLIS;
+
+	/**
+	 * Sets how long requests may take when no timeout is set for them.
+	 *
+	 * @param millis The timeout, in milliseconds.
+	 * @throws IllegalArgumentException if <code>millis</code> is less than
+	 *         1
+	 */
+	public void setDefault(int millis) {
+		checkMillis(millis);
+		defaultMillis = millis;
+	}
+
+	/**
+	 * Sets how long requests with a method, to URLs starting with a prefix,
+	 * may take. If more than one timeout fits a request, the one set last
+	 * is used.
+	 *
+	 * @param method The method of the requests, such as <code>GET</code>.
+	 * @param urlPrefix The start of their URLs.
+	 * @param millis The timeout, in milliseconds.
+	 * @throws IllegalArgumentException if <code>millis</code> is less than
+	 *         1
+	 */
+	public synchronized void set(String method, String urlPrefix, int millis) {
+		checkMillis(millis);
+		rules.add(0, new Rule(method, urlPrefix, millis));
+	}
+
+	/**
+	 * Gets how long a request may take.
+	 *
+	 * @param method The method of the request.
+	 * @param url The URL of the request.
+	 * @return The timeout, in milliseconds.
+	 */
+	public synchronized int get(String method, String url) {
+		for (Rule rule : rules) {
+			if (rule.method.equals(method) && url.startsWith(rule.urlPrefix)) {
+				return rule.millis;
+			}
+		}
+		return defaultMillis;
+	}
+
+	private static void checkMillis(int millis) {
+		if (millis < 1) {
+			throw new IllegalArgumentException("millis must be at least 1");
+		}
+	}
+
+	/* A timeout for some requests. */
+	private static final class Rule {
+		final String method;
+		final String urlPrefix;
+		final int millis;
+
+		Rule(String method, String urlPrefix, int millis) {
+			this.method = method;
+			this.urlPrefix = urlPrefix;
+			this.millis = millis;
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package com.example.budgetmanager.api;
+
+/**
+ * Decides whether, and how soon, to send a request again after it failed
+ * in a way that another try may fix, such as a timeout or a server error.
+ * Only consulted for requests that are safe to send more than once.
+ */
+public interface RetryPolicy {
+
+	/**
+	 * Gets how long to wait before sending a request again.
+	 *
+	 * @param failures How many times the request has failed so far, at
+	 *        least 1.
+	 * @param error Why it failed the last time.
+	 * @return How long to wait, in milliseconds, or a negative number to
+	 *         give up and report the failure.
+	 */
+	long getRetryDelay(int failures, Throwable error);
+}
@@ -0,0 +1,17 @@
+package com.example.budgetmanager.api;
+
+/**
+ * Runs tasks after a delay, on the thread it is used from, such as to end
+ * a window of entries or to send a request again. The app uses a
+ * {@link MainThreadTimer}; tests can run the tasks themselves.
+ */
+public interface Timer {
+
+	/**
+	 * Runs <code>task</code> after <code>delayMillis</code>.
+	 *
+	 * @param task The task to run.
+	 * @param delayMillis How long to wait first, in milliseconds.
+	 */
+	void schedule(Runnable task, long delayMillis);
+}
@@ -0,0 +1,153 @@
+package com.example.budgetmanager.api;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts the bytes sent and received for each endpoint, both as they went
+ * over the network and as they were before compressing or after
+ * decompressing, to show how much compression saves.
+ *
+ * Endpoints are told apart by method and path, such as
+ * <code>GET /budgets/with_entries</code>, so requests for the same data
+ * with different queries are counted together.
+ */
+public final class TransferStats {
+	private final Map<String, Counts> counts = new HashMap<String, Counts>();
+
+	/**
+	 * Counts a request body sent to <code>endpoint</code>.
+	 *
+	 * @param endpoint The method and path of the request.
+	 * @param wireBytes The size of the body as sent.
+	 * @param bytes The size of the body before it was compressed.
+	 */
+	public synchronized void recordSent(String endpoint, long wireBytes,
+			long bytes) {
+		Counts c = countsFor(endpoint);
+		c.sentWireBytes += wireBytes;
+		c.sentBytes += bytes;
+	}
+
+	/**
+	 * Counts a response body received from <code>endpoint</code>.
+	 *
+	 * @param endpoint The method and path of the request.
+	 * @param wireBytes The size of the body as received.
+	 * @param bytes The size of the body once decompressed.
+	 */
+	public synchronized void recordReceived(String endpoint, long wireBytes,
+			long bytes) {
+		Counts c = countsFor(endpoint);
+		++c.responses;
+		c.receivedWireBytes += wireBytes;
+		c.receivedBytes += bytes;
+	}
+
+	/**
+	 * Gets what has been counted so far for each endpoint.
+	 *
+	 * @return An unmodifiable map from each endpoint to a copy of its
+	 *         counts.
+	 */
+	public synchronized Map<String, Counts> getCounts() {
+		Map<String, Counts> copy = new HashMap<String, Counts>();
+		for (Map.Entry<String, Counts> e : counts.entrySet()) {
+			copy.put(e.getKey(), new Counts(e.getValue()));
+		}
+		return Collections.unmodifiableMap(copy);
+	}
+
+	/**
+	 * Forgets everything counted so far.
+	 */
+	public synchronized void clear() {
+		counts.clear();
+	}
+
+	@Override
+	public synchronized String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, Counts> e : counts.entrySet()) {
+			if (sb.length() > 0) {
+				sb.append('\n');
+			}
+			sb.append(e.getKey()).append(": ").append(e.getValue());
+		}
+		return sb.toString();
+	}
+
+	private Counts countsFor(String endpoint) {
+		Counts c = counts.get(endpoint);
+		if (c == null) {
+			c = new Counts();
+			counts.put(endpoint, c);
+		}
+		return c;
+	}
+
+	/**
+	 * The bytes counted for one endpoint.
+	 */
+	public static final class Counts {
+		private int responses;
+		private long sentWireBytes;
+		private long sentBytes;
+		private long receivedWireBytes;
+		private long receivedBytes;
+
+		Counts() {
+		}
+
+		Counts(Counts other) {
+			responses = other.responses;
+			sentWireBytes = other.sentWireBytes;
+			sentBytes = other.sentBytes;
+			receivedWireBytes = other.receivedWireBytes;
+			receivedBytes = other.receivedBytes;
+		}
+
+		/**
+		 * @return The number of response bodies received.
+		 */
+		public int getResponses() {
+			return responses;
+		}
+
+		/**
+		 * @return The bytes of request bodies as sent.
+		 */
+		public long getSentWireBytes() {
+			return sentWireBytes;
+		}
+
+		/**
+		 * @return The bytes of request bodies before compressing.
+		 */
+		public long getSentBytes() {
+			return sentBytes;
+		}
+
+		/**
+		 * @return The bytes of response bodies as received.
+		 */
+		public long getReceivedWireBytes() {
+			return receivedWireBytes;
+		}
+
+		/**
+		 * @return The bytes of response bodies after decompressing.
+		 */
+		public long getReceivedBytes() {
+			return receivedBytes;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d responses, received %d of %d bytes,"
+					+ " sent %d of %d bytes", responses, receivedWireBytes,
+					receivedBytes, sentWireBytes, sentBytes);
+		}
+	}
+}
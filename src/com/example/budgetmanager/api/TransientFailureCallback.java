@@ -0,0 +1,25 @@
+package com.example.budgetmanager.api;
+
+/**
+ * An {@link ApiCallback} that is told whether a failed request may pass if
+ * it is sent again later. The {@link ApiInterface} decides from why the
+ * request failed: the device was offline, the server couldn't be reached
+ * or its response read, the server answered with an error of its own, or
+ * it has been failing and wasn't asked. Those failures are passed to
+ * {@link #onTransientFailure(String, Throwable)}; anything else the server
+ * rejected, and is passed to {@link #onFailure(String)}.
+ *
+ * @param <T> The type of the result of the request.
+ */
+public interface TransientFailureCallback<T> extends ApiCallback<T> {
+
+	/**
+	 * Method to be run instead of {@link #onFailure(String)} if the API
+	 * request failed in a way that may pass if it is sent again later.
+	 *
+	 * @param errorMessage a String explaining why the API request failed.
+	 * @param cause Why the request failed, or <code>null</code> if it
+	 *        wasn't sent, such as while offline.
+	 */
+	void onTransientFailure(String errorMessage, Throwable cause);
+}
@@ -0,0 +1,290 @@
+package com.example.budgetmanager.api;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.loopj.android.http.AsyncHttpClient;
+import com.loopj.android.http.AsyncHttpResponseHandler;
+
+import org.apache.http.ConnectionReuseStrategy;
+import org.apache.http.Header;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.client.AuthenticationHandler;
+import org.apache.http.client.CookieStore;
+import org.apache.http.client.HttpRequestRetryHandler;
+import org.apache.http.client.RedirectHandler;
+import org.apache.http.client.RequestDirector;
+import org.apache.http.client.UserTokenHandler;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.ClientContext;
+import org.apache.http.client.protocol.RequestAddCookies;
+import org.apache.http.client.protocol.RequestProxyAuthentication;
+import org.apache.http.client.protocol.RequestTargetAuthentication;
+import org.apache.http.client.protocol.ResponseProcessCookies;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoutePlanner;
+import org.apache.http.cookie.Cookie;
+import org.apache.http.cookie.CookieOrigin;
+import org.apache.http.cookie.CookieSpec;
+import org.apache.http.cookie.MalformedCookieException;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.client.EntityEnclosingRequestWrapper;
+import org.apache.http.impl.client.RequestWrapper;
+import org.apache.http.impl.cookie.BrowserCompatSpec;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.ExecutionContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpProcessor;
+import org.apache.http.protocol.HttpRequestExecutor;
+import org.apache.http.protocol.RequestContent;
+import org.apache.http.protocol.RequestExpectContinue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * An {@link AsyncHttpClient} that gives each request its own timeout, and
+ * can carry its requests over an {@link HttpTransport} of its own rather
+ * than the pooled connections of the Apache client it wraps.
+ *
+ * Whichever carries a request, the interceptors added to
+ * {@link #getHttpClient()} are applied to it and to its response, as are
+ * the client's cookies, and the response is handled the same way.
+ */
+public class TransportClient extends AsyncHttpClient {
+	private static final String TAG = "TransportClient";
+
+	private final RequestTimeouts timeouts = new RequestTimeouts();
+	private final RequestScheduler scheduler = new RequestScheduler();
+	private volatile HttpTransport transport;
+
+	/**
+	 * Creates a client whose requests are run by a
+	 * {@link RequestScheduler}, by priority.
+	 */
+	public TransportClient() {
+		setThreadPool(scheduler);
+	}
+
+	/**
+	 * Gets how long each request may take. The timeouts apply to requests
+	 * sent after they are changed.
+	 *
+	 * @return The timeouts of the requests.
+	 */
+	public RequestTimeouts getTimeouts() {
+		return timeouts;
+	}
+
+	/**
+	 * Gets what runs the requests, by priority. The priorities and limits
+	 * apply to requests sent after they are changed.
+	 *
+	 * @return The scheduler of the requests.
+	 */
+	public RequestScheduler getScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * Sets what carries the requests sent from now on.
+	 *
+	 * @param transport The transport, or <code>null</code> for the pooled
+	 *        connections of the Apache client.
+	 */
+	public void setTransport(HttpTransport transport) {
+		this.transport = transport;
+	}
+
+	/**
+	 * Gets what carries the requests.
+	 *
+	 * @return The transport, or <code>null</code> if it is the Apache
+	 *         client.
+	 */
+	public HttpTransport getTransport() {
+		return transport;
+	}
+
+	@Override
+	protected void sendRequest(DefaultHttpClient client,
+			HttpContext httpContext, HttpUriRequest uriRequest,
+			String contentType, AsyncHttpResponseHandler responseHandler,
+			Context context) {
+		String method = uriRequest.getMethod();
+		String url = uriRequest.getURI().toString();
+		int timeout = timeouts.get(method, url);
+		// The request's parameters take the place of the client's.
+		HttpParams params = uriRequest.getParams();
+		HttpConnectionParams.setConnectionTimeout(params, timeout);
+		HttpConnectionParams.setSoTimeout(params, timeout);
+
+		HttpTransport current = transport;
+		if (current != null) {
+			client = new TransportHttpClient(client, current, timeout);
+		}
+		// Handed to the scheduler on this thread, by the call below.
+		scheduler.setNextPriority(scheduler.getPriority(method, url));
+		super.sendRequest(client, httpContext, uriRequest, contentType,
+				responseHandler, context);
+	}
+
+	/*
+	 * Stands in for the Apache client for one request, handing it to a
+	 * transport instead of sending it itself.
+	 */
+	private static final class TransportHttpClient extends DefaultHttpClient {
+		private final DefaultHttpClient source;
+		private final HttpTransport transport;
+		private final int timeout;
+
+		TransportHttpClient(DefaultHttpClient source, HttpTransport transport,
+				int timeout) {
+			super(source.getConnectionManager(), source.getParams());
+			this.source = source;
+			this.transport = transport;
+			this.timeout = timeout;
+			setHttpRequestRetryHandler(source.getHttpRequestRetryHandler());
+		}
+
+		@Override
+		protected RequestDirector createClientRequestDirector(
+				HttpRequestExecutor requestExec, ClientConnectionManager conman,
+				ConnectionReuseStrategy reustrat,
+				ConnectionKeepAliveStrategy kastrat, HttpRoutePlanner rouplan,
+				HttpProcessor httpProcessor, HttpRequestRetryHandler retryHandler,
+				RedirectHandler redirectHandler,
+				AuthenticationHandler targetAuthHandler,
+				AuthenticationHandler proxyAuthHandler,
+				UserTokenHandler stateHandler, HttpParams params) {
+			return new TransportDirector(source, transport, timeout);
+		}
+	}
+
+	/*
+	 * Sends a request over a transport, applying the interceptors of the
+	 * Apache client around it. Those that work on its connection are left
+	 * out, and cookies are added and kept here instead.
+	 */
+	private static final class TransportDirector implements RequestDirector {
+		private final DefaultHttpClient source;
+		private final HttpTransport transport;
+		private final int timeout;
+
+		TransportDirector(DefaultHttpClient source, HttpTransport transport,
+				int timeout) {
+			this.source = source;
+			this.transport = transport;
+			this.timeout = timeout;
+		}
+
+		@Override
+		public HttpResponse execute(HttpHost target, HttpRequest request,
+				HttpContext context) throws HttpException, IOException {
+			// Interceptors change the copy, so the request can be retried.
+			RequestWrapper wrapper;
+			if (request instanceof HttpEntityEnclosingRequest) {
+				wrapper = new EntityEnclosingRequestWrapper(
+						(HttpEntityEnclosingRequest) request);
+			} else {
+				wrapper = new RequestWrapper(request);
+			}
+			context.setAttribute(ExecutionContext.HTTP_TARGET_HOST, target);
+			context.setAttribute(ExecutionContext.HTTP_REQUEST, wrapper);
+			for (int i = 0; i < source.getRequestInterceptorCount(); ++i) {
+				HttpRequestInterceptor interceptor = source.getRequestInterceptor(i);
+				if (!isLeftOut(interceptor)) {
+					interceptor.process(wrapper, context);
+				}
+			}
+
+			CookieStore cookies = (CookieStore)
+					context.getAttribute(ClientContext.COOKIE_STORE);
+			CookieSpec spec = new BrowserCompatSpec();
+			CookieOrigin origin = originOf(wrapper.getURI());
+			if (cookies != null) {
+				addCookies(wrapper, cookies, spec, origin);
+			}
+
+			HttpResponse response = transport.execute(wrapper, timeout);
+			context.setAttribute(ExecutionContext.HTTP_RESPONSE, response);
+			for (int i = 0; i < source.getResponseInterceptorCount(); ++i) {
+				HttpResponseInterceptor interceptor = source.getResponseInterceptor(i);
+				if (!isLeftOut(interceptor)) {
+					interceptor.process(response, context);
+				}
+			}
+			if (cookies != null) {
+				keepCookies(response, cookies, spec, origin);
+			}
+			return response;
+		}
+
+		/* Whether an interceptor works on the connection, or on cookies. */
+		private static boolean isLeftOut(Object interceptor) {
+			return interceptor instanceof RequestAddCookies
+					|| interceptor instanceof ResponseProcessCookies
+					|| interceptor instanceof RequestContent
+					|| interceptor instanceof RequestExpectContinue
+					|| interceptor instanceof RequestTargetAuthentication
+					|| interceptor instanceof RequestProxyAuthentication
+					// Only in some versions of HttpClient, so checked by name.
+					|| interceptor.getClass().getSimpleName()
+							.equals("RequestClientConnControl");
+		}
+
+		private static CookieOrigin originOf(URI uri) {
+			boolean secure = "https".equalsIgnoreCase(uri.getScheme());
+			int port = uri.getPort();
+			if (port < 0) {
+				port = secure ? 443 : 80;
+			}
+			String path = uri.getPath();
+			if (path == null || path.length() == 0) {
+				path = "/";
+			}
+			return new CookieOrigin(uri.getHost(), port, path, secure);
+		}
+
+		private static void addCookies(HttpRequest request, CookieStore cookies,
+				CookieSpec spec, CookieOrigin origin) {
+			Date now = new Date();
+			List<Cookie> matched = new ArrayList<Cookie>();
+			for (Cookie cookie : cookies.getCookies()) {
+				if (!cookie.isExpired(now) && spec.match(cookie, origin)) {
+					matched.add(cookie);
+				}
+			}
+			if (!matched.isEmpty()) {
+				for (Header header : spec.formatCookies(matched)) {
+					request.addHeader(header);
+				}
+			}
+		}
+
+		private static void keepCookies(HttpResponse response,
+				CookieStore cookies, CookieSpec spec, CookieOrigin origin) {
+			for (Header header : response.getHeaders("Set-Cookie")) {
+				try {
+					for (Cookie cookie : spec.parse(header, origin)) {
+						spec.validate(cookie, origin);
+						cookies.addCookie(cookie);
+					}
+				} catch (MalformedCookieException e) {
+					Log.w(TAG, "Ignoring cookie: " + e.getMessage());
+				}
+			}
+		}
+	}
+}
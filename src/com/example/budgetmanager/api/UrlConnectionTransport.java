@@ -0,0 +1,187 @@
+package com.example.budgetmanager.api;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * Carries requests over {@link HttpURLConnection}, which keeps connections
+ * alive between requests to the same host and reuses them from a pool.
+ *
+ * Every connection made by a transport shares one TLS context, so that
+ * once a session has been set up with the server, later connections resume
+ * it rather than repeating the whole handshake.
+ */
+public final class UrlConnectionTransport implements HttpTransport {
+
+	/** How many idle connections to keep to each host, by default. */
+	public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 5;
+
+	/** How many TLS sessions to keep for resuming, by default. */
+	public static final int DEFAULT_TLS_SESSION_CACHE_SIZE = 16;
+
+	/** How long a TLS session may be resumed for, in seconds. */
+	public static final int TLS_SESSION_TIMEOUT_SECONDS = 60 * 60;
+
+	// Headers the connection sets itself, from the request and its body
+	private static final Set<String> SET_BY_CONNECTION = new HashSet<String>(
+			Arrays.asList("connection", "content-length", "host",
+					"transfer-encoding", "expect"));
+
+	private final SSLSocketFactory socketFactory;
+
+	/**
+	 * Creates a transport with the default pool sizes.
+	 *
+	 * @throws IllegalStateException if there is no TLS support
+	 */
+	public UrlConnectionTransport() {
+		this(DEFAULT_MAX_IDLE_CONNECTIONS, DEFAULT_TLS_SESSION_CACHE_SIZE);
+	}
+
+	/**
+	 * Creates a transport.
+	 *
+	 * @param maxIdleConnections How many idle connections to keep to each
+	 *        host. The pool is shared by every connection the app makes, so
+	 *        this sets it for all of them.
+	 * @param tlsSessionCacheSize How many TLS sessions to keep for
+	 *        resuming.
+	 * @throws IllegalStateException if there is no TLS support
+	 */
+	public UrlConnectionTransport(int maxIdleConnections,
+			int tlsSessionCacheSize) {
+		System.setProperty("http.keepAlive", "true");
+		System.setProperty("http.maxConnections",
+				Integer.toString(maxIdleConnections));
+		try {
+			SSLContext tls = SSLContext.getInstance("TLS");
+			tls.init(null, null, null);
+			SSLSessionContext sessions = tls.getClientSessionContext();
+			if (sessions != null) {
+				sessions.setSessionCacheSize(tlsSessionCacheSize);
+				sessions.setSessionTimeout(TLS_SESSION_TIMEOUT_SECONDS);
+			}
+			socketFactory = tls.getSocketFactory();
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("TLS is not available", e);
+		}
+	}
+
+	@Override
+	public HttpResponse execute(HttpUriRequest request, int timeoutMillis)
+			throws IOException {
+		HttpURLConnection connection = (HttpURLConnection)
+				request.getURI().toURL().openConnection();
+		if (connection instanceof HttpsURLConnection) {
+			((HttpsURLConnection) connection).setSSLSocketFactory(socketFactory);
+		}
+		connection.setConnectTimeout(timeoutMillis);
+		connection.setReadTimeout(timeoutMillis);
+		connection.setUseCaches(false);
+		connection.setRequestMethod(request.getMethod());
+		for (Header header : request.getAllHeaders()) {
+			if (!SET_BY_CONNECTION.contains(
+					header.getName().toLowerCase(Locale.US))) {
+				connection.addRequestProperty(header.getName(), header.getValue());
+			}
+		}
+
+		HttpEntity body = null;
+		if (request instanceof HttpEntityEnclosingRequest) {
+			body = ((HttpEntityEnclosingRequest) request).getEntity();
+		}
+		if (body != null) {
+			send(connection, body);
+		}
+
+		int status = connection.getResponseCode();
+		if (status < 0) {
+			throw new IOException("Not a valid HTTP response");
+		}
+		return receive(connection, status);
+	}
+
+	/* Writes the body of a request, streaming it if its length is known. */
+	private static void send(HttpURLConnection connection, HttpEntity body)
+			throws IOException {
+		connection.setDoOutput(true);
+		long length = body.getContentLength();
+		if (length >= 0 && length <= Integer.MAX_VALUE) {
+			connection.setFixedLengthStreamingMode((int) length);
+		} else {
+			connection.setChunkedStreamingMode(0);
+		}
+		if (body.getContentType() != null) {
+			connection.setRequestProperty("Content-Type",
+					body.getContentType().getValue());
+		}
+		if (body.getContentEncoding() != null) {
+			connection.setRequestProperty("Content-Encoding",
+					body.getContentEncoding().getValue());
+		}
+		OutputStream out = connection.getOutputStream();
+		try {
+			body.writeTo(out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/*
+	 * Builds the response. Its body is read straight from the connection,
+	 * which goes back to the pool once the body has been read and closed.
+	 */
+	private static HttpResponse receive(HttpURLConnection connection,
+			int status) throws IOException {
+		String reason = connection.getResponseMessage();
+		HttpResponse response = new BasicHttpResponse(new BasicStatusLine(
+				HttpVersion.HTTP_1_1, status, reason == null ? "" : reason));
+		for (Map.Entry<String, List<String>> header
+				: connection.getHeaderFields().entrySet()) {
+			// The status line is listed without a name.
+			if (header.getKey() == null) {
+				continue;
+			}
+			for (String value : header.getValue()) {
+				response.addHeader(header.getKey(), value);
+			}
+		}
+
+		InputStream in = status >= HttpURLConnection.HTTP_BAD_REQUEST
+				? connection.getErrorStream() : connection.getInputStream();
+		if (in != null) {
+			BasicHttpEntity entity = new BasicHttpEntity();
+			entity.setContent(in);
+			entity.setContentLength(connection.getContentLength());
+			entity.setContentType(connection.getHeaderField("Content-Type"));
+			entity.setContentEncoding(
+					connection.getHeaderField("Content-Encoding"));
+			response.setEntity(entity);
+		}
+		return response;
+	}
+}
@@ -1,10 +1,15 @@
 package com.example.budgetmanager.api.test;
 
+import android.content.Context;
+
 import com.loopj.android.http.AsyncHttpClient;
 import com.loopj.android.http.AsyncHttpResponseHandler;
 import com.loopj.android.http.JsonHttpResponseHandler;
 import com.loopj.android.http.RequestParams;
 
+import org.apache.http.Header;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpResponseException;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
@@ -18,9 +23,15 @@ import java.util.Queue;
  * @author Graham grahamb5
  */
 public class AsyncHttpClientStub extends AsyncHttpClient {
+	// Queued in place of a body to answer 304 Not Modified
+	private static final Object NOT_MODIFIED = new Object();
+
 	private Queue<Object> responseQueue;
 	private Queue<Boolean> successQueue;
 	private String errorMessage = "Set to fail.";
+	private RequestParams lastParams;
+	private Header[] lastHeaders;
+	private Queue<AsyncHttpResponseHandler> heldHandlers;
 
 	public AsyncHttpClientStub() {
 		responseQueue = new LinkedList<Object>();
@@ -43,6 +54,26 @@ public class AsyncHttpClientStub extends AsyncHttpClient {
 		}
 	}
 
+	/**
+	 * Enqueues a fake <code>304 Not Modified</code> response from the
+	 * server, which has no body.
+	 */
+	public void setNextResponseNotModified() {
+		responseQueue.add(NOT_MODIFIED);
+		successQueue.add(false);
+	}
+
+	/**
+	 * Enqueues a failure to get any response from the server, such as a
+	 * refused connection, which has no body.
+	 *
+	 * @param error Why the request failed.
+	 */
+	public void setNextFailure(Throwable error) {
+		responseQueue.add(error);
+		successQueue.add(false);
+	}
+
 	/**
 	 * Enqueues an error message for the next response.
 	 * Defaults to "Set to fail."
@@ -53,17 +84,74 @@ public class AsyncHttpClientStub extends AsyncHttpClient {
 		errorMessage = msg;
 	}
 
+	/**
+	 * Gets the parameters of the last request made with parameters.
+	 *
+	 * @return The last parameters sent, or null if none have been.
+	 */
+	public RequestParams getLastParams() {
+		return lastParams;
+	}
+
+	/**
+	 * Gets the headers of the last request made with headers of its own.
+	 *
+	 * @return The last headers sent, or null if none have been.
+	 */
+	public Header[] getLastHeaders() {
+		return lastHeaders;
+	}
+
+	/**
+	 * Holds back the responses to the requests made from now on, as if they
+	 * were still on their way, until {@link #releaseResponses()} is called.
+	 */
+	public void holdResponses() {
+		if (heldHandlers == null) {
+			heldHandlers = new LinkedList<AsyncHttpResponseHandler>();
+		}
+	}
+
+	/**
+	 * Answers the requests held back since {@link #holdResponses()}, in the
+	 * order they were made, and stops holding back responses.
+	 */
+	public void releaseResponses() {
+		Queue<AsyncHttpResponseHandler> held = heldHandlers;
+		heldHandlers = null;
+		while (held != null && !held.isEmpty()) {
+			callHandler(held.poll());
+		}
+	}
+
 	/**
 	 * Calls the specified handler with the last set JSON response.
 	 *
 	 * @param handler The handler to forward the JSON response to.
 	 */
 	private void callHandler(AsyncHttpResponseHandler handler) {
+		if (heldHandlers != null) {
+			heldHandlers.add(handler);
+			return;
+		}
 		if (responseQueue.size() > 0) {
 			Object responseJson = responseQueue.poll();
 			boolean success = successQueue.poll();
 
-			if (responseJson instanceof JSONObject) {
+			if (responseJson instanceof Throwable) {
+				handler.onFailure((Throwable) responseJson, (String) null);
+			} else if (responseJson == NOT_MODIFIED) {
+				handler.onFailure(new HttpResponseException(
+						HttpStatus.SC_NOT_MODIFIED, "Not Modified"), (String) null);
+			} else if (!(handler instanceof JsonHttpResponseHandler)) {
+				// Handlers that read the JSON themselves get the raw body.
+				if (success) {
+					handler.onSuccess(responseJson.toString());
+				} else {
+					handler.onFailure(new Exception(errorMessage),
+							responseJson.toString());
+				}
+			} else if (responseJson instanceof JSONObject) {
 				JSONObject jsonObject = (JSONObject) responseJson;
 				if (success) {
 					((JsonHttpResponseHandler) handler).onSuccess(jsonObject);
@@ -90,6 +178,7 @@ public class AsyncHttpClientStub extends AsyncHttpClient {
 	 */
 	@Override
 	public void post(String arg, RequestParams params, AsyncHttpResponseHandler handler) {
+		lastParams = params;
 		callHandler(handler);
 	}
 
@@ -106,6 +195,7 @@ public class AsyncHttpClientStub extends AsyncHttpClient {
 	 */
 	@Override
 	public void put(String arg, RequestParams params, AsyncHttpResponseHandler handler) {
+		lastParams = params;
 		callHandler(handler);
 	}
 
@@ -130,6 +220,18 @@ public class AsyncHttpClientStub extends AsyncHttpClient {
 	 */
 	@Override
 	public void get(String arg, RequestParams params, AsyncHttpResponseHandler handler) {
+		lastParams = params;
+		callHandler(handler);
+	}
+
+	/**
+	 * Returns a stub network connection response to the <code>handler</code>.
+	 */
+	@Override
+	public void get(Context context, String arg, Header[] headers,
+			RequestParams params, AsyncHttpResponseHandler handler) {
+		lastHeaders = headers;
+		lastParams = params;
 		callHandler(handler);
 	}
 
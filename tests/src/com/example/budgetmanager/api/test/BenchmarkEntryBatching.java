@@ -0,0 +1,129 @@
+package com.example.budgetmanager.api.test;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+
+import com.example.budgetmanager.Budget;
+import com.example.budgetmanager.Budget.Duration;
+import com.example.budgetmanager.Entry;
+import com.example.budgetmanager.api.ApiCallback;
+import com.example.budgetmanager.api.ApiInterface;
+import com.example.budgetmanager.api.EntryBatcher;
+import com.example.budgetmanager.api.Timer;
+import com.example.budgetmanager.test.TestUtilities;
+
+import org.joda.time.LocalDate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares how many entries a second can be created and removed one
+ * request at a time, and in batches, against a stand-in server that takes
+ * a set time for each round trip. The results are logged under the tag
+ * <code>BenchmarkEntryBatching</code>.
+ */
+public class BenchmarkEntryBatching extends AndroidTestCase {
+	private static final String TAG = "BenchmarkEntryBatching";
+
+	private static final int ENTRY_COUNT = 200;
+	private static final long ROUND_TRIP_MILLIS = 20;
+
+	private EntriesServerStub server;
+	private ApiInterface api;
+	private Budget budget;
+
+	@Override
+	protected void setUp() {
+		try {
+			// Need to set the context for the test, or we'll get a
+			// NullPointerException.
+			TestUtilities.setStaticValue("com.example.budgetmanager.UBudgetApp", "context", getContext());
+		} catch (Exception e) { }
+
+		server = new EntriesServerStub(ROUND_TRIP_MILLIS);
+		api = TestUtilities.getStubbedApiInterface(server);
+		budget = new Budget("Budget", 5000, false, LocalDate.now(), Duration.WEEK);
+		budget.setId(1);
+	}
+
+	/**
+	 * Creates and removes the entries one request at a time, then in
+	 * batches, and checks that batches make fewer requests and take less
+	 * time.
+	 */
+	@LargeTest
+	public void test_batches_shouldBeFasterThanSingleRequests() {
+		List<Entry> entries = makeEntries();
+		long start = System.nanoTime();
+		for (Entry e : entries) {
+			api.create(e, new Counter<Long>());
+		}
+		for (Entry e : entries) {
+			api.remove(e, new Counter<Object>());
+		}
+		long singleNanos = System.nanoTime() - start;
+		int singleRequests = server.getRequestCount();
+
+		entries = makeEntries();
+		EntryBatcher batcher = new EntryBatcher(api, new Timer() {
+			@Override
+			public void schedule(Runnable task, long delayMillis) {
+				// Only full batches are sent, and the rest by flush.
+			}
+		}, EntryBatcher.DEFAULT_WINDOW_MILLIS, EntryBatcher.DEFAULT_MAX_BATCH_SIZE);
+		Counter<Long> created = new Counter<Long>();
+		Counter<Object> removed = new Counter<Object>();
+		start = System.nanoTime();
+		for (Entry e : entries) {
+			batcher.create(e, created);
+		}
+		batcher.flush();
+		for (Entry e : entries) {
+			batcher.remove(e, removed);
+		}
+		batcher.flush();
+		long batchNanos = System.nanoTime() - start;
+		int batchRequests = server.getRequestCount() - singleRequests;
+
+		Log.i(TAG, String.format("single: %d requests, %.0f entries/s",
+				singleRequests, perSecond(singleNanos)));
+		Log.i(TAG, String.format("batched: %d requests, %.0f entries/s",
+				batchRequests, perSecond(batchNanos)));
+
+		assertEquals(ENTRY_COUNT, created.successes);
+		assertEquals(ENTRY_COUNT, removed.successes);
+		assertEquals(2 * ENTRY_COUNT, singleRequests);
+		assertEquals(2 * ENTRY_COUNT / EntryBatcher.DEFAULT_MAX_BATCH_SIZE,
+				batchRequests);
+		assertTrue(batchNanos < singleNanos);
+	}
+
+	private List<Entry> makeEntries() {
+		List<Entry> entries = new ArrayList<Entry>(ENTRY_COUNT);
+		for (int i = 0; i < ENTRY_COUNT; ++i) {
+			entries.add(new Entry(100 + i, budget, "entry " + i, LocalDate.now()));
+		}
+		return entries;
+	}
+
+	/* Entries created and removed a second, both counting as one each. */
+	private static double perSecond(long nanos) {
+		return 2 * ENTRY_COUNT / (nanos / 1e9);
+	}
+
+	/* Counts the successes it is told about. */
+	private static final class Counter<T> implements ApiCallback<T> {
+		int successes;
+
+		@Override
+		public void onSuccess(T result) {
+			++successes;
+		}
+
+		@Override
+		public void onFailure(String errorMessage) {
+		}
+	}
+}
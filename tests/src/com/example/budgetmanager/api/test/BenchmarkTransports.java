@@ -0,0 +1,202 @@
+package com.example.budgetmanager.api.test;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+
+import com.example.budgetmanager.api.HttpTransport;
+import com.example.budgetmanager.api.LoopbackTransport;
+import com.example.budgetmanager.api.TransportClient;
+import com.example.budgetmanager.api.UrlConnectionTransport;
+import com.loopj.android.http.AsyncHttpResponseHandler;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares how many requests a second each transport carries, one after
+ * another, against a server on the device that answers straight away, and
+ * against a loopback transport with no network at all. The results are
+ * logged under the tag <code>BenchmarkTransports</code>.
+ */
+public class BenchmarkTransports extends AndroidTestCase {
+	private static final String TAG = "BenchmarkTransports";
+
+	private static final int REQUEST_COUNT = 200;
+	private static final String BODY = "[{\"id\":1,\"budget_name\":\"Food\"}]";
+
+	private LocalServer server;
+	private String url;
+
+	@Override
+	protected void setUp() throws IOException {
+		server = new LocalServer();
+		url = "http://127.0.0.1:" + server.getPort() + "/budgets";
+	}
+
+	@Override
+	protected void tearDown() throws IOException {
+		server.close();
+	}
+
+	/**
+	 * Sends the same requests over each transport, and checks that each
+	 * got every response.
+	 */
+	@LargeTest
+	public void test_transports_headToHead() {
+		LoopbackTransport loopback = new LoopbackTransport(
+				new LoopbackTransport.Server() {
+			@Override
+			public HttpResponse serve(HttpUriRequest request) {
+				return LoopbackTransport.respond(200, BODY);
+			}
+		});
+
+		report("apache", time(null));
+		report("urlconnection", time(new UrlConnectionTransport()));
+		report("loopback", time(loopback));
+
+		assertEquals(REQUEST_COUNT, loopback.getRequestCount());
+		assertEquals(2 * REQUEST_COUNT, server.getRequestCount());
+	}
+
+	/* Sends the requests one after another, returning how long they took. */
+	private long time(HttpTransport transport) {
+		TransportClient client = new TransportClient();
+		client.setTransport(transport);
+		final AtomicInteger successes = new AtomicInteger();
+		// Warm up the connection before timing.
+		send(client, successes);
+		successes.set(0);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < REQUEST_COUNT - 1; ++i) {
+			send(client, successes);
+		}
+		long nanos = System.nanoTime() - start;
+		assertEquals(REQUEST_COUNT - 1, successes.get());
+		return nanos;
+	}
+
+	private void send(TransportClient client, final AtomicInteger successes) {
+		final CountDownLatch finished = new CountDownLatch(1);
+		// The test thread has no looper, so the handler is called on the
+		// thread that sent the request.
+		client.get(url, new AsyncHttpResponseHandler() {
+			@Override
+			public void onSuccess(String response) {
+				if (BODY.equals(response)) {
+					successes.incrementAndGet();
+				}
+			}
+
+			@Override
+			public void onFinish() {
+				finished.countDown();
+			}
+		});
+		try {
+			assertTrue(finished.await(10, TimeUnit.SECONDS));
+		} catch (InterruptedException e) {
+			fail(e.getMessage());
+		}
+	}
+
+	private static void report(String name, long nanos) {
+		Log.i(TAG, String.format("%s: %.0f requests/s, %.2f ms each", name,
+				(REQUEST_COUNT - 1) / (nanos / 1e9),
+				nanos / 1e6 / (REQUEST_COUNT - 1)));
+	}
+
+	/*
+	 * A server on the device that answers every request with the same
+	 * body, keeping connections alive between requests.
+	 */
+	private static final class LocalServer {
+		private final ServerSocket socket;
+		private final AtomicInteger requestCount = new AtomicInteger();
+
+		LocalServer() throws IOException {
+			socket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+			Thread acceptor = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					accept();
+				}
+			}, "LocalServer");
+			acceptor.setDaemon(true);
+			acceptor.start();
+		}
+
+		int getPort() {
+			return socket.getLocalPort();
+		}
+
+		int getRequestCount() {
+			return requestCount.get();
+		}
+
+		void close() throws IOException {
+			socket.close();
+		}
+
+		private void accept() {
+			while (!socket.isClosed()) {
+				try {
+					final Socket connection = socket.accept();
+					Thread thread = new Thread(new Runnable() {
+						@Override
+						public void run() {
+							serve(connection);
+						}
+					}, "LocalServerConnection");
+					thread.setDaemon(true);
+					thread.start();
+				} catch (IOException e) {
+					return;
+				}
+			}
+		}
+
+		/* Answers the requests on a connection until the client closes it. */
+		private void serve(Socket connection) {
+			try {
+				connection.setTcpNoDelay(true);
+				BufferedReader in = new BufferedReader(new InputStreamReader(
+						connection.getInputStream(), "US-ASCII"));
+				OutputStream out = connection.getOutputStream();
+				// Written at once, so the client isn't kept waiting for the
+				// rest of it.
+				byte[] response = ("HTTP/1.1 200 OK\r\n"
+						+ "Content-Type: application/json\r\n"
+						+ "Content-Length: " + BODY.length() + "\r\n"
+						+ "Connection: keep-alive\r\n\r\n" + BODY).getBytes("UTF-8");
+				while (in.readLine() != null) {
+					// Skip the headers; the requests have no bodies.
+					String line = in.readLine();
+					while (line != null && line.length() > 0) {
+						line = in.readLine();
+					}
+					requestCount.incrementAndGet();
+					out.write(response);
+					out.flush();
+				}
+				connection.close();
+			} catch (IOException e) {
+				Log.w(TAG, "Connection closed: " + e.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,186 @@
+package com.example.budgetmanager.api.test;
+
+import android.test.suitebuilder.annotation.LargeTest;
+import android.util.Log;
+
+import com.example.budgetmanager.Budget;
+import com.example.budgetmanager.Budget.Duration;
+import com.example.budgetmanager.Entry;
+import com.example.budgetmanager.SyncDelta;
+import com.example.budgetmanager.api.ApiParser;
+import com.example.budgetmanager.api.CompactWireFormat;
+
+import junit.framework.TestCase;
+
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+import org.json.JSONException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compares reading the budgets with their entries as JSON and in the
+ * {@link CompactWireFormat}, at 1,000, 10,000 and 100,000 entries: how
+ * long each takes to decode, and how many bytes each is, before and after
+ * gzip. The results are logged under the tag
+ * <code>BenchmarkWireFormats</code>.
+ */
+public class BenchmarkWireFormats extends TestCase {
+	private static final String TAG = "BenchmarkWireFormats";
+
+	private static final int BUDGET_COUNT = 10;
+	// Each size is decoded this many times, and the quickest kept
+	private static final int RUNS = 5;
+
+	private static final String DATE_FORMAT = "yyyy-MM-dd";
+	private static final String DATETIME_FORMAT = "yyyy-MM-dd HH:mm:ss";
+
+	private final ApiParser parser = new ApiParser(DATE_FORMAT, DATETIME_FORMAT);
+	private final CompactWireFormat format = new CompactWireFormat(parser,
+			"http://example.com/budgets/with_entries");
+
+	/**
+	 * Decodes 1,000 entries each way.
+	 */
+	@LargeTest
+	public void test_decode_1k() throws Exception {
+		compare(1000);
+	}
+
+	/**
+	 * Decodes 10,000 entries each way.
+	 */
+	@LargeTest
+	public void test_decode_10k() throws Exception {
+		compare(10000);
+	}
+
+	/**
+	 * Decodes 100,000 entries each way.
+	 */
+	@LargeTest
+	public void test_decode_100k() throws Exception {
+		compare(100000);
+	}
+
+	/* Decodes entryCount entries each way, and checks they read the same. */
+	private void compare(int entryCount) throws IOException, JSONException {
+		List<Budget> budgets = budgets(entryCount);
+		String json = toJson(budgets);
+		byte[] jsonBytes = json.getBytes("UTF-8");
+		byte[] compact = CompactWireFormat.encode(budgets);
+		String compactText = new String(compact, "ISO-8859-1");
+
+		long jsonNanos = Long.MAX_VALUE;
+		long compactNanos = Long.MAX_VALUE;
+		for (int i = 0; i < RUNS; ++i) {
+			long start = System.nanoTime();
+			SyncDelta fromJson = format.readAllChanges(new StringReader(json));
+			jsonNanos = Math.min(jsonNanos, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			SyncDelta fromCompact = format.readAllChanges(
+					new StringReader(compactText));
+			compactNanos = Math.min(compactNanos, System.nanoTime() - start);
+
+			assertEquals(entryCount, count(fromJson));
+			assertEquals(entryCount, count(fromCompact));
+			assertEquals(fromJson.getSyncedThrough(),
+					fromCompact.getSyncedThrough());
+		}
+
+		Log.i(TAG, String.format("%d entries: json %d bytes (%d gzipped) in "
+				+ "%.1f ms, compact %d bytes (%d gzipped) in %.1f ms",
+				entryCount, jsonBytes.length, gzipped(jsonBytes), jsonNanos / 1e6,
+				compact.length, gzipped(compact), compactNanos / 1e6));
+	}
+
+	/* Makes BUDGET_COUNT budgets, sharing entryCount entries between them. */
+	private static List<Budget> budgets(int entryCount) {
+		List<Budget> budgets = new ArrayList<Budget>(BUDGET_COUNT);
+		LocalDate start = new LocalDate(2013, 1, 1);
+		LocalDateTime created = new LocalDateTime(2013, 1, 1, 9, 0, 0);
+		for (int i = 0; i < BUDGET_COUNT; ++i) {
+			Budget b = new Budget("Budget " + i, 10000 * (i + 1), i % 2 == 0,
+					start, Duration.MONTH);
+			b.setId(i + 1);
+			List<Entry> entries = new ArrayList<Entry>();
+			for (int j = i; j < entryCount; j += BUDGET_COUNT) {
+				Entry e = new Entry(j + 1, 100 + j % 5000, b,
+						j % 3 == 0 ? "" : "Lunch " + j, start.plusDays(j % 365));
+				e.setCreatedAt(created.plusMinutes(j));
+				e.setUpdatedAt(created.plusMinutes(j).plusSeconds(j % 60));
+				entries.add(e);
+			}
+			b.addEntries(entries);
+			budgets.add(b);
+		}
+		return budgets;
+	}
+
+	/* Writes budgets as the server sends them in JSON. */
+	private static String toJson(List<Budget> budgets) {
+		DateTimeFormatter date = DateTimeFormat.forPattern(DATE_FORMAT);
+		DateTimeFormatter dateTime = DateTimeFormat.forPattern(DATETIME_FORMAT);
+		StringBuilder sb = new StringBuilder();
+		sb.append('[');
+		for (int i = 0; i < budgets.size(); ++i) {
+			Budget b = budgets.get(i);
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append("{\"id\":").append(b.getId())
+					.append(",\"budget_name\":\"").append(b.getName())
+					.append("\",\"amount\":").append(b.getBudgetAmount())
+					.append(",\"recur\":").append(b.isRecurring())
+					.append(",\"recurrence_duration\":\"").append(b.getDuration())
+					.append("\",\"start_date\":\"")
+					.append(date.print(b.getStartDate()))
+					.append("\",\"entries\":[");
+			List<Entry> entries = b.getEntries();
+			for (int j = 0; j < entries.size(); ++j) {
+				Entry e = entries.get(j);
+				if (j > 0) {
+					sb.append(',');
+				}
+				sb.append("{\"id\":").append(e.getEntryId())
+						.append(",\"budget_id\":").append(b.getId())
+						.append(",\"amount\":").append(e.getAmount())
+						.append(",\"expenditure_date\":\"")
+						.append(date.print(e.getDate()))
+						.append("\",\"created_at\":\"")
+						.append(dateTime.print(e.getCreatedAt()))
+						.append("\",\"updated_at\":\"")
+						.append(dateTime.print(e.getUpdatedAt()))
+						.append("\",\"notes\":\"").append(e.getNotes())
+						.append("\"}");
+			}
+			sb.append("]}");
+		}
+		sb.append(']');
+		return sb.toString();
+	}
+
+	private static int count(SyncDelta all) {
+		int count = 0;
+		for (Budget b : all.getBudgets()) {
+			count += b.getEntries().size();
+		}
+		return count;
+	}
+
+	private static int gzipped(byte[] bytes) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GZIPOutputStream gzip = new GZIPOutputStream(out);
+		gzip.write(bytes);
+		gzip.close();
+		return out.size();
+	}
+}
@@ -0,0 +1,157 @@
+package com.example.budgetmanager.api.test;
+
+import com.loopj.android.http.AsyncHttpClient;
+import com.loopj.android.http.AsyncHttpResponseHandler;
+import com.loopj.android.http.JsonHttpResponseHandler;
+import com.loopj.android.http.RequestParams;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.lang.reflect.Field;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A subclass of the AsyncHttpClient that stands in for the server's entry
+ * endpoints, for testing and benchmarking batches of entries. It keeps the
+ * IDs of the entries created, answers the single-entry and batch requests
+ * the way the server does, and waits a set time before each answer, as if
+ * it were a round trip over the network.
+ *
+ * Entries with an amount of 0 or less are rejected, as are removals of
+ * entries it doesn't have.
+ */
+public class EntriesServerStub extends AsyncHttpClient {
+	private static final String TIME = "2013-11-14 03:00:00";
+
+	private final long roundTripMillis;
+	private final Set<Long> entryIds = new HashSet<Long>();
+	private long nextId = 1;
+	private int requestCount;
+
+	/**
+	 * Creates a server with no entries.
+	 *
+	 * @param roundTripMillis How long each request takes, in milliseconds.
+	 */
+	public EntriesServerStub(long roundTripMillis) {
+		this.roundTripMillis = roundTripMillis;
+	}
+
+	/**
+	 * Gets how many requests have been made.
+	 *
+	 * @return The number of requests.
+	 */
+	public int getRequestCount() {
+		return requestCount;
+	}
+
+	/**
+	 * Checks whether the server has an entry.
+	 *
+	 * @param id The ID of the entry.
+	 * @return <code>true</code> if the entry was created and not removed.
+	 */
+	public boolean hasEntry(long id) {
+		return entryIds.contains(id);
+	}
+
+	@Override
+	public void post(String url, RequestParams params,
+			AsyncHttpResponseHandler handler) {
+		roundTrip();
+		JsonHttpResponseHandler json = (JsonHttpResponseHandler) handler;
+		try {
+			if (url.endsWith("/entries/batch")) {
+				JSONArray entries = new JSONArray(param(params, "entries"));
+				JSONArray results = new JSONArray();
+				for (int i = 0; i < entries.length(); ++i) {
+					results.put(create(entries.getJSONObject(i).getInt("amount")));
+				}
+				json.onSuccess(new JSONObject().put("results", results));
+			} else if (url.endsWith("/entries/batch_destroy")) {
+				JSONArray ids = new JSONArray(param(params, "ids"));
+				JSONArray results = new JSONArray();
+				for (int i = 0; i < ids.length(); ++i) {
+					results.put(destroy(ids.getLong(i)));
+				}
+				json.onSuccess(new JSONObject().put("results", results));
+			} else if (url.endsWith("/entries")) {
+				JSONObject result = create(
+						Integer.parseInt(param(params, "amount")));
+				if (result.has("error")) {
+					json.onFailure(new Exception(result.getString("error")),
+							result);
+				} else {
+					json.onSuccess(result);
+				}
+			} else {
+				json.onFailure(new Exception("Not found"), new JSONObject());
+			}
+		} catch (JSONException e) {
+			json.onFailure(e, new JSONObject());
+		}
+	}
+
+	@Override
+	public void delete(String url, AsyncHttpResponseHandler handler) {
+		roundTrip();
+		JsonHttpResponseHandler json = (JsonHttpResponseHandler) handler;
+		try {
+			long id = Long.parseLong(url.substring(url.lastIndexOf('/') + 1));
+			JSONObject result = destroy(id);
+			if (result.has("error")) {
+				json.onFailure(new Exception(result.getString("error")),
+						result);
+			} else {
+				json.onSuccess(result);
+			}
+		} catch (JSONException e) {
+			json.onFailure(e, new JSONObject());
+		}
+	}
+
+	private JSONObject create(int amount) throws JSONException {
+		if (amount <= 0) {
+			return new JSONObject().put("error", "Amount must be positive");
+		}
+		long id = nextId++;
+		entryIds.add(id);
+		return new JSONObject()
+				.put("id", id)
+				.put("created_at", TIME)
+				.put("updated_at", TIME);
+	}
+
+	private JSONObject destroy(long id) throws JSONException {
+		if (!entryIds.remove(id)) {
+			return new JSONObject().put("error", "No entry " + id);
+		}
+		return new JSONObject().put("destroyed", true);
+	}
+
+	private void roundTrip() {
+		++requestCount;
+		try {
+			Thread.sleep(roundTripMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/* Reads a parameter of a request, which RequestParams keeps to itself. */
+	@SuppressWarnings("unchecked")
+	private static String param(RequestParams params, String key) {
+		try {
+			Field field = RequestParams.class.getDeclaredField("urlParams");
+			field.setAccessible(true);
+			return ((Map<String, String>) field.get(params)).get(key);
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
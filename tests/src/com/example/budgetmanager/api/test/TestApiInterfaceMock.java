@@ -5,6 +5,7 @@ import android.test.suitebuilder.annotation.SmallTest;
 
 import com.example.budgetmanager.Budget;
 import com.example.budgetmanager.Budget.Duration;
+import com.example.budgetmanager.BudgetRepository;
 import com.example.budgetmanager.Entry;
 import com.example.budgetmanager.api.ApiInterface;
 import com.example.budgetmanager.test.TestUtilities;
@@ -33,7 +34,7 @@ public class TestApiInterfaceMock extends AndroidTestCase {
 	protected void setUp() throws Exception {
 		super.setUp();
 
-		Budget.clearBudgets();
+		BudgetRepository.getInstance().clear();
 		try {
 			// Need to set the context for the test, or we'll get a
 			// NullPointerException.
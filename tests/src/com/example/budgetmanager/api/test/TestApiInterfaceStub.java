@@ -5,11 +5,15 @@ import android.test.suitebuilder.annotation.SmallTest;
 
 import com.example.budgetmanager.Budget;
 import com.example.budgetmanager.Budget.Duration;
+import com.example.budgetmanager.BudgetRepository;
 import com.example.budgetmanager.Entry;
+import com.example.budgetmanager.R;
 import com.example.budgetmanager.api.ApiCallback;
 import com.example.budgetmanager.api.ApiInterface;
+import com.example.budgetmanager.api.EntryPage;
 import com.example.budgetmanager.test.TestUtilities;
 
+import org.apache.http.Header;
 import org.joda.time.LocalDate;
 import org.joda.time.LocalDateTime;
 import org.joda.time.format.DateTimeFormat;
@@ -17,6 +21,7 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -36,7 +41,7 @@ public class TestApiInterfaceStub extends AndroidTestCase {
 	 * server.
 	 */
 	protected void setUp() {
-		Budget.clearBudgets();
+		BudgetRepository.getInstance().clear();
 		try {
 			// Need to set the context for the test, or we'll get a
 			// NullPointerException.
@@ -46,6 +51,7 @@ public class TestApiInterfaceStub extends AndroidTestCase {
 		// Set up the stubbed test client
 		testClient = new AsyncHttpClientStub();
 		api = TestUtilities.getStubbedApiInterface(testClient);
+		api.getValidators().clear();
 	}
 
 	/**
@@ -202,6 +208,50 @@ public class TestApiInterfaceStub extends AndroidTestCase {
 		});
 	}
 
+	/**
+	 * Tests that fetching budgets while they are already being fetched
+	 * waits for the first fetch, rather than making another request, and
+	 * that both callers get the same budgets, added only once.
+	 * White-box test.
+	 */
+	@SmallTest
+	public void test_fetchBudgets_alreadyFetching_shouldShareRequest() throws JSONException {
+		JSONArray jsonBudgets = new JSONArray().put(new JSONObject()
+				.put("budget_name", "Budget")
+				.put("recurrence_duration", Duration.DAY.toString())
+				.put("amount", 1000)
+				.put("recur", true)
+				.put("start_date", "1991-11-14")
+				.put("id", 1));
+		testClient.setNextResponse(jsonBudgets, true);
+
+		final List<List<Budget>> results = new ArrayList<List<Budget>>();
+		ApiCallback<List<Budget>> callback = new ApiCallback<List<Budget>>() {
+			@Override
+			public void onSuccess(List<Budget> result) {
+				results.add(result);
+			}
+
+			@Override
+			public void onFailure(String errorMessage) {
+				fail("Shouldn't fail, results are valid.");
+			}
+		};
+
+		int started = api.getSharedRequestCount();
+		int saved = api.getSavedRequestCount();
+		testClient.holdResponses();
+		api.fetchBudgets(callback);
+		api.fetchBudgets(callback);
+		testClient.releaseResponses();
+
+		assertEquals(started + 1, api.getSharedRequestCount());
+		assertEquals(saved + 1, api.getSavedRequestCount());
+		assertEquals(2, results.size());
+		assertSame(results.get(0), results.get(1));
+		assertEquals(1, BudgetRepository.getInstance().getBudgets().size());
+	}
+
 	/**
 	 * Tests the failure of fetching of a user's budgets from the server response data.
 	 * White-box test.
@@ -292,6 +342,46 @@ public class TestApiInterfaceStub extends AndroidTestCase {
 		});
 	}
 
+	/**
+	 * Tests that fetching a page of a budget's entries asks for one page,
+	 * adds only the entries the budget doesn't have, and passes on the
+	 * cursor of the next page.
+	 * White-box test.
+	 */
+	@SmallTest
+	public void test_fetchEntries_page_shouldAddNewEntries() throws JSONException {
+		final Budget b = new Budget("Budget", 5000, false, LocalDate.now(), Duration.WEEK);
+		b.setId(1);
+		b.addEntry(new Entry(10, 500, b, "Note 10", LocalDate.now()));
+		BudgetRepository.getInstance().add(b);
+
+		testClient.setNextResponse(new JSONObject()
+				.put("entries", new JSONArray()
+						.put(buildEntryJson(11, 600, "2013-11-14 01:00:00"))
+						.put(buildEntryJson(10, 500, "2013-11-14 01:00:00")))
+				.put("next_cursor", "older"), true);
+
+		final List<EntryPage> pages = new ArrayList<EntryPage>();
+		api.fetchEntries(b, null, 2, new ApiCallback<EntryPage>() {
+			@Override
+			public void onSuccess(EntryPage result) {
+				pages.add(result);
+			}
+
+			@Override
+			public void onFailure(String errorMessage) {
+				fail("Shouldn't fail, the page is valid.");
+			}
+		});
+
+		assertTrue(testClient.getLastParams().toString().contains("limit=2"));
+		assertEquals(1, pages.size());
+		assertEquals(2, pages.get(0).getEntries().size());
+		assertEquals("older", pages.get(0).getNextCursor());
+		assertEquals(2, b.getEntries().size());
+		assertEquals(600, b.getEntryById(11).getAmount());
+	}
+
 	/**
 	 * Tests the failure of fetching of a user's specified budget's entries
 	 * from the server response data.
@@ -446,6 +536,140 @@ public class TestApiInterfaceStub extends AndroidTestCase {
 		});
 	}
 
+	/**
+	 * Tests that syncing after a full fetch asks only for the changes since
+	 * the latest update, and applies them to the budgets already fetched.
+	 * White-box test.
+	 */
+	@SmallTest
+	public void test_syncBudgetsAndEntries_afterFetch_shouldApplyChanges() throws JSONException {
+		final String UPDATED = "2013-11-14 01:00:00";
+		final String CHANGED = "2013-11-15 02:00:00";
+
+		JSONArray jsonBudgets = new JSONArray()
+				.put(buildBudgetJson(1, "Food", new JSONArray()
+						.put(buildEntryJson(10, 500, UPDATED))
+						.put(buildEntryJson(11, 600, UPDATED))))
+				.put(buildBudgetJson(2, "Rent", new JSONArray()));
+		testClient.setNextResponse(jsonBudgets, true);
+		api.fetchBudgetsAndEntries(new ApiCallback<List<Budget>>() {
+			@Override
+			public void onSuccess(List<Budget> result) {
+				assertEquals(2, result.size());
+			}
+
+			@Override
+			public void onFailure(String errorMessage) {
+				fail("Shouldn't fail, results are valid.");
+			}
+		});
+		final Budget food = BudgetRepository.getInstance().getBudgetById(1);
+
+		JSONObject changes = new JSONObject()
+				.put("budgets", new JSONArray()
+						.put(buildBudgetJson(1, "Groceries", new JSONArray()
+								.put(buildEntryJson(10, 700, CHANGED)))))
+				.put("deleted_budgets", new JSONArray()
+						.put(new JSONObject().put("id", 2).put("deleted_at", CHANGED)))
+				.put("deleted_entries", new JSONArray()
+						.put(new JSONObject().put("id", 11).put("deleted_at", CHANGED)));
+		testClient.setNextResponse(changes, true);
+
+		api.syncBudgetsAndEntries(new ApiCallback<List<Budget>>() {
+			@Override
+			public void onSuccess(List<Budget> result) {
+				assertEquals(1, result.size());
+				assertSame(food, result.get(0));
+				assertEquals("Groceries", food.getName());
+				assertEquals(1, food.getEntries().size());
+				assertEquals(700, food.getEntryById(10).getAmount());
+			}
+
+			@Override
+			public void onFailure(String errorMessage) {
+				fail("Shouldn't fail, changes are valid.");
+			}
+		});
+
+		assertTrue(testClient.getLastParams().toString()
+				.contains("updated_since=" + UPDATED));
+		assertEquals(LocalDateTime.parse(CHANGED,
+				DateTimeFormat.forPattern("yyyy-MM-dd HH:mm:ss")),
+				BudgetRepository.getInstance().getSyncedThrough());
+	}
+
+	/**
+	 * Tests that fetching everything again sends the validators kept from
+	 * the last fetch, and that when the server says nothing has changed, the
+	 * budgets already held are passed back rather than replaced.
+	 * White-box test.
+	 */
+	@SmallTest
+	public void test_fetchBudgetsAndEntries_notModified_shouldKeepBudgets() throws JSONException {
+		JSONArray jsonBudgets = new JSONArray()
+				.put(buildBudgetJson(1, "Food", new JSONArray()
+						.put(buildEntryJson(10, 500, "2013-11-14 01:00:00"))));
+		testClient.setNextResponse(jsonBudgets, true);
+		api.fetchBudgetsAndEntries(null);
+		final Budget food = BudgetRepository.getInstance().getBudgetById(1);
+		assertEquals(0, testClient.getLastHeaders().length);
+
+		// Validators as the server would have sent with the budgets.
+		String url = getContext().getString(R.string.base_url)
+				+ getContext().getString(R.string.budgets_and_entries);
+		api.getValidators().put(url, "\"v1\"", null);
+
+		final List<List<Budget>> results = new ArrayList<List<Budget>>();
+		testClient.setNextResponseNotModified();
+		api.fetchBudgetsAndEntries(new ApiCallback<List<Budget>>() {
+			@Override
+			public void onSuccess(List<Budget> result) {
+				results.add(result);
+			}
+
+			@Override
+			public void onFailure(String errorMessage) {
+				fail("Shouldn't fail, nothing has changed.");
+			}
+		});
+
+		Header[] headers = testClient.getLastHeaders();
+		assertEquals(1, headers.length);
+		assertEquals("If-None-Match", headers[0].getName());
+		assertEquals("\"v1\"", headers[0].getValue());
+		assertEquals(1, results.size());
+		assertEquals(1, results.get(0).size());
+		assertSame(food, results.get(0).get(0));
+		assertSame(food, BudgetRepository.getInstance().getBudgetById(1));
+		assertEquals(1, food.getEntries().size());
+
+		api.logOut();
+		assertEquals(0, api.getValidators().getRequestHeaders(url).length);
+	}
+
+	private JSONObject buildBudgetJson(long id, String name, JSONArray entries)
+			throws JSONException {
+		return new JSONObject()
+				.put("budget_name", name)
+				.put("recurrence_duration", Duration.WEEK.toString())
+				.put("amount", 5000)
+				.put("recur", true)
+				.put("start_date", "2013-11-10")
+				.put("id", id)
+				.put("entries", entries);
+	}
+
+	private JSONObject buildEntryJson(long id, int amount, String updatedAt)
+			throws JSONException {
+		return new JSONObject()
+				.put("id", id)
+				.put("amount", amount)
+				.put("expenditure_date", "2013-11-14")
+				.put("notes", "Note " + id)
+				.put("created_at", "2013-11-14 01:00:00")
+				.put("updated_at", updatedAt);
+	}
+
 	/**
 	 * Tests the login failure handling functionality.
 	 * White-box test.
@@ -0,0 +1,161 @@
+package com.example.budgetmanager.api.test;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.example.budgetmanager.api.ApiMetrics;
+import com.example.budgetmanager.api.Histogram;
+import com.example.budgetmanager.api.HttpCompression;
+import com.example.budgetmanager.api.HttpMetrics;
+import com.example.budgetmanager.api.LoopbackTransport;
+import com.example.budgetmanager.api.TransferStats;
+import com.example.budgetmanager.api.TransportClient;
+import com.loopj.android.http.AsyncHttpResponseHandler;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.DefaultHttpClient;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the {@link ApiMetrics}, its {@link Histogram}s, and the
+ * {@link HttpMetrics} that record requests into them.
+ *
+ * Black-box tests.
+ */
+public class TestApiMetrics extends AndroidTestCase {
+	private static final String BODY = "[{\"id\":1,\"budget_name\":\"Food\"}]";
+
+	/**
+	 * Checks that percentiles are estimated to within the range each value
+	 * fell in.
+	 */
+	@SmallTest
+	public void test_getPercentile_recordedValues_shouldBeWithinQuarter() {
+		Histogram histogram = new Histogram();
+		for (int i = 1; i <= 1000; ++i) {
+			histogram.record(i);
+		}
+
+		assertEquals(1000, histogram.getCount());
+		assertEquals(500.5, histogram.getMean(), 0.001);
+		assertEquals(1000, histogram.getMax());
+		long median = histogram.getPercentile(0.5);
+		assertTrue(median >= 500 && median < 500 * 5 / 4);
+		long p99 = histogram.getPercentile(0.99);
+		assertTrue(p99 >= 990 && p99 <= 1000);
+		assertEquals(1, histogram.getPercentile(0));
+	}
+
+	/**
+	 * Checks that ids in a path are left out of its endpoint, so that
+	 * requests for different things are measured together.
+	 */
+	@SmallTest
+	public void test_endpointOf_pathWithIds_shouldReplaceIds() {
+		assertEquals("GET /budgets",
+				ApiMetrics.endpointOf("GET", "/budgets"));
+		assertEquals("DELETE /entries/:id",
+				ApiMetrics.endpointOf("DELETE", "/entries/42"));
+		assertEquals("GET /budgets/:id/entries/",
+				ApiMetrics.endpointOf("GET", "/budgets/7/entries/"));
+	}
+
+	/**
+	 * Checks that a request made through a measured client is recorded
+	 * under its endpoint, with its size, times and outcome.
+	 */
+	@SmallTest
+	public void test_finish_measuredRequest_shouldRecordEndpoint() {
+		ApiMetrics metrics = new ApiMetrics();
+		ApiMetrics.Endpoint budget = metrics.endpoint("GET /budgets/:id");
+		TransportClient client = new TransportClient();
+		DefaultHttpClient httpClient = (DefaultHttpClient) client.getHttpClient();
+		new HttpCompression(new TransferStats()).install(httpClient);
+		HttpMetrics.install(httpClient);
+		client.setTransport(new LoopbackTransport(new LoopbackTransport.Server() {
+			@Override
+			public HttpResponse serve(HttpUriRequest request) {
+				if (request.getURI().getPath().endsWith("/2")) {
+					return LoopbackTransport.respond(500, "{}");
+				}
+				return LoopbackTransport.respond(200, BODY);
+			}
+		}));
+
+		get(client, "http://example.com/budgets/1", budget);
+		get(client, "http://example.com/budgets/2", budget);
+
+		ApiMetrics.Endpoint endpoint = metrics.getEndpoints()
+				.get("GET /budgets/:id");
+		assertSame(budget, endpoint);
+		assertEquals(1, endpoint.getCount(ApiMetrics.Outcome.SUCCESS));
+		assertEquals(1, endpoint.getCount(ApiMetrics.Outcome.SERVER_ERROR));
+		assertEquals(2, endpoint.getTotal().getCount());
+		assertEquals(2, endpoint.getFirstByte().getCount());
+		assertEquals(BODY.length(), endpoint.getBytesReceived().getMax());
+		assertTrue(metrics.toJson().has("GET /budgets/:id"));
+	}
+
+	/**
+	 * Checks that a request that failed to connect, before it was sent, is
+	 * still recorded, as a network failure with no response or bytes.
+	 */
+	@SmallTest
+	public void test_finish_connectionRefused_shouldRecordFailure() {
+		ApiMetrics metrics = new ApiMetrics();
+		ApiMetrics.Endpoint budget = metrics.endpoint("GET /budgets/:id");
+		TransportClient client = new TransportClient();
+		DefaultHttpClient httpClient = (DefaultHttpClient) client.getHttpClient();
+		new HttpCompression(new TransferStats()).install(httpClient);
+		HttpMetrics.install(httpClient);
+
+		// Nothing listens on port 1.
+		get(client, "http://127.0.0.1:1/budgets/1", budget);
+
+		assertEquals(1, budget.getCount(ApiMetrics.Outcome.NETWORK));
+		assertEquals(1, budget.getTotal().getCount());
+		assertEquals(0, budget.getFirstByte().getCount());
+		assertEquals(0, budget.getBytesSent().getMax());
+		assertEquals(0, budget.getBytesReceived().getMax());
+	}
+
+	/* Sends a GET whose handler marks it for measuring, and waits for it. */
+	private static void get(TransportClient client, String url,
+			final ApiMetrics.Endpoint endpoint) {
+		final CountDownLatch finished = new CountDownLatch(1);
+		// The test thread has no looper, so the handler is called on the
+		// thread that sent the request.
+		client.get(url, new AsyncHttpResponseHandler() {
+			@Override
+			protected void sendStartMessage() {
+				HttpMetrics.begin(endpoint);
+				super.sendStartMessage();
+			}
+
+			@Override
+			protected void sendSuccessMessage(int statusCode, String response) {
+				HttpMetrics.finish(null);
+				super.sendSuccessMessage(statusCode, response);
+			}
+
+			@Override
+			protected void sendFailureMessage(Throwable e, String response) {
+				HttpMetrics.finish(e);
+				super.sendFailureMessage(e, response);
+			}
+
+			@Override
+			public void onFinish() {
+				finished.countDown();
+			}
+		});
+		try {
+			assertTrue(finished.await(5, TimeUnit.SECONDS));
+		} catch (InterruptedException e) {
+			fail(e.getMessage());
+		}
+	}
+}
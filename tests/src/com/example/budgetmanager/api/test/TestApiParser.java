@@ -0,0 +1,113 @@
+package com.example.budgetmanager.api.test;
+
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.example.budgetmanager.Budget;
+import com.example.budgetmanager.Budget.Duration;
+import com.example.budgetmanager.Entry;
+import com.example.budgetmanager.api.ApiParser;
+
+import junit.framework.TestCase;
+
+import org.joda.time.LocalDate;
+import org.json.JSONException;
+
+import java.io.StringReader;
+import java.util.List;
+
+/**
+ * Tests for the {@link ApiParser} class, reading budgets and entries from
+ * responses of the API.
+ *
+ * Black-box tests.
+ */
+public class TestApiParser extends TestCase {
+	private static final String BUDGET = "{\"budget_name\":\"Food\","
+			+ "\"recurrence_duration\":\"WEEK\",\"amount\":5000,"
+			+ "\"recur\":true,\"start_date\":\"2013-11-14\",\"id\":7";
+	private static final String ENTRY = "{\"id\":3,\"amount\":250,"
+			+ "\"expenditure_date\":\"2013-11-15\","
+			+ "\"created_at\":\"2013-11-15 01:00:00\","
+			+ "\"updated_at\":\"2013-11-15 02:00:00\",\"notes\":null}";
+
+	private ApiParser parser;
+
+	@Override
+	protected void setUp() {
+		parser = new ApiParser("yyyy-MM-dd", "yyyy-MM-dd HH:mm:ss");
+	}
+
+	/**
+	 * Checks that budgets and their entries are read, skipping fields the
+	 * client doesn't know. Black-box test.
+	 */
+	@SmallTest
+	public void test_readBudgets_withEntries_shouldReadEntries()
+			throws JSONException {
+		List<Budget> budgets = parser.readBudgets(new StringReader("["
+				+ BUDGET + ",\"user_id\":2,\"entries\":[" + ENTRY + "]}]"),
+				true);
+
+		assertEquals(1, budgets.size());
+		Budget budget = budgets.get(0);
+		assertEquals("Food", budget.getName());
+		assertEquals(5000, budget.getBudgetAmount());
+		assertTrue(budget.isRecurring());
+		assertEquals(new LocalDate(2013, 11, 14), budget.getStartDate());
+		assertEquals(Duration.WEEK, budget.getDuration());
+		assertEquals(7, budget.getId());
+
+		assertEquals(1, budget.getEntries().size());
+		Entry entry = budget.getEntries().get(0);
+		assertEquals(3, entry.getEntryId());
+		assertSame(budget, entry.getBudget());
+		assertEquals("", entry.getNotes());
+	}
+
+	/**
+	 * Checks that entries are read without being added to their budget.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_readEntries_valid_shouldNotAddToBudget()
+			throws JSONException {
+		Budget budget = new Budget("Food", 5000, false, LocalDate.now(),
+				Duration.WEEK);
+
+		List<Entry> entries = parser.readEntries(
+				new StringReader("[" + ENTRY + "," + ENTRY + "]"), budget);
+
+		assertEquals(2, entries.size());
+		assertEquals(250, entries.get(0).getAmount());
+		assertTrue(budget.getEntries().isEmpty());
+	}
+
+	/**
+	 * Checks that a missing field is reported the way JSONObject does.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_readBudgets_missingField_shouldThrow() {
+		try {
+			parser.readBudgets(new StringReader("["
+					+ BUDGET.replace("budget_name", "name") + "}]"), false);
+			fail("Read a budget without a name.");
+		} catch (JSONException e) {
+			assertEquals("No value for budget_name", e.getMessage());
+		}
+	}
+
+	/**
+	 * Checks that malformed JSON is reported as a JSONException.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_readBudgets_malformed_shouldThrow() {
+		try {
+			parser.readBudgets(new StringReader("[" + BUDGET), false);
+			fail("Read a truncated response.");
+		} catch (JSONException e) {
+			assertNotNull(e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package com.example.budgetmanager.api.test;
+
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.example.budgetmanager.Budget;
+import com.example.budgetmanager.Budget.Duration;
+import com.example.budgetmanager.Entry;
+import com.example.budgetmanager.SyncDelta;
+import com.example.budgetmanager.api.ApiParser;
+import com.example.budgetmanager.api.CompactWireFormat;
+
+import junit.framework.TestCase;
+
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+import org.json.JSONException;
+
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for the {@link CompactWireFormat} class, reading budgets and
+ * entries from responses in the compact form or as JSON.
+ *
+ * Black-box tests.
+ */
+public class TestCompactWireFormat extends TestCase {
+	private static final String URL = "http://example.com/budgets/with_entries";
+
+	private CompactWireFormat format;
+
+	@Override
+	protected void setUp() {
+		format = new CompactWireFormat(
+				new ApiParser("yyyy-MM-dd", "yyyy-MM-dd HH:mm:ss"), URL);
+	}
+
+	/**
+	 * Checks that budgets and entries written in the compact form are read
+	 * back the same, including notes that aren't ASCII and times before
+	 * 1970.
+	 */
+	@SmallTest
+	public void test_readAllChanges_compact_shouldReadBudgetsAndEntries()
+			throws JSONException {
+		Budget food = new Budget("Food", 5000, true, new LocalDate(2013, 11, 14),
+				Duration.WEEK);
+		food.setId(7);
+		Entry lunch = new Entry(300, 250, food, "Café", new LocalDate(2013, 11, 15));
+		lunch.setCreatedAt(new LocalDateTime(2013, 11, 15, 1, 0, 0));
+		lunch.setUpdatedAt(new LocalDateTime(2013, 11, 15, 2, 0, 0));
+		Entry old = new Entry(1, -20, food, "", new LocalDate(1969, 12, 31));
+		old.setCreatedAt(new LocalDateTime(1969, 12, 31, 23, 59, 59));
+		old.setUpdatedAt(new LocalDateTime(1969, 12, 31, 23, 59, 59));
+		food.addEntries(Arrays.asList(lunch, old));
+
+		SyncDelta all = format.readAllChanges(
+				asText(CompactWireFormat.encode(Collections.singletonList(food))));
+
+		assertEquals(1, all.getBudgets().size());
+		Budget budget = all.getBudgets().get(0);
+		assertEquals("Food", budget.getName());
+		assertEquals(5000, budget.getBudgetAmount());
+		assertTrue(budget.isRecurring());
+		assertEquals(new LocalDate(2013, 11, 14), budget.getStartDate());
+		assertEquals(Duration.WEEK, budget.getDuration());
+		assertEquals(7, budget.getId());
+
+		Entry read = budget.getEntryById(300);
+		assertEquals(250, read.getAmount());
+		assertEquals("Café", read.getNotes());
+		assertSame(budget, read.getBudget());
+		assertEquals(new LocalDate(2013, 11, 15), read.getDate());
+		assertEquals(new LocalDateTime(2013, 11, 15, 1, 0, 0), read.getCreatedAt());
+		assertEquals(new LocalDateTime(2013, 11, 15, 2, 0, 0), read.getUpdatedAt());
+		Entry readOld = budget.getEntryById(1);
+		assertEquals(-20, readOld.getAmount());
+		assertEquals(new LocalDate(1969, 12, 31), readOld.getDate());
+		assertEquals(new LocalDateTime(1969, 12, 31, 23, 59, 59),
+				readOld.getCreatedAt());
+
+		assertEquals(new LocalDateTime(2013, 11, 15, 2, 0, 0),
+				all.getSyncedThrough());
+	}
+
+	/**
+	 * Checks that a JSON response, from a server that doesn't know the
+	 * compact form, is read as before.
+	 */
+	@SmallTest
+	public void test_readAllChanges_json_shouldFallBackToParser()
+			throws JSONException {
+		SyncDelta all = format.readAllChanges(new StringReader(
+				"[{\"budget_name\":\"Food\",\"recurrence_duration\":\"WEEK\","
+				+ "\"amount\":5000,\"recur\":true,\"start_date\":\"2013-11-14\","
+				+ "\"id\":7,\"entries\":[{\"id\":3,\"amount\":250,"
+				+ "\"expenditure_date\":\"2013-11-15\","
+				+ "\"created_at\":\"2013-11-15 01:00:00\","
+				+ "\"updated_at\":\"2013-11-15 02:00:00\",\"notes\":null}]}]"));
+
+		List<Budget> budgets = all.getBudgets();
+		assertEquals(1, budgets.size());
+		assertEquals(1, budgets.get(0).getEntries().size());
+		assertEquals(new LocalDateTime(2013, 11, 15, 2, 0, 0),
+				all.getSyncedThrough());
+	}
+
+	/**
+	 * Checks that a compact response that ends early is reported as
+	 * malformed.
+	 */
+	@SmallTest
+	public void test_readAllChanges_truncated_shouldThrow() {
+		Budget food = new Budget("Food", 5000, false, new LocalDate(2013, 11, 14),
+				Duration.MONTH);
+		food.setId(7);
+		byte[] compact = CompactWireFormat.encode(Collections.singletonList(food));
+
+		try {
+			format.readAllChanges(asText(Arrays.copyOf(compact, compact.length - 1)));
+			fail("Expected a JSONException");
+		} catch (JSONException e) {
+			// Expected
+		}
+	}
+
+	/* Reads bytes as the handler hands them on, one character each. */
+	private static StringReader asText(byte[] bytes) {
+		try {
+			return new StringReader(new String(bytes, "ISO-8859-1"));
+		} catch (UnsupportedEncodingException e) {
+			throw new AssertionError(e);
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package com.example.budgetmanager.api.test;
+
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.example.budgetmanager.api.ConnectivityMonitor;
+import com.example.budgetmanager.api.Timer;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for the {@link ConnectivityMonitor}, checking that requests made
+ * while offline wait for the network, and are given up on once their
+ * deadline passes.
+ *
+ * Black-box tests.
+ */
+public class TestConnectivityMonitor extends TestCase {
+	private List<Runnable> timers;
+	private List<String> ran;
+	private ConnectivityMonitor monitor;
+
+	/**
+	 * Sets up an offline monitor whose deadlines only pass when the test
+	 * passes them.
+	 */
+	@Override
+	protected void setUp() {
+		timers = new ArrayList<Runnable>();
+		ran = new ArrayList<String>();
+		monitor = new ConnectivityMonitor(false, new Timer() {
+			@Override
+			public void schedule(Runnable task, long delayMillis) {
+				timers.add(task);
+			}
+		});
+	}
+
+	/**
+	 * Checks that a request made while online is run straight away.
+	 */
+	@SmallTest
+	public void test_park_online_shouldRunNow() {
+		monitor.setOnline(true);
+		monitor.park(record("request"), record("expired"));
+
+		assertEquals(1, ran.size());
+		assertEquals("request", ran.get(0));
+		assertEquals(0, monitor.getParkedCount());
+		assertTrue(timers.isEmpty());
+	}
+
+	/**
+	 * Checks that requests made while offline are run in order once the
+	 * network returns, and not given up on when their deadline passes.
+	 */
+	@SmallTest
+	public void test_park_offlineThenOnline_shouldRunInOrder() {
+		monitor.park(record("first"), record("expired"));
+		monitor.park(record("second"), record("expired"));
+		assertTrue(ran.isEmpty());
+		assertEquals(2, monitor.getWaitingCount());
+
+		monitor.setOnline(true);
+		for (Runnable timer : timers) {
+			timer.run();
+		}
+
+		assertEquals(2, ran.size());
+		assertEquals("first", ran.get(0));
+		assertEquals("second", ran.get(1));
+		assertEquals(0, monitor.getWaitingCount());
+		assertEquals(2, monitor.getResumedCount());
+		assertEquals(0, monitor.getExpiredCount());
+	}
+
+	/**
+	 * Checks that a request is given up on when the network doesn't return
+	 * before its deadline, and isn't run once it does.
+	 */
+	@SmallTest
+	public void test_park_deadlinePasses_shouldExpire() {
+		monitor.park(record("request"), record("expired"));
+		assertEquals(1, timers.size());
+
+		timers.get(0).run();
+		monitor.setOnline(true);
+
+		assertEquals(1, ran.size());
+		assertEquals("expired", ran.get(0));
+		assertEquals(1, monitor.getExpiredCount());
+		assertEquals(0, monitor.getResumedCount());
+	}
+
+	/**
+	 * Checks that with no park deadline, requests made while offline are
+	 * given up on straight away.
+	 */
+	@SmallTest
+	public void test_park_noDeadline_shouldExpireNow() {
+		monitor.setParkMillis(0);
+		monitor.park(record("request"), record("expired"));
+
+		assertEquals(1, ran.size());
+		assertEquals("expired", ran.get(0));
+		assertEquals(0, monitor.getWaitingCount());
+		assertTrue(timers.isEmpty());
+	}
+
+	/* Returns a task that records that it ran under the given name. */
+	private Runnable record(final String name) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				ran.add(name);
+			}
+		};
+	}
+}
@@ -0,0 +1,152 @@
+package com.example.budgetmanager.api.test;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.example.budgetmanager.Budget;
+import com.example.budgetmanager.Budget.Duration;
+import com.example.budgetmanager.Entry;
+import com.example.budgetmanager.api.ApiCallback;
+import com.example.budgetmanager.api.ApiInterface;
+import com.example.budgetmanager.api.EntryBatcher;
+import com.example.budgetmanager.api.Timer;
+import com.example.budgetmanager.test.TestUtilities;
+
+import org.joda.time.LocalDate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for the {@link EntryBatcher}, checking that entries collected in
+ * one window are sent in one request against a stand-in server, and that
+ * each caller is told about its own entry.
+ *
+ * Black-box tests.
+ */
+public class TestEntryBatcher extends AndroidTestCase {
+	private EntriesServerStub server;
+	private ApiInterface api;
+	private List<Runnable> timers;
+	private EntryBatcher batcher;
+	private Budget budget;
+
+	/**
+	 * Sets up a batcher sending to a stand-in server, whose windows only
+	 * end when the test ends them.
+	 */
+	@Override
+	protected void setUp() {
+		try {
+			// Need to set the context for the test, or we'll get a
+			// NullPointerException.
+			TestUtilities.setStaticValue("com.example.budgetmanager.UBudgetApp", "context", getContext());
+		} catch (Exception e) { }
+
+		server = new EntriesServerStub(0);
+		api = TestUtilities.getStubbedApiInterface(server);
+		timers = new ArrayList<Runnable>();
+		batcher = new EntryBatcher(api, new Timer() {
+			@Override
+			public void schedule(Runnable task, long delayMillis) {
+				timers.add(task);
+			}
+		}, EntryBatcher.DEFAULT_WINDOW_MILLIS, 10);
+		budget = new Budget("Budget", 5000, false, LocalDate.now(), Duration.WEEK);
+		budget.setId(1);
+	}
+
+	/**
+	 * Checks that entries created in one window are sent in one request,
+	 * and that each gets its own ID, even when another is rejected.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_create_oneWindow_shouldSendOneRequest() {
+		Entry first = new Entry(100, budget, "first", LocalDate.now());
+		Entry rejected = new Entry(-5, budget, "rejected", LocalDate.now());
+		Entry last = new Entry(300, budget, "last", LocalDate.now());
+		Recorder<Long> firstResult = new Recorder<Long>();
+		Recorder<Long> rejectedResult = new Recorder<Long>();
+		Recorder<Long> lastResult = new Recorder<Long>();
+
+		batcher.create(first, firstResult);
+		batcher.create(rejected, rejectedResult);
+		batcher.create(last, lastResult);
+		assertEquals(0, server.getRequestCount());
+		assertEquals(1, timers.size());
+
+		timers.get(0).run();
+
+		assertEquals(1, server.getRequestCount());
+		assertEquals(Long.valueOf(first.getEntryId()), firstResult.result);
+		assertEquals(Long.valueOf(last.getEntryId()), lastResult.result);
+		assertTrue(first.getEntryId() != last.getEntryId());
+		assertTrue(server.hasEntry(first.getEntryId()));
+		assertNotNull(rejectedResult.error);
+		assertEquals(Entry.NEW_ID, rejected.getEntryId());
+	}
+
+	/**
+	 * Checks that a full batch is sent straight away, and that entries
+	 * removed together are removed in one request. Black-box test.
+	 */
+	@SmallTest
+	public void test_remove_fullBatch_shouldSendWithoutWaiting() {
+		List<Entry> entries = new ArrayList<Entry>();
+		for (int i = 0; i < 10; ++i) {
+			Entry e = new Entry(100 + i, budget, "entry " + i, LocalDate.now());
+			entries.add(e);
+			batcher.create(e, new Recorder<Long>());
+		}
+		assertEquals(1, server.getRequestCount());
+
+		List<Recorder<Object>> removed = new ArrayList<Recorder<Object>>();
+		for (Entry e : entries) {
+			Recorder<Object> result = new Recorder<Object>();
+			removed.add(result);
+			batcher.remove(e, result);
+		}
+
+		assertEquals(2, server.getRequestCount());
+		for (int i = 0; i < entries.size(); ++i) {
+			assertTrue(removed.get(i).succeeded);
+			assertFalse(server.hasEntry(entries.get(i).getEntryId()));
+		}
+	}
+
+	/**
+	 * Checks that a window with a single entry still sends it. Black-box
+	 * test.
+	 */
+	@SmallTest
+	public void test_flush_singleEntry_shouldCreate() {
+		Entry only = new Entry(100, budget, "only", LocalDate.now());
+		Recorder<Long> result = new Recorder<Long>();
+		batcher.create(only, result);
+
+		batcher.flush();
+
+		assertEquals(1, server.getRequestCount());
+		assertEquals(Long.valueOf(only.getEntryId()), result.result);
+		assertTrue(server.hasEntry(only.getEntryId()));
+	}
+
+	/* Records what a callback was told. */
+	private static final class Recorder<T> implements ApiCallback<T> {
+		boolean succeeded;
+		T result;
+		String error;
+
+		@Override
+		public void onSuccess(T result) {
+			this.succeeded = true;
+			this.result = result;
+		}
+
+		@Override
+		public void onFailure(String errorMessage) {
+			this.error = errorMessage;
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package com.example.budgetmanager.api.test;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.example.budgetmanager.api.HttpCompression;
+import com.example.budgetmanager.api.TransferStats;
+import com.loopj.android.http.AsyncHttpClient;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.message.BasicHttpEntityEnclosingRequest;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Tests for the {@link HttpCompression} class, checking that large request
+ * bodies are compressed, and that the bytes of a gzipped response are
+ * counted both as received and once inflated by the client.
+ *
+ * Black-box tests.
+ */
+public class TestHttpCompression extends AndroidTestCase {
+	private TransferStats stats;
+	private HttpCompression compression;
+	private DefaultHttpClient client;
+	private HttpContext context;
+
+	/**
+	 * Installs compression on a client as the ApiInterface does.
+	 */
+	@Override
+	protected void setUp() {
+		stats = new TransferStats();
+		compression = new HttpCompression(stats);
+		client = (DefaultHttpClient) new AsyncHttpClient().getHttpClient();
+		compression.install(client);
+		context = new BasicHttpContext();
+	}
+
+	/**
+	 * Checks that a large request body is sent gzipped when compression is
+	 * turned on, and counted at both sizes. Black-box test.
+	 */
+	@SmallTest
+	public void test_process_largeRequest_shouldCompress() throws Exception {
+		String body = repeat("amount=1000&notes=lunch&expenditure_date=2013-11-14&",
+				100);
+		BasicHttpEntityEnclosingRequest request =
+				new BasicHttpEntityEnclosingRequest("POST", "/entries/batch");
+		request.setEntity(new StringEntity(body));
+
+		compression.setCompressRequests(true);
+		client.getRequestInterceptor(0).process(request, context);
+
+		assertEquals("gzip", request.getEntity().getContentEncoding().getValue());
+		assertEquals(body, gunzip(EntityUtils.toByteArray(request.getEntity())));
+		TransferStats.Counts counts = stats.getCounts().get("POST /entries/batch");
+		assertEquals(body.length(), counts.getSentBytes());
+		assertEquals(request.getEntity().getContentLength(),
+				counts.getSentWireBytes());
+		assertTrue(counts.getSentWireBytes() < counts.getSentBytes());
+	}
+
+	/**
+	 * Checks that request bodies are left alone while compression is off,
+	 * or when they are small. Black-box test.
+	 */
+	@SmallTest
+	public void test_process_smallOrTurnedOff_shouldNotCompress() throws Exception {
+		BasicHttpEntityEnclosingRequest large =
+				new BasicHttpEntityEnclosingRequest("POST", "/entries/batch");
+		large.setEntity(new StringEntity(repeat("x", HttpCompression.MIN_COMPRESSED_BYTES)));
+		client.getRequestInterceptor(0).process(large, context);
+		assertNull(large.getEntity().getContentEncoding());
+
+		compression.setCompressRequests(true);
+		BasicHttpEntityEnclosingRequest small =
+				new BasicHttpEntityEnclosingRequest("POST", "/budgets");
+		small.setEntity(new StringEntity("budget_name=food"));
+		client.getRequestInterceptor(0).process(small, context);
+		assertNull(small.getEntity().getContentEncoding());
+	}
+
+	/**
+	 * Checks that a gzipped response is inflated, and counted at the size
+	 * it was received and the size it was read at. Black-box test.
+	 */
+	@SmallTest
+	public void test_process_gzippedResponse_shouldCountBothSizes() throws Exception {
+		String body = "[" + repeat("{\"amount\":1000,\"notes\":\"lunch\","
+				+ "\"created_at\":\"2013-11-14 01:00:00\"},", 50) + "{}]";
+		byte[] gzipped = gzip(body);
+		client.getRequestInterceptor(0).process(
+				new BasicHttpRequest("GET", "/budgets/with_entries?since=1"), context);
+
+		HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+		ByteArrayEntity entity = new ByteArrayEntity(gzipped);
+		entity.setContentEncoding("gzip");
+		response.setEntity(entity);
+		for (int i = 0; i < client.getResponseInterceptorCount(); ++i) {
+			client.getResponseInterceptor(i).process(response, context);
+		}
+
+		assertEquals(body, EntityUtils.toString(response.getEntity()));
+		TransferStats.Counts counts = stats.getCounts().get("GET /budgets/with_entries");
+		assertEquals(1, counts.getResponses());
+		assertEquals(gzipped.length, counts.getReceivedWireBytes());
+		assertEquals(body.length(), counts.getReceivedBytes());
+	}
+
+	private static String repeat(String s, int times) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < times; ++i) {
+			sb.append(s);
+		}
+		return sb.toString();
+	}
+
+	private static byte[] gzip(String s) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GZIPOutputStream gzip = new GZIPOutputStream(out);
+		gzip.write(s.getBytes("UTF-8"));
+		gzip.close();
+		return out.toByteArray();
+	}
+
+	private static String gunzip(byte[] bytes) throws IOException {
+		GZIPInputStream in = new GZIPInputStream(
+				new ByteArrayInputStream(bytes));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int n;
+		while ((n = in.read(buffer)) >= 0) {
+			out.write(buffer, 0, n);
+		}
+		return out.toString("UTF-8");
+	}
+}
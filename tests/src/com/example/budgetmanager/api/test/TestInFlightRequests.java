@@ -0,0 +1,117 @@
+package com.example.budgetmanager.api.test;
+
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.example.budgetmanager.api.ApiCallback;
+import com.example.budgetmanager.api.InFlightRequests;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for the {@link InFlightRequests} class, checking that calls for a
+ * request already being made wait for it, and are counted as saved.
+ *
+ * Black-box tests.
+ */
+public class TestInFlightRequests extends TestCase {
+	private InFlightRequests requests;
+	private List<String> told;
+
+	@Override
+	protected void setUp() {
+		requests = new InFlightRequests();
+		told = new ArrayList<String>();
+	}
+
+	/**
+	 * Checks that a second call for the same key joins the first request,
+	 * and that both callers are told its result. Black-box test.
+	 */
+	@SmallTest
+	public void test_join_sameKey_shouldShareResult() {
+		ApiCallback<String> shared = requests.join("GET /budgets", record("first"));
+		assertNotNull(shared);
+		assertNull(requests.join("GET /budgets", record("second")));
+
+		shared.onSuccess("budgets");
+
+		assertEquals(2, told.size());
+		assertEquals("first: budgets", told.get(0));
+		assertEquals("second: budgets", told.get(1));
+		assertEquals(1, requests.getStartedCount());
+		assertEquals(1, requests.getSavedCount());
+	}
+
+	/**
+	 * Checks that calls for different keys make their own requests, and that
+	 * a call after a request finished makes a new one. Black-box test.
+	 */
+	@SmallTest
+	public void test_join_differentKeyOrFinished_shouldStartRequest() {
+		ApiCallback<String> budgets = requests.join("GET /budgets", record("a"));
+		assertNotNull(requests.join("GET /session", record("b")));
+
+		budgets.onFailure("offline");
+		assertEquals("a failed: offline", told.get(0));
+		assertNotNull(requests.join("GET /budgets", record("c")));
+
+		assertEquals(3, requests.getStartedCount());
+		assertEquals(0, requests.getSavedCount());
+	}
+
+	/**
+	 * Checks that calls for the same key into different objects make their
+	 * own requests, even if the objects are equal, while calls into the
+	 * same object share one. Black-box test.
+	 */
+	@SmallTest
+	public void test_join_sameKeyDifferentTarget_shouldStartRequest() {
+		String first = new String("budget 1");
+		String second = new String("budget 1");
+		ApiCallback<String> shared =
+				requests.join("GET /entries/1", first, record("a"));
+		assertNotNull(shared);
+		assertNotNull(requests.join("GET /entries/1", second, record("b")));
+		assertNull(requests.join("GET /entries/1", first, record("c")));
+
+		shared.onSuccess("entries");
+
+		assertEquals(2, told.size());
+		assertEquals("a: entries", told.get(0));
+		assertEquals("c: entries", told.get(1));
+		assertEquals(2, requests.getStartedCount());
+		assertEquals(1, requests.getSavedCount());
+	}
+
+	/**
+	 * Checks that callers without callbacks can join a request. Black-box
+	 * test.
+	 */
+	@SmallTest
+	public void test_join_nullCallback_shouldBeSkipped() {
+		ApiCallback<String> shared = requests.join("GET /session", null);
+		assertNull(requests.join("GET /session", record("waiting")));
+
+		shared.onSuccess("ok");
+
+		assertEquals(1, told.size());
+		assertEquals("waiting: ok", told.get(0));
+	}
+
+	private ApiCallback<String> record(final String name) {
+		return new ApiCallback<String>() {
+			@Override
+			public void onSuccess(String result) {
+				told.add(name + ": " + result);
+			}
+
+			@Override
+			public void onFailure(String errorMessage) {
+				told.add(name + " failed: " + errorMessage);
+			}
+		};
+	}
+}
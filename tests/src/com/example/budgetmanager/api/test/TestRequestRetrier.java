@@ -0,0 +1,183 @@
+package com.example.budgetmanager.api.test;
+
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.example.budgetmanager.api.BackoffRetryPolicy;
+import com.example.budgetmanager.api.RequestRetrier;
+import com.example.budgetmanager.api.Timer;
+
+import junit.framework.TestCase;
+
+import org.apache.http.client.HttpResponseException;
+
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for the {@link RequestRetrier} and {@link BackoffRetryPolicy},
+ * checking that requests are sent again after failures that may pass, and
+ * that a host which keeps failing is given a rest.
+ *
+ * Black-box tests.
+ */
+public class TestRequestRetrier extends TestCase {
+	private static final String URL = "http://example.com/budgets";
+
+	private List<Long> delays;
+	private List<Runnable> timers;
+	private long now;
+	private RequestRetrier retrier;
+
+	/**
+	 * Sets up a retrier that retries twice, and opens a breaker after three
+	 * failures, whose waits only pass when the test passes them.
+	 */
+	@Override
+	protected void setUp() {
+		delays = new ArrayList<Long>();
+		timers = new ArrayList<Runnable>();
+		now = 0;
+		retrier = new RequestRetrier(
+				new BackoffRetryPolicy(2, 100, 1000, new Random(1)),
+				new Timer() {
+					@Override
+					public void schedule(Runnable task, long delayMillis) {
+						delays.add(delayMillis);
+						timers.add(task);
+					}
+				}, new RequestRetrier.Clock() {
+					@Override
+					public long now() {
+						return now;
+					}
+				}, 3, 5000);
+	}
+
+	/**
+	 * Checks that a request that times out is sent again after a wait, and
+	 * that its success isn't reported as a failure.
+	 */
+	@SmallTest
+	public void test_send_timeoutThenSuccess_shouldRetryOnce() {
+		FakeRequest request = new FakeRequest(new SocketTimeoutException());
+
+		assertTrue(retrier.send(URL, request));
+		runTimers();
+
+		assertEquals(2, request.sent);
+		assertEquals(0, request.reported.size());
+		assertEquals(1, retrier.getRetryCount());
+		assertTrue(delays.get(0) >= 0 && delays.get(0) < 100);
+		assertFalse(retrier.getCircuitBreaker("example.com").isOpen());
+	}
+
+	/**
+	 * Checks that a request that keeps failing is reported once the policy
+	 * gives up on it.
+	 */
+	@SmallTest
+	public void test_send_keepsFailing_shouldGiveUp() {
+		FakeRequest request = new FakeRequest(
+				new HttpResponseException(503, "Unavailable"),
+				new HttpResponseException(503, "Unavailable"),
+				new HttpResponseException(503, "Unavailable"));
+
+		retrier.send(URL, request);
+		runTimers();
+
+		assertEquals(3, request.sent);
+		assertEquals(1, request.reported.size());
+		assertEquals(2, retrier.getRetryCount());
+		assertEquals(1, retrier.getGaveUpCount());
+		// The second wait may be up to twice as long as the first.
+		assertTrue(delays.get(1) >= 0 && delays.get(1) < 200);
+	}
+
+	/**
+	 * Checks that a request the server refuses isn't sent again.
+	 */
+	@SmallTest
+	public void test_send_clientError_shouldNotRetry() {
+		FakeRequest request = new FakeRequest(
+				new HttpResponseException(404, "Not Found"));
+
+		retrier.send(URL, request);
+
+		assertEquals(1, request.sent);
+		assertEquals(1, request.reported.size());
+		assertEquals(0, retrier.getRetryCount());
+	}
+
+	/**
+	 * Checks that once a host has failed enough times in a row, requests
+	 * to it are turned away until the cool-down passes, and then one is let
+	 * through, whose success closes the breaker.
+	 */
+	@SmallTest
+	public void test_send_hostKeepsFailing_shouldOpenBreaker() {
+		FakeRequest failing = new FakeRequest(new SocketTimeoutException(),
+				new SocketTimeoutException(), new SocketTimeoutException());
+		retrier.send(URL, failing);
+		runTimers();
+		assertEquals(1, retrier.getOpenedCount());
+
+		assertFalse(retrier.send(URL, new FakeRequest()));
+		assertEquals(1, retrier.getRejectedCount());
+
+		now = 5000;
+		FakeRequest trying = new FakeRequest();
+		assertTrue(retrier.send(URL, trying));
+		assertFalse(retrier.send(URL, new FakeRequest()));
+		trying.tries.succeeded();
+
+		assertTrue(retrier.send(URL, new FakeRequest()));
+		assertEquals(2, retrier.getRejectedCount());
+		assertFalse(retrier.getCircuitBreaker("example.com").isOpen());
+	}
+
+	/* Runs the scheduled retries, including those they schedule. */
+	private void runTimers() {
+		for (int i = 0; i < timers.size(); ++i) {
+			timers.get(i).run();
+		}
+	}
+
+	/*
+	 * A request that fails with each of the given errors in turn, and then
+	 * succeeds, or that waits to be told how it went if given none.
+	 */
+	private static class FakeRequest implements RequestRetrier.Request {
+		private final LinkedList<Throwable> errors = new LinkedList<Throwable>();
+		private final List<Throwable> reported = new ArrayList<Throwable>();
+		private final boolean answers;
+		private RequestRetrier.Tries tries;
+		private int sent;
+
+		FakeRequest(Throwable... errors) {
+			for (Throwable error : errors) {
+				this.errors.add(error);
+			}
+			answers = errors.length > 0;
+		}
+
+		@Override
+		public void send(RequestRetrier.Tries tries) {
+			this.tries = tries;
+			++sent;
+			if (!answers) {
+				return;
+			}
+			if (errors.isEmpty()) {
+				tries.succeeded();
+				return;
+			}
+			Throwable error = errors.removeFirst();
+			if (!tries.retry(error)) {
+				reported.add(error);
+			}
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package com.example.budgetmanager.api.test;
+
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.example.budgetmanager.api.RequestScheduler;
+import com.example.budgetmanager.api.RequestScheduler.Priority;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the {@link RequestScheduler} class, checking that requests run
+ * within the limits of their priorities, the most urgent first.
+ *
+ * Black-box tests.
+ */
+public class TestRequestScheduler extends TestCase {
+	private RequestScheduler scheduler;
+	private List<String> started;
+
+	@Override
+	protected void setUp() {
+		started = Collections.synchronizedList(new ArrayList<String>());
+	}
+
+	@Override
+	protected void tearDown() {
+		scheduler.shutdownNow();
+	}
+
+	/**
+	 * Checks that no more requests of a priority run at once than its
+	 * limit, and that the rest wait until one finishes.
+	 */
+	@SmallTest
+	public void test_execute_pastPriorityLimit_shouldQueue()
+			throws InterruptedException {
+		scheduler = new RequestScheduler(4, 4, 4, 1);
+		Blocker first = new Blocker("first");
+		Blocker second = new Blocker("second");
+
+		scheduler.execute(first, Priority.BACKGROUND);
+		scheduler.execute(second, Priority.BACKGROUND);
+		first.awaitStarted();
+
+		assertEquals(1, scheduler.getRunningCount(Priority.BACKGROUND));
+		assertEquals(1, scheduler.getQueueDepth(Priority.BACKGROUND));
+
+		first.release();
+		second.awaitStarted();
+		second.release();
+		assertEquals(2, scheduler.getWaitTime(Priority.BACKGROUND).getCount());
+		assertEquals(1, scheduler.getMaxQueueDepth(Priority.BACKGROUND));
+	}
+
+	/**
+	 * Checks that an interactive request goes ahead of background requests
+	 * already waiting.
+	 */
+	@SmallTest
+	public void test_execute_interactiveAfterBackground_shouldRunFirst()
+			throws InterruptedException {
+		scheduler = new RequestScheduler(1, 1, 1, 1);
+		Blocker sync = new Blocker("sync");
+		Blocker changes = new Blocker("changes");
+		Blocker add = new Blocker("add");
+
+		scheduler.execute(sync, Priority.BACKGROUND);
+		sync.awaitStarted();
+		scheduler.execute(changes, Priority.BACKGROUND);
+		scheduler.setNextPriority(Priority.INTERACTIVE_WRITE);
+		scheduler.execute(add);
+
+		assertEquals(1, scheduler.getPreemptedCount());
+		sync.release();
+		add.awaitStarted();
+		add.release();
+		changes.awaitStarted();
+		changes.release();
+
+		assertEquals(Arrays.asList("sync", "add", "changes"), started);
+	}
+
+	/**
+	 * Checks that requests get the priority set for their URL, or else one
+	 * by their method.
+	 */
+	@SmallTest
+	public void test_getPriority_ruleSet_shouldUseRule() {
+		scheduler = new RequestScheduler();
+		scheduler.setPriority("GET", "http://example.com/budgets/with_entries",
+				Priority.BACKGROUND);
+
+		assertEquals(Priority.BACKGROUND, scheduler.getPriority("GET",
+				"http://example.com/budgets/with_entries?x=1"));
+		assertEquals(Priority.INTERACTIVE_READ, scheduler.getPriority("GET",
+				"http://example.com/budgets"));
+		assertEquals(Priority.INTERACTIVE_WRITE, scheduler.getPriority("POST",
+				"http://example.com/budgets/with_entries"));
+	}
+
+	/* A request that runs until it is released. */
+	private final class Blocker implements Runnable {
+		private final String name;
+		private final CountDownLatch running = new CountDownLatch(1);
+		private final CountDownLatch released = new CountDownLatch(1);
+
+		Blocker(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public void run() {
+			started.add(name);
+			running.countDown();
+			try {
+				released.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		void awaitStarted() throws InterruptedException {
+			assertTrue(running.await(5, TimeUnit.SECONDS));
+		}
+
+		void release() {
+			released.countDown();
+		}
+	}
+}
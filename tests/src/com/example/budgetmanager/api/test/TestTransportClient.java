@@ -0,0 +1,136 @@
+package com.example.budgetmanager.api.test;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.example.budgetmanager.api.HttpTransport;
+import com.example.budgetmanager.api.LoopbackTransport;
+import com.example.budgetmanager.api.TransportClient;
+import com.loopj.android.http.AsyncHttpResponseHandler;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.BasicCookieStore;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the {@link TransportClient}, checking that requests carried by
+ * a transport of its own get the client's headers and cookies and their own
+ * timeouts, and that their responses reach the handler.
+ *
+ * Black-box tests.
+ */
+public class TestTransportClient extends AndroidTestCase {
+	private static final String URL = "http://example.com/budgets";
+
+	private TransportClient client;
+	private List<HttpUriRequest> requests;
+	private List<Integer> timeouts;
+
+	/**
+	 * Sets up a client whose requests are answered in the same process,
+	 * with a session cookie.
+	 */
+	@Override
+	protected void setUp() {
+		requests = new ArrayList<HttpUriRequest>();
+		timeouts = new ArrayList<Integer>();
+		final LoopbackTransport loopback = new LoopbackTransport(
+				new LoopbackTransport.Server() {
+			@Override
+			public HttpResponse serve(HttpUriRequest request) {
+				HttpResponse response = LoopbackTransport.respond(200, "[]");
+				response.addHeader("Set-Cookie", "session=abc; Path=/");
+				return response;
+			}
+		});
+		client = new TransportClient();
+		client.setCookieStore(new BasicCookieStore());
+		client.addHeader("Accept", "application/json");
+		client.setTransport(new HttpTransport() {
+			@Override
+			public HttpResponse execute(HttpUriRequest request, int timeoutMillis)
+					throws IOException {
+				requests.add(request);
+				timeouts.add(timeoutMillis);
+				return loopback.execute(request, timeoutMillis);
+			}
+		});
+	}
+
+	/**
+	 * Checks that a request gets the client's headers, that its response
+	 * reaches the handler, and that the cookie it sets is sent back.
+	 */
+	@SmallTest
+	public void test_get_overTransport_shouldApplyHeadersAndCookies() {
+		Recorder first = get(URL);
+		Recorder second = get(URL);
+
+		assertEquals("[]", first.body);
+		assertEquals("[]", second.body);
+		assertEquals(2, requests.size());
+		assertEquals("application/json",
+				requests.get(0).getFirstHeader("Accept").getValue());
+		assertNull(requests.get(0).getFirstHeader("Cookie"));
+		assertTrue(requests.get(1).getFirstHeader("Cookie").getValue()
+				.contains("session=abc"));
+	}
+
+	/**
+	 * Checks that each request is given the timeout set for it, or else
+	 * the default.
+	 */
+	@SmallTest
+	public void test_get_timeoutSet_shouldUseRequestTimeout() {
+		client.getTimeouts().setDefault(5000);
+		client.getTimeouts().set("GET", URL, 20000);
+		client.getTimeouts().set("POST", URL, 30000);
+
+		get(URL + "?updated_since=2013-11-14");
+		get("http://example.com/entries");
+
+		assertEquals(Integer.valueOf(20000), timeouts.get(0));
+		assertEquals(Integer.valueOf(5000), timeouts.get(1));
+	}
+
+	/* Sends a GET and waits for its response. */
+	private Recorder get(String url) {
+		Recorder recorder = new Recorder();
+		client.get(url, recorder);
+		recorder.await();
+		return recorder;
+	}
+
+	/*
+	 * Records the body of the response. The test thread has no looper, so
+	 * the handler is called on the thread that sent the request.
+	 */
+	private static final class Recorder extends AsyncHttpResponseHandler {
+		private final CountDownLatch finished = new CountDownLatch(1);
+		private volatile String body;
+
+		@Override
+		public void onSuccess(String response) {
+			body = response;
+		}
+
+		@Override
+		public void onFinish() {
+			finished.countDown();
+		}
+
+		void await() {
+			try {
+				assertTrue(finished.await(5, TimeUnit.SECONDS));
+			} catch (InterruptedException e) {
+				fail(e.getMessage());
+			}
+		}
+	}
+}
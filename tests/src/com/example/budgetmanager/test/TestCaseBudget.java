@@ -5,10 +5,13 @@ import android.test.suitebuilder.annotation.SmallTest;
 
 import com.example.budgetmanager.Budget;
 import com.example.budgetmanager.Budget.Duration;
+import com.example.budgetmanager.BudgetRepository;
 import com.example.budgetmanager.Entry;
 
 import org.joda.time.LocalDate;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -26,7 +29,7 @@ public class TestCaseBudget extends AndroidTestCase {
 	 */
 	@Override
 	protected void setUp() {
-		Budget.clearBudgets();
+		BudgetRepository.getInstance().clear();
 	}
 
 	/**
@@ -377,4 +380,335 @@ public class TestCaseBudget extends AndroidTestCase {
 
 		runEndDateTest(Duration.MONTH, startDate, endDate, 1);
 	}
+
+	/**
+	 * Checks that a budget can be found by the ID it was given.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_getBudgetById_afterSetId_shouldFindBudget() {
+		Budget budget = buildBasicBudget(Duration.WEEK);
+		BudgetRepository.getInstance().add(budget);
+		budget.setId(12);
+
+		assertSame(budget, BudgetRepository.getInstance().getBudgetById(12));
+		assertNull(BudgetRepository.getInstance().getBudgetById(Budget.NEW_ID));
+	}
+
+	/**
+	 * Checks that changing a budget's ID moves it in the budget index.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_getBudgetById_idChanged_shouldOnlyFindNewId() {
+		Budget budget = buildBasicBudget(Duration.WEEK);
+		BudgetRepository.getInstance().add(budget);
+		budget.setId(12);
+		budget.setId(13);
+
+		assertNull(BudgetRepository.getInstance().getBudgetById(12));
+		assertSame(budget, BudgetRepository.getInstance().getBudgetById(13));
+	}
+
+	/**
+	 * Checks that removed and cleared budgets can no longer be found by ID.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_getBudgetById_removedOrCleared_shouldBeNull() {
+		Budget removed = buildBasicBudget(Duration.WEEK);
+		removed.setId(1);
+		Budget cleared = buildBasicBudget(Duration.WEEK);
+		cleared.setId(2);
+		BudgetRepository.getInstance().add(removed);
+		BudgetRepository.getInstance().add(cleared);
+
+		BudgetRepository.getInstance().remove(removed);
+		assertNull(BudgetRepository.getInstance().getBudgetById(1));
+		assertSame(cleared, BudgetRepository.getInstance().getBudgetById(2));
+
+		BudgetRepository.getInstance().clear();
+		assertNull(BudgetRepository.getInstance().getBudgetById(2));
+	}
+
+	/**
+	 * Checks that a temporary copy of a budget with the same ID (as made
+	 * while editing) isn't added to the repository, and so leaves the
+	 * original findable. Black-box test.
+	 */
+	@SmallTest
+	public void test_getBudgetById_copyWithSameId_shouldFindOriginal() {
+		Budget original = buildBasicBudget(Duration.WEEK);
+		original.setId(5);
+		BudgetRepository.getInstance().add(original);
+		Budget copy = buildBasicBudget(Duration.WEEK);
+		copy.setId(5);
+
+		assertFalse(BudgetRepository.getInstance().remove(copy));
+
+		assertSame(original, BudgetRepository.getInstance().getBudgetById(5));
+	}
+
+	/**
+	 * Checks that entries can be found by ID both through their budget and
+	 * globally, including entries given an ID after being added.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_findEntryById_shouldFindEntriesOfLoadedBudgets() {
+		Budget budget = buildBasicBudget(Duration.WEEK);
+		BudgetRepository.getInstance().add(budget);
+		Entry fetched = new Entry(7, 100, budget, "fetched", date(2013, 05, 05));
+		Entry created = new Entry(100, budget, "created", date(2013, 05, 06));
+		budget.addEntry(fetched);
+		budget.addEntry(created);
+		created.setEntryId(8);
+
+		assertSame(fetched, budget.getEntryById(7));
+		assertSame(fetched, BudgetRepository.getInstance().findEntryById(7));
+		assertSame(created, budget.getEntryById(8));
+		assertSame(created, BudgetRepository.getInstance().findEntryById(8));
+	}
+
+	/**
+	 * Checks that removed entries, entries whose ID changed, and entries of
+	 * removed budgets can no longer be found by their old IDs.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_findEntryById_removedOrChanged_shouldBeNull() {
+		Budget budget = buildBasicBudget(Duration.WEEK);
+		BudgetRepository.getInstance().add(budget);
+		Entry removed = new Entry(1, 100, budget, "", date(2013, 05, 05));
+		Entry changed = new Entry(2, 100, budget, "", date(2013, 05, 05));
+		Entry kept = new Entry(3, 100, budget, "", date(2013, 05, 05));
+		budget.addEntry(removed);
+		budget.addEntry(changed);
+		budget.addEntry(kept);
+
+		budget.removeEntry(removed);
+		changed.setEntryId(4);
+
+		assertNull(BudgetRepository.getInstance().findEntryById(1));
+		assertNull(BudgetRepository.getInstance().findEntryById(2));
+		assertSame(changed, BudgetRepository.getInstance().findEntryById(4));
+
+		BudgetRepository.getInstance().remove(budget);
+		assertNull(BudgetRepository.getInstance().findEntryById(3));
+	}
+
+	/**
+	 * Checks that the amount spent in each cycle only counts the entries
+	 * within that cycle, and follows entries being added and removed.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_getAmountSpent_addAndRemove_shouldOnlyCountCycle() {
+		Budget budget = buildBasicBudget(Duration.WEEK);
+		Entry first = new Entry(100, budget, "", date(2013, 05, 05));
+		Entry last = new Entry(200, budget, "", date(2013, 05, 11));
+		Entry next = new Entry(400, budget, "", date(2013, 05, 12));
+		budget.addEntry(first);
+		budget.addEntry(last);
+
+		assertEquals(300, budget.getAmountSpent(0));
+		assertEquals(0, budget.getAmountSpent(1));
+
+		budget.addEntry(next);
+		budget.removeEntry(first);
+		assertEquals(200, budget.getAmountSpent(0));
+		assertEquals(400, budget.getAmountSpent(1));
+	}
+
+	/**
+	 * Checks that the amount spent follows changes to the amount and date of
+	 * an entry. Black-box test.
+	 */
+	@SmallTest
+	public void test_getAmountSpent_entryEdited_shouldFollowEdit() {
+		Budget budget = buildBasicBudget(Duration.WEEK);
+		Entry entry = new Entry(100, budget, "", date(2013, 05, 05));
+		budget.addEntry(entry);
+		assertEquals(100, budget.getAmountSpent(0));
+
+		entry.setAmount(250);
+		assertEquals(250, budget.getAmountSpent(0));
+
+		entry.setDate(date(2013, 05, 20));
+		assertEquals(0, budget.getAmountSpent(0));
+		assertEquals(250, budget.getAmountSpent(2));
+	}
+
+	/**
+	 * Checks that the amount spent is recalculated when the start date or
+	 * duration of the budget moves the cycle boundaries. Black-box test.
+	 */
+	@SmallTest
+	public void test_getAmountSpent_cyclesChanged_shouldBeRecalculated() {
+		Budget budget = buildBasicBudget(Duration.WEEK);
+		budget.addEntry(new Entry(100, budget, "", date(2013, 05, 05)));
+		budget.addEntry(new Entry(200, budget, "", date(2013, 05, 13)));
+		assertEquals(100, budget.getAmountSpent(0));
+		assertEquals(200, budget.getAmountSpent(1));
+
+		budget.setDuration(Duration.FORTNIGHT);
+		assertEquals(300, budget.getAmountSpent(0));
+
+		budget.setStartDate(date(2013, 05, 06));
+		assertEquals(200, budget.getAmountSpent(0));
+	}
+
+	/**
+	 * Checks that asking for the amount spent in a negative cycle throws an
+	 * IllegalArgumentException. Black-box test.
+	 */
+	@SmallTest
+	public void test_getAmountSpent_negativeCycle_throwsIllegalArgumentException() {
+		Budget budget = buildBasicBudget(Duration.WEEK);
+		try {
+			budget.getAmountSpent(-1);
+			fail("Getting the amount spent in a negative cycle should throw "
+					+ "an IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertNotNull(e.getMessage());
+		}
+	}
+
+	/**
+	 * Checks that the entries of a budget are kept oldest first, whatever
+	 * order they are added in, and are reordered when their dates change.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_getEntries_outOfOrder_shouldBeInDateOrder() {
+		Budget budget = buildBasicBudget(Duration.WEEK);
+		Entry middle = new Entry(100, budget, "", date(2013, 05, 10));
+		Entry last = new Entry(100, budget, "", date(2013, 05, 20));
+		Entry first = new Entry(100, budget, "", date(2013, 05, 05));
+		budget.addEntry(middle);
+		budget.addEntry(last);
+		budget.addEntry(first);
+
+		List<Entry> entries = budget.getEntries();
+		assertSame(first, entries.get(0));
+		assertSame(middle, entries.get(1));
+		assertSame(last, entries.get(2));
+
+		first.setDate(date(2013, 05, 25));
+		entries = budget.getEntries();
+		assertSame(middle, entries.get(0));
+		assertSame(last, entries.get(1));
+		assertSame(first, entries.get(2));
+	}
+
+	/**
+	 * Checks that getEntriesBetween includes the entries on both ends of the
+	 * range, and none outside of it. Black-box test.
+	 */
+	@SmallTest
+	public void test_getEntriesBetween_shouldBeInclusive() {
+		Budget budget = buildBasicBudget(Duration.WEEK);
+		Entry before = new Entry(1, budget, "", date(2013, 05, 04));
+		Entry start = new Entry(10, budget, "", date(2013, 05, 05));
+		Entry end = new Entry(100, budget, "", date(2013, 05, 11));
+		Entry after = new Entry(1000, budget, "", date(2013, 05, 12));
+		budget.addEntry(after);
+		budget.addEntry(end);
+		budget.addEntry(start);
+		budget.addEntry(before);
+
+		List<Entry> entries = budget.getEntriesBetween(date(2013, 05, 05),
+				date(2013, 05, 11));
+		assertEquals(2, entries.size());
+		assertSame(start, entries.get(0));
+		assertSame(end, entries.get(1));
+
+		assertTrue(budget.getEntriesBetween(date(2013, 06, 01),
+				date(2013, 06, 30)).isEmpty());
+		assertTrue(budget.getEntriesBetween(date(2013, 05, 11),
+				date(2013, 05, 05)).isEmpty());
+	}
+
+	/**
+	 * Checks that getAmountBetween totals only the entries in the range, and
+	 * follows changes to the entries. Black-box test.
+	 */
+	@SmallTest
+	public void test_getAmountBetween_shouldTotalRange() {
+		Budget budget = buildBasicBudget(Duration.WEEK);
+		Entry before = new Entry(1, budget, "", date(2013, 05, 04));
+		Entry start = new Entry(10, budget, "", date(2013, 05, 05));
+		Entry end = new Entry(100, budget, "", date(2013, 05, 11));
+		budget.addEntry(before);
+		budget.addEntry(start);
+		budget.addEntry(end);
+
+		assertEquals(110, budget.getAmountBetween(date(2013, 05, 05),
+				date(2013, 05, 11)));
+		assertEquals(111, budget.getAmountBetween(date(2013, 01, 01),
+				date(2013, 12, 31)));
+
+		end.setAmount(200);
+		budget.removeEntry(start);
+		assertEquals(200, budget.getAmountBetween(date(2013, 05, 05),
+				date(2013, 05, 11)));
+		assertEquals(0, budget.getAmountBetween(date(2013, 05, 12),
+				date(2013, 05, 20)));
+	}
+
+	/**
+	 * Checks that addEntries adds every entry, in date order.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_addEntries_newEntries_shouldHaveAllEntries() {
+		Budget budget = buildBasicBudget(Duration.WEEK);
+		Entry existing = new Entry(1, 100, budget, "", date(2013, 05, 07));
+		budget.addEntry(existing);
+
+		List<Entry> newEntries = new ArrayList<Entry>();
+		for (int i = 0; i < 1000; ++i) {
+			newEntries.add(new Entry(i + 2, 1, budget, "",
+					date(2013, 05, 05).plusDays((i * 7) % 30)));
+		}
+		budget.addEntries(newEntries);
+
+		List<Entry> entries = budget.getEntries();
+		assertEquals(1001, entries.size());
+		for (int i = 1; i < entries.size(); ++i) {
+			assertFalse(entries.get(i).getDate().isBefore(
+					entries.get(i - 1).getDate()));
+		}
+		assertSame(newEntries.get(500), budget.getEntryById(502));
+		assertEquals(1100, budget.getAmountBetween(date(2013, 01, 01),
+				date(2013, 12, 31)));
+	}
+
+	/**
+	 * Checks that addEntries throws an IllegalArgumentException without
+	 * adding anything if an entry is already in the budget, repeated, or
+	 * null. Black-box test.
+	 */
+	@SmallTest
+	public void test_addEntries_invalidEntries_throwsIllegalArgumentException() {
+		Budget budget = buildBasicBudget(Duration.WEEK);
+		Entry existing = new Entry(100, budget, "", date(2013, 05, 05));
+		Entry fresh = new Entry(100, budget, "", date(2013, 05, 05));
+		budget.addEntry(existing);
+
+		List<List<Entry>> invalid = new ArrayList<List<Entry>>();
+		invalid.add(Arrays.asList(fresh, existing));
+		invalid.add(Arrays.asList(fresh, fresh));
+		invalid.add(Arrays.asList(fresh, null));
+
+		for (List<Entry> newEntries : invalid) {
+			try {
+				budget.addEntries(newEntries);
+				fail("Adding invalid entries should throw an "
+						+ "IllegalArgumentException");
+			} catch (IllegalArgumentException e) {
+				assertEquals(1, budget.getEntries().size());
+			}
+		}
+	}
 }
@@ -0,0 +1,168 @@
+package com.example.budgetmanager.test;
+
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.example.budgetmanager.Budget;
+import com.example.budgetmanager.Budget.Duration;
+import com.example.budgetmanager.BudgetCache;
+import com.example.budgetmanager.BudgetRepository;
+import com.example.budgetmanager.Entry;
+import com.example.budgetmanager.SyncDelta;
+
+import junit.framework.TestCase;
+
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Tests for the {@link com.example.budgetmanager.BudgetCache BudgetCache}
+ * class, checking that saved budgets and entries are read back the same,
+ * and that unreadable files are ignored.
+ *
+ * Black-box tests.
+ */
+public class TestCaseBudgetCache extends TestCase {
+
+	// Runs tasks straight away, on the thread saving
+	private static final Executor DIRECT = new Executor() {
+		@Override
+		public void execute(Runnable task) {
+			task.run();
+		}
+	};
+
+	private static final LocalDateTime SYNCED =
+			new LocalDateTime(2013, 11, 14, 1, 0);
+
+	private BudgetRepository repository;
+	private File file;
+	private BudgetCache cache;
+
+	/**
+	 * Clears out all cached budgets, and creates an empty cache file.
+	 */
+	@Override
+	protected void setUp() throws IOException {
+		repository = BudgetRepository.getInstance();
+		repository.clear();
+		file = File.createTempFile("budgets", ".cache");
+		file.delete();
+		cache = new BudgetCache(file, DIRECT);
+	}
+
+	@Override
+	protected void tearDown() {
+		repository.clear();
+		file.delete();
+	}
+
+	/**
+	 * Checks that saved budgets and entries are loaded with the same fields,
+	 * in the order they were added, synced through the same time.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_load_afterSave_shouldReadSameBudgets() {
+		Budget first = new Budget("first", 500, true,
+				new LocalDate(2013, 5, 5), Duration.WEEK);
+		first.setId(1);
+		Entry entry = new Entry(10, 250, first, "lunch",
+				new LocalDate(2013, 5, 6));
+		first.addEntry(entry);
+		Budget second = new Budget("second", 900, false,
+				new LocalDate(2013, 6, 1), Duration.MONTH);
+		second.setId(2);
+		repository.replaceAll(Arrays.asList(first, second), SYNCED);
+
+		cache.save(repository.getSnapshot());
+		SyncDelta loaded = cache.load();
+
+		assertEquals(SYNCED, loaded.getSyncedThrough());
+		List<Budget> budgets = loaded.getBudgets();
+		assertEquals(2, budgets.size());
+		Budget loadedFirst = budgets.get(0);
+		assertEquals(1, loadedFirst.getId());
+		assertEquals("first", loadedFirst.getName());
+		assertEquals(500, loadedFirst.getBudgetAmount());
+		assertTrue(loadedFirst.isRecurring());
+		assertEquals(new LocalDate(2013, 5, 5), loadedFirst.getStartDate());
+		assertEquals(Duration.WEEK, loadedFirst.getDuration());
+		assertEquals("second", budgets.get(1).getName());
+
+		assertEquals(1, loadedFirst.getEntries().size());
+		Entry loadedEntry = loadedFirst.getEntries().get(0);
+		assertEquals(10, loadedEntry.getEntryId());
+		assertEquals(250, loadedEntry.getAmount());
+		assertEquals("lunch", loadedEntry.getNotes());
+		assertEquals(new LocalDate(2013, 5, 6), loadedEntry.getDate());
+		assertEquals(entry.getCreatedAt(), loadedEntry.getCreatedAt());
+		assertSame(loadedFirst, loadedEntry.getBudget());
+	}
+
+	/**
+	 * Checks that notes too long to write with writeUTF are saved and
+	 * loaded whole. Black-box test.
+	 */
+	@SmallTest
+	public void test_load_afterSaveWithLongNotes_shouldReadNotes() {
+		Budget budget = new Budget("long", 500, true,
+				new LocalDate(2013, 5, 5), Duration.WEEK);
+		budget.setId(1);
+		char[] notes = new char[70000];
+		Arrays.fill(notes, '\u00e9');
+		budget.addEntry(new Entry(10, 250, budget, new String(notes),
+				new LocalDate(2013, 5, 6)));
+		repository.replaceAll(Arrays.asList(budget), SYNCED);
+
+		cache.save(repository.getSnapshot());
+		SyncDelta loaded = cache.load();
+
+		Entry loadedEntry = loaded.getBudgets().get(0).getEntries().get(0);
+		assertEquals(new String(notes), loadedEntry.getNotes());
+	}
+
+	/**
+	 * Checks that saving budgets that were never synced deletes the file.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_save_neverSynced_shouldDelete() {
+		repository.replaceAll(Arrays.<Budget>asList(), SYNCED);
+		cache.save(repository.getSnapshot());
+		assertTrue(file.exists());
+
+		repository.clear();
+		cache.save(repository.getSnapshot());
+
+		assertFalse(file.exists());
+		assertNull(cache.load());
+	}
+
+	/**
+	 * Checks that a file of an unknown schema version is ignored and
+	 * deleted. Black-box test.
+	 */
+	@SmallTest
+	public void test_load_unknownVersion_shouldIgnore() throws IOException {
+		repository.replaceAll(Arrays.<Budget>asList(), SYNCED);
+		cache.save(repository.getSnapshot());
+
+		// Replace the file with one of a version from the future.
+		DataOutputStream out = new DataOutputStream(
+				new FileOutputStream(file));
+		out.writeInt(0x55424443);
+		out.writeInt(Integer.MAX_VALUE);
+		out.close();
+
+		assertNull(cache.load());
+		assertFalse(file.exists());
+	}
+}
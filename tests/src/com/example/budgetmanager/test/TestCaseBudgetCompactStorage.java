@@ -0,0 +1,205 @@
+package com.example.budgetmanager.test;
+
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.example.budgetmanager.Budget;
+import com.example.budgetmanager.Budget.Duration;
+import com.example.budgetmanager.BudgetRepository;
+import com.example.budgetmanager.Entry;
+import com.example.budgetmanager.SpendingSeries;
+
+import junit.framework.TestCase;
+
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests for the compact storage of entries in the
+ * {@link com.example.budgetmanager.Budget Budget} class, checking that a
+ * budget in compact storage behaves the same as one that isn't.
+ *
+ * Black-box tests.
+ */
+public class TestCaseBudgetCompactStorage extends TestCase {
+
+	private static final LocalDate START = new LocalDate(2010, 1, 1);
+
+	/**
+	 * Clears out all cached budgets.
+	 */
+	@Override
+	protected void setUp() {
+		BudgetRepository.getInstance().clear();
+	}
+
+	/* Adds count entries with the given seed to budget, in random order. */
+	private void addRandomEntries(Budget budget, int count, long seed) {
+		Random random = new Random(seed);
+		List<Entry> entries = new ArrayList<Entry>();
+		for (int i = 0; i < count; ++i) {
+			Entry e = new Entry(i + 1, random.nextInt(10000), budget,
+					"Note " + random.nextInt(10),
+					START.plusDays(random.nextInt(1000)));
+			e.setCreatedAt(new LocalDateTime(2013, 5, 5, 12, 0, i % 60));
+			e.setUpdatedAt(new LocalDateTime(2013, 5, 6, 12, 0, i % 60));
+			entries.add(e);
+		}
+		budget.addEntries(entries);
+	}
+
+	/* Checks that two lists of entries hold the same values in order. */
+	private void assertSameValues(List<Entry> expected, List<Entry> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); ++i) {
+			Entry lhs = expected.get(i);
+			Entry rhs = actual.get(i);
+			assertEquals(lhs.getEntryId(), rhs.getEntryId());
+			assertEquals(lhs.getAmount(), rhs.getAmount());
+			assertEquals(lhs.getDate(), rhs.getDate());
+			assertEquals(lhs.getNotes(), rhs.getNotes());
+			assertEquals(lhs.getCreatedAt(), rhs.getCreatedAt());
+			assertEquals(lhs.getUpdatedAt(), rhs.getUpdatedAt());
+		}
+	}
+
+	/**
+	 * Checks that moving entries into compact storage and back keeps every
+	 * field of every entry, in the same order. Black-box test.
+	 */
+	@SmallTest
+	public void test_setCompactStorage_roundTrip_shouldKeepEntries() {
+		Budget normal = new Budget("normal", 1000, true, START, Duration.MONTH);
+		Budget compact = new Budget("compact", 1000, true, START,
+				Duration.MONTH);
+		addRandomEntries(normal, 500, 403);
+		addRandomEntries(compact, 500, 403);
+
+		compact.setCompactStorage(true);
+		assertTrue(compact.isCompactStorage());
+		assertSameValues(normal.getEntries(), compact.getEntries());
+
+		compact.setCompactStorage(false);
+		assertFalse(compact.isCompactStorage());
+		assertSameValues(normal.getEntries(), compact.getEntries());
+	}
+
+	/**
+	 * Checks that totals, ranges and spending series of a budget in compact
+	 * storage match those of a budget that isn't, through random edits.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_compactStorage_randomEdits_shouldMatchNormalStorage() {
+		Budget normal = new Budget("normal", 1000, true, START, Duration.WEEK);
+		Budget compact = new Budget("compact", 1000, true, START,
+				Duration.WEEK);
+		compact.setCompactStorage(true);
+		addRandomEntries(normal, 300, 5);
+		addRandomEntries(compact, 300, 5);
+
+		Random random = new Random(17);
+		for (int i = 0; i < 300; ++i) {
+			int index = random.nextInt(normal.getEntries().size());
+			Entry lhs = normal.getEntries().get(index);
+			Entry rhs = compact.getEntries().get(index);
+			switch (random.nextInt(4)) {
+			case 0:
+				normal.removeEntry(lhs);
+				compact.removeEntry(rhs);
+				break;
+			case 1:
+				int amount = random.nextInt(10000);
+				lhs.setAmount(amount);
+				rhs.setAmount(amount);
+				break;
+			case 2:
+				LocalDate date = START.plusDays(random.nextInt(1000));
+				lhs.setDate(date);
+				rhs.setDate(date);
+				break;
+			default:
+				LocalDateTime now = LocalDateTime.now();
+				Entry newLhs = new Entry(1000 + i, i, normal, "",
+						START.plusDays(i));
+				Entry newRhs = new Entry(1000 + i, i, compact, "",
+						START.plusDays(i));
+				newLhs.setCreatedAt(now);
+				newLhs.setUpdatedAt(now);
+				newRhs.setCreatedAt(now);
+				newRhs.setUpdatedAt(now);
+				normal.addEntry(newLhs);
+				compact.addEntry(newRhs);
+				break;
+			}
+		}
+
+		assertSameValues(normal.getEntries(), compact.getEntries());
+		for (int cycle = 0; cycle < 150; ++cycle) {
+			assertEquals(normal.getAmountSpent(cycle),
+					compact.getAmountSpent(cycle));
+			assertSameValues(normal.getEntriesBetween(normal.getStartDate(cycle),
+					normal.getEndDate(cycle)), compact.getEntriesBetween(
+					compact.getStartDate(cycle), compact.getEndDate(cycle)));
+
+			SpendingSeries lhs = normal.getSpendingSeries(cycle);
+			SpendingSeries rhs = compact.getSpendingSeries(cycle);
+			assertEquals(lhs.size(), rhs.size());
+			for (int i = 0; i < lhs.size(); ++i) {
+				assertEquals(lhs.getDay(i), rhs.getDay(i));
+				assertEquals(lhs.getTotal(i), rhs.getTotal(i));
+			}
+		}
+	}
+
+	/**
+	 * Checks that entries in compact storage can be found by ID, that the
+	 * same entry is returned while it is in use, and that changes to it are
+	 * kept. Black-box test.
+	 */
+	@SmallTest
+	public void test_compactStorage_findById_shouldFindSameEntry() {
+		Budget budget = new Budget("compact", 1000, true, START,
+				Duration.MONTH);
+		budget.setId(1);
+		budget.setCompactStorage(true);
+		BudgetRepository.getInstance().add(budget);
+		addRandomEntries(budget, 50, 1);
+
+		Entry entry = budget.getEntryById(25);
+		assertNotNull(entry);
+		assertEquals(25, entry.getEntryId());
+		assertSame(entry, BudgetRepository.getInstance().findEntryById(25));
+		assertSame(budget, entry.getBudget());
+
+		entry.setNotes("changed");
+		entry.setEntryId(99);
+		assertNull(budget.getEntryById(25));
+		assertSame(entry, budget.getEntryById(99));
+		assertTrue(budget.getEntries().contains(entry));
+
+		budget.setCompactStorage(false);
+		assertEquals("changed", budget.getEntryById(99).getNotes());
+		assertSame(budget.getEntryById(99), BudgetRepository.getInstance().findEntryById(99));
+	}
+
+	/**
+	 * Checks that entries of a removed budget in compact storage can no
+	 * longer be found by ID. Black-box test.
+	 */
+	@SmallTest
+	public void test_compactStorage_removedBudget_shouldNotFindEntries() {
+		Budget budget = new Budget("compact", 1000, true, START,
+				Duration.MONTH);
+		addRandomEntries(budget, 10, 1);
+		budget.setCompactStorage(true);
+		BudgetRepository.getInstance().add(budget);
+		assertNotNull(BudgetRepository.getInstance().findEntryById(5));
+
+		BudgetRepository.getInstance().remove(budget);
+		assertNull(BudgetRepository.getInstance().findEntryById(5));
+	}
+}
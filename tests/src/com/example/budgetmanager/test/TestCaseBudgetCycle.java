@@ -0,0 +1,176 @@
+package com.example.budgetmanager.test;
+
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.example.budgetmanager.Budget;
+import com.example.budgetmanager.Budget.Duration;
+import com.example.budgetmanager.BudgetRepository;
+
+import junit.framework.TestCase;
+
+import org.joda.time.LocalDate;
+import org.joda.time.Period;
+
+import java.util.Random;
+
+/**
+ * Tests for the cycle calculations of the
+ * {@link com.example.budgetmanager.Budget Budget} class, comparing
+ * {@link Budget#getCycle(LocalDate)} against stepping through the cycles one
+ * at a time.
+ *
+ * Black-box tests.
+ */
+public class TestCaseBudgetCycle extends TestCase {
+
+	/**
+	 * Clears out all cached budgets.
+	 */
+	@Override
+	protected void setUp() {
+		BudgetRepository.getInstance().clear();
+	}
+
+	/**
+	 * Finds the cycle of <code>date</code> by adding the cycle length to the
+	 * start date until it passes <code>date</code>, the way
+	 * <code>getCurrentCycle</code> used to.
+	 */
+	private int steppedCycle(LocalDate startDate, Duration duration,
+			LocalDate date) {
+		Period period = periodOf(duration);
+		int cycle = -1;
+		LocalDate startOfPeriod = startDate;
+		while (!startOfPeriod.isAfter(date)) {
+			++cycle;
+			startOfPeriod = startOfPeriod.plus(period);
+		}
+		return cycle;
+	}
+
+	private Period periodOf(Duration duration) {
+		switch (duration) {
+		case DAY:
+			return Period.days(1);
+		case WEEK:
+			return Period.weeks(1);
+		case FORTNIGHT:
+			return Period.weeks(2);
+		case MONTH:
+			return Period.months(1);
+		default:
+			return Period.years(1);
+		}
+	}
+
+	/**
+	 * Checks that the cycle of a date before the start of the budget is -1.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_getCycle_beforeStart_shouldBeNegative1() {
+		LocalDate start = new LocalDate(2013, 5, 5);
+		for (Duration d : Duration.values()) {
+			Budget b = new Budget("test", 1000, true, start, d);
+			assertEquals(-1, b.getCycle(start.minusDays(1)));
+			assertEquals(0, b.getCycle(start));
+		}
+	}
+
+	/**
+	 * Checks the cycles of a monthly budget starting at the end of a month,
+	 * where the start of each cycle is clamped to the end of shorter months.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_getCycle_monthlyFromMonthEnd_shouldClampToMonthEnd() {
+		Budget b = new Budget("test", 1000, true,
+				new LocalDate(2013, 1, 31), Duration.MONTH);
+
+		assertEquals(0, b.getCycle(new LocalDate(2013, 2, 27)));
+		assertEquals(1, b.getCycle(new LocalDate(2013, 2, 28)));
+		assertEquals(1, b.getCycle(new LocalDate(2013, 3, 30)));
+		assertEquals(2, b.getCycle(new LocalDate(2013, 3, 31)));
+		assertEquals(3, b.getCycle(new LocalDate(2013, 4, 30)));
+	}
+
+	/**
+	 * Checks the cycles of a yearly budget starting on a leap day.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_getCycle_yearlyFromLeapDay_shouldClampToFebruary28() {
+		Budget b = new Budget("test", 1000, true,
+				new LocalDate(2012, 2, 29), Duration.YEAR);
+
+		assertEquals(0, b.getCycle(new LocalDate(2013, 2, 27)));
+		assertEquals(1, b.getCycle(new LocalDate(2013, 2, 28)));
+		assertEquals(3, b.getCycle(new LocalDate(2015, 12, 31)));
+		assertEquals(4, b.getCycle(new LocalDate(2016, 2, 29)));
+	}
+
+	/**
+	 * Checks that getCycle agrees with stepping through the cycles one at a
+	 * time, for random start dates on or before the 28th of the month (where
+	 * no month-end clamping happens) and dates up to ten years later.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_getCycle_randomDates_shouldMatchSteppedCycle() {
+		Random random = new Random(403);
+		for (int i = 0; i < 2000; ++i) {
+			LocalDate start = new LocalDate(1995 + random.nextInt(30),
+					1 + random.nextInt(12), 1 + random.nextInt(28));
+			LocalDate date = start.plusDays(random.nextInt(3700) - 30);
+			Duration d = Duration.values()[
+					random.nextInt(Duration.values().length)];
+			Budget b = new Budget("test", 1000, true, start, d);
+
+			assertEquals(start + " " + d + " " + date,
+					steppedCycle(start, d, date), b.getCycle(date));
+		}
+	}
+
+	/**
+	 * Checks that the cycle getCycle returns for a date always contains that
+	 * date, for random start dates anywhere in the month (including the
+	 * month-end dates that are clamped). Black-box test.
+	 */
+	@SmallTest
+	public void test_getCycle_randomDates_shouldBeWithinCycleBounds() {
+		Random random = new Random(5);
+		for (int i = 0; i < 2000; ++i) {
+			LocalDate start = new LocalDate(1995 + random.nextInt(30), 1, 1)
+					.plusDays(random.nextInt(366));
+			LocalDate date = start.plusDays(random.nextInt(3700));
+			Duration d = Duration.values()[
+					random.nextInt(Duration.values().length)];
+			Budget b = new Budget("test", 1000, true, start, d);
+
+			int cycle = b.getCycle(date);
+			String message = start + " " + d + " " + date + " " + cycle;
+			assertFalse(message, b.getStartDate(cycle).isAfter(date));
+			assertFalse(message, b.getEndDate(cycle).isBefore(date));
+		}
+	}
+
+	/**
+	 * Checks that the current cycle is recalculated after changing the start
+	 * date or duration of a budget. Black-box test.
+	 */
+	@SmallTest
+	public void test_getCurrentCycle_afterEdit_shouldBeRecalculated() {
+		LocalDate today = LocalDate.now();
+		Budget b = new Budget("test", 1000, true, today, Duration.DAY);
+		assertEquals(0, b.getCurrentCycle());
+
+		b.setStartDate(today.minusDays(10));
+		assertEquals(10, b.getCurrentCycle());
+
+		b.setDuration(Duration.WEEK);
+		assertEquals(1, b.getCurrentCycle());
+
+		b.setStartDate(today.plusDays(1));
+		assertEquals(-1, b.getCurrentCycle());
+	}
+}
@@ -0,0 +1,402 @@
+package com.example.budgetmanager.test;
+
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.example.budgetmanager.Budget;
+import com.example.budgetmanager.Budget.Duration;
+import com.example.budgetmanager.BudgetChangeListener;
+import com.example.budgetmanager.BudgetRepository;
+import com.example.budgetmanager.BudgetRepository.Snapshot;
+import com.example.budgetmanager.Entry;
+import com.example.budgetmanager.SyncDelta;
+
+import junit.framework.TestCase;
+
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Tests for the {@link com.example.budgetmanager.BudgetRepository
+ * BudgetRepository} class, checking that snapshots of the budgets are never
+ * changed by later writes, and that listeners are told about each change.
+ *
+ * Black-box tests.
+ */
+public class TestCaseBudgetRepository extends TestCase {
+
+	// Runs tasks straight away, on the thread making the change
+	private static final Executor DIRECT = new Executor() {
+		@Override
+		public void execute(Runnable task) {
+			task.run();
+		}
+	};
+
+	private BudgetRepository repository;
+	private RecordingListener listener;
+
+	/**
+	 * Clears out all cached budgets.
+	 */
+	@Override
+	protected void setUp() {
+		repository = BudgetRepository.getInstance();
+		repository.clear();
+		listener = new RecordingListener();
+	}
+
+	@Override
+	protected void tearDown() {
+		repository.removeListener(listener);
+	}
+
+	/*
+	 * Records each change it is told about, as a line of text, and every
+	 * entry it is told was added.
+	 */
+	private static class RecordingListener implements BudgetChangeListener {
+		private final List<String> events = new ArrayList<String>();
+		private final List<Entry> entries = new ArrayList<Entry>();
+
+		@Override
+		public void onBudgetAdded(Budget budget, List<Entry> added) {
+			events.add("added " + budget.getName());
+			entries.addAll(added);
+		}
+
+		@Override
+		public void onBudgetRemoved(Budget budget) {
+			events.add("removed " + budget.getName());
+		}
+
+		@Override
+		public void onBudgetUpdated(Budget budget) {
+			events.add("updated " + budget.getName());
+		}
+
+		@Override
+		public void onBudgetsReplaced(List<Budget> budgets,
+				List<Entry> added) {
+			events.add("replaced " + budgets.size());
+			entries.clear();
+			entries.addAll(added);
+		}
+
+		@Override
+		public void onEntriesAdded(Budget budget, List<Entry> added) {
+			events.add("added " + added.size() + " to " + budget.getName());
+			entries.addAll(added);
+		}
+
+		@Override
+		public void onEntryRemoved(Entry entry) {
+			events.add("removed " + entry.getNotes());
+		}
+
+		@Override
+		public void onEntryUpdated(Entry entry) {
+			events.add("updated " + entry.getNotes());
+		}
+	}
+
+	private Budget buildBudget(String name, long id) {
+		Budget budget = new Budget(name, 500, true, new LocalDate(2013, 5, 5),
+				Duration.WEEK);
+		budget.setId(id);
+		return budget;
+	}
+
+	/**
+	 * Checks that constructing a budget doesn't add it to the repository.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_newBudget_notAdded_shouldNotBeListed() {
+		buildBudget("budget", 1);
+
+		assertTrue(repository.getBudgets().isEmpty());
+		assertNull(repository.getBudgetById(1));
+	}
+
+	/**
+	 * Checks that a snapshot keeps the budgets it was taken with while
+	 * budgets are added and removed, and that each write gives a newer
+	 * version. Black-box test.
+	 */
+	@SmallTest
+	public void test_getSnapshot_laterWrites_shouldNotChangeSnapshot() {
+		Budget first = buildBudget("first", 1);
+		repository.add(first);
+		Snapshot before = repository.getSnapshot();
+
+		Budget second = buildBudget("second", 2);
+		repository.add(second);
+		repository.remove(first);
+		Snapshot after = repository.getSnapshot();
+
+		assertEquals(Arrays.asList(first), before.getBudgets());
+		assertSame(first, before.getBudgetById(1));
+		assertNull(before.getBudgetById(2));
+		assertEquals(Arrays.asList(second), after.getBudgets());
+		assertTrue(after.getVersion() > before.getVersion());
+	}
+
+	/**
+	 * Checks that budgets added together are listed as if added one at a
+	 * time, and that replacing them drops the old budgets. Black-box test.
+	 */
+	@SmallTest
+	public void test_addAllAndReplaceAll_shouldListMostRecentFirst() {
+		Budget old = buildBudget("old", 1);
+		repository.add(old);
+		Budget first = buildBudget("first", 2);
+		Budget second = buildBudget("second", 3);
+
+		repository.addAll(Arrays.asList(first, second));
+		assertEquals(Arrays.asList(second, first, old),
+				repository.getBudgets());
+
+		repository.replaceAll(Arrays.asList(first, second));
+		assertEquals(Arrays.asList(second, first), repository.getBudgets());
+		assertNull(repository.getBudgetById(1));
+	}
+
+	/**
+	 * Checks that a budget can't be added twice, and that a failed add
+	 * leaves the repository unchanged. Black-box test.
+	 */
+	@SmallTest
+	public void test_addAll_repeatedBudget_shouldThrowAndNotAdd() {
+		Budget added = buildBudget("added", 1);
+		repository.add(added);
+		Snapshot before = repository.getSnapshot();
+
+		try {
+			repository.addAll(Arrays.asList(buildBudget("new", 2), added));
+			fail("Added a budget that was already added.");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+		assertSame(before, repository.getSnapshot());
+		assertNull(repository.getBudgetById(2));
+	}
+
+	/**
+	 * Checks that the list of budgets can't be changed directly.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_getBudgets_modified_shouldThrow() {
+		repository.add(buildBudget("budget", 1));
+
+		try {
+			repository.getBudgets().clear();
+			fail("Modified the list of budgets.");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * Checks that listeners are told about budgets being added, changed,
+	 * removed and replaced, in order. Black-box test.
+	 */
+	@SmallTest
+	public void test_addListener_budgetChanges_shouldNotifyInOrder() {
+		repository.addListener(listener, DIRECT);
+		Budget first = buildBudget("first", 1);
+		Budget second = buildBudget("second", 2);
+
+		repository.addAll(Arrays.asList(first, second));
+		first.setBudgetAmount(100);
+		second.setId(3);
+		repository.remove(first);
+		repository.clear();
+
+		assertEquals(Arrays.asList("added first", "added second",
+				"updated first", "updated second", "removed first",
+				"replaced 0"), listener.events);
+	}
+
+	/**
+	 * Checks that listeners are told about entries of added budgets being
+	 * added, changed and removed, but not about budgets that weren't added.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_addListener_entryChanges_shouldNotifyOnlyForAdded() {
+		Budget added = buildBudget("added", 1);
+		Budget notAdded = buildBudget("notAdded", 2);
+		repository.add(added);
+		repository.addListener(listener, DIRECT);
+
+		Entry entry = new Entry(100, added, "entry", new LocalDate(2013, 5, 6));
+		added.addEntry(entry);
+		entry.setAmount(200);
+		entry.setNotes("changed");
+		added.removeEntry(entry);
+		notAdded.addEntry(new Entry(100, notAdded, "other",
+				new LocalDate(2013, 5, 6)));
+
+		assertEquals(Arrays.asList("added 1 to added", "updated entry",
+				"updated changed", "removed changed"), listener.events);
+	}
+
+	/**
+	 * Checks that entries added to budgets after they replace the others,
+	 * but before listeners are told about it, are delivered only once.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_replaceAll_entriesAddedBeforeDelivery_shouldDeliverOnce() {
+		QueueExecutor queue = new QueueExecutor();
+		repository.addListener(listener, queue);
+		Budget budget = buildBudget("budget", 1);
+		Entry first = new Entry(100, budget, "first", new LocalDate(2013, 5, 6));
+		budget.addEntry(first);
+		Budget added = buildBudget("added", 2);
+
+		repository.replaceAll(Arrays.asList(budget));
+		repository.add(added);
+		Entry second = new Entry(200, budget, "second",
+				new LocalDate(2013, 5, 7));
+		budget.addEntry(second);
+		Entry third = new Entry(300, added, "third", new LocalDate(2013, 5, 8));
+		added.addEntry(third);
+		queue.runAll();
+
+		assertEquals(Arrays.asList("replaced 1", "added added",
+				"added 1 to budget", "added 1 to added"), listener.events);
+		assertEquals(Arrays.asList(first, second, third), listener.entries);
+	}
+
+	/* Holds tasks until they are run, like a looper that is busy. */
+	private static class QueueExecutor implements Executor {
+		private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+		@Override
+		public void execute(Runnable task) {
+			tasks.add(task);
+		}
+
+		void runAll() {
+			for (Runnable task : tasks) {
+				task.run();
+			}
+			tasks.clear();
+		}
+	}
+
+	/**
+	 * Checks that a removed listener is told about no more changes.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_removeListener_shouldStopNotifying() {
+		repository.addListener(listener, DIRECT);
+		repository.removeListener(listener);
+
+		repository.add(buildBudget("budget", 1));
+
+		assertTrue(listener.events.isEmpty());
+	}
+
+	/**
+	 * Checks that changes from the server update budgets and entries in
+	 * place by ID, add new ones, and remove those with tombstones.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_applyChanges_shouldUpdateInPlaceById() {
+		Budget kept = buildBudget("kept", 1);
+		Entry changedEntry = new Entry(10, 100, kept, "changed",
+				new LocalDate(2013, 5, 6));
+		Entry deletedEntry = new Entry(11, 100, kept, "deleted",
+				new LocalDate(2013, 5, 6));
+		kept.addEntries(Arrays.asList(changedEntry, deletedEntry));
+		Budget deleted = buildBudget("deleted", 2);
+		repository.addAll(Arrays.asList(kept, deleted));
+
+		Budget keptChanges = buildBudget("renamed", 1);
+		keptChanges.addEntries(Arrays.asList(
+				new Entry(10, 250, keptChanges, "changed",
+						new LocalDate(2013, 5, 7)),
+				new Entry(12, 300, keptChanges, "new",
+						new LocalDate(2013, 5, 8))));
+		Budget added = buildBudget("added", 3);
+		LocalDateTime syncedThrough = new LocalDateTime(2013, 5, 8, 12, 0);
+
+		repository.applyChanges(new SyncDelta(
+				Arrays.asList(keptChanges, added), new long[] {2},
+				new long[] {11}, syncedThrough));
+
+		assertEquals(Arrays.asList(added, kept), repository.getBudgets());
+		assertEquals("renamed", kept.getName());
+		assertSame(changedEntry, repository.findEntryById(10));
+		assertEquals(250, changedEntry.getAmount());
+		assertEquals(new LocalDate(2013, 5, 7), changedEntry.getDate());
+		assertNull(repository.findEntryById(11));
+		assertSame(kept, repository.findEntryById(12).getBudget());
+		assertEquals(2, kept.getEntries().size());
+		assertEquals(syncedThrough, repository.getSyncedThrough());
+	}
+
+	/**
+	 * Checks that changes from the server are merged into an entry made or
+	 * cached here, which has no notes or creation and update times.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_applyChanges_entryWithoutTimes_shouldMerge() {
+		Budget kept = buildBudget("kept", 1);
+		Entry local = new Entry(10, 100, kept, null, new LocalDate(2013, 5, 6));
+		local.setCreatedAt(null);
+		local.setUpdatedAt(null);
+		kept.addEntry(local);
+		repository.add(kept);
+
+		Budget keptChanges = buildBudget("kept", 1);
+		LocalDateTime createdAt = new LocalDateTime(2013, 5, 6, 9, 0);
+		LocalDateTime updatedAt = new LocalDateTime(2013, 5, 7, 9, 0);
+		Entry changed = new Entry(10, 100, keptChanges, "lunch",
+				new LocalDate(2013, 5, 6));
+		changed.setCreatedAt(createdAt);
+		changed.setUpdatedAt(updatedAt);
+		keptChanges.addEntry(changed);
+
+		repository.applyChanges(new SyncDelta(Arrays.asList(keptChanges),
+				new long[0], new long[0], updatedAt));
+
+		assertSame(local, repository.findEntryById(10));
+		assertEquals("lunch", local.getNotes());
+		assertEquals(createdAt, local.getCreatedAt());
+		assertEquals(updatedAt, local.getUpdatedAt());
+	}
+
+	/**
+	 * Checks that the time the budgets were synced through only moves
+	 * forward, and is forgotten when the budgets are cleared.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_getSyncedThrough_shouldOnlyMoveForward() {
+		LocalDateTime later = new LocalDateTime(2013, 5, 8, 12, 0);
+		LocalDateTime earlier = new LocalDateTime(2013, 5, 7, 12, 0);
+		List<Budget> none = new ArrayList<Budget>();
+		assertNull(repository.getSyncedThrough());
+
+		repository.replaceAll(none, later);
+		repository.applyChanges(new SyncDelta(none, new long[0],
+				new long[0], earlier));
+		assertEquals(later, repository.getSyncedThrough());
+
+		repository.clear();
+		assertNull(repository.getSyncedThrough());
+	}
+}
@@ -6,6 +6,7 @@ import android.view.View;
 import android.widget.TextView;
 
 import com.example.budgetmanager.Budget;
+import com.example.budgetmanager.BudgetRepository;
 import com.example.budgetmanager.BudgetSummaryAdapter;
 import com.example.budgetmanager.R;
 import com.example.budgetmanager.SummaryTab;
@@ -22,7 +23,7 @@ public class TestCaseBudgetSummaryAdapter extends AndroidTestCase {
 	@Override
 	protected void setUp() throws Exception {
 		super.setUp();
-		Budget.clearBudgets();
+		BudgetRepository.getInstance().clear();
 	}
 
 	/**
@@ -3,6 +3,7 @@ package com.example.budgetmanager.test;
 import android.test.suitebuilder.annotation.SmallTest;
 
 import com.example.budgetmanager.Budget;
+import com.example.budgetmanager.BudgetRepository;
 import com.example.budgetmanager.Entry;
 import com.example.budgetmanager.EntryLogAdapter;
 
@@ -22,7 +23,7 @@ public class TestCaseEntryBudgetComparator extends TestCase {
 	 * Namely, clears out all cached budgets.
 	 */
 	protected void setUp() {
-		Budget.clearBudgets();
+		BudgetRepository.getInstance().clear();
 	}
 
 	/**
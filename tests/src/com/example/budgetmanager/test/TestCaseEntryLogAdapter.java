@@ -0,0 +1,113 @@
+package com.example.budgetmanager.test;
+
+import android.test.AndroidTestCase;
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.example.budgetmanager.Budget;
+import com.example.budgetmanager.BudgetRepository;
+import com.example.budgetmanager.Entry;
+import com.example.budgetmanager.EntryLogAdapter;
+import com.example.budgetmanager.R;
+
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+import org.joda.time.LocalTime;
+
+import java.util.Collections;
+
+/**
+ * Tests that the {@link EntryLogAdapter} shows the entries a page at a time,
+ * newest first, and keeps the page right as entries are added.
+ */
+public class TestCaseEntryLogAdapter extends AndroidTestCase {
+
+	// More entries than fit on one page
+	private static final int ENTRY_COUNT = EntryLogAdapter.PAGE_SIZE + 50;
+
+	private static final LocalDate START = new LocalDate(2013, 5, 5);
+
+	private Budget budget;
+	private EntryLogAdapter adapter;
+
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		BudgetRepository.getInstance().clear();
+		budget = new Budget("Budget", 100, true, START, Budget.Duration.MONTH);
+		for (int i = 1; i <= ENTRY_COUNT; ++i) {
+			budget.addEntry(entry(i));
+		}
+		BudgetRepository.getInstance().add(budget);
+		adapter = new EntryLogAdapter(getContext(), R.layout.list_entry_layout,
+				BudgetRepository.getInstance().getBudgets());
+	}
+
+	/* An entry on the day'th day after START, noted "Entry day". */
+	private Entry entry(int day) {
+		Entry e = new Entry(day, budget, "Entry " + day, START.plusDays(day));
+		LocalDateTime time =
+				START.plusDays(day).toLocalDateTime(new LocalTime(12, 0));
+		e.setCreatedAt(time);
+		e.setUpdatedAt(time);
+		return e;
+	}
+
+	/**
+	 * Checks that only the newest page of a long history is shown at first.
+	 */
+	@SmallTest
+	public void test_listConstructor_longHistory_shouldShowFirstPage() {
+		assertEquals(EntryLogAdapter.PAGE_SIZE, adapter.getCount());
+		assertTrue(adapter.hasMore());
+		assertEquals("Entry " + ENTRY_COUNT, adapter.getItem(0).getNotes());
+	}
+
+	/**
+	 * Checks that showing more entries shows the rest of the history, in
+	 * order.
+	 */
+	@SmallTest
+	public void test_showMore_longHistory_shouldShowEveryEntry() {
+		adapter.showMore();
+
+		assertEquals(ENTRY_COUNT, adapter.getCount());
+		assertFalse(adapter.hasMore());
+		assertEquals("Entry 1",
+				adapter.getItem(ENTRY_COUNT - 1).getNotes());
+	}
+
+	/**
+	 * Checks that an entry older than the page shown isn't shown until the
+	 * list is scrolled to it, while a newer one is shown at the top.
+	 */
+	@SmallTest
+	public void test_onEntriesAdded_pageShown_shouldOnlyShowNewerEntry() {
+		Entry older = entry(0);
+		Entry newer = entry(ENTRY_COUNT + 1);
+		budget.addEntry(older);
+		budget.addEntry(newer);
+
+		adapter.onEntriesAdded(budget, Collections.singletonList(older));
+		adapter.onEntriesAdded(budget, Collections.singletonList(newer));
+
+		assertEquals(EntryLogAdapter.PAGE_SIZE, adapter.getCount());
+		assertSame(newer, adapter.getItem(0));
+		assertEquals(-1, adapter.getPosition(older));
+	}
+
+	/**
+	 * Checks that an entry shown when the next page was loaded isn't shown
+	 * twice when its addition is delivered afterwards.
+	 */
+	@SmallTest
+	public void test_onEntriesAdded_afterShowMore_shouldNotDuplicate() {
+		Entry newer = entry(ENTRY_COUNT + 1);
+		budget.addEntry(newer);
+		adapter.showMore();
+
+		adapter.onEntriesAdded(budget, Collections.singletonList(newer));
+
+		assertEquals(ENTRY_COUNT + 1, adapter.getCount());
+		assertSame(newer, adapter.getItem(0));
+	}
+}
@@ -0,0 +1,158 @@
+package com.example.budgetmanager.test;
+
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.example.budgetmanager.Budget;
+import com.example.budgetmanager.Budget.Duration;
+import com.example.budgetmanager.BudgetRepository;
+import com.example.budgetmanager.Entry;
+import com.example.budgetmanager.EntryPager;
+import com.example.budgetmanager.api.ApiCallback;
+import com.example.budgetmanager.api.EntryPage;
+
+import junit.framework.TestCase;
+
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for the {@link EntryPager} class, checking that each budget's
+ * entries are asked for a page at a time, following the cursors, and that
+ * nothing is asked for once the budgets hold a full sync.
+ *
+ * Black-box tests.
+ */
+public class TestCaseEntryPager extends TestCase {
+	private static final LocalDate DATE = new LocalDate(2013, 11, 14);
+
+	private BudgetRepository repository;
+	private FakeSource source;
+	private EntryPager pager;
+	private Budget food;
+	private Budget rent;
+
+	/**
+	 * Adds two budgets from the server, and one not yet created there, none
+	 * of them with entries.
+	 */
+	@Override
+	protected void setUp() {
+		repository = BudgetRepository.getInstance();
+		repository.clear();
+		food = new Budget("food", 500, false, DATE, Duration.WEEK);
+		food.setId(1);
+		rent = new Budget("rent", 900, true, DATE, Duration.MONTH);
+		rent.setId(2);
+		repository.addAll(Arrays.asList(food, rent,
+				new Budget("new", 100, false, DATE, Duration.DAY)));
+		source = new FakeSource();
+		pager = new EntryPager(source, 2);
+	}
+
+	@Override
+	protected void tearDown() {
+		repository.clear();
+	}
+
+	/**
+	 * Checks that the first page of each budget on the server is asked for,
+	 * then only the next page of those that have more. Black-box test.
+	 */
+	@SmallTest
+	public void test_loadMore_pages_shouldFollowCursors() {
+		pager.loadMore();
+		assertEquals(2, source.requests.size());
+		Request first = source.find(food);
+		assertNull(first.cursor);
+		assertEquals(2, first.pageSize);
+
+		first.answer("older");
+		source.find(rent).answer(null);
+		assertFalse(pager.isLoading());
+		assertTrue(pager.hasMore());
+
+		source.requests.clear();
+		pager.loadMore();
+		assertEquals(1, source.requests.size());
+		assertEquals("older", source.find(food).cursor);
+
+		source.find(food).answer(null);
+		assertFalse(pager.hasMore());
+		source.requests.clear();
+		pager.loadMore();
+		assertTrue(source.requests.isEmpty());
+	}
+
+	/**
+	 * Checks that a page being loaded isn't asked for again, that a failed
+	 * page is, and that nothing is asked for once everything is synced.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_loadMore_loadingOrSynced_shouldNotFetch() {
+		pager.loadMore();
+		pager.loadMore();
+		assertEquals(2, source.requests.size());
+		assertTrue(pager.isLoading());
+
+		source.find(food).callback.onFailure("No network");
+		pager.loadMore();
+		assertEquals(3, source.requests.size());
+
+		repository.replaceAll(Collections.singletonList(food),
+				new LocalDateTime(2013, 11, 14, 1, 0));
+		assertFalse(pager.hasMore());
+		source.requests.clear();
+		pager.loadMore();
+		assertTrue(source.requests.isEmpty());
+	}
+
+	/* A page asked for from the FakeSource. */
+	private static final class Request {
+		final Budget budget;
+		final String cursor;
+		final int pageSize;
+		final ApiCallback<EntryPage> callback;
+
+		Request(Budget budget, String cursor, int pageSize,
+				ApiCallback<EntryPage> callback) {
+			this.budget = budget;
+			this.cursor = cursor;
+			this.pageSize = pageSize;
+			this.callback = callback;
+		}
+
+		void answer(String nextCursor) {
+			List<Entry> entries = Collections.singletonList(
+					new Entry(budget.getId() * 10, 100, budget, "entry", DATE));
+			callback.onSuccess(new EntryPage(entries, nextCursor));
+		}
+	}
+
+	/* Records the pages asked for, to be answered by the test. */
+	private static final class FakeSource implements EntryPager.Source {
+		final List<Request> requests = new ArrayList<Request>();
+
+		@Override
+		public void fetchEntries(Budget b, String cursor, int pageSize,
+				ApiCallback<EntryPage> callback) {
+			requests.add(new Request(b, cursor, pageSize, callback));
+		}
+
+		/* The latest request for b. */
+		Request find(Budget b) {
+			for (int i = requests.size() - 1; i >= 0; --i) {
+				if (requests.get(i).budget == b) {
+					return requests.get(i);
+				}
+			}
+			fail("No request for " + b.getName());
+			return null;
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package com.example.budgetmanager.test;
+
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.example.budgetmanager.LongHashMap;
+
+import junit.framework.TestCase;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests for the {@link LongHashMap} class.
+ *
+ * Black-box tests.
+ */
+public class TestCaseLongHashMap extends TestCase {
+
+	/**
+	 * Checks that a value put into the map can be retrieved by its key.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_get_afterPut_shouldReturnValue() {
+		LongHashMap<String> map = new LongHashMap<String>();
+		map.put(42, "answer");
+
+		assertEquals("answer", map.get(42));
+		assertTrue(map.containsKey(42));
+		assertEquals(1, map.size());
+	}
+
+	/**
+	 * Checks that looking up a key that was never put returns null.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_get_missingKey_shouldReturnNull() {
+		LongHashMap<String> map = new LongHashMap<String>();
+		map.put(1, "one");
+
+		assertNull(map.get(2));
+		assertFalse(map.containsKey(2));
+	}
+
+	/**
+	 * Checks that putting an existing key replaces its value and returns the
+	 * previous one. Black-box test.
+	 */
+	@SmallTest
+	public void test_put_existingKey_shouldReplaceValue() {
+		LongHashMap<String> map = new LongHashMap<String>();
+		map.put(7, "old");
+
+		assertEquals("old", map.put(7, "new"));
+		assertEquals("new", map.get(7));
+		assertEquals(1, map.size());
+	}
+
+	/**
+	 * Checks that putting a null value throws an IllegalArgumentException.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_put_nullValue_throwsIllegalArgumentException() {
+		LongHashMap<String> map = new LongHashMap<String>();
+		try {
+			map.put(1, null);
+			fail("Putting a null value should throw an IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertNotNull(e.getMessage());
+		}
+	}
+
+	/**
+	 * Checks that a removed key can no longer be found, while the others
+	 * still can. Black-box test.
+	 */
+	@SmallTest
+	public void test_remove_existingKey_shouldOnlyRemoveThatKey() {
+		LongHashMap<String> map = new LongHashMap<String>();
+		map.put(1, "one");
+		map.put(2, "two");
+
+		assertEquals("one", map.remove(1));
+		assertNull(map.get(1));
+		assertEquals("two", map.get(2));
+		assertEquals(1, map.size());
+	}
+
+	/**
+	 * Checks that clearing the map removes every key. Black-box test.
+	 */
+	@SmallTest
+	public void test_clear_shouldBeEmpty() {
+		LongHashMap<String> map = new LongHashMap<String>();
+		for (long i = 0; i < 100; ++i) {
+			map.put(i, "value");
+		}
+		map.clear();
+
+		assertTrue(map.isEmpty());
+		assertNull(map.get(50));
+	}
+
+	/**
+	 * Checks that the map behaves like a java.util.HashMap over a long,
+	 * random sequence of puts and removes, including negative keys.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_randomOperations_shouldMatchHashMap() {
+		Random random = new Random(403);
+		LongHashMap<Long> map = new LongHashMap<Long>();
+		Map<Long, Long> expected = new HashMap<Long, Long>();
+
+		for (int i = 0; i < 20000; ++i) {
+			// A small key range, so that removes and replacements happen
+			long key = random.nextInt(2000) - 100;
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.remove(key), map.remove(key));
+			} else {
+				Long value = random.nextLong();
+				assertEquals(expected.put(key, value), map.put(key, value));
+			}
+		}
+
+		assertEquals(expected.size(), map.size());
+		for (long key = -100; key < 1900; ++key) {
+			assertEquals(expected.get(key), map.get(key));
+		}
+	}
+}
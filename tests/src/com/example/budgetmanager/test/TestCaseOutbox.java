@@ -0,0 +1,516 @@
+package com.example.budgetmanager.test;
+
+import android.test.suitebuilder.annotation.SmallTest;
+
+import com.example.budgetmanager.Budget;
+import com.example.budgetmanager.Budget.Duration;
+import com.example.budgetmanager.BudgetRepository;
+import com.example.budgetmanager.Entry;
+import com.example.budgetmanager.Outbox;
+import com.example.budgetmanager.UBudgetApp;
+import com.example.budgetmanager.api.ApiCallback;
+import com.example.budgetmanager.api.BackoffRetryPolicy;
+import com.example.budgetmanager.api.Timer;
+import com.example.budgetmanager.api.TransientFailureCallback;
+import com.example.budgetmanager.api.test.AsyncHttpClientStub;
+
+import junit.framework.TestCase;
+
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+/**
+ * Tests for the {@link com.example.budgetmanager.Outbox Outbox} class,
+ * checking that changes are applied straight away, combined while they
+ * wait, sent in order with server IDs in place of temporary ones, undone
+ * if the server rejects them, and kept in the outbox file.
+ *
+ * Black-box tests.
+ */
+public class TestCaseOutbox extends TestCase {
+
+	// Runs tasks straight away, on the thread saving
+	private static final Executor DIRECT = new Executor() {
+		@Override
+		public void execute(Runnable task) {
+			task.run();
+		}
+	};
+
+	private static final LocalDate DATE = new LocalDate(2013, 11, 14);
+
+	// How many times the outboxes send a change again while online
+	private static final int MAX_RETRIES = 2;
+
+	private BudgetRepository repository;
+	private File file;
+	private FakeSender sender;
+	private List<Runnable> timers;
+	private Outbox outbox;
+
+	/**
+	 * Clears out all budgets, and creates an empty outbox that is offline.
+	 */
+	@Override
+	protected void setUp() throws IOException {
+		repository = BudgetRepository.getInstance();
+		repository.clear();
+		file = File.createTempFile("changes", ".outbox");
+		file.delete();
+		sender = new FakeSender();
+		timers = new ArrayList<Runnable>();
+		outbox = newOutbox();
+	}
+
+	/* Creates an outbox on the file, whose retries wait for runTimers. */
+	private Outbox newOutbox() {
+		return new Outbox(file, DIRECT, sender, new Timer() {
+			@Override
+			public void schedule(Runnable task, long delayMillis) {
+				timers.add(task);
+			}
+		}, new BackoffRetryPolicy(MAX_RETRIES, 100, 1000, new Random(1)));
+	}
+
+	/* Runs the tasks scheduled so far. */
+	private void runTimers() {
+		List<Runnable> due = new ArrayList<Runnable>(timers);
+		timers.clear();
+		for (Runnable task : due) {
+			task.run();
+		}
+	}
+
+	@Override
+	protected void tearDown() {
+		repository.clear();
+		file.delete();
+	}
+
+	/**
+	 * Checks that a budget created and then updated while offline is added
+	 * straight away, and sent as one creation with the updated fields,
+	 * after which it has the ID given by the server. Black-box test.
+	 */
+	@SmallTest
+	public void test_flush_createThenUpdate_shouldSendOneCreate() {
+		Budget budget = new Budget("food", 500, false, DATE, Duration.WEEK);
+		outbox.create(budget);
+		long temporaryId = budget.getId();
+		assertTrue(temporaryId < Budget.NEW_ID);
+		assertSame(budget, repository.getBudgetById(temporaryId));
+
+		outbox.update(budget,
+				new Budget("groceries", 700, false, DATE, Duration.WEEK));
+		assertEquals(1, outbox.getPendingCount());
+		assertEquals("groceries", budget.getName());
+
+		sender.online = true;
+		outbox.flush();
+
+		assertEquals(1, sender.sent.size());
+		Sent create = sender.sent.get(0);
+		assertEquals("create budget", create.what);
+		assertEquals("groceries", ((Budget) create.target).getName());
+		assertEquals(700, ((Budget) create.target).getBudgetAmount());
+
+		create.succeed(10L);
+		assertEquals(10, budget.getId());
+		assertSame(budget, repository.getBudgetById(10));
+		assertEquals(0, outbox.getPendingCount());
+	}
+
+	/**
+	 * Checks that an entry created in a budget that wasn't yet created on
+	 * the server is sent after it, with the ID the server gave the budget.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_flush_entryInNewBudget_shouldSendServerBudgetId() {
+		Budget budget = new Budget("food", 500, false, DATE, Duration.WEEK);
+		outbox.create(budget);
+		Entry entry = new Entry(250, budget, "lunch", DATE);
+		outbox.create(entry);
+		assertEquals(1, budget.getEntries().size());
+		assertEquals(2, outbox.getPendingCount());
+
+		sender.online = true;
+		outbox.flush();
+		assertEquals(1, sender.sent.size());
+		sender.sent.get(0).succeed(10L);
+
+		assertEquals(2, sender.sent.size());
+		Sent create = sender.sent.get(1);
+		assertEquals("create entry", create.what);
+		assertEquals(10, ((Entry) create.target).getBudget().getId());
+
+		LocalDateTime createdAt = new LocalDateTime(2013, 11, 14, 1, 0);
+		((Entry) create.target).setCreatedAt(createdAt);
+		create.succeed(20L);
+		assertEquals(20, entry.getEntryId());
+		assertEquals(createdAt, entry.getCreatedAt());
+		assertSame(entry, repository.findEntryById(20));
+		assertEquals(0, outbox.getPendingCount());
+	}
+
+	/**
+	 * Checks that entries created one after another are handed to the
+	 * sender together, while a budget change after them waits for them.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_flush_entryRun_shouldSendTogether() {
+		Budget budget = new Budget("food", 500, false, DATE, Duration.WEEK);
+		budget.setId(5);
+		repository.add(budget);
+		for (int i = 0; i < 3; ++i) {
+			outbox.create(new Entry(100 + i, budget, "entry " + i, DATE));
+		}
+		outbox.update(budget,
+				new Budget("groceries", 700, false, DATE, Duration.WEEK));
+
+		sender.online = true;
+		outbox.flush();
+		assertEquals(3, sender.sent.size());
+		for (int i = 0; i < 3; ++i) {
+			assertEquals("create entry", sender.sent.get(i).what);
+		}
+
+		sender.sent.get(2).succeed(32L);
+		sender.sent.get(0).succeed(30L);
+		assertEquals(3, sender.sent.size());
+		sender.sent.get(1).succeed(31L);
+
+		assertEquals(4, sender.sent.size());
+		assertEquals("update budget", sender.sent.get(3).what);
+		assertNotNull(repository.findEntryById(31));
+		assertEquals(1, outbox.getPendingCount());
+	}
+
+	/**
+	 * Checks that updates followed by a removal are sent as just the
+	 * removal, and that something created and removed before it was sent
+	 * is never sent. Black-box test.
+	 */
+	@SmallTest
+	public void test_remove_afterQueuedChanges_shouldDropThem() {
+		Budget kept = new Budget("rent", 900, true, DATE, Duration.MONTH);
+		kept.setId(5);
+		Entry old = new Entry(7, 100, kept, "old", DATE);
+		kept.addEntry(old);
+		repository.add(kept);
+
+		outbox.update(old, new Entry(150, kept, "older", DATE));
+		outbox.remove(old);
+		assertEquals(1, outbox.getPendingCount());
+		assertTrue(kept.getEntries().isEmpty());
+
+		Budget dropped = new Budget("food", 500, false, DATE, Duration.WEEK);
+		outbox.create(dropped);
+		outbox.create(new Entry(250, dropped, "lunch", DATE));
+		outbox.remove(dropped);
+		assertEquals(1, outbox.getPendingCount());
+		assertNull(repository.getBudgetById(dropped.getId()));
+
+		sender.online = true;
+		outbox.flush();
+		assertEquals(1, sender.sent.size());
+		assertEquals("remove entry", sender.sent.get(0).what);
+		assertEquals(7, ((Entry) sender.sent.get(0).target).getEntryId());
+	}
+
+	/**
+	 * Checks that a change that failed for want of a network is kept to be
+	 * sent again, while one the server rejected is dropped, undone, and the
+	 * budgets are marked as needing a full sync. Black-box test.
+	 */
+	@SmallTest
+	public void test_flush_failure_shouldRetryOnlyTransient() {
+		repository.replaceAll(Arrays.<Budget>asList(),
+				new LocalDateTime(2013, 11, 14, 1, 0));
+		Budget budget = new Budget("food", 500, false, DATE, Duration.WEEK);
+		sender.online = true;
+		outbox.create(budget);
+
+		sender.sent.get(0).failTransiently();
+		assertEquals(1, outbox.getPendingCount());
+		assertNotNull(repository.getSyncedThrough());
+
+		outbox.flush();
+		assertEquals(2, sender.sent.size());
+		sender.sent.get(1).fail("Budget name is taken");
+		assertEquals(0, outbox.getPendingCount());
+		assertNull(repository.getBudgetById(budget.getId()));
+		assertNull(repository.getSyncedThrough());
+	}
+
+	/**
+	 * Checks that a change that failed in a way that may pass while the
+	 * device stayed online is sent again after a wait, and that one which
+	 * failed for want of a network waits for the network instead.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_flush_transientFailureWhileOnline_shouldRetryAfterWait() {
+		Budget budget = new Budget("food", 500, false, DATE, Duration.WEEK);
+		sender.online = true;
+		outbox.create(budget);
+
+		sender.sent.get(0).failTransiently();
+		assertEquals(1, timers.size());
+		runTimers();
+		assertEquals(2, sender.sent.size());
+		assertEquals("create budget", sender.sent.get(1).what);
+
+		sender.online = false;
+		sender.sent.get(1).failTransiently();
+		assertTrue(timers.isEmpty());
+		assertEquals(1, outbox.getPendingCount());
+	}
+
+	/**
+	 * Checks that a change that keeps failing while online is given up on
+	 * after the retries, undone as if rejected, and no longer holds up the
+	 * change behind it. Black-box test.
+	 */
+	@SmallTest
+	public void test_flush_keepsFailingWhileOnline_shouldRejectAfterRetries() {
+		final List<String> rejected = new ArrayList<String>();
+		outbox.setRejectionListener(new Outbox.RejectionListener() {
+			@Override
+			public void onChangeRejected(String errorMessage) {
+				rejected.add(errorMessage);
+			}
+		});
+		Budget food = new Budget("food", 500, false, DATE, Duration.WEEK);
+		Budget rent = new Budget("rent", 900, true, DATE, Duration.MONTH);
+		sender.online = true;
+		outbox.create(food);
+		outbox.create(rent);
+
+		for (int i = 0; i < MAX_RETRIES; ++i) {
+			sender.sent.get(i).failTransiently();
+			runTimers();
+		}
+		assertEquals(MAX_RETRIES + 1, sender.sent.size());
+		sender.sent.get(MAX_RETRIES).failTransiently();
+
+		assertNull(repository.getBudgetById(food.getId()));
+		assertEquals(Arrays.asList(FakeSender.TRANSIENT), rejected);
+		assertEquals(1, outbox.getPendingCount());
+		assertEquals(MAX_RETRIES + 2, sender.sent.size());
+		assertEquals("rent",
+				((Budget) sender.sent.get(MAX_RETRIES + 1).target).getName());
+	}
+
+	/**
+	 * Checks that a change sent through the application's outbox, which
+	 * failed to reach the server for a reason other than a timeout, is
+	 * kept to be sent again rather than undone. Black-box test.
+	 */
+	@SmallTest
+	public void test_flush_connectionRefused_shouldKeepChange() {
+		AsyncHttpClientStub client = new AsyncHttpClientStub();
+		TestUtilities.getStubbedApiInterface(client);
+		client.setNextFailure(new ConnectException("Connection refused"));
+		Outbox appOutbox = UBudgetApp.getOutbox();
+		appOutbox.clear();
+
+		Budget budget = new Budget("food", 500, false, DATE, Duration.WEEK);
+		try {
+			appOutbox.create(budget);
+
+			assertEquals(1, appOutbox.getPendingCount());
+			assertSame(budget, repository.getBudgetById(budget.getId()));
+		} finally {
+			appOutbox.clear();
+		}
+	}
+
+	/**
+	 * Checks that a rejected creation, update and removal are undone here,
+	 * putting back what was there before, and that the user is told of each.
+	 * Black-box test.
+	 */
+	@SmallTest
+	public void test_flush_rejected_shouldUndoChange() {
+		final List<String> rejected = new ArrayList<String>();
+		outbox.setRejectionListener(new Outbox.RejectionListener() {
+			@Override
+			public void onChangeRejected(String errorMessage) {
+				rejected.add(errorMessage);
+			}
+		});
+		Budget food = new Budget("food", 500, false, DATE, Duration.WEEK);
+		food.setId(5);
+		Budget rent = new Budget("rent", 900, true, DATE, Duration.MONTH);
+		rent.setId(6);
+		Entry lunch = new Entry(7, 100, food, "lunch", DATE);
+		food.addEntry(lunch);
+		Entry dinner = new Entry(8, 300, food, "dinner", DATE);
+		food.addEntry(dinner);
+		repository.addAll(Arrays.asList(food, rent));
+
+		Entry added = new Entry(250, food, "snack", DATE);
+		outbox.create(added);
+		outbox.update(lunch, new Entry(150, rent, "brunch", DATE.plusDays(1)));
+		outbox.remove(dinner);
+		assertSame(rent, lunch.getBudget());
+		assertEquals(Arrays.asList(added), food.getEntries());
+
+		sender.online = true;
+		outbox.flush();
+		sender.sent.get(0).fail("Amount is too large");
+		assertFalse(food.getEntries().contains(added));
+
+		sender.sent.get(1).fail("Entry not found");
+		assertSame(food, lunch.getBudget());
+		assertTrue(food.getEntries().contains(lunch));
+		assertTrue(rent.getEntries().isEmpty());
+		assertEquals(100, lunch.getAmount());
+		assertEquals("lunch", lunch.getNotes());
+		assertEquals(DATE, lunch.getDate());
+
+		sender.sent.get(2).fail("Entry not found");
+		assertTrue(food.getEntries().contains(dinner));
+		assertSame(dinner, repository.findEntryById(8));
+
+		assertEquals(Arrays.asList("Amount is too large", "Entry not found",
+				"Entry not found"), rejected);
+		assertEquals(0, outbox.getPendingCount());
+	}
+
+	/**
+	 * Checks that a rejected removal of a budget that replaced updates to
+	 * it puts the budget back as it was before the updates. Black-box test.
+	 */
+	@SmallTest
+	public void test_flush_rejectedRemoveAfterUpdate_shouldRestoreFirst() {
+		Budget budget = new Budget("food", 500, false, DATE, Duration.WEEK);
+		budget.setId(5);
+		repository.add(budget);
+
+		outbox.update(budget,
+				new Budget("groceries", 700, false, DATE, Duration.WEEK));
+		outbox.update(budget,
+				new Budget("shopping", 800, false, DATE, Duration.WEEK));
+		outbox.remove(budget);
+		assertNull(repository.getBudgetById(5));
+
+		sender.online = true;
+		outbox.flush();
+		assertEquals(1, sender.sent.size());
+		sender.sent.get(0).fail("Budget not found");
+
+		assertSame(budget, repository.getBudgetById(5));
+		assertEquals("food", budget.getName());
+		assertEquals(500, budget.getBudgetAmount());
+	}
+
+	/**
+	 * Checks that the changes waiting are read back from the file, and that
+	 * temporary IDs keep counting down from where they were. Black-box test.
+	 */
+	@SmallTest
+	public void test_load_afterChanges_shouldReadSameChanges() {
+		Budget budget = new Budget("food", 500, false, DATE, Duration.WEEK);
+		outbox.create(budget);
+		outbox.create(new Entry(250, budget, "lunch", DATE));
+
+		Outbox reloaded = newOutbox();
+		reloaded.load();
+		assertEquals(2, reloaded.getPendingCount());
+
+		Budget next = new Budget("rent", 900, true, DATE, Duration.MONTH);
+		reloaded.create(next);
+		assertTrue(next.getId() < budget.getId() - 1);
+
+		sender.online = true;
+		reloaded.flush();
+		Budget sent = (Budget) sender.sent.get(0).target;
+		assertEquals(budget.getId(), sent.getId());
+		assertEquals("food", sent.getName());
+		assertEquals(DATE, sent.getStartDate());
+		assertEquals(Duration.WEEK, sent.getDuration());
+	}
+
+	/* A change handed to the FakeSender. */
+	private static final class Sent {
+		final String what;
+		final Object target;
+		final ApiCallback<?> callback;
+
+		Sent(String what, Object target, ApiCallback<?> callback) {
+			this.what = what;
+			this.target = target;
+			this.callback = callback;
+		}
+
+		@SuppressWarnings("unchecked")
+		void succeed(Object result) {
+			((ApiCallback<Object>) callback).onSuccess(result);
+		}
+
+		void fail(String errorMessage) {
+			callback.onFailure(errorMessage);
+		}
+
+		void failTransiently() {
+			((TransientFailureCallback<?>) callback).onTransientFailure(
+					FakeSender.TRANSIENT, new SocketTimeoutException());
+		}
+	}
+
+	/* Records the changes sent, to be answered by the test. */
+	private static final class FakeSender implements Outbox.Sender {
+		static final String TRANSIENT = "No network";
+
+		final List<Sent> sent = new ArrayList<Sent>();
+		boolean online;
+
+		@Override
+		public boolean isOnline() {
+			return online;
+		}
+
+		@Override
+		public void create(Budget b, ApiCallback<Long> callback) {
+			sent.add(new Sent("create budget", b, callback));
+		}
+
+		@Override
+		public void create(Entry e, ApiCallback<Long> callback) {
+			sent.add(new Sent("create entry", e, callback));
+		}
+
+		@Override
+		public void update(Budget b, ApiCallback<Object> callback) {
+			sent.add(new Sent("update budget", b, callback));
+		}
+
+		@Override
+		public void update(Entry e, ApiCallback<Object> callback) {
+			sent.add(new Sent("update entry", e, callback));
+		}
+
+		@Override
+		public void remove(Budget b, ApiCallback<Object> callback) {
+			sent.add(new Sent("remove budget", b, callback));
+		}
+
+		@Override
+		public void remove(Entry e, ApiCallback<Object> callback) {
+			sent.add(new Sent("remove entry", e, callback));
+		}
+	}
+}
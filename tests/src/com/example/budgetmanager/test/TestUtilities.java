@@ -1,9 +1,15 @@
 package com.example.budgetmanager.test;
 
+import android.content.Context;
+
+import com.example.budgetmanager.R;
 import com.example.budgetmanager.api.ApiInterface;
+import com.jayway.android.robotium.solo.Solo;
 import com.loopj.android.http.AsyncHttpClient;
 
 import java.lang.reflect.Field;
+import java.util.concurrent.Executor;
+import java.util.regex.Pattern;
 
 /**
  * A collection of miscellaneous methods for tests.
@@ -13,6 +19,14 @@ import java.lang.reflect.Field;
  *
  */
 public class TestUtilities {
+	// Runs tasks straight away, on the calling thread
+	private static final Executor DIRECT = new Executor() {
+		@Override
+		public void execute(Runnable task) {
+			task.run();
+		}
+	};
+
 	/**
      * Use reflection to change value of any instance field.
      *
@@ -60,8 +74,26 @@ public class TestUtilities {
 			// API's client field is private. Lets use
 			// reflection to change it to our test client.
 			TestUtilities.setInstanceValue(api, "client", testClient);
+			// Decode and deliver responses straight away, so that the
+			// callbacks run before the test returns.
+			TestUtilities.setInstanceValue(api, "decodeExecutor", DIRECT);
+			TestUtilities.setInstanceValue(api, "deliveryExecutor", DIRECT);
 		} catch (Exception e) { }
 
 		return api;
     }
+
+    /**
+     * Waits for the user to be told that the server rejected a change, and
+     * that it was undone.
+     * @param solo The Solo driving the activity.
+     * @param context A Context to read the message from.
+     * @param errorMessage The error the server rejected the change with.
+     * @return true if the message was shown.
+     */
+    public static boolean waitForRejection(Solo solo, Context context,
+            String errorMessage) {
+        String shown = context.getString(R.string.change_rejected, errorMessage);
+        return solo.waitForText(Pattern.quote(shown));
+    }
 }
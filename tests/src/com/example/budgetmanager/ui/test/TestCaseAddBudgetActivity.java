@@ -7,6 +7,8 @@ import android.widget.EditText;
 
 import com.example.budgetmanager.AddBudgetActivity;
 import com.example.budgetmanager.Budget;
+import com.example.budgetmanager.BudgetRepository;
+import com.example.budgetmanager.UBudgetApp;
 import com.example.budgetmanager.api.test.AsyncHttpClientStub;
 import com.example.budgetmanager.test.TestUtilities;
 import com.jayway.android.robotium.solo.Solo;
@@ -53,7 +55,8 @@ extends ActivityInstrumentationTestCase2<AddBudgetActivity> {
 		testClient = new AsyncHttpClientStub();
 		TestUtilities.getStubbedApiInterface(testClient);
 
-		Budget.clearBudgets();
+		BudgetRepository.getInstance().clear();
+		UBudgetApp.getOutbox().clear();
 	}
 
 	@Override
@@ -173,9 +176,9 @@ extends ActivityInstrumentationTestCase2<AddBudgetActivity> {
 		// Enter a name that is the same as the other budget, and valid amount.
 		String budgetName = "Duplicate Budget Name";
 
-		@SuppressWarnings("unused")
 		Budget b = new Budget(budgetName, 0, false, LocalDate.now(),
 				Budget.Duration.WEEK);
+		BudgetRepository.getInstance().add(b);
 
 		solo.typeText(nameField, budgetName);
 		solo.typeText(amountField, "1.00");
@@ -221,8 +224,9 @@ extends ActivityInstrumentationTestCase2<AddBudgetActivity> {
 	}
 
 	/**
-	 * Ensure that, on server failure, the newly added budget is
-	 * removed from the budget list.
+	 * Ensure that the newly added budget is taken out of the budget
+	 * list again if the server rejects it, that the user is told, and
+	 * that the rejected change isn't sent again.
 	 *
 	 * This is a black-box test of the AddBudgetActivity.
 	 */
@@ -239,11 +243,15 @@ extends ActivityInstrumentationTestCase2<AddBudgetActivity> {
 		solo.clickOnButton("Add");
 		solo.sleep(500);
 
-		// make sure no budget with ID -1 is in budget list
-		// AKA the network failure was acknowledged and actions
-		// were taken to reverse the addition of the budget.
-		Budget budget = Budget.getBudgetById(-1);
-		assertNull("No budget should exist with ID -1 after failure.", budget);
+		// The budget is added straight away with a temporary ID, and
+		// taken out again once the add fails.
+		assertTrue("The user should be told the budget was undone.",
+				TestUtilities.waitForRejection(solo, getActivity(),
+						"Set to fail."));
+		assertEquals("The budget should not be in the budget list.",
+				0, BudgetRepository.getInstance().getBudgets().size());
+		assertEquals("The rejected budget should not be sent again.",
+				0, UBudgetApp.getOutbox().getPendingCount());
 	}
 
 	/**
@@ -274,7 +282,7 @@ extends ActivityInstrumentationTestCase2<AddBudgetActivity> {
 
 		// Make sure there is a budget with ID BUDGET_ID in the list
 		// of budgets, as the server returned saying it had been added.
-		Budget b = Budget.getBudgetById(BUDGET_ID);
+		Budget b = BudgetRepository.getInstance().getBudgetById(BUDGET_ID);
 		assertNotNull("There should be a budget with ID -2.", b);
 		assertEquals("The name of the budget was wrong.", BUDGET_NAME, b.getName());
 		assertEquals("The amount of the budget was wrong.",
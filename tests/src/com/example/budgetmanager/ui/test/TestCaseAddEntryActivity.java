@@ -12,7 +12,9 @@ import com.example.budgetmanager.AddBudgetActivity;
 import com.example.budgetmanager.AddEntryActivity;
 import com.example.budgetmanager.Budget;
 import com.example.budgetmanager.Budget.Duration;
+import com.example.budgetmanager.BudgetRepository;
 import com.example.budgetmanager.Entry;
+import com.example.budgetmanager.UBudgetApp;
 import com.example.budgetmanager.api.test.AsyncHttpClientStub;
 import com.example.budgetmanager.test.TestUtilities;
 import com.jayway.android.robotium.solo.Solo;
@@ -70,11 +72,11 @@ extends ActivityInstrumentationTestCase2<AddEntryActivity> {
 				com.example.budgetmanager.R.id.add_entry_button);
 
 		// Should always tear down budgets
-		Budget.clearBudgets();
+		BudgetRepository.getInstance().clear();
 
 		// Add our test budget.
-		new Budget(TEST_BUDGET_NAME, 200, false,
-				LocalDate.now(), Duration.MONTH);
+		BudgetRepository.getInstance().add(new Budget(TEST_BUDGET_NAME, 200,
+				false, LocalDate.now(), Duration.MONTH));
 
 		// Have to call addItemsToBudgetSpinner() manually to get the spinner
 		// to refresh and show the newly created budget, testBudget.
@@ -89,6 +91,7 @@ extends ActivityInstrumentationTestCase2<AddEntryActivity> {
 		// Set up the stubbed test client
 		testClient = new AsyncHttpClientStub();
 		TestUtilities.getStubbedApiInterface(testClient);
+		UBudgetApp.getOutbox().clear();
 	}
 
 	@Override
@@ -271,7 +274,9 @@ extends ActivityInstrumentationTestCase2<AddEntryActivity> {
 	}
 
 	/**
-	 * Ensure that, on server failure, the newly added entry
+	 * Ensure that the newly added entry is taken out again if the
+	 * server rejects it, that the user is told, and that the rejected
+	 * change isn't sent again.
 	 * 
 	 * This is a black-box test of the AddEntryActivity.
 	 */
@@ -285,17 +290,22 @@ extends ActivityInstrumentationTestCase2<AddEntryActivity> {
 		testClient.setNextResponse(new JSONObject(), false);
 
 		assertEquals("There should only be one budget.",
-				1, Budget.getBudgets().size());
+				1, BudgetRepository.getInstance().getBudgets().size());
 
 		solo.clickOnButton("Add");
 		solo.sleep(1000);
 
-		// Make sure that the budget still has no entries in it,
-		// as the add failed.
-		Budget budget = Budget.getBudgetById(-1);
+		// The entry is added straight away, and taken out again once
+		// the add fails.
+		assertTrue("The user should be told the entry was undone.",
+				TestUtilities.waitForRejection(solo, getActivity(),
+						"Set to fail."));
+		Budget budget = BudgetRepository.getInstance().getBudgetById(-1);
 		assertNotNull("The test budget should still exist.", budget);
 		assertEquals("There should be no entries in the test budget.",
 				0, budget.getEntries().size());
+		assertEquals("The rejected entry should not be sent again.",
+				0, UBudgetApp.getOutbox().getPendingCount());
 	}
 
 	/**
@@ -328,7 +338,7 @@ extends ActivityInstrumentationTestCase2<AddEntryActivity> {
 
 		// Make sure there is an entry in the test budget with
 		// the appropriate ID (-2).
-		Budget b = Budget.getBudgetById(-1);
+		Budget b = BudgetRepository.getInstance().getBudgetById(-1);
 		assertNotNull("The test budget should exist.", b);
 
 		Entry e = b.getEntryById(ENTRY_ID);
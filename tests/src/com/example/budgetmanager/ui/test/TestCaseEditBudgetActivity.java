@@ -7,7 +7,9 @@ import android.widget.EditText;
 
 import com.example.budgetmanager.Budget;
 import com.example.budgetmanager.Budget.Duration;
+import com.example.budgetmanager.BudgetRepository;
 import com.example.budgetmanager.EditBudgetActivity;
+import com.example.budgetmanager.UBudgetApp;
 import com.example.budgetmanager.api.test.AsyncHttpClientStub;
 import com.example.budgetmanager.test.TestUtilities;
 import com.jayway.android.robotium.solo.Solo;
@@ -56,6 +58,7 @@ extends ActivityInstrumentationTestCase2<EditBudgetActivity> {
 		// Set up the stubbed test client
 		testClient = new AsyncHttpClientStub();
 		TestUtilities.getStubbedApiInterface(testClient);
+		UBudgetApp.getOutbox().clear();
 	}
 
 	private static final String TEST_BUDGET_NAME = "Test Budget";
@@ -65,16 +68,17 @@ extends ActivityInstrumentationTestCase2<EditBudgetActivity> {
 	 * Sets up the Budget list for this test.
 	 */
 	private void setUpBudgetList() {
-		Budget.clearBudgets();
+		BudgetRepository.getInstance().clear();
 		Budget testBudget = new Budget(TEST_BUDGET_NAME, 1234500,
 				false, LocalDate.now(), Duration.DAY);
 		testBudget.setId(TEST_BUDGET_ID);
+		BudgetRepository.getInstance().add(testBudget);
 	}
 
 	/**
-	 * Ensure that, on server failure, the edited budget is
-	 * reverted back to it's original state. Also ensures
-	 * that no extra budget is in the budget list.
+	 * Ensure that the edited budget is changed back if the server
+	 * rejects the change, and that the user is told. Also ensures that
+	 * no extra budget is in the budget list.
 	 *
 	 * This is a black-box test of the AddBudgetActivity.
 	 */
@@ -91,22 +95,30 @@ extends ActivityInstrumentationTestCase2<EditBudgetActivity> {
 		testClient.setNextResponse(new JSONObject(), false);
 
 		assertEquals("Budget list should only have one inside.",
-				1, Budget.getBudgets().size());
+				1, BudgetRepository.getInstance().getBudgets().size());
 
-		Budget originalBudget = Budget.getBudgetById(TEST_BUDGET_ID);
+		Budget originalBudget = BudgetRepository.getInstance().getBudgetById(TEST_BUDGET_ID);
 		assertNotNull("Original budget should exist.", originalBudget);
 
 		// Perform click.
 		solo.clickOnButton("Submit");
 		solo.sleep(1000);
 
-		// Ensure that no updates persisted to the budget.
+		// Ensure that the update was undone once it failed, and that
+		// the rejected change won't be sent again.
+		assertTrue("The user should be told the change was undone.",
+				TestUtilities.waitForRejection(solo, getActivity(),
+						"Set to fail."));
 		assertEquals("Budget list should still have only one inside.",
-				1, Budget.getBudgets().size());
-		originalBudget = Budget.getBudgetById(TEST_BUDGET_ID);
+				1, BudgetRepository.getInstance().getBudgets().size());
+		originalBudget = BudgetRepository.getInstance().getBudgetById(TEST_BUDGET_ID);
 		assertNotNull("Original budget should still exist.", originalBudget);
-		assertEquals("Budget name should not have changed.",
+		assertEquals("Budget name should be back to the original.",
 				TEST_BUDGET_NAME, originalBudget.getName());
+		assertEquals("Budget amount should be unchanged.",
+				1234500, originalBudget.getBudgetAmount());
+		assertEquals("The rejected change should not be sent again.",
+				0, UBudgetApp.getOutbox().getPendingCount());
 	}
 
 	/**
@@ -129,9 +141,9 @@ extends ActivityInstrumentationTestCase2<EditBudgetActivity> {
 
 		// Ensure that the budget list is correct.
 		assertEquals("Budget list should only have one inside.",
-				1, Budget.getBudgets().size());
+				1, BudgetRepository.getInstance().getBudgets().size());
 
-		Budget originalBudget = Budget.getBudgetById(TEST_BUDGET_ID);
+		Budget originalBudget = BudgetRepository.getInstance().getBudgetById(TEST_BUDGET_ID);
 		assertNotNull("Original budget should exist.", originalBudget);
 
 		// Perform click.
@@ -140,8 +152,8 @@ extends ActivityInstrumentationTestCase2<EditBudgetActivity> {
 
 		// Ensure that updates occured to the budget.
 		assertEquals("Budget list should still have only one inside.",
-				1, Budget.getBudgets().size());
-		originalBudget = Budget.getBudgetById(TEST_BUDGET_ID);
+				1, BudgetRepository.getInstance().getBudgets().size());
+		originalBudget = BudgetRepository.getInstance().getBudgetById(TEST_BUDGET_ID);
 		assertNotNull("Original budget should still exist.", originalBudget);
 		assertEquals("Budget name should have changed.",
 				BUDGET_NAME, originalBudget.getName());
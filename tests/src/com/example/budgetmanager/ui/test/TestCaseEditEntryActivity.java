@@ -7,8 +7,10 @@ import android.widget.EditText;
 
 import com.example.budgetmanager.Budget;
 import com.example.budgetmanager.Budget.Duration;
+import com.example.budgetmanager.BudgetRepository;
 import com.example.budgetmanager.EditEntryActivity;
 import com.example.budgetmanager.Entry;
+import com.example.budgetmanager.UBudgetApp;
 import com.example.budgetmanager.api.test.AsyncHttpClientStub;
 import com.example.budgetmanager.test.TestUtilities;
 import com.jayway.android.robotium.solo.Solo;
@@ -74,6 +76,7 @@ extends ActivityInstrumentationTestCase2<EditEntryActivity> {
 		// Set up the stubbed test client
 		testClient = new AsyncHttpClientStub();
 		TestUtilities.getStubbedApiInterface(testClient);
+		UBudgetApp.getOutbox().clear();
 	}
 
 	private static final String TEST_BUDGET_NAME = "Test Budget";
@@ -92,10 +95,11 @@ extends ActivityInstrumentationTestCase2<EditEntryActivity> {
 	 * Sets up the Budget list for this test.
 	 */
 	private void setUpBudgetList() {
-		Budget.clearBudgets();
+		BudgetRepository.getInstance().clear();
 		Budget testBudget = new Budget(TEST_BUDGET_NAME, 1234500,
 				false, LocalDate.now(), Duration.DAY);
 		testBudget.setId(TEST_BUDGET_ID);
+		BudgetRepository.getInstance().add(testBudget);
 		Entry testEntry = new Entry(TEST_ENTRY_ID, TEST_ENTRY_AMOUNT,
 				testBudget, TEST_ENTRY_NAME, LocalDate.now());
 		testEntry.setUpdatedAt(TEST_ENTRY_UPDATE_TIME);
@@ -106,8 +110,9 @@ extends ActivityInstrumentationTestCase2<EditEntryActivity> {
 	}
 
 	/**
-	 * Ensure that, on server failure, the edited entry
-	 * remains unchanged.
+	 * Ensure that the edited entry is changed back if the server
+	 * rejects the change, that the user is told, and that its update
+	 * time is unchanged.
 	 * 
 	 * This is a black-box test of the AddEntryActivity.
 	 */
@@ -129,13 +134,19 @@ extends ActivityInstrumentationTestCase2<EditEntryActivity> {
 		solo.clickOnButton("Submit");
 		solo.sleep(1000);
 
-		// Check that the entry remains unchanged.
+		// Check that the change was undone once it failed, and the
+		// entry not given a new update time by the server.
+		assertTrue("The user should be told the change was undone.",
+				TestUtilities.waitForRejection(solo, getActivity(),
+						"Set to fail."));
 		assertEquals("Entry's update time should be the same.",
 				TEST_ENTRY_UPDATE_TIME, TEST_ENTRY.getUpdatedAt());
-		assertEquals("Entry's name should not have changed.",
+		assertEquals("Entry's name should be back to the original.",
 				TEST_ENTRY_NAME, TEST_ENTRY.getNotes());
-		assertEquals("Entry's amount should not have changed.",
+		assertEquals("Entry's amount should be back to the original.",
 				TEST_ENTRY_AMOUNT, TEST_ENTRY.getAmount());
+		assertEquals("The rejected change should not be sent again.",
+				0, UBudgetApp.getOutbox().getPendingCount());
 	}
 
 	/**
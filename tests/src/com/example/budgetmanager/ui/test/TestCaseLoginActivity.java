@@ -6,6 +6,7 @@ import android.widget.Button;
 import android.widget.EditText;
 
 import com.example.budgetmanager.Budget;
+import com.example.budgetmanager.BudgetRepository;
 import com.example.budgetmanager.LoginActivity;
 import com.example.budgetmanager.MainActivity;
 import com.example.budgetmanager.RegisterActivity;
@@ -55,7 +56,7 @@ extends ActivityInstrumentationTestCase2<LoginActivity> {
 		solo = new Solo(getInstrumentation(), getActivity());
 
 		// Always tear down budgets!
-		Budget.clearBudgets();
+		BudgetRepository.getInstance().clear();
 
 		emailView = (EditText) getActivity().
 				findViewById(com.example.budgetmanager.R.id.email);
@@ -10,10 +10,12 @@ import com.example.budgetmanager.AddBudgetActivity;
 import com.example.budgetmanager.AddEntryActivity;
 import com.example.budgetmanager.Budget;
 import com.example.budgetmanager.Budget.Duration;
+import com.example.budgetmanager.BudgetRepository;
 import com.example.budgetmanager.EditEntryActivity;
 import com.example.budgetmanager.Entry;
 import com.example.budgetmanager.MainActivity;
 import com.example.budgetmanager.R;
+import com.example.budgetmanager.UBudgetApp;
 import com.example.budgetmanager.api.ApiInterface;
 import com.example.budgetmanager.api.test.AsyncHttpClientStub;
 import com.example.budgetmanager.test.TestUtilities;
@@ -78,10 +80,11 @@ extends ActivityInstrumentationTestCase2<MainActivity> {
 				com.example.budgetmanager.R.id.spinner_logs_sort);
 
 		// Should tear down budgets
-		Budget.clearBudgets();
+		BudgetRepository.getInstance().clear();
 
 		testClient = new AsyncHttpClientStub();
 		api = TestUtilities.getStubbedApiInterface(testClient);
+		UBudgetApp.getOutbox().clear();
 	}
 
 	@Override
@@ -128,7 +131,7 @@ extends ActivityInstrumentationTestCase2<MainActivity> {
 	public void test_onAddEntryClicked_doesNotStartActivityIfNoCreatedBudgets() {
 		// Check that AddEntryActivity is NOT started when the user presses
 		// the "Add Entry" button if there are no created budgets
-		Budget.clearBudgets();
+		BudgetRepository.getInstance().clear();
 
 		solo.clickOnButton("Add Entry");
 		solo.sleep(500);
@@ -222,6 +225,7 @@ extends ActivityInstrumentationTestCase2<MainActivity> {
 		// And put the test entries into the budgets
 		testBudget1.addEntry(testEntry1_budget1);
 		testBudget1.addEntry(testEntry2_budget1);
+		BudgetRepository.getInstance().add(testBudget1);
 
 		// And call onResume(), which will refresh the list of entries
 		getActivity().runOnUiThread(new Runnable() {
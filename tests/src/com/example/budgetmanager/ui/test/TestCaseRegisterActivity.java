@@ -6,6 +6,7 @@ import android.test.suitebuilder.annotation.MediumTest;
 import android.widget.EditText;
 
 import com.example.budgetmanager.Budget;
+import com.example.budgetmanager.BudgetRepository;
 import com.example.budgetmanager.MainActivity;
 import com.example.budgetmanager.RegisterActivity;
 import com.example.budgetmanager.api.ApiInterface;
@@ -68,7 +69,7 @@ public class TestCaseRegisterActivity
 		testClient = new AsyncHttpClientStub();
 		api = TestUtilities.getStubbedApiInterface(testClient);
 
-		Budget.clearBudgets();
+		BudgetRepository.getInstance().clear();
 	}
 
 	@Override